@@ -0,0 +1,422 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fr.ens.biologie.genomique.eoulsan.bio.GenomicArray;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomicInterval;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * This class contains the generators of the synthetic data used by the
+ * benchmarks. All the generators are deterministic for a given seed, so the
+ * results of two releases can be compared.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public final class BenchmarkData {
+
+  /** Seed used by all the benchmarks. */
+  public static final long SEED = 42;
+
+  /** Chromosomes of the synthetic genome. */
+  public static final String[] CHROMOSOMES = {"chr1", "chr2", "chr3"};
+
+  /** Lengths of the chromosomes of the synthetic genome. */
+  public static final int[] CHROMOSOME_LENGTHS = {2000000, 1000000, 500000};
+
+  private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+  //
+  // Reads
+  //
+
+  /**
+   * Create a random sequence.
+   * @param random random generator
+   * @param length length of the sequence
+   * @param nRate rate of N bases in the sequence
+   * @return a string with the sequence
+   */
+  public static String randomSequence(final Random random, final int length,
+      final double nRate) {
+
+    final char[] result = new char[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = random.nextDouble() < nRate
+          ? 'N' : BASES[random.nextInt(BASES.length)];
+    }
+
+    return new String(result);
+  }
+
+  /**
+   * Create a random Sanger quality string.
+   * @param random random generator
+   * @param length length of the quality string
+   * @return a string with the quality
+   */
+  public static String randomQuality(final Random random, final int length) {
+
+    final char[] result = new char[length];
+    for (int i = 0; i < length; i++) {
+
+      // Quality decreases along the read like with Illumina sequencers
+      final int max = Math.max(3, 41 - i * 30 / length);
+      result[i] = (char) (33 + 2 + random.nextInt(max - 1));
+    }
+
+    return new String(result);
+  }
+
+  /**
+   * Create a list of random reads.
+   * @param count number of reads
+   * @param length length of the reads
+   * @return a list of reads
+   */
+  public static List<ReadSequence> reads(final int count, final int length) {
+
+    final Random random = new Random(SEED);
+    final List<ReadSequence> result = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+
+      // Some reads end with a poly N tail
+      final int tail = random.nextInt(10) == 0 ? random.nextInt(length / 2) : 0;
+      final String sequence = randomSequence(random, length - tail, 0.001)
+          + repeat('N', tail);
+
+      result.add(new ReadSequence("read" + i + " 1:N:0:ACGT", sequence,
+          randomQuality(random, length)));
+    }
+
+    return result;
+  }
+
+  /**
+   * Create the content of a FASTQ file.
+   * @param count number of entries
+   * @param length length of the reads
+   * @return an array of bytes with the content of the FASTQ file
+   */
+  public static byte[] fastq(final int count, final int length) {
+
+    final StringBuilder sb = new StringBuilder();
+
+    for (ReadSequence read : reads(count, length)) {
+      sb.append(read.toFastQ());
+      sb.append('\n');
+    }
+
+    return sb.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  //
+  // Alignments
+  //
+
+  /**
+   * Create a SAM header for the synthetic genome.
+   * @return a new SAMFileHeader object
+   */
+  public static SAMFileHeader samHeader() {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    for (int i = 0; i < CHROMOSOMES.length; i++) {
+      header.addSequence(
+          new SAMSequenceRecord(CHROMOSOMES[i], CHROMOSOME_LENGTHS[i]));
+    }
+
+    return header;
+  }
+
+  /**
+   * Create a list of alignments grouped by read name, like in the output of a
+   * mapper.
+   * @param readCount number of reads
+   * @param length length of the reads
+   * @return a list of alignments
+   */
+  public static List<SAMRecord> alignments(final int readCount,
+      final int length) {
+
+    final Random random = new Random(SEED);
+    final SAMFileHeader header = samHeader();
+    final List<SAMRecord> result = new ArrayList<>();
+
+    for (int i = 0; i < readCount; i++) {
+
+      final String sequence = randomSequence(random, length, 0.0);
+      final String quality = randomQuality(random, length);
+
+      // Most of the reads are unique matches, some are multi-matches
+      final int r = random.nextInt(100);
+      final int hits = r < 5 ? 0 : r < 85 ? 1 : 2 + random.nextInt(4);
+
+      for (int j = 0; j < Math.max(1, hits); j++) {
+
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName("read" + i);
+        record.setReadString(sequence);
+        record.setBaseQualityString(quality);
+
+        if (hits == 0) {
+          record.setReadUnmappedFlag(true);
+        } else {
+          final int chr = random.nextInt(CHROMOSOMES.length);
+          record.setReferenceName(CHROMOSOMES[chr]);
+          record.setAlignmentStart(
+              1 + random.nextInt(CHROMOSOME_LENGTHS[chr] - 2 * length));
+          record.setCigarString(length + "M");
+          record.setReadNegativeStrandFlag(random.nextBoolean());
+          record.setMappingQuality(hits > 1 ? 1 : 10 + random.nextInt(50));
+          record.setNotPrimaryAlignmentFlag(j > 0);
+          record.setAttribute("NH", hits);
+        }
+
+        result.add(record);
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Annotation
+  //
+
+  /**
+   * Create the lines of a GTF file.
+   * @param geneCount number of genes
+   * @return a list of GTF lines
+   */
+  public static List<String> gtfLines(final int geneCount) {
+
+    final List<String> result = new ArrayList<>();
+    final Random random = new Random(SEED);
+
+    for (int i = 0; i < geneCount; i++) {
+
+      final int chr = i % CHROMOSOMES.length;
+      final String gene = "ENSG" + String.format("%011d", i);
+      final char strand = random.nextBoolean() ? '+' : '-';
+      int start = 1 + random.nextInt(CHROMOSOME_LENGTHS[chr] - 10000);
+
+      final int exonCount = 1 + random.nextInt(8);
+      for (int j = 0; j < exonCount; j++) {
+
+        final int end = start + 50 + random.nextInt(400);
+        result.add(CHROMOSOMES[chr]
+            + "\tensembl\texon\t" + start + '\t' + end + "\t.\t" + strand
+            + "\t.\tgene_id \"" + gene + "\"; transcript_id \"" + gene
+            + ".1\"; exon_number \"" + (j + 1) + "\"; gene_biotype "
+            + "\"protein_coding\";");
+        start = end + random.nextInt(800);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Create the lines of a GFF3 file.
+   * @param geneCount number of genes
+   * @return a list of GFF3 lines
+   */
+  public static List<String> gff3Lines(final int geneCount) {
+
+    final List<String> result = new ArrayList<>();
+
+    for (String line : gtfLines(geneCount)) {
+
+      final String[] fields = line.split("\t");
+      final String attributes = fields[8].replace("; ", ";")
+          .replace(" \"", "=").replace("\"", "");
+
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        sb.append(fields[i]);
+        sb.append('\t');
+      }
+      sb.append(attributes.substring(0, attributes.length() - 1));
+
+      result.add(sb.toString());
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a genomic array with the exons of the synthetic annotation.
+   * @param geneCount number of genes
+   * @return a new GenomicArray object
+   */
+  public static GenomicArray<String> genomicArray(final int geneCount) {
+
+    final GenomicArray<String> result = new GenomicArray<>();
+    for (String chromosome : CHROMOSOMES) {
+      result.addChromosome(chromosome);
+    }
+
+    for (String line : gtfLines(geneCount)) {
+
+      final String[] fields = line.split("\t");
+      final String gene =
+          fields[8].substring("gene_id \"".length(), fields[8].indexOf("\";"));
+
+      result.addEntry(
+          new GenomicInterval(fields[0], Integer.parseInt(fields[3]),
+              Integer.parseInt(fields[4]), fields[6].charAt(0)),
+          gene);
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a list of random genomic intervals.
+   * @param count number of intervals
+   * @param length length of the intervals
+   * @return a list of genomic intervals
+   */
+  public static List<GenomicInterval> intervals(final int count,
+      final int length) {
+
+    final Random random = new Random(SEED);
+    final List<GenomicInterval> result = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+
+      final int chr = random.nextInt(CHROMOSOMES.length);
+      final int start = 1 + random.nextInt(CHROMOSOME_LENGTHS[chr] - length);
+      result.add(new GenomicInterval(CHROMOSOMES[chr], start,
+          start + length - 1, random.nextBoolean() ? '+' : '-'));
+    }
+
+    return result;
+  }
+
+  //
+  // Expression matrices
+  //
+
+  /**
+   * Create the content of a TSV expression matrix.
+   * @param rowCount number of rows
+   * @param columnCount number of columns
+   * @return an array of bytes with the content of the matrix
+   */
+  public static byte[] tsvMatrix(final int rowCount, final int columnCount) {
+
+    final Random random = new Random(SEED);
+    final StringBuilder sb = new StringBuilder();
+
+    sb.append("id");
+    for (int j = 0; j < columnCount; j++) {
+      sb.append("\tsample");
+      sb.append(j);
+    }
+    sb.append('\n');
+
+    for (int i = 0; i < rowCount; i++) {
+
+      sb.append("gene");
+      sb.append(i);
+
+      for (int j = 0; j < columnCount; j++) {
+        sb.append('\t');
+        sb.append(random.nextInt(4) == 0 ? 0 : random.nextInt(10000));
+      }
+      sb.append('\n');
+    }
+
+    return sb.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Create the content of a Market Matrix expression matrix.
+   * @param rowCount number of rows
+   * @param columnCount number of columns
+   * @param density rate of the non zero values
+   * @return an array of bytes with the content of the matrix
+   */
+  public static byte[] marketMatrix(final int rowCount, final int columnCount,
+      final double density) {
+
+    final Random random = new Random(SEED);
+    final StringBuilder values = new StringBuilder();
+    int nonZero = 0;
+
+    for (int j = 1; j <= columnCount; j++) {
+      for (int i = 1; i <= rowCount; i++) {
+
+        if (random.nextDouble() < density) {
+          values.append(i);
+          values.append(' ');
+          values.append(j);
+          values.append(' ');
+          values.append(1 + random.nextInt(100));
+          values.append('\n');
+          nonZero++;
+        }
+      }
+    }
+
+    final String header = "%%MatrixMarket matrix coordinate real general\n"
+        + rowCount + ' ' + columnCount + ' ' + nonZero + '\n';
+
+    return (header + values).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  //
+  // Other methods
+  //
+
+  private static String repeat(final char c, final int count) {
+
+    final char[] result = new char[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = c;
+    }
+
+    return new String(result);
+  }
+
+  //
+  // Constructor
+  //
+
+  private BenchmarkData() {
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.ens.biologie.genomique.eoulsan.bio.ExpressionMatrix;
+import fr.ens.biologie.genomique.eoulsan.bio.io.MarketMatrixExpressionMatrixReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.TSVExpressionMatrixReader;
+
+/**
+ * This class define the benchmarks of the expression matrix readers.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionMatrixReaderBenchmark {
+
+  @Param({"20000"})
+  private int rowCount;
+
+  @Param({"10", "100"})
+  private int columnCount;
+
+  private byte[] tsv;
+  private byte[] marketMatrix;
+
+  @Setup
+  public void setup() {
+
+    this.tsv = BenchmarkData.tsvMatrix(this.rowCount, this.columnCount);
+    this.marketMatrix =
+        BenchmarkData.marketMatrix(this.rowCount, this.columnCount, 0.1);
+  }
+
+  @Benchmark
+  public ExpressionMatrix readTSV() throws IOException {
+
+    try (TSVExpressionMatrixReader reader =
+        new TSVExpressionMatrixReader(new ByteArrayInputStream(this.tsv))) {
+      return reader.read();
+    }
+  }
+
+  @Benchmark
+  public ExpressionMatrix readMarketMatrix() throws IOException {
+
+    try (MarketMatrixExpressionMatrixReader reader =
+        new MarketMatrixExpressionMatrixReader(
+            new ByteArrayInputStream(this.marketMatrix))) {
+      return reader.read();
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecord;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecordReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+
+/**
+ * This class define the benchmarks of the FASTQ reader and writer.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FastqBenchmark {
+
+  @Param({"100000"})
+  private int readCount;
+
+  @Param({"50", "150"})
+  private int readLength;
+
+  private byte[] fastq;
+  private List<ReadSequence> reads;
+
+  @Setup
+  public void setup() {
+
+    this.fastq = BenchmarkData.fastq(this.readCount, this.readLength);
+    this.reads = BenchmarkData.reads(this.readCount, this.readLength);
+  }
+
+  @Benchmark
+  public void readFastq(final Blackhole bh)
+      throws IOException, BadBioEntryException {
+
+    try (FastqReader reader =
+        new FastqReader(new ByteArrayInputStream(this.fastq))) {
+
+      for (ReadSequence read : reader) {
+        bh.consume(read);
+      }
+      reader.throwException();
+    }
+  }
+
+  @Benchmark
+  public void readFastqRecords(final Blackhole bh)
+      throws IOException, BadBioEntryException {
+
+    try (FastqRecordReader reader =
+        new FastqRecordReader(new ByteArrayInputStream(this.fastq))) {
+
+      FastqRecord record;
+      while ((record = reader.read()) != null) {
+        bh.consume(record.getSequenceLength());
+      }
+    }
+  }
+
+  @Benchmark
+  public int writeFastq() throws IOException {
+
+    final ByteArrayOutputStream out =
+        new ByteArrayOutputStream(this.fastq.length);
+
+    try (FastqWriter writer = new FastqWriter(out)) {
+
+      for (ReadSequence read : this.reads) {
+        writer.write(read);
+      }
+    }
+
+    return out.size();
+  }
+
+}
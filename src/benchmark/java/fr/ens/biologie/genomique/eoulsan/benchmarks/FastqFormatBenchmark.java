@@ -0,0 +1,90 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+/**
+ * This class define the benchmarks of the conversion of the quality strings
+ * between FASTQ formats.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FastqFormatBenchmark {
+
+  @Param({"100000"})
+  private int readCount;
+
+  @Param({"100"})
+  private int readLength;
+
+  @Param({"FASTQ_ILLUMINA", "FASTQ_SOLEXA"})
+  private FastqFormat targetFormat;
+
+  private List<String> qualities;
+
+  @Setup
+  public void setup() {
+
+    this.qualities = new ArrayList<>(this.readCount);
+    for (ReadSequence read : BenchmarkData.reads(this.readCount,
+        this.readLength)) {
+      this.qualities.add(read.getQuality());
+    }
+  }
+
+  @Benchmark
+  public void convertTo(final Blackhole bh) {
+
+    for (String quality : this.qualities) {
+      bh.consume(FastqFormat.FASTQ_SANGER.convertTo(quality, this.targetFormat));
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.GFFEntry;
+
+/**
+ * This class define the benchmarks of the parsing of GFF3 and GTF entries.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GFFEntryBenchmark {
+
+  @Param({"20000"})
+  private int geneCount;
+
+  private List<String> gff3Lines;
+  private List<String> gtfLines;
+
+  @Setup
+  public void setup() {
+
+    this.gff3Lines = BenchmarkData.gff3Lines(this.geneCount);
+    this.gtfLines = BenchmarkData.gtfLines(this.geneCount);
+  }
+
+  @Benchmark
+  public void parseGFF3(final Blackhole bh) throws BadBioEntryException {
+
+    final GFFEntry entry = new GFFEntry();
+    for (String line : this.gff3Lines) {
+      entry.parseGFF3(line);
+      bh.consume(entry.getStart());
+    }
+  }
+
+  @Benchmark
+  public void parseGTF(final Blackhole bh) throws BadBioEntryException {
+
+    final GFFEntry entry = new GFFEntry();
+    for (String line : this.gtfLines) {
+      entry.parseGTF(line);
+      bh.consume(entry.getStart());
+    }
+  }
+
+}
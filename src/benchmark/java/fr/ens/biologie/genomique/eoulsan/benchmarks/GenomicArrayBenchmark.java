@@ -0,0 +1,102 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomicArray;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomicInterval;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqUtils;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.OverlapMode;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.StrandUsage;
+
+/**
+ * This class define the benchmarks of the GenomicArray lookups and of the
+ * features overlap computation of the HTSeq-count counter.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenomicArrayBenchmark {
+
+  @Param({"20000"})
+  private int geneCount;
+
+  @Param({"100000"})
+  private int intervalCount;
+
+  @Param({"UNION", "INTERSECTION_NONEMPTY"})
+  private OverlapMode overlapMode;
+
+  private GenomicArray<String> features;
+  private List<GenomicInterval> intervals;
+
+  @Setup
+  public void setup() {
+
+    this.features = BenchmarkData.genomicArray(this.geneCount);
+    this.intervals = BenchmarkData.intervals(this.intervalCount, 100);
+  }
+
+  @Benchmark
+  public void getEntries(final Blackhole bh) {
+
+    for (GenomicInterval iv : this.intervals) {
+      bh.consume(this.features.getEntries(iv.getChromosome(), iv.getStart(),
+          iv.getEnd()));
+    }
+  }
+
+  @Benchmark
+  public void featuresOverlapped(final Blackhole bh) throws EoulsanException {
+
+    for (GenomicInterval iv : this.intervals) {
+      bh.consume(HTSeqUtils.featuresOverlapped(Collections.singletonList(iv),
+          this.features, this.overlapMode, StrandUsage.YES));
+    }
+  }
+
+}
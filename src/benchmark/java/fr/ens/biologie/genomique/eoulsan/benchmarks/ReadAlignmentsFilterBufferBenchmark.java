@@ -0,0 +1,120 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.KeepOneMatchReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.QualityReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.ReadAlignmentsFilterBuffer;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.RemoveUnmappedReadAlignmentsFilter;
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * This class define the benchmarks of the ReadAlignmentsFilterBuffer class
+ * with the alignments filters used by the default Eoulsan workflow.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadAlignmentsFilterBufferBenchmark {
+
+  @Param({"100000"})
+  private int readCount;
+
+  @Param({"100"})
+  private int readLength;
+
+  private List<SAMRecord> alignments;
+  private MultiReadAlignmentsFilter filter;
+
+  @Setup
+  public void setup() throws EoulsanException {
+
+    this.alignments = BenchmarkData.alignments(this.readCount, this.readLength);
+
+    final QualityReadAlignmentsFilter qualityFilter =
+        new QualityReadAlignmentsFilter();
+    qualityFilter.setParameter("threshold", "30");
+    qualityFilter.init();
+
+    this.filter = new MultiReadAlignmentsFilter();
+    this.filter.addFilter(new RemoveUnmappedReadAlignmentsFilter());
+    this.filter.addFilter(qualityFilter);
+    this.filter.addFilter(new KeepOneMatchReadAlignmentsFilter());
+  }
+
+  @Benchmark
+  public void filter(final Blackhole bh) {
+
+    filter(new ReadAlignmentsFilterBuffer(this.filter), bh);
+  }
+
+  @Benchmark
+  public void filterWithReuse(final Blackhole bh) {
+
+    filter(new ReadAlignmentsFilterBuffer(this.filter, true), bh);
+  }
+
+  //
+  // Other methods
+  //
+
+  private void filter(final ReadAlignmentsFilterBuffer rafb,
+      final Blackhole bh) {
+
+    for (SAMRecord record : this.alignments) {
+
+      if (!rafb.addAlignment(record)) {
+        bh.consume(rafb.getFilteredAlignments().size());
+        rafb.addAlignment(record);
+      }
+    }
+
+    bh.consume(rafb.getFilteredAlignments().size());
+  }
+
+}
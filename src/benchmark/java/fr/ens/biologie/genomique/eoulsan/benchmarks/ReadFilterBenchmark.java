@@ -0,0 +1,131 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.benchmarks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.LengthReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.QualityReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.TrimReadFilter;
+
+/**
+ * This class define the benchmarks of the MultiReadFilter class with the
+ * filters used by the default Eoulsan workflow.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadFilterBenchmark {
+
+  @Param({"100000"})
+  private int readCount;
+
+  @Param({"100"})
+  private int readLength;
+
+  private List<ReadSequence> reads;
+  private MultiReadFilter filter;
+
+  @Setup
+  public void setup() throws EoulsanException {
+
+    this.reads = BenchmarkData.reads(this.readCount, this.readLength);
+
+    this.filter = new MultiReadFilter();
+    this.filter.addFilter(
+        createFilter(new TrimReadFilter(), "length.threshold", "11"));
+    this.filter.addFilter(
+        createFilter(new LengthReadFilter(), "minimal.length.threshold", "40"));
+    this.filter
+        .addFilter(createFilter(new QualityReadFilter(), "threshold", "30"));
+  }
+
+  @Benchmark
+  public void acceptPerRead(final Blackhole bh) {
+
+    // Filters may modify the reads, so work on copies
+    for (ReadSequence read : this.reads) {
+      bh.consume(this.filter.accept(new ReadSequence(read.getName(),
+          read.getSequence(), read.getQuality())));
+    }
+  }
+
+  @Benchmark
+  public BitSet acceptBatch() {
+
+    final List<ReadSequence> copies = new ArrayList<>(this.readCount);
+    for (ReadSequence read : this.reads) {
+      copies.add(new ReadSequence(read.getName(), read.getSequence(),
+          read.getQuality()));
+    }
+
+    final BitSet accepted = new BitSet(copies.size());
+    accepted.set(0, copies.size());
+    this.filter.accept(copies, accepted);
+
+    return accepted;
+  }
+
+  //
+  // Other methods
+  //
+
+  private static ReadFilter createFilter(final ReadFilter filter,
+      final String key, final String value) throws EoulsanException {
+
+    if (key != null) {
+      filter.setParameter(key, value);
+    }
+    filter.init();
+
+    return filter;
+  }
+
+}
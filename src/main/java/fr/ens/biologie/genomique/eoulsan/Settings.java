@@ -77,6 +77,21 @@ public final class Settings implements Serializable {
   private static final String LOCAL_THREADS_NUMBER =
       MAIN_PREFIX_KEY + "local.threads";
 
+  private static final String LOCAL_MEMORY_KEY =
+      MAIN_PREFIX_KEY + "local.memory";
+
+  private static final String LOCAL_STREAMING_KEY =
+      MAIN_PREFIX_KEY + "local.streaming";
+
+  private static final String COMPRESSION_THREADS_NUMBER_KEY =
+      MAIN_PREFIX_KEY + "compression.threads";
+
+  private static final String DOWNLOAD_THREADS_NUMBER_KEY =
+      MAIN_PREFIX_KEY + "download.threads";
+
+  private static final String DOWNLOAD_PART_SIZE_KEY =
+      MAIN_PREFIX_KEY + "download.part.size";
+
   private static final String OUTPUT_TREE_TYPE =
       MAIN_PREFIX_KEY + "output.tree.type";
 
@@ -128,6 +143,9 @@ public final class Settings implements Serializable {
   private static final String GENOME_DESC_STORAGE_KEY =
       MAIN_PREFIX_KEY + "genome.desc.storage.path";
 
+  private static final String FEATURES_INDEX_STORAGE_KEY =
+      MAIN_PREFIX_KEY + "features.index.storage.path";
+
   private static final String GENOME_STORAGE_KEY =
       MAIN_PREFIX_KEY + "genome.storage.path";
 
@@ -143,6 +161,12 @@ public final class Settings implements Serializable {
   private static final String ADDITIONAL_ANNOTATION_HYPERTEXT_LINKS_KEY =
       MAIN_PREFIX_KEY + "additional.annotation.hypertext.links.path";
 
+  private static final String DATA_CACHE_PATH_KEY =
+      MAIN_PREFIX_KEY + "data.cache.path";
+
+  private static final String DATA_CACHE_MAX_SIZE_KEY =
+      MAIN_PREFIX_KEY + "data.cache.max.size";
+
   private static final String SEND_RESULT_MAIL_KEY =
       MAIN_PREFIX_KEY + "mail.send.result.mail";
 
@@ -395,6 +419,60 @@ public final class Settings implements Serializable {
         "" + Runtime.getRuntime().availableProcessors()));
   }
 
+  /**
+   * Get the memory available for the tasks in local mode.
+   * @return the memory available for the tasks in MB or 0 if the total memory
+   *         of the system must be used
+   */
+  public int getLocalMemory() {
+
+    return Integer
+        .parseInt(this.properties.getProperty(LOCAL_MEMORY_KEY, "0"));
+  }
+
+  /**
+   * Test if the data transfered between the steps can be streamed through
+   * named pipes in local mode.
+   * @return true if the streaming of data between steps is enabled
+   */
+  public boolean isLocalStreaming() {
+
+    return Boolean.parseBoolean(
+        this.properties.getProperty(LOCAL_STREAMING_KEY, "false"));
+  }
+
+  /**
+   * Get the number of threads to use to compress and uncompress gzip files.
+   * @return the number of threads to use or 0 if the parallel compression is
+   *         disabled
+   */
+  public int getCompressionThreadsNumber() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(COMPRESSION_THREADS_NUMBER_KEY, "0"));
+  }
+
+  /**
+   * Get the number of parts of a remote file to download in parallel.
+   * @return the number of threads to use or 0 if the parallel download is
+   *         disabled
+   */
+  public int getDownloadThreadsNumber() {
+
+    return Integer.parseInt(
+        this.properties.getProperty(DOWNLOAD_THREADS_NUMBER_KEY, "0"));
+  }
+
+  /**
+   * Get the size of the parts of the remote files downloaded in parallel.
+   * @return the size of the parts in MB
+   */
+  public int getDownloadPartSize() {
+
+    return Integer
+        .parseInt(this.properties.getProperty(DOWNLOAD_PART_SIZE_KEY, "16"));
+  }
+
   /**
    * Get the default fastq format.
    * @return the default fastq format
@@ -433,6 +511,15 @@ public final class Settings implements Serializable {
     return this.properties.getProperty(GENOME_DESC_STORAGE_KEY);
   }
 
+  /**
+   * Get the features index storage path.
+   * @return the path to features index storage path
+   */
+  public String getFeaturesIndexStoragePath() {
+
+    return this.properties.getProperty(FEATURES_INDEX_STORAGE_KEY);
+  }
+
   /**
    * Get the genome storage path.
    * @return the path to genome storage path
@@ -479,6 +566,26 @@ public final class Settings implements Serializable {
         .getProperty(ADDITIONAL_ANNOTATION_HYPERTEXT_LINKS_KEY);
   }
 
+  /**
+   * Get the path of the local cache of the remote files.
+   * @return the path of the local cache of the remote files or null if the
+   *         cache is disabled
+   */
+  public String getDataCachePath() {
+
+    return this.properties.getProperty(DATA_CACHE_PATH_KEY);
+  }
+
+  /**
+   * Get the maximal size of the local cache of the remote files.
+   * @return the maximal size of the cache in MB
+   */
+  public long getDataCacheMaxSize() {
+
+    return Long.parseLong(
+        this.properties.getProperty(DATA_CACHE_MAX_SIZE_KEY, "10240"));
+  }
+
   /**
    * Test if an email must be sent at the end of the analysis.
    * @return true if an email must be sent at the end of the analysis
@@ -977,6 +1084,75 @@ public final class Settings implements Serializable {
         Integer.toString(threadsNumber));
   }
 
+  /**
+   * Set the memory available for the tasks in local mode.
+   * @param memory the memory available for the tasks in MB, 0 to use the
+   *          total memory of the system
+   */
+  public void setLocalMemory(final int memory) {
+
+    if (memory < 0) {
+      return;
+    }
+
+    this.properties.setProperty(LOCAL_MEMORY_KEY, Integer.toString(memory));
+  }
+
+  /**
+   * Set if the data transfered between the steps can be streamed through
+   * named pipes in local mode.
+   * @param streaming true to enable the streaming of data between steps
+   */
+  public void setLocalStreaming(final boolean streaming) {
+
+    this.properties.setProperty(LOCAL_STREAMING_KEY,
+        Boolean.toString(streaming));
+  }
+
+  /**
+   * Set the number of threads to use to compress and uncompress gzip files.
+   * @param threadsNumber the number of threads to use, 0 to disable the
+   *          parallel compression
+   */
+  public void setCompressionThreadsNumber(final int threadsNumber) {
+
+    if (threadsNumber < 0) {
+      return;
+    }
+
+    this.properties.setProperty(COMPRESSION_THREADS_NUMBER_KEY,
+        Integer.toString(threadsNumber));
+  }
+
+  /**
+   * Set the number of parts of a remote file to download in parallel.
+   * @param threadsNumber the number of threads to use, 0 to disable the
+   *          parallel download
+   */
+  public void setDownloadThreadsNumber(final int threadsNumber) {
+
+    if (threadsNumber < 0) {
+      return;
+    }
+
+    this.properties.setProperty(DOWNLOAD_THREADS_NUMBER_KEY,
+        Integer.toString(threadsNumber));
+  }
+
+  /**
+   * Set the size of the parts of the remote files downloaded in parallel.
+   * @param partSize the size of the parts in MB
+   */
+  public void setDownloadPartSize(final int partSize) {
+
+    if (partSize < 1) {
+      return;
+    }
+
+    this.properties.setProperty(DOWNLOAD_PART_SIZE_KEY,
+        Integer.toString(partSize));
+  }
+
   /**
    * Set the Fastq format default value.
    * @param format the value to set
@@ -1020,6 +1196,17 @@ public final class Settings implements Serializable {
     this.properties.setProperty(GENOME_DESC_STORAGE_KEY, genomeDescStoragePath);
   }
 
+  /**
+   * Set the features index storage path.
+   * @param featuresIndexStoragePath the path to features index storage path
+   */
+  public void setFeaturesIndexStoragePath(
+      final String featuresIndexStoragePath) {
+
+    this.properties.setProperty(FEATURES_INDEX_STORAGE_KEY,
+        featuresIndexStoragePath);
+  }
+
   /**
    * Set the genome storage path.
    * @param genomeStoragePath the path to genome index storage path
@@ -1071,6 +1258,29 @@ public final class Settings implements Serializable {
         additionalAnnotationHypertextLinksPath);
   }
 
+  /**
+   * Set the path of the local cache of the remote files.
+   * @param dataCachePath the path of the local cache of the remote files
+   */
+  public void setDataCachePath(final String dataCachePath) {
+
+    this.properties.setProperty(DATA_CACHE_PATH_KEY, dataCachePath);
+  }
+
+  /**
+   * Set the maximal size of the local cache of the remote files.
+   * @param maxSize the maximal size of the cache in MB
+   */
+  public void setDataCacheMaxSize(final long maxSize) {
+
+    if (maxSize < 0) {
+      return;
+    }
+
+    this.properties.setProperty(DATA_CACHE_MAX_SIZE_KEY,
+        Long.toString(maxSize));
+  }
+
   /**
    * Set if an email must be sent at the end of the analysis.
    * @param enableSendResultMail true if an email must be sent at the end of the
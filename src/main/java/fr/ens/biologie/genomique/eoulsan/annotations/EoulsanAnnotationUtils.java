@@ -107,6 +107,16 @@ public class EoulsanAnnotationUtils {
     return isAnnotation(module, NoOutputDirectory.class);
   }
 
+  /**
+   * Test if a module contain the @StreamableInput annotation.
+   * @param module the module to test
+   * @return true if the module contains the annotation
+   */
+  public static boolean isStreamableInput(final Module module) {
+
+    return isAnnotation(module, StreamableInput.class);
+  }
+
   /**
    * Test if a module contains an annotation.
    * @param module the module
@@ -0,0 +1,564 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import fr.ens.biologie.genomique.eoulsan.util.Utils;
+
+/**
+ * This class define an immutable and compact genomic array. The zones of each
+ * chromosome strand are stored in arrays of primitive types, the values are
+ * interned and the set of values of each zone are shared between the zones.
+ * Queries use a binary search followed by a walk on the overlapping zones.
+ * This class is built from a GenomicArray once all the entries have been
+ * added.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class CompactGenomicArray<T> extends GenomicArray<T> {
+
+  private static final long serialVersionUID = -4403207981618418137L;
+
+  private final List<T> features = new ArrayList<>();
+  private final Map<T, Integer> featureOrdinals = new HashMap<>();
+  private final List<Set<T>> valueSets = new ArrayList<>();
+  private final Map<String, CompactChromosomeZones> chromosomes =
+      new HashMap<>();
+
+  /**
+   * This class define the zones of a strand of a chromosome.
+   */
+  private static final class CompactStrandedZones implements Serializable {
+
+    private static final long serialVersionUID = -2587939839001713087L;
+
+    private final int[] starts;
+    private final int[] ends;
+    private final char[] strands;
+    private final int[] valueSetIndexes;
+    private final int length;
+
+    /**
+     * Find the zone index for a position.
+     * @param pos the position on the chromosome
+     * @return the index of the zone or -1 if the position if lower than 1 or
+     *         greater than the length of the chromosome
+     */
+    private int findIndexPos(final int pos) {
+
+      if (pos < 1 || pos > this.length) {
+        return -1;
+      }
+
+      // Zones are contiguous, search the last zone that starts before pos
+      int low = 0;
+      int high = this.starts.length - 1;
+
+      while (low < high) {
+
+        final int mid = (low + high + 1) >>> 1;
+
+        if (this.starts[mid] <= pos) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+
+      return low;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+      if (o == this) {
+        return true;
+      }
+
+      if (!(o instanceof CompactStrandedZones)) {
+        return false;
+      }
+
+      final CompactStrandedZones that = (CompactStrandedZones) o;
+
+      return Arrays.equals(this.starts, that.starts)
+          && Arrays.equals(this.ends, that.ends)
+          && Arrays.equals(this.strands, that.strands)
+          && Arrays.equals(this.valueSetIndexes, that.valueSetIndexes);
+    }
+
+    @Override
+    public int hashCode() {
+
+      return Utils.hashCode(Arrays.hashCode(this.starts),
+          Arrays.hashCode(this.ends), Arrays.hashCode(this.strands),
+          Arrays.hashCode(this.valueSetIndexes));
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param starts starts of the zones
+     * @param ends ends of the zones
+     * @param strands strands of the zones
+     * @param valueSetIndexes index of the set of values of the zones
+     */
+    private CompactStrandedZones(final int[] starts, final int[] ends,
+        final char[] strands, final int[] valueSetIndexes) {
+
+      this.starts = starts;
+      this.ends = ends;
+      this.strands = strands;
+      this.valueSetIndexes = valueSetIndexes;
+      this.length = ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+  }
+
+  /**
+   * This class define the zones of a chromosome.
+   */
+  private static final class CompactChromosomeZones implements Serializable {
+
+    private static final long serialVersionUID = 2406402281567880924L;
+
+    private final CompactStrandedZones plus;
+    private final CompactStrandedZones minus;
+
+    @Override
+    public boolean equals(final Object o) {
+
+      if (o == this) {
+        return true;
+      }
+
+      if (!(o instanceof CompactChromosomeZones)) {
+        return false;
+      }
+
+      final CompactChromosomeZones that = (CompactChromosomeZones) o;
+
+      return Utils.equal(this.plus, that.plus)
+          && Utils.equal(this.minus, that.minus);
+    }
+
+    @Override
+    public int hashCode() {
+
+      return Utils.hashCode(this.plus, this.minus);
+    }
+
+    /**
+     * Constructor.
+     * @param plus zones of the plus strand
+     * @param minus zones of the minus strand
+     */
+    private CompactChromosomeZones(final CompactStrandedZones plus,
+        final CompactStrandedZones minus) {
+
+      this.plus = plus;
+      this.minus = minus;
+    }
+  }
+
+  /**
+   * This class allow to collect the zones of a GenomicArray.
+   */
+  private final class ZonesCollector implements EntriesHandler<T> {
+
+    private final Map<Set<T>, Integer> valueSetIndexes = new HashMap<>();
+    private final List<int[]> zones = new ArrayList<>();
+    private final StringBuilder strands = new StringBuilder();
+
+    @Override
+    public void handle(final String chromosome, final int start,
+        final int end, final char strand, final Set<T> values) {
+
+      this.zones.add(new int[] {start, end, internValueSet(values)});
+      this.strands.append(strand);
+    }
+
+    /**
+     * Get the index of a set of values.
+     * @param values the values
+     * @return the index of the set of values
+     */
+    private int internValueSet(final Set<T> values) {
+
+      final Integer index = this.valueSetIndexes.get(values);
+
+      if (index != null) {
+        return index;
+      }
+
+      final Set<T> set;
+      if (values.isEmpty()) {
+        set = Collections.emptySet();
+      } else if (values.size() == 1) {
+        set = Collections.singleton(internFeature(values.iterator().next()));
+      } else {
+        final Set<T> s = new HashSet<>();
+        for (T value : values) {
+          s.add(internFeature(value));
+        }
+        set = Collections.unmodifiableSet(s);
+      }
+
+      final int result = valueSets.size();
+      valueSets.add(set);
+      this.valueSetIndexes.put(set, result);
+
+      return result;
+    }
+
+    /**
+     * Get the shared instance of a feature.
+     * @param feature the feature
+     * @return the shared instance of the feature
+     */
+    private T internFeature(final T feature) {
+
+      final Integer ordinal = featureOrdinals.get(feature);
+
+      if (ordinal != null) {
+        return features.get(ordinal);
+      }
+
+      featureOrdinals.put(feature, features.size());
+      features.add(feature);
+
+      return feature;
+    }
+
+    /**
+     * Create the compact zones from the collected zones.
+     * @return a new CompactStrandedZones object
+     */
+    private CompactStrandedZones toCompactZones() {
+
+      final int count = this.zones.size();
+      final int[] starts = new int[count];
+      final int[] ends = new int[count];
+      final int[] indexes = new int[count];
+
+      for (int i = 0; i < count; i++) {
+
+        final int[] zone = this.zones.get(i);
+        starts[i] = zone[0];
+        ends[i] = zone[1];
+        indexes[i] = zone[2];
+      }
+
+      final char[] strandArray = new char[count];
+      this.strands.getChars(0, count, strandArray, 0);
+
+      this.zones.clear();
+      this.strands.setLength(0);
+
+      return new CompactStrandedZones(starts, ends, strandArray, indexes);
+    }
+  }
+
+  //
+  // Query methods
+  //
+
+  @Override
+  public boolean getEntries(final String chromosome, final int start,
+      final int end, final EntriesHandler<T> handler) {
+
+    if (chromosome == null) {
+      throw new NullPointerException("chromosome argument cannot be null");
+    }
+
+    if (handler == null) {
+      throw new NullPointerException("handler argument cannot be null");
+    }
+
+    final CompactChromosomeZones chr = this.chromosomes.get(chromosome);
+
+    if (chr == null) {
+      return false;
+    }
+
+    getEntries(chromosome, chr.plus, start, end, handler);
+    getEntries(chromosome, chr.minus, start, end, handler);
+
+    return true;
+  }
+
+  /**
+   * Get the entries of a strand of a chromosome.
+   * @param chromosome the chromosome
+   * @param zones the zones of the strand
+   * @param start start of the interval
+   * @param stop end of the interval
+   * @param handler handler for the entries found
+   */
+  private void getEntries(final String chromosome,
+      final CompactStrandedZones zones, final int start, final int stop,
+      final EntriesHandler<T> handler) {
+
+    final int indexStart = zones.findIndexPos(start);
+
+    if (indexStart == -1) {
+      return;
+    }
+
+    final int indexEnd = zones.findIndexPos(stop);
+    final int to = indexEnd == -1 ? zones.starts.length - 1 : indexEnd;
+
+    for (int i = indexStart; i <= to; i++) {
+
+      final int zoneStart = zones.starts[i];
+      final int zoneEnd = zones.ends[i];
+
+      if (intersect(start, stop, zoneStart, zoneEnd)) {
+        handler.handle(chromosome, zoneStart, zoneEnd, zones.strands[i],
+            this.valueSets.get(zones.valueSetIndexes[i]));
+      }
+    }
+
+    final int lastStart = zones.starts[to];
+    final int lastEnd = zones.ends[to];
+    final char lastStrand = zones.strands[to];
+
+    if (stop > lastEnd && start > lastStart) {
+      handler.handle(chromosome, start, stop, lastStrand,
+          Collections.<T> emptySet());
+    } else if (stop > lastEnd) {
+      handler.handle(chromosome, lastEnd + 1, stop, lastStrand,
+          Collections.<T> emptySet());
+    }
+  }
+
+  /**
+   * Test if an interval intersect a zone.
+   * @param start start of the interval
+   * @param end end of the interval
+   * @param startZone start of the zone
+   * @param endZone end of the zone
+   * @return true if the interval intersect a zone
+   */
+  private static boolean intersect(final int start, final int end,
+      final int startZone, final int endZone) {
+
+    return (start >= startZone && start <= endZone)
+        || (end >= startZone && end <= endZone)
+        || (start < startZone && end > endZone);
+  }
+
+  @Override
+  void handleAllZones(final String chromosome, final boolean minusStrand,
+      final EntriesHandler<T> handler) {
+
+    final CompactChromosomeZones chr = this.chromosomes.get(chromosome);
+
+    if (chr == null) {
+      return;
+    }
+
+    final CompactStrandedZones zones = minusStrand ? chr.minus : chr.plus;
+
+    for (int i = 0; i < zones.starts.length; i++) {
+      handler.handle(chromosome, zones.starts[i], zones.ends[i],
+          zones.strands[i], this.valueSets.get(zones.valueSetIndexes[i]));
+    }
+  }
+
+  @Override
+  public boolean containsChromosome(final String chromosomeName) {
+
+    if (chromosomeName == null) {
+      return false;
+    }
+
+    return this.chromosomes.containsKey(chromosomeName);
+  }
+
+  @Override
+  public Set<String> getFeaturesIds() {
+
+    final Set<String> result = new TreeSet<>();
+
+    for (T feature : this.features) {
+      result.add(String.valueOf(feature));
+    }
+
+    return result;
+  }
+
+  @Override
+  public Set<String> getChromosomesNames() {
+
+    return Collections.unmodifiableSet(this.chromosomes.keySet());
+  }
+
+  //
+  // Features dictionary
+  //
+
+  /**
+   * Get the number of distinct features of the array.
+   * @return the number of distinct features
+   */
+  public int getFeatureCount() {
+
+    return this.features.size();
+  }
+
+  /**
+   * Get a feature from its ordinal.
+   * @param ordinal the ordinal of the feature
+   * @return the feature
+   */
+  public T getFeature(final int ordinal) {
+
+    return this.features.get(ordinal);
+  }
+
+  /**
+   * Get the ordinal of a feature.
+   * @param feature the feature
+   * @return the ordinal of the feature or -1 if the feature is not in the
+   *         array
+   */
+  public int getFeatureOrdinal(final T feature) {
+
+    final Integer result = this.featureOrdinals.get(feature);
+
+    return result == null ? -1 : result;
+  }
+
+  //
+  // Unsupported methods
+  //
+
+  @Override
+  public void addEntry(final GenomicInterval interval, final T value) {
+
+    throw new UnsupportedOperationException(
+        "A CompactGenomicArray cannot be modified");
+  }
+
+  @Override
+  public void addChromosome(final String chromosomeName) {
+
+    throw new UnsupportedOperationException(
+        "A CompactGenomicArray cannot be modified");
+  }
+
+  @Override
+  public void addChromosomes(final GenomeDescription gd) {
+
+    throw new UnsupportedOperationException(
+        "A CompactGenomicArray cannot be modified");
+  }
+
+  @Override
+  public void clear() {
+
+    throw new UnsupportedOperationException(
+        "A CompactGenomicArray cannot be modified");
+  }
+
+  //
+  // Object methods
+  //
+
+  @Override
+  public boolean equals(final Object o) {
+
+    if (o == this) {
+      return true;
+    }
+
+    if (!(o instanceof CompactGenomicArray)) {
+      return false;
+    }
+
+    final CompactGenomicArray<?> that = (CompactGenomicArray<?>) o;
+
+    return Utils.equal(this.features, that.features)
+        && Utils.equal(this.valueSets, that.valueSets)
+        && Utils.equal(this.chromosomes, that.chromosomes);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return Utils.hashCode(this.features, this.valueSets, this.chromosomes);
+  }
+
+  @Override
+  public String toString() {
+
+    return this.getClass().getSimpleName()
+        + "{chromosomes=" + this.chromosomes.size() + ", features="
+        + this.features.size() + ", valueSets=" + this.valueSets.size() + "}";
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param array the genomic array to copy
+   */
+  public CompactGenomicArray(final GenomicArray<T> array) {
+
+    if (array == null) {
+      throw new NullPointerException("array argument cannot be null");
+    }
+
+    final ZonesCollector collector = new ZonesCollector();
+
+    for (String chromosome : array.getChromosomesNames()) {
+
+      array.handleAllZones(chromosome, false, collector);
+      final CompactStrandedZones plus = collector.toCompactZones();
+
+      array.handleAllZones(chromosome, true, collector);
+      final CompactStrandedZones minus = collector.toCompactZones();
+
+      this.chromosomes.put(chromosome,
+          new CompactChromosomeZones(plus, minus));
+    }
+  }
+
+}
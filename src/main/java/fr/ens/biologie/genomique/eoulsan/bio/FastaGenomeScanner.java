@@ -0,0 +1,607 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.io.BioCharsets.FASTA_CHARSET;
+import static fr.ens.biologie.genomique.eoulsan.util.StringUtils.md5DigestToString;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a FASTA scanner that compute genome descriptions. Lines
+ * are handled as bytes and the bases are checked using a lookup table. The
+ * length of the sequences and the MD5 sum are the same as the ones computed
+ * with FastaLineParser. When the genome is an uncompressed file, the bases
+ * can be checked by several threads while the MD5 sum is computed.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class FastaGenomeScanner {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final long MIN_PARALLEL_LENGTH = 16 * 1024 * 1024;
+  private static final byte[] FASTA_SECTION =
+      "##FASTA".getBytes(FASTA_CHARSET);
+  private static final boolean[] VALID_BASES =
+      createLookupTable(Alphabets.AMBIGUOUS_DNA_ALPHABET);
+
+  private final boolean digest;
+  private final boolean validate;
+  private boolean fastaSectionFound;
+  private boolean skipLine;
+  private long endOffset = -1;
+  private long lineOffset;
+
+  // Fields used to compute the genome description
+  private final GenomeDescription result = new GenomeDescription();
+  private final MessageDigest md5Digest;
+  private final List<Long> headerOffsets = new ArrayList<>();
+  private final List<String> headers = new ArrayList<>();
+  private String header;
+  private boolean newHeader;
+  private String lastSeqName;
+  private String parsedSeqName;
+  private long chrSize;
+
+  // Fields used when only the bases are checked
+  private long invalidBaseOffset = -1;
+  private char invalidBase;
+
+  //
+  // Scan methods
+  //
+
+  /**
+   * Scan the lines of a stream.
+   * @param is input stream to scan
+   * @param startOffset offset of the first byte of the stream in the file
+   * @throws IOException if an error occurs while reading the stream or if the
+   *           stream is not a valid FASTA stream
+   * @throws BadBioEntryException if an invalid entry is found
+   */
+  private void scan(final InputStream is, final long startOffset)
+      throws IOException, BadBioEntryException {
+
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long bufferOffset = startOffset;
+    int length = 0;
+    int lineStart = 0;
+    int pos = 0;
+
+    while (true) {
+
+      // Search the end of the line
+      while (pos < length && buffer[pos] != '\n' && buffer[pos] != '\r') {
+        pos++;
+      }
+
+      if (pos == length) {
+
+        // Move the current line at the beginning of the buffer
+        if (lineStart > 0) {
+          System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+          bufferOffset += lineStart;
+          length -= lineStart;
+          pos -= lineStart;
+          lineStart = 0;
+        }
+
+        // Enlarge the buffer for very long lines
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        final int n = is.read(buffer, length, buffer.length - length);
+
+        if (n == -1) {
+
+          // Handle the last line of the stream
+          if (length > 0) {
+            handleLine(buffer, 0, length, bufferOffset);
+          }
+          return;
+        }
+
+        length += n;
+        continue;
+      }
+
+      if (!handleLine(buffer, lineStart, pos, bufferOffset + lineStart)) {
+        return;
+      }
+
+      pos++;
+      lineStart = pos;
+    }
+  }
+
+  /**
+   * Scan a range of an uncompressed FASTA file. The lines that start before
+   * the end of the range are scanned entirely.
+   * @param file file to scan
+   * @param start start of the range
+   * @param end end of the range or -1 to scan until the end of the file
+   * @throws IOException if an error occurs while reading the file or if the
+   *           file is not a valid FASTA file
+   * @throws BadBioEntryException if an invalid entry is found
+   */
+  private void scan(final File file, final long start, final long end)
+      throws IOException, BadBioEntryException {
+
+    // If the range does not start at the beginning of the file, the line that
+    // contains the previous byte belongs to the previous range
+    final long position = start > 0 ? start - 1 : 0;
+    this.skipLine = start > 0;
+    this.endOffset = end;
+
+    try (FileInputStream in = new FileInputStream(file)) {
+
+      in.getChannel().position(position);
+      scan(in, position);
+    }
+  }
+
+  /**
+   * Handle a line.
+   * @param buffer buffer that contains the line
+   * @param lineStart start of the line in the buffer
+   * @param lineEnd end of the line in the buffer
+   * @param offset offset of the line in the file
+   * @return false if the scan must be stopped
+   * @throws IOException if the line is not a valid FASTA line
+   * @throws BadBioEntryException if an invalid entry is found
+   */
+  private boolean handleLine(final byte[] buffer, final int lineStart,
+      final int lineEnd, final long offset)
+      throws IOException, BadBioEntryException {
+
+    if (this.endOffset != -1 && offset >= this.endOffset) {
+      return false;
+    }
+
+    this.lineOffset = offset;
+
+    if (this.skipLine) {
+      this.skipLine = false;
+      return true;
+    }
+
+    // Trim the line
+    int start = lineStart;
+    int end = lineEnd;
+    while (start < end && (buffer[start] & 0xFF) <= ' ') {
+      start++;
+    }
+    while (end > start && (buffer[end - 1] & 0xFF) <= ' ') {
+      end--;
+    }
+
+    // Discard empty lines
+    if (start == end) {
+      return true;
+    }
+
+    if (!this.fastaSectionFound) {
+      if (startsWith(buffer, lineStart, lineEnd, FASTA_SECTION)) {
+        this.fastaSectionFound = true;
+      }
+      return true;
+    }
+
+    if (buffer[start] == '>') {
+
+      if (this.digest) {
+        this.header =
+            new String(buffer, start + 1, end - start - 1, FASTA_CHARSET);
+        this.headerOffsets.add(offset);
+        this.headers.add(this.header);
+        this.newHeader = true;
+      }
+      return true;
+    }
+
+    if (this.digest) {
+      addSequenceLine(buffer, lineStart, lineEnd, start, end);
+    }
+
+    if (this.validate) {
+
+      for (int i = start; i < end; i++) {
+
+        if (!VALID_BASES[buffer[i] & 0xFF]) {
+
+          final char c = (char) (buffer[i] & 0xFF);
+
+          if (this.digest) {
+            throw new BadBioEntryException("Invalid base in genome: " + c,
+                this.lastSeqName);
+          }
+
+          this.invalidBaseOffset = offset + i - lineStart;
+          this.invalidBase = c;
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Add a sequence line to the genome description.
+   * @param buffer buffer that contains the line
+   * @param lineStart start of the line in the buffer
+   * @param lineEnd end of the line in the buffer
+   * @param start start of the trimmed line in the buffer
+   * @param end end of the trimmed line in the buffer
+   * @throws IOException if no FASTA header has been found
+   * @throws BadBioEntryException if an invalid entry is found
+   */
+  private void addSequenceLine(final byte[] buffer, final int lineStart,
+      final int lineEnd, final int start, final int end)
+      throws IOException, BadBioEntryException {
+
+    if (this.header == null) {
+      throw new IOException(
+          "No fasta header found at the beginning of the fasta file: "
+              + new String(buffer, lineStart, lineEnd - lineStart,
+                  FASTA_CHARSET));
+    }
+
+    if (this.newHeader) {
+
+      this.newHeader = false;
+
+      if (!this.header.equals(this.lastSeqName)) {
+
+        // Add previous sequence
+        if (this.lastSeqName != null) {
+          this.result.addSequence(this.parsedSeqName, this.chrSize);
+        }
+
+        // Parse chromosome name
+        this.parsedSeqName = parseChromosomeName(this.header);
+
+        // Check if sequence has been found more than one time
+        if (this.result.getSequenceLength(this.parsedSeqName) != -1) {
+          throw new BadBioEntryException(
+              "Sequence name found twice: " + this.parsedSeqName,
+              this.header);
+        }
+
+        // Update digest with chromosome name
+        if (this.md5Digest != null) {
+          this.md5Digest
+              .update(this.parsedSeqName.getBytes(Globals.DEFAULT_CHARSET));
+        }
+
+        this.lastSeqName = this.header;
+        this.chrSize = 0;
+      }
+    }
+
+    // Update digest with chromosome sequence
+    if (this.md5Digest != null) {
+      this.md5Digest.update(buffer, start, end - start);
+    }
+
+    this.chrSize += end - start;
+  }
+
+  /**
+   * Get the genome description once the scan has been completed.
+   * @param genomeName genome name
+   * @return a GenomeDescription object
+   */
+  private GenomeDescription getGenomeDescription(final String genomeName) {
+
+    this.result.setGenomeName(genomeName);
+
+    // Add the last sequence
+    if (this.lastSeqName != null) {
+      this.result.addSequence(this.parsedSeqName, this.chrSize);
+    }
+
+    // Compute final MD5 sum
+    if (this.md5Digest != null) {
+      this.result.setMD5Sum(md5DigestToString(this.md5Digest));
+    }
+
+    return this.result;
+  }
+
+  /**
+   * Get the last header found before an offset.
+   * @param offset offset in the file
+   * @return the header or null if no header has been found before the offset
+   */
+  private String getHeader(final long offset) {
+
+    final int index =
+        -Collections.binarySearch(this.headerOffsets, offset) - 2;
+
+    return index < 0 ? null : this.headers.get(index);
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Create a GenomeDescription object from a FASTA or a GFF stream.
+   * @param is input stream
+   * @param genomeName genome name
+   * @param gffFormat the input stream is in GFF format
+   * @return a GenomeDescription object
+   * @throws IOException if an error occurs while reading the stream
+   * @throws BadBioEntryException if an invalid entry is found
+   */
+  static GenomeDescription createGenomeDesc(final InputStream is,
+      final String genomeName, final boolean gffFormat)
+      throws IOException, BadBioEntryException {
+
+    final FastaGenomeScanner scanner = new FastaGenomeScanner(true, true);
+    scanner.fastaSectionFound = !gffFormat;
+
+    try (InputStream in = is) {
+      scanner.scan(in, 0);
+    }
+
+    return scanner.getGenomeDescription(genomeName);
+  }
+
+  /**
+   * Create a GenomeDescription object from an uncompressed FASTA file. The MD5
+   * sum is computed in a thread while the other threads check the bases of
+   * the genome.
+   * @param file FASTA file
+   * @param threadNumber number of threads to use
+   * @return a GenomeDescription object
+   * @throws IOException if an error occurs while reading the file
+   * @throws BadBioEntryException if an invalid entry is found
+   */
+  static GenomeDescription createGenomeDesc(final File file,
+      final int threadNumber) throws IOException, BadBioEntryException {
+
+    final String genomeName = StringUtils.basename(file.getName());
+    final long length = file.length();
+
+    if (threadNumber < 2 || length < MIN_PARALLEL_LENGTH) {
+      return createGenomeDesc(new FileInputStream(file), genomeName, false);
+    }
+
+    final int chunks = threadNumber - 1;
+    final ExecutorService executor = Executors.newFixedThreadPool(threadNumber);
+
+    try {
+
+      // Compute the lengths of the sequences and the MD5 sum
+      final FastaGenomeScanner digester = new FastaGenomeScanner(true, false);
+      final Future<?> digestFuture = executor.submit(new Callable<Void>() {
+
+        @Override
+        public Void call() throws IOException, BadBioEntryException {
+
+          digester.scan(file, 0, -1);
+          return null;
+        }
+      });
+
+      // Check the bases of each chunk of the file
+      final List<FastaGenomeScanner> validators = new ArrayList<>();
+      final List<Future<?>> validatorFutures = new ArrayList<>();
+
+      for (int i = 0; i < chunks; i++) {
+
+        final long start = length * i / chunks;
+        final long end = length * (i + 1) / chunks;
+        final FastaGenomeScanner validator =
+            new FastaGenomeScanner(false, true);
+
+        validators.add(validator);
+        validatorFutures.add(executor.submit(new Callable<Void>() {
+
+          @Override
+          public Void call() throws IOException, BadBioEntryException {
+
+            validator.scan(file, start, end);
+            return null;
+          }
+        }));
+      }
+
+      // Get the first invalid base of the file
+      FastaGenomeScanner invalid = null;
+      for (int i = 0; i < chunks; i++) {
+
+        final Throwable validatorError = waitFor(validatorFutures.get(i));
+        if (validatorError != null) {
+          throw toIOException(validatorError);
+        }
+
+        if (invalid == null && validators.get(i).invalidBaseOffset != -1) {
+          invalid = validators.get(i);
+        }
+      }
+
+      final Throwable digestError = waitFor(digestFuture);
+
+      // The first error of the file is reported
+      if (digestError != null
+          && (invalid == null
+              || invalid.invalidBaseOffset >= digester.lineOffset)) {
+
+        if (digestError instanceof BadBioEntryException) {
+          throw (BadBioEntryException) digestError;
+        }
+        throw toIOException(digestError);
+      }
+
+      if (invalid != null) {
+        throw new BadBioEntryException(
+            "Invalid base in genome: " + invalid.invalidBase,
+            digester.getHeader(invalid.invalidBaseOffset));
+      }
+
+      return digester.getGenomeDescription(genomeName);
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Parse the name of a chromosome from a FASTA header.
+   * @param fastaHeader FASTA header
+   * @return the name of the chromosome
+   * @throws BadBioEntryException if the header is invalid
+   */
+  private static String parseChromosomeName(final String fastaHeader)
+      throws BadBioEntryException {
+
+    if ("".equals(fastaHeader.trim())) {
+      throw new BadBioEntryException("Sequence header is empty",
+          ">" + fastaHeader);
+    }
+
+    if (fastaHeader.startsWith(" ")) {
+      throw new BadBioEntryException(
+          "A whitespace was found at the beginning of the sequence name",
+          ">" + fastaHeader);
+    }
+
+    return fastaHeader.trim().split("\\s")[0];
+  }
+
+  /**
+   * Create the lookup table of the valid bytes of an alphabet.
+   * @param alphabet the alphabet
+   * @return an array of booleans indexed by byte values
+   */
+  private static boolean[] createLookupTable(final Alphabet alphabet) {
+
+    final boolean[] result = new boolean[256];
+
+    for (int i = 0; i < result.length; i++) {
+      result[i] = alphabet.isLetterValid((char) i);
+    }
+
+    return result;
+  }
+
+  /**
+   * Test if a line starts with a prefix.
+   * @param buffer buffer that contains the line
+   * @param start start of the line in the buffer
+   * @param end end of the line in the buffer
+   * @param prefix the prefix
+   * @return true if the line starts with the prefix
+   */
+  private static boolean startsWith(final byte[] buffer, final int start,
+      final int end, final byte[] prefix) {
+
+    if (end - start < prefix.length) {
+      return false;
+    }
+
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer[start + i] != prefix[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Wait the end of a task.
+   * @param future the future of the task
+   * @return the exception thrown by the task or null if the task succeed
+   * @throws IOException if the current thread has been interrupted
+   */
+  private static Throwable waitFor(final Future<?> future) throws IOException {
+
+    try {
+      future.get();
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Genome scan interrupted", e);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  private static IOException toIOException(final Throwable t) {
+
+    return t instanceof IOException
+        ? (IOException) t : new IOException(t.getMessage(), t);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   * @param digest compute the lengths of the sequences and the MD5 sum
+   * @param validate check the bases
+   */
+  private FastaGenomeScanner(final boolean digest, final boolean validate) {
+
+    this.digest = digest;
+    this.validate = validate;
+    this.fastaSectionFound = true;
+
+    MessageDigest md5 = null;
+    if (digest) {
+      try {
+        md5 = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        md5 = null;
+      }
+    }
+    this.md5Digest = md5;
+  }
+
+}
@@ -25,7 +25,6 @@
 package fr.ens.biologie.genomique.eoulsan.bio;
 
 import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
-import static fr.ens.biologie.genomique.eoulsan.util.StringUtils.md5DigestToString;
 import static fr.ens.biologie.genomique.eoulsan.util.Utils.newArrayList;
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
@@ -36,15 +35,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import fr.ens.biologie.genomique.eoulsan.Globals;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastaLineParser;
 import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
 
@@ -74,7 +69,7 @@ public class GenomeDescription {
    * Set the genome name.
    * @param genomeName name of the genome
    */
-  private void setGenomeName(final String genomeName) {
+  void setGenomeName(final String genomeName) {
 
     this.genomeName = genomeName;
   }
@@ -305,6 +300,23 @@ public class GenomeDescription {
         genomeFastaFile.getName());
   }
 
+  /**
+   * Create a GenomeDescription object from an uncompressed Fasta file. The
+   * bases of the genome are checked using several threads.
+   * @param genomeFastaFile genome fasta file
+   * @param threadNumber number of threads to use
+   */
+  public static GenomeDescription createGenomeDescFromFasta(
+      final File genomeFastaFile, final int threadNumber)
+      throws BadBioEntryException, IOException {
+
+    requireNonNull(genomeFastaFile, "The genome file is null");
+
+    getLogger().fine("Compute genome description from genome fasta file.");
+
+    return FastaGenomeScanner.createGenomeDesc(genomeFastaFile, threadNumber);
+  }
+
   /**
    * Create a GenomeDescription object from a Fasta file.
    * @param genomeFastaIs genome fasta input stream
@@ -356,126 +368,8 @@ public class GenomeDescription {
 
     getLogger().fine("Compute genome description from genome fasta file.");
 
-    final GenomeDescription result = new GenomeDescription();
-    result.setGenomeName(StringUtils.basename(filename));
-
-    MessageDigest md5Digest;
-    try {
-      md5Digest = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      md5Digest = null;
-    }
-
-    final FastaLineParser parser =
-        new FastaLineParser(genomeFastaIs, gffFormat);
-
-    final Alphabet alphabet = Alphabets.AMBIGUOUS_DNA_ALPHABET;
-    String seqName = null;
-    String lastSeqName = null;
-    String parsedSeqName = null;
-    long chrSize = 0;
-
-    while ((seqName = parser.parseNextLineAndGetSequenceName()) != null) {
-
-      if (!seqName.equals(lastSeqName)) {
-
-        // Check if sequence has been found more than one time
-        if (result.getSequenceLength(lastSeqName) != -1) {
-          throw new BadBioEntryException(
-              "Sequence name found twice: " + lastSeqName, lastSeqName);
-        }
-
-        // Add sequence
-        if (lastSeqName != null) {
-          result.addSequence(parsedSeqName, chrSize);
-        }
-
-        // Parse chromosome name
-        parsedSeqName = parseChromosomeName(seqName);
-
-        if (parsedSeqName == null) {
-          throw new IOException("No fasta header found.");
-        }
-
-        // Update digest with chromosome name
-        if (md5Digest != null) {
-          md5Digest.update(parsedSeqName.getBytes(Globals.DEFAULT_CHARSET));
-        }
-
-        lastSeqName = seqName;
-        chrSize = 0;
-      }
-
-      final String sequence = parser.getSequence();
-      if (sequence == null) {
-        throw new IOException("No fasta sequence found.");
-      }
-
-      // Check the sequence and increment the length of the sequence
-      chrSize += checkBases(sequence, lastSeqName, alphabet);
-
-      // Update digest with chromosome sequence
-      md5Digest.update(sequence.getBytes(Globals.DEFAULT_CHARSET));
-    }
-
-    // Add the last sequence
-    if (lastSeqName != null) {
-      result.addSequence(parsedSeqName, chrSize);
-    }
-
-    // Compute final MD5 sum
-    if (md5Digest != null) {
-      result.setMD5Sum(md5DigestToString(md5Digest));
-    }
-
-    genomeFastaIs.close();
-
-    return result;
-  }
-
-  private static String parseChromosomeName(final String fastaHeader)
-      throws BadBioEntryException {
-
-    if (fastaHeader == null) {
-      return null;
-    }
-
-    if ("".equals(fastaHeader.trim())) {
-      throw new BadBioEntryException("Sequence header is empty",
-          ">" + fastaHeader);
-    }
-
-    if (fastaHeader.startsWith(" ")) {
-      throw new BadBioEntryException(
-          "A whitespace was found at the beginning of the sequence name",
-          ">" + fastaHeader);
-    }
-
-    final String s = fastaHeader.trim();
-    String[] fields = s.split("\\s");
-
-    if (fields == null || fields.length == 0) {
-      throw new BadBioEntryException("Invalid sequence header",
-          ">" + fastaHeader);
-    }
-
-    return fields[0];
-  }
-
-  private static long checkBases(final String sequence,
-      final String sequenceName, final Alphabet alphabet)
-      throws BadBioEntryException {
-
-    final char[] array = sequence.toCharArray();
-
-    for (final char c : array) {
-      if (!alphabet.isLetterValid(c)) {
-        throw new BadBioEntryException("Invalid base in genome: " + c,
-            sequenceName);
-      }
-    }
-
-    return sequence.length();
+    return FastaGenomeScanner.createGenomeDesc(genomeFastaIs,
+        StringUtils.basename(filename), gffFormat);
   }
 
   //
@@ -48,6 +48,28 @@ public class GenomicArray<T> implements Serializable {
 
   private Map<String, ChromosomeZones<T>> chromosomes = new HashMap<>();
 
+  /**
+   * This interface define a handler for the entries found by
+   * {@link GenomicArray#getEntries(String, int, int, EntriesHandler)}. Unlike
+   * the methods that return a map, no object is created for each entry found.
+   * @since 2.4
+   * @author Laurent Jourdren
+   */
+  public interface EntriesHandler<T> {
+
+    /**
+     * Handle an entry.
+     * @param chromosome chromosome of the entry
+     * @param start start of the entry
+     * @param end end of the entry
+     * @param strand strand of the entry
+     * @param values the values of the entry, an empty set if the entry has no
+     *          value. This set must not be modified
+     */
+    void handle(String chromosome, int start, int end, char strand,
+        Set<T> values);
+  }
+
   /**
    * This class define a zone in a ChromosomeZone object.
    * @author Laurent Jourdren
@@ -431,23 +453,22 @@ public class GenomicArray<T> implements Serializable {
      * Get entries.
      * @param start start of the interval
      * @param stop end of the interval
-     * @return a map with the values
+     * @param handler handler for the entries found
+     * @return false if start is not a position of the chromosome
      */
-    public Map<GenomicInterval, Set<T>> getEntries(final int start,
-        final int stop) {
+    public boolean getEntries(final int start, final int stop,
+        final EntriesHandler<T> handler) {
 
       final int indexStart = findIndexPos(start);
       final int indexEnd = findIndexPos(stop);
 
       if (indexStart == -1) {
-        return null;
+        return false;
       }
 
       final int from = indexStart;
       final int to = indexEnd == -1 ? this.zones.size() - 1 : indexEnd;
 
-      Map<GenomicInterval, Set<T>> result = null;
-
       for (int i = from; i <= to; i++) {
 
         final Zone<T> zone = get(i);
@@ -455,32 +476,39 @@ public class GenomicArray<T> implements Serializable {
         // Really needed ?
         if (intersect(start, stop, zone.start, zone.end)) {
 
-          final GenomicInterval iv = new GenomicInterval(this.chromosomeName,
-              zone.start, zone.end, zone.strand);
-
           final Set<T> r = zone.getValues();
 
-          if (result == null) {
-            result = new HashMap<>();
-          }
-
-          if (r != null) {
-            result.put(iv, Collections.unmodifiableSet(r));
-          } else {
-            result.put(iv, new HashSet<T>());
-          }
+          handler.handle(this.chromosomeName, zone.start, zone.end,
+              zone.strand, r != null ? r : Collections.<T> emptySet());
         }
       }
 
-      if (stop > get(to).end && start > get(to).start) {
-        result.put(new GenomicInterval(this.chromosomeName, start, stop,
-            get(to).strand), new HashSet<T>());
-      } else if (stop > get(to).end) {
-        result.put(new GenomicInterval(this.chromosomeName, get(to).end + 1,
-            stop, get(to).strand), new HashSet<T>());
+      final Zone<T> last = get(to);
+
+      if (stop > last.end && start > last.start) {
+        handler.handle(this.chromosomeName, start, stop, last.strand,
+            Collections.<T> emptySet());
+      } else if (stop > last.end) {
+        handler.handle(this.chromosomeName, last.end + 1, stop, last.strand,
+            Collections.<T> emptySet());
       }
 
-      return result;
+      return true;
+    }
+
+    /**
+     * Handle all the zones.
+     * @param handler handler for the zones
+     */
+    private void handleAllZones(final EntriesHandler<T> handler) {
+
+      for (Zone<T> zone : this.zones) {
+
+        final Set<T> r = zone.getValues();
+
+        handler.handle(this.chromosomeName, zone.start, zone.end, zone.strand,
+            r != null ? r : Collections.<T> emptySet());
+      }
     }
 
     /**
@@ -588,28 +616,13 @@ public class GenomicArray<T> implements Serializable {
      * Get stranded entries.
      * @param start start of the interval
      * @param stop end of the interval
-     * @return a map with the values
+     * @param handler handler for the entries found
      */
-    public Map<GenomicInterval, Set<T>> getEntries(final int start,
-        final int stop) {
-
-      final Map<GenomicInterval, Set<T>> result = new HashMap<>();
-
-      final Map<GenomicInterval, Set<T>> interPlus =
-          this.plus.getEntries(start, stop);
-
-      if (interPlus != null) {
-        result.putAll(interPlus);
-      }
+    public void getEntries(final int start, final int stop,
+        final EntriesHandler<T> handler) {
 
-      final Map<GenomicInterval, Set<T>> interMinus =
-          this.minus.getEntries(start, stop);
-
-      if (interMinus != null) {
-        result.putAll(interMinus);
-      }
-
-      return result;
+      this.plus.getEntries(start, stop, handler);
+      this.minus.getEntries(start, stop, handler);
     }
 
     @Override
@@ -747,17 +760,68 @@ public class GenomicArray<T> implements Serializable {
   public Map<GenomicInterval, Set<T>> getEntries(final String chromosome,
       final int start, final int end) {
 
+    final Map<GenomicInterval, Set<T>> result = new HashMap<>();
+
+    final boolean found = getEntries(chromosome, start, end,
+        new EntriesHandler<T>() {
+
+          @Override
+          public void handle(final String chr, final int zoneStart,
+              final int zoneEnd, final char strand, final Set<T> values) {
+
+            result.put(new GenomicInterval(chr, zoneStart, zoneEnd, strand),
+                values.isEmpty()
+                    ? new HashSet<T>() : Collections.unmodifiableSet(values));
+          }
+        });
+
+    return found ? result : null;
+  }
+
+  /**
+   * Get entries in an interval.
+   * @param chromosome chromosome of the interval
+   * @param start start of the interval
+   * @param end end of the interval
+   * @param handler handler for the entries found
+   * @return false if the chromosome is unknown
+   */
+  public boolean getEntries(final String chromosome, final int start,
+      final int end, final EntriesHandler<T> handler) {
+
     if (chromosome == null) {
       throw new NullPointerException("chromosome argument cannot be null");
     }
 
+    if (handler == null) {
+      throw new NullPointerException("handler argument cannot be null");
+    }
+
     final ChromosomeZones<T> chr = this.chromosomes.get(chromosome);
 
     if (chr == null) {
-      return null;
+      return false;
     }
 
-    return chr.getEntries(start, end);
+    chr.getEntries(start, end, handler);
+
+    return true;
+  }
+
+  /**
+   * Handle all the zones of a strand of a chromosome.
+   * @param chromosome the chromosome
+   * @param minusStrand true to handle the zones of the minus strand
+   * @param handler handler for the zones
+   */
+  void handleAllZones(final String chromosome, final boolean minusStrand,
+      final EntriesHandler<T> handler) {
+
+    final ChromosomeZones<T> chr = this.chromosomes.get(chromosome);
+
+    if (chr != null) {
+      (minusStrand ? chr.minus : chr.plus).handleAllZones(handler);
+    }
   }
 
   /**
@@ -161,6 +161,67 @@ public abstract class AbstractExpressionCounter implements ExpressionCounter {
     return count(samFile.open(), reporter, counterGroup);
   }
 
+  @Override
+  public Map<String, Integer> count(final DataFile samFile,
+      final int threadNumber, final ReporterIncrementer reporter,
+      final String counterGroup) throws EoulsanException, IOException {
+
+    return countFeatures(samFile, threadNumber, reporter, counterGroup)
+        .toMap();
+  }
+
+  @Override
+  public FeatureCounts countFeatures(final DataFile samFile,
+      final int threadNumber, final ReporterIncrementer reporter,
+      final String counterGroup) throws EoulsanException, IOException {
+
+    return countFeatures(samFile, null, threadNumber, reporter, counterGroup);
+  }
+
+  @Override
+  public FeatureCounts countFeatures(final DataFile samFile,
+      final DataFile indexFile, final int threadNumber,
+      final ReporterIncrementer reporter, final String counterGroup)
+      throws EoulsanException, IOException {
+
+    if (samFile == null) {
+      throw new NullPointerException("the samFile argument is null");
+    }
+
+    final FeatureCounts result = newFeatureCounts();
+
+    // By default, the counters only use one thread
+    try (SamReader reader = SamReaderFactory.makeDefault()
+        .open(SamInputResource.of(samFile.open()))) {
+      count(reader, result, reporter, counterGroup);
+    }
+
+    return result;
+  }
+
+  @Override
+  public Map<String, Integer> count(final Iterable<SAMRecord> samRecords,
+      final ReporterIncrementer reporter, final String counterGroup)
+      throws EoulsanException {
+
+    // This method can be called for each alignment, so do not use the
+    // dictionary of the counter that requires to allocate an array of the
+    // size of the dictionary
+    final FeatureCounts result = new FeatureCounts();
+    count(samRecords, result, reporter, counterGroup);
+
+    return result.toMap();
+  }
+
+  /**
+   * Create a new container for the counts of the counter.
+   * @return a new FeatureCounts object
+   */
+  protected FeatureCounts newFeatureCounts() {
+
+    return new FeatureCounts();
+  }
+
   @Override
   public Map<String, Integer> count(final InputStream inputSam,
       final ReporterIncrementer reporter, final String counterGroup)
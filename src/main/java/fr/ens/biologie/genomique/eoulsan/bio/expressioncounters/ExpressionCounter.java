@@ -140,6 +140,21 @@ public interface ExpressionCounter {
       ReporterIncrementer reporter, String counterGroup)
       throws EoulsanException, IOException;
 
+  /**
+   * Count the the features using several threads if the counter and the SAM
+   * file allow it.
+   * @param samFile SAM file
+   * @param threadNumber the number of threads to use
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @return a map with the counts
+   * @throws EoulsanException if an error occurs while counting
+   * @throws IOException if an error occurs while reading the input file
+   */
+  public Map<String, Integer> count(DataFile samFile, int threadNumber,
+      ReporterIncrementer reporter, String counterGroup)
+      throws EoulsanException, IOException;
+
   /**
    * Count the the features.
    * @param inputSam SAM file as an InputStream
@@ -186,4 +201,53 @@ public interface ExpressionCounter {
    */
   public void addZeroCountFeatures(Map<String, Integer> counts);
 
+  /**
+   * Count the the features using several threads if the counter and the SAM
+   * file allow it.
+   * @param samFile SAM file
+   * @param threadNumber the number of threads to use
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @return the counts
+   * @throws EoulsanException if an error occurs while counting
+   * @throws IOException if an error occurs while reading the input file
+   */
+  public FeatureCounts countFeatures(DataFile samFile, int threadNumber,
+      ReporterIncrementer reporter, String counterGroup)
+      throws EoulsanException, IOException;
+
+  /**
+   * Count the the features using several threads if the counter and the SAM
+   * file allow it.
+   * @param samFile SAM file
+   * @param indexFile index of the SAM file, can be null
+   * @param threadNumber the number of threads to use
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @return the counts
+   * @throws EoulsanException if an error occurs while counting
+   * @throws IOException if an error occurs while reading the input file
+   */
+  public FeatureCounts countFeatures(DataFile samFile, DataFile indexFile,
+      int threadNumber, ReporterIncrementer reporter, String counterGroup)
+      throws EoulsanException, IOException;
+
+  /**
+   * Count the the features and add the result to existing counts.
+   * @param samRecords SAM entries
+   * @param counts the counts to update
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @throws EoulsanException if an error occurs while counting
+   */
+  public void count(Iterable<SAMRecord> samRecords, FeatureCounts counts,
+      ReporterIncrementer reporter, String counterGroup)
+      throws EoulsanException;
+
+  /**
+   * Add missing zero count features.
+   * @param counts the counts
+   */
+  public void addZeroCountFeatures(FeatureCounts counts);
+
 }
@@ -0,0 +1,388 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class define a container for the counts of the features. The counts
+ * are stored in an array of longs indexed by the ordinal of the features in a
+ * dictionary that can be shared by several containers. Unlike a
+ * <code>Map&lt;String, Integer&gt;</code>, incrementing a count does not
+ * create any object.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class FeatureCounts implements Serializable {
+
+  private static final long serialVersionUID = -2164880957826546329L;
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final Dictionary dictionary;
+  private long[] counts;
+  private final BitSet features = new BitSet();
+
+  /**
+   * This class define a dictionary of features that associates an ordinal to
+   * each feature. A dictionary can be shared by several FeatureCounts objects.
+   * This class is not thread safe.
+   */
+  public static final class Dictionary implements Serializable {
+
+    private static final long serialVersionUID = 8375052164542327541L;
+
+    private final List<String> features = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Get the ordinal of a feature.
+     * @param feature the feature
+     * @return the ordinal of the feature or -1 if the feature is not in the
+     *         dictionary
+     */
+    public int getOrdinal(final String feature) {
+
+      final Integer result = this.ordinals.get(feature);
+
+      return result == null ? -1 : result;
+    }
+
+    /**
+     * Get a feature from its ordinal.
+     * @param ordinal ordinal of the feature
+     * @return the feature
+     */
+    public String getFeature(final int ordinal) {
+
+      return this.features.get(ordinal);
+    }
+
+    /**
+     * Get the number of features in the dictionary.
+     * @return the number of features in the dictionary
+     */
+    public int size() {
+
+      return this.features.size();
+    }
+
+    /**
+     * Add a feature to the dictionary if not already exists.
+     * @param feature feature to add
+     * @return the ordinal of the feature
+     */
+    public int add(final String feature) {
+
+      requireNonNull(feature, "feature argument cannot be null");
+
+      final Integer ordinal = this.ordinals.get(feature);
+
+      if (ordinal != null) {
+        return ordinal;
+      }
+
+      final int result = this.features.size();
+      this.features.add(feature);
+      this.ordinals.put(feature, result);
+
+      return result;
+    }
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Create an empty dictionary.
+     */
+    public Dictionary() {
+    }
+
+    /**
+     * Create a dictionary.
+     * @param features features of the dictionary, the ordinal of the features
+     *          is their position in the collection
+     */
+    public Dictionary(final Collection<String> features) {
+
+      requireNonNull(features, "features argument cannot be null");
+
+      for (String feature : features) {
+        add(feature);
+      }
+    }
+  }
+
+  //
+  // Getters
+  //
+
+  /**
+   * Get the dictionary of the features.
+   * @return the dictionary of the features
+   */
+  public Dictionary getDictionary() {
+
+    return this.dictionary;
+  }
+
+  /**
+   * Get the count of a feature.
+   * @param feature the feature
+   * @return the count of the feature or 0 if the feature is not in the
+   *         container
+   */
+  public long get(final String feature) {
+
+    final int ordinal = this.dictionary.getOrdinal(feature);
+
+    if (ordinal == -1 || !this.features.get(ordinal)) {
+      return 0;
+    }
+
+    return this.counts[ordinal];
+  }
+
+  /**
+   * Test if the container contains a feature.
+   * @param feature the feature
+   * @return true if the container contains the feature, even with a count of
+   *         zero
+   */
+  public boolean contains(final String feature) {
+
+    final int ordinal = this.dictionary.getOrdinal(feature);
+
+    return ordinal != -1 && this.features.get(ordinal);
+  }
+
+  /**
+   * Get the number of features in the container.
+   * @return the number of features in the container
+   */
+  public int size() {
+
+    return this.features.cardinality();
+  }
+
+  /**
+   * Test if the container is empty.
+   * @return true if the container is empty
+   */
+  public boolean isEmpty() {
+
+    return this.features.isEmpty();
+  }
+
+  /**
+   * Get the features of the container.
+   * @return a list with the features of the container in the order of their
+   *         ordinals
+   */
+  public List<String> getFeatures() {
+
+    final List<String> result = new ArrayList<>(size());
+
+    for (int i = this.features.nextSetBit(0); i >= 0; i =
+        this.features.nextSetBit(i + 1)) {
+      result.add(this.dictionary.getFeature(i));
+    }
+
+    return result;
+  }
+
+  //
+  // Count methods
+  //
+
+  /**
+   * Increment the count of a feature.
+   * @param feature the feature
+   */
+  public void increment(final String feature) {
+
+    add(feature, 1);
+  }
+
+  /**
+   * Increment the count of a feature.
+   * @param ordinal the ordinal of the feature in the dictionary
+   */
+  public void increment(final int ordinal) {
+
+    add(ordinal, 1);
+  }
+
+  /**
+   * Add a value to the count of a feature. If the feature is not in the
+   * container, the feature is added.
+   * @param feature the feature
+   * @param count the value to add
+   */
+  public void add(final String feature, final long count) {
+
+    requireNonNull(feature, "feature argument cannot be null");
+
+    add(this.dictionary.add(feature), count);
+  }
+
+  /**
+   * Add a value to the count of a feature. If the feature is not in the
+   * container, the feature is added.
+   * @param ordinal the ordinal of the feature in the dictionary
+   * @param count the value to add
+   */
+  public void add(final int ordinal, final long count) {
+
+    if (ordinal < 0 || ordinal >= this.dictionary.size()) {
+      throw new IllegalArgumentException("Invalid feature ordinal: " + ordinal);
+    }
+
+    if (ordinal >= this.counts.length) {
+      this.counts = Arrays.copyOf(this.counts,
+          Math.max(this.dictionary.size(), this.counts.length * 2));
+    }
+
+    this.counts[ordinal] += count;
+    this.features.set(ordinal);
+  }
+
+  /**
+   * Add the counts of another container to this container.
+   * @param counts the counts to add
+   */
+  public void addAll(final FeatureCounts counts) {
+
+    requireNonNull(counts, "counts argument cannot be null");
+
+    final boolean sameDictionary = this.dictionary == counts.dictionary;
+
+    for (int i = counts.features.nextSetBit(0); i >= 0; i =
+        counts.features.nextSetBit(i + 1)) {
+
+      if (sameDictionary) {
+        add(i, counts.counts[i]);
+      } else {
+        add(counts.dictionary.getFeature(i), counts.counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Remove all the counts of the container. The dictionary is not modified.
+   */
+  public void clear() {
+
+    Arrays.fill(this.counts, 0L);
+    this.features.clear();
+  }
+
+  //
+  // Map adapter methods
+  //
+
+  /**
+   * Convert the container to a map.
+   * @return a new map with the counts
+   * @throws ArithmeticException if a count cannot be stored in an integer
+   */
+  public Map<String, Integer> toMap() {
+
+    final Map<String, Integer> result = new HashMap<>();
+
+    for (int i = this.features.nextSetBit(0); i >= 0; i =
+        this.features.nextSetBit(i + 1)) {
+      result.put(this.dictionary.getFeature(i),
+          Math.toIntExact(this.counts[i]));
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a container from a map.
+   * @param counts the counts
+   * @return a new FeatureCounts object
+   */
+  public static FeatureCounts fromMap(final Map<String, Integer> counts) {
+
+    requireNonNull(counts, "counts argument cannot be null");
+
+    final FeatureCounts result = new FeatureCounts();
+
+    for (Map.Entry<String, Integer> e : counts.entrySet()) {
+      result.add(e.getKey(), e.getValue());
+    }
+
+    return result;
+  }
+
+  //
+  // Object methods
+  //
+
+  @Override
+  public String toString() {
+
+    return this.getClass().getSimpleName()
+        + "{features=" + size() + ", dictionary=" + this.dictionary.size()
+        + "}";
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Create a container with its own dictionary.
+   */
+  public FeatureCounts() {
+
+    this(new Dictionary());
+  }
+
+  /**
+   * Create a container.
+   * @param dictionary dictionary of the features
+   */
+  public FeatureCounts(final Dictionary dictionary) {
+
+    requireNonNull(dictionary, "dictionary argument cannot be null");
+
+    this.dictionary = dictionary;
+    this.counts = new long[Math.max(DEFAULT_CAPACITY, dictionary.size())];
+  }
+
+}
@@ -0,0 +1,299 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static fr.ens.biologie.genomique.eoulsan.util.FileUtils.computeMD5Sum;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.bio.CompactGenomicArray;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.data.DataFileMetadata;
+import fr.ens.biologie.genomique.eoulsan.data.storages.FeaturesIndexStorage;
+import fr.ens.biologie.genomique.eoulsan.data.storages.SimpleFeaturesIndexStorage;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a cache for the features indexes. The indexes are shared
+ * by all the counters of the JVM and, if the features index storage is
+ * defined in the settings, saved on disk to be reused by the next analyses.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class FeaturesIndexCache {
+
+  private static final byte FIELD_SEPARATOR = 0;
+  private static final int LOCK_STRIPES = 64;
+
+  private static FeaturesIndexCache singleton;
+
+  private final Map<String, SoftReference<CompactGenomicArray<String>>> indexes =
+      new HashMap<>();
+  private final Object[] locks = new Object[LOCK_STRIPES];
+  private final ConcurrentMap<String, String> annotationChecksums =
+      new ConcurrentHashMap<>();
+
+  private FeaturesIndexStorage storage;
+  private boolean storageChecked;
+
+  //
+  // Key methods
+  //
+
+  /**
+   * Create the key of a features index.
+   * @param genomeDesc genome description
+   * @param annotationFile annotation file
+   * @param parameters parameters used to create the index
+   * @return the key of the features index
+   * @throws IOException if an error occurs while computing the checksum of the
+   *           annotation file
+   */
+  String createKey(final GenomeDescription genomeDesc,
+      final DataFile annotationFile, final Map<String, String> parameters)
+      throws IOException {
+
+    requireNonNull(genomeDesc, "genomeDesc argument cannot be null");
+    requireNonNull(annotationFile, "annotationFile argument cannot be null");
+    requireNonNull(parameters, "parameters argument cannot be null");
+
+    final DataFileMetadata md = annotationFile.getMetaData();
+
+    final Map<String, String> map = new TreeMap<>(parameters);
+    map.put("annotation.md5sum", annotationChecksum(annotationFile, md));
+    map.put("annotation.length", Long.toString(md.getContentLength()));
+
+    // The chromosomes of the index are defined by the genome description
+    final StringBuilder sb = new StringBuilder();
+    for (String sequenceName : genomeDesc.getSequencesNames()) {
+      sb.append(sequenceName);
+      sb.append('=');
+      sb.append(genomeDesc.getSequenceLength(sequenceName));
+      sb.append(';');
+    }
+    map.put("genome.sequences", sb.toString());
+
+    return createMD5Sum(map);
+  }
+
+  /**
+   * Get the checksum of an annotation file. The checksum is only computed once
+   * for a file that has not been modified.
+   * @param annotationFile annotation file
+   * @param md metadata of the annotation file
+   * @return the MD5 checksum of the annotation file
+   * @throws IOException if an error occurs while reading the annotation file
+   */
+  private String annotationChecksum(final DataFile annotationFile,
+      final DataFileMetadata md) throws IOException {
+
+    final String fileKey = annotationFile.getSource()
+        + '\t' + md.getContentLength() + '\t' + md.getLastModified();
+
+    final String result = this.annotationChecksums.get(fileKey);
+
+    if (result != null) {
+      return result;
+    }
+
+    // The checksum is computed without lock, if another thread has computed
+    // the same checksum in the meantime, its value is used
+    final String checksum = computeMD5Sum(annotationFile.rawOpen());
+    final String previous =
+        this.annotationChecksums.putIfAbsent(fileKey, checksum);
+
+    return previous != null ? previous : checksum;
+  }
+
+  private static String createMD5Sum(final Map<String, String> map)
+      throws IOException {
+
+    MessageDigest md5Digest;
+    try {
+      md5Digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+
+    for (Map.Entry<String, String> e : map.entrySet()) {
+
+      // Separate the fields to avoid collisions like "ab=c" and "a=bc"
+      md5Digest.update(e.getKey().getBytes(Globals.DEFAULT_CHARSET));
+      md5Digest.update(FIELD_SEPARATOR);
+      md5Digest.update(e.getValue().getBytes(Globals.DEFAULT_CHARSET));
+      md5Digest.update(FIELD_SEPARATOR);
+    }
+
+    return StringUtils.md5DigestToString(md5Digest);
+  }
+
+  //
+  // Cache methods
+  //
+
+  /**
+   * Get the lock object for a key. Counters that share the same key must
+   * synchronize on this object to avoid building the same index several times.
+   * A fixed number of lock objects is shared by all the keys, so the memory
+   * used by the locks is bounded.
+   * @param key key of the index
+   * @return a lock object
+   */
+  Object getLock(final String key) {
+
+    requireNonNull(key, "key argument cannot be null");
+
+    return this.locks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+  }
+
+  /**
+   * Get a features index from the cache.
+   * @param key key of the index
+   * @return the features index or null if not found in the cache
+   */
+  CompactGenomicArray<String> get(final String key) {
+
+    requireNonNull(key, "key argument cannot be null");
+
+    synchronized (this.indexes) {
+
+      final SoftReference<CompactGenomicArray<String>> ref =
+          this.indexes.get(key);
+
+      if (ref != null && ref.get() != null) {
+        return ref.get();
+      }
+    }
+
+    final FeaturesIndexStorage storage = getStorage();
+    if (storage == null) {
+      return null;
+    }
+
+    final CompactGenomicArray<String> result = storage.get(key);
+
+    if (result != null) {
+      getLogger().info("Features index found in features index storage");
+      synchronized (this.indexes) {
+        this.indexes.put(key, new SoftReference<>(result));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Put a features index in the cache.
+   * @param key key of the index
+   * @param annotationName name of the annotation
+   * @param index the features index
+   */
+  void put(final String key, final String annotationName,
+      final CompactGenomicArray<String> index) {
+
+    requireNonNull(key, "key argument cannot be null");
+    requireNonNull(annotationName, "annotationName argument cannot be null");
+    requireNonNull(index, "index argument cannot be null");
+
+    synchronized (this.indexes) {
+      this.indexes.put(key, new SoftReference<>(index));
+    }
+
+    final FeaturesIndexStorage storage = getStorage();
+    if (storage != null) {
+      storage.put(key, annotationName, index);
+    }
+  }
+
+  /**
+   * Get the features index storage defined in the settings.
+   * @return the features index storage or null if not defined
+   */
+  private synchronized FeaturesIndexStorage getStorage() {
+
+    if (!this.storageChecked) {
+
+      this.storageChecked = true;
+
+      if (EoulsanRuntime.isRuntime()) {
+
+        final String path =
+            EoulsanRuntime.getSettings().getFeaturesIndexStoragePath();
+
+        if (path != null) {
+          this.storage =
+              SimpleFeaturesIndexStorage.getInstance(new DataFile(path));
+        }
+      }
+    }
+
+    return this.storage;
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Get the singleton instance of the cache.
+   * @return the FeaturesIndexCache singleton
+   */
+  static synchronized FeaturesIndexCache getInstance() {
+
+    if (singleton == null) {
+      singleton = new FeaturesIndexCache();
+    }
+
+    return singleton;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   */
+  private FeaturesIndexCache() {
+
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      this.locks[i] = new Object();
+    }
+  }
+
+}
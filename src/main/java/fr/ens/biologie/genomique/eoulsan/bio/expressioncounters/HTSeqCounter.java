@@ -24,29 +24,48 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
 
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 import static fr.ens.biologie.genomique.eoulsan.util.StringUtils.join;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.base.Splitter;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.bio.CompactGenomicArray;
 import fr.ens.biologie.genomique.eoulsan.bio.GFFEntry;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicArray;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomicInterval;
 import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqUtils.UnknownChromosomeException;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.modules.expression.ExpressionCounterCounter;
 import fr.ens.biologie.genomique.eoulsan.util.GuavaCompatibility;
 import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 
 /**
  * This class defines a wrapper on the HTSeq-count counter.
@@ -81,8 +100,13 @@ public class HTSeqCounter extends AbstractExpressionCounter
   public static final String REMOVE_NON_ASSIGNED_FEATURES_SAM_TAGS_PARAMETER_NAME =
       "remove.non.assigned.sam.tags";
   public static final String SAM_TAG_TO_USE_PARAMETER_NAME = "sam.tag.to.use";
+  public static final String COMPACT_FEATURES_INDEX_PARAMETER_NAME =
+      "compact.features.index";
+  public static final String MAX_READS_IN_BUFFER_PARAMETER_NAME =
+      "max.reads.in.buffer";
 
   public static final String SAM_TAG_DEFAULT = "XF";
+  public static final int MAX_READS_IN_BUFFER_DEFAULT = 1000000;
 
   private String genomicType = "exon";
   private String attributeId = "PARENT";
@@ -95,11 +119,14 @@ public class HTSeqCounter extends AbstractExpressionCounter
   private boolean removeSecondaryAlignments = false;
   private boolean removeSupplementaryAlignments = false;
   private boolean removeNonAssignedFeatureSamTags = false;
+  private boolean compactFeaturesIndex = true;
+  private int maxReadsInBuffer = MAX_READS_IN_BUFFER_DEFAULT;
 
   private String samTag = SAM_TAG_DEFAULT;
 
-  private final GenomicArray<String> features = new GenomicArray<>();
+  private GenomicArray<String> features = new GenomicArray<>();
   private boolean initialized;
+  private transient FeatureCounts.Dictionary dictionary;
 
   /**
    * Internal class for counters
@@ -154,6 +181,23 @@ public class HTSeqCounter extends AbstractExpressionCounter
               + this.missingMate);
     }
 
+    /**
+     * Add the values of other counters to this counters.
+     * @param counters the counters to add
+     */
+    private void add(final InternalCounters counters) {
+
+      this.input += counters.input;
+      this.empty += counters.empty;
+      this.ambiguous += counters.ambiguous;
+      this.notAligned += counters.notAligned;
+      this.lowQual += counters.lowQual;
+      this.secondaryAlignments += counters.secondaryAlignments;
+      this.supplementaryAlignments += counters.supplementaryAlignments;
+      this.nonUnique += counters.nonUnique;
+      this.missingMate += counters.missingMate;
+    }
+
     private InternalCounters(final ReporterIncrementer reporter,
         final String counterGroup) {
 
@@ -247,6 +291,23 @@ public class HTSeqCounter extends AbstractExpressionCounter
       this.removeNonAssignedFeatureSamTags = Boolean.parseBoolean(value);
       break;
 
+    case COMPACT_FEATURES_INDEX_PARAMETER_NAME:
+      this.compactFeaturesIndex = Boolean.parseBoolean(value);
+      break;
+
+    case MAX_READS_IN_BUFFER_PARAMETER_NAME:
+      try {
+        this.maxReadsInBuffer = Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new EoulsanException(
+            "Invalid maximal number of reads in buffer: " + value);
+      }
+      if (this.maxReadsInBuffer < 1) {
+        throw new EoulsanException(
+            "Invalid maximal number of reads in buffer: " + value);
+      }
+      break;
+
     case SAM_TAG_TO_USE_PARAMETER_NAME:
       this.samTag = value.toUpperCase().trim();
       if (this.samTag.length() != 2
@@ -281,6 +342,70 @@ public class HTSeqCounter extends AbstractExpressionCounter
     }
   }
 
+  @Override
+  public void init(final DataFile genomeDescFile, final DataFile annotationFile,
+      final boolean gtfFormat) throws EoulsanException, IOException {
+
+    if (genomeDescFile == null) {
+      throw new NullPointerException("the genomeDescFile argument is null");
+    }
+
+    final GenomeDescription desc;
+    try (InputStream is = genomeDescFile.open()) {
+      desc = GenomeDescription.load(is);
+    }
+
+    init(desc, annotationFile, gtfFormat);
+  }
+
+  @Override
+  public void init(final GenomeDescription desc, final DataFile annotationFile,
+      final boolean gtfFormat) throws EoulsanException, IOException {
+
+    // Only the compact features index can be shared between counters
+    if (!this.compactFeaturesIndex) {
+      super.init(desc, annotationFile, gtfFormat);
+      return;
+    }
+
+    if (desc == null) {
+      throw new NullPointerException("the desc argument is null");
+    }
+
+    if (annotationFile == null) {
+      throw new NullPointerException("the annotationFile argument is null");
+    }
+
+    if (this.initialized) {
+      throw new IllegalStateException(
+          "the counter has been already initialized");
+    }
+
+    // Check configuration
+    checkConfiguration();
+
+    final FeaturesIndexCache cache = FeaturesIndexCache.getInstance();
+    final String key = cache.createKey(desc, annotationFile,
+        getFeaturesIndexParameters(gtfFormat));
+
+    // Avoid building the same index several times in parallel
+    synchronized (cache.getLock(key)) {
+
+      final CompactGenomicArray<String> index = cache.get(key);
+
+      if (index != null) {
+        this.features = index;
+        this.initialized = true;
+        return;
+      }
+
+      super.init(desc, annotationFile, gtfFormat);
+
+      cache.put(key, annotationFile.getName(),
+          (CompactGenomicArray<String>) this.features);
+    }
+  }
+
   @Override
   public void init(final GenomeDescription desc,
       final Iterable<GFFEntry> annotations) throws EoulsanException {
@@ -352,14 +477,27 @@ public class HTSeqCounter extends AbstractExpressionCounter
           "Warning: No features of type '" + this.genomicType + "' found.\n");
     }
 
+    // Use an immutable and compact index of the features for the queries
+    if (this.compactFeaturesIndex) {
+      this.features = new CompactGenomicArray<>(this.features);
+    }
+
     // The counter is now initialized
     this.initialized = true;
   }
 
   @Override
-  public Map<String, Integer> count(final Iterable<SAMRecord> samRecords,
-      final ReporterIncrementer reporter, final String counterGroup)
-      throws EoulsanException {
+  public void count(final Iterable<SAMRecord> samRecords,
+      final FeatureCounts counts, final ReporterIncrementer reporter,
+      final String counterGroup) throws EoulsanException {
+
+    if (samRecords == null) {
+      throw new NullPointerException("the samRecords argument is null");
+    }
+
+    if (counts == null) {
+      throw new NullPointerException("the counts argument is null");
+    }
 
     if (reporter == null) {
       throw new NullPointerException("the reporter argument is null");
@@ -374,10 +512,10 @@ public class HTSeqCounter extends AbstractExpressionCounter
     }
 
     SAMRecord sam1 = null, sam2 = null;
-    final Map<String, Integer> counts = new HashMap<>();
     final List<GenomicInterval> ivSeq = new ArrayList<>();
     final InternalCounters internalCounters =
         new InternalCounters(reporter, counterGroup);
+    MatePairingBuffer mateBuffer = null;
 
     // Read the SAM file
     for (final SAMRecord samRecord : samRecords) {
@@ -397,9 +535,33 @@ public class HTSeqCounter extends AbstractExpressionCounter
       // paired-end mode
       else {
 
+        // Alignments sorted by coordinate, wait for the mate
         if (samRecord.getHeader().getSortOrder() == SortOrder.coordinate) {
-          throw new EoulsanException(
-              "The counter does not support SAM data sorted by coordinate in paired-end mode");
+
+          if (mateBuffer == null) {
+            mateBuffer = new MatePairingBuffer(this.maxReadsInBuffer,
+                temporaryDirectory());
+          }
+
+          final SAMRecord mate = mateBuffer.add(samRecord);
+          if (mate == null) {
+            continue;
+          }
+
+          sam1 = samRecord.getFirstOfPairFlag() ? samRecord : mate;
+          sam2 = samRecord.getFirstOfPairFlag() ? mate : samRecord;
+          ivSeq.clear();
+
+          if (!pairedEnd(sam1, sam2, ivSeq, internalCounters)) {
+            continue;
+          }
+
+          // Update counts
+          for (String id : assignFeatures(sam1, sam2, ivSeq,
+              internalCounters)) {
+            counts.increment(id);
+          }
+          continue;
         }
 
         if (sam1 != null && sam2 != null) {
@@ -431,19 +593,372 @@ public class HTSeqCounter extends AbstractExpressionCounter
       }
 
       // Update counts
-      updateCounts(sam1, sam2, ivSeq, counts, internalCounters);
+      for (String id : assignFeatures(sam1, sam2, ivSeq, internalCounters)) {
+        counts.increment(id);
+      }
+    }
+
+    // Pair the alignments that remain in the mate buffer
+    if (mateBuffer != null) {
+
+      if (mateBuffer.getSpilledCount() > 0) {
+        getLogger().info(mateBuffer.getSpilledCount()
+            + " alignments have been spilled on disk while waiting their mates");
+      }
+
+      final int missingMates =
+          mateBuffer.finish(new MatePairingBuffer.PairHandler() {
+
+            @Override
+            public void handle(final SAMRecord r1, final SAMRecord r2)
+                throws EoulsanException {
+
+              final List<GenomicInterval> pairIvSeq = new ArrayList<>();
+
+              if (pairedEnd(r1, r2, pairIvSeq, internalCounters)) {
+                for (String id : assignFeatures(r1, r2, pairIvSeq,
+                    internalCounters)) {
+                  counts.increment(id);
+                }
+              }
+            }
+          });
+
+      internalCounters.missingMate += missingMates;
     }
 
     // Set the counters in the reporter
     internalCounters.fillReporter(this);
+  }
+
+  @Override
+  public FeatureCounts countFeatures(final DataFile samFile,
+      final DataFile indexFile, final int threadNumber,
+      final ReporterIncrementer reporter, final String counterGroup)
+      throws EoulsanException, IOException {
+
+    if (samFile == null) {
+      throw new NullPointerException("the samFile argument is null");
+    }
+
+    if (reporter == null) {
+      throw new NullPointerException("the reporter argument is null");
+    }
 
-    return counts;
+    if (counterGroup == null) {
+      throw new NullPointerException("the counterGroup argument is null");
+    }
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    final File file = samFile.toFile();
+    final File index = indexFile == null ? null : indexFile.toFile();
+
+    // The sharded mode requires the compact features index and a local file
+    if (threadNumber > 1
+        && this.features instanceof CompactGenomicArray && file != null
+        && (indexFile == null || index != null)) {
+
+      final FeatureCounts result = countByReferenceSequence(file, index,
+          threadNumber, reporter, counterGroup);
+
+      if (result != null) {
+        return result;
+      }
+    }
+
+    return super.countFeatures(samFile, indexFile, threadNumber, reporter,
+        counterGroup);
+  }
+
+  @Override
+  protected FeatureCounts newFeatureCounts() {
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    return new FeatureCounts(getDictionary());
   }
 
   //
   // Other methods
   //
 
+  /**
+   * Count the features in parallel, each reference sequence of the SAM file
+   * being processed by a different thread. This method requires an indexed
+   * and coordinate sorted BAM file.
+   * @param samFile SAM file
+   * @param indexFile index of the SAM file, if null the index is searched
+   *          next to the SAM file
+   * @param threadNumber the number of threads to use
+   * @param reporter the reporter
+   * @param counterGroup the counter group of the reporter
+   * @return the counts or null if the SAM file cannot be processed in
+   *         parallel (e.g. unsorted, not indexed or paired-end data)
+   * @throws EoulsanException if an error occurs while counting
+   * @throws IOException if an error occurs while reading the input file
+   */
+  FeatureCounts countByReferenceSequence(final File samFile,
+      final File indexFile, final int threadNumber,
+      final ReporterIncrementer reporter, final String counterGroup)
+      throws EoulsanException, IOException {
+
+    final SamReaderFactory factory = SamReaderFactory.makeDefault();
+    final List<SAMSequenceRecord> sequences;
+
+    try (SamReader reader = openSamFile(factory, samFile, indexFile)) {
+
+      if (!reader.hasIndex() || reader.getFileHeader()
+          .getSortOrder() != SortOrder.coordinate) {
+        return null;
+      }
+
+      // Paired-end alignments cannot be processed by reference sequence as
+      // the mates can be aligned on different sequences
+      try (SAMRecordIterator it = reader.iterator()) {
+        if (!it.hasNext() || it.next().getReadPairedFlag()) {
+          return null;
+        }
+      }
+
+      sequences = new ArrayList<>(
+          reader.getFileHeader().getSequenceDictionary().getSequences());
+    }
+
+    // Process the largest sequences first to balance the load of the threads
+    Collections.sort(sequences, new Comparator<SAMSequenceRecord>() {
+
+      @Override
+      public int compare(final SAMSequenceRecord r1,
+          final SAMSequenceRecord r2) {
+
+        return Integer.compare(r2.getSequenceLength(), r1.getSequenceLength());
+      }
+    });
+
+    final CompactGenomicArray<String> index =
+        (CompactGenomicArray<String>) this.features;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threadNumber);
+    final List<Future<ReferenceSequenceCounts>> futures = new ArrayList<>();
+
+    try {
+
+      for (SAMSequenceRecord sequence : sequences) {
+        futures.add(executor.submit(new ReferenceSequenceCounts(factory,
+            samFile, indexFile, sequence.getSequenceName(), index)));
+      }
+
+      // Unmapped alignments without coordinates
+      futures.add(executor.submit(new ReferenceSequenceCounts(factory,
+          samFile, indexFile, null, index)));
+
+      // Merge the results of the threads
+      final int[] counts = new int[index.getFeatureCount()];
+      final InternalCounters internalCounters =
+          new InternalCounters(reporter, counterGroup);
+
+      for (Future<ReferenceSequenceCounts> future : futures) {
+
+        final ReferenceSequenceCounts shard = getShard(future);
+
+        // Paired-end alignments found after the first alignment, the file
+        // must be processed sequentially
+        if (shard.pairedEnd) {
+          return null;
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+          counts[i] += shard.counts[i];
+        }
+        internalCounters.add(shard.internalCounters);
+      }
+
+      // The ordinals of the dictionary are the ordinals of the index
+      final FeatureCounts result = newFeatureCounts();
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          result.add(i, counts[i]);
+        }
+      }
+
+      // Set the counters in the reporter
+      internalCounters.fillReporter(this);
+
+      return result;
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Open a SAM file.
+   * @param factory SAM reader factory
+   * @param samFile SAM file
+   * @param indexFile index of the SAM file, if null the index is searched
+   *          next to the SAM file
+   * @return a SamReader object
+   */
+  private static SamReader openSamFile(final SamReaderFactory factory,
+      final File samFile, final File indexFile) {
+
+    if (indexFile == null) {
+      return factory.open(samFile);
+    }
+
+    return factory.open(SamInputResource.of(samFile).index(indexFile));
+  }
+
+  /**
+   * Get the result of a shard.
+   * @param future the future of the shard
+   * @return the result of the shard
+   * @throws EoulsanException if an error occurs while counting
+   * @throws IOException if an error occurs while reading the input file
+   */
+  private static ReferenceSequenceCounts getShard(
+      final Future<ReferenceSequenceCounts> future)
+      throws EoulsanException, IOException {
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EoulsanException(e);
+    } catch (ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+
+      if (cause instanceof EoulsanException) {
+        throw (EoulsanException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new EoulsanException(cause);
+    }
+  }
+
+  /**
+   * This class count the alignments of a reference sequence.
+   */
+  private final class ReferenceSequenceCounts
+      implements Callable<ReferenceSequenceCounts> {
+
+    private final SamReaderFactory factory;
+    private final File samFile;
+    private final File indexFile;
+    private final String sequenceName;
+    private final CompactGenomicArray<String> index;
+
+    private final int[] counts;
+    private final InternalCounters internalCounters =
+        new InternalCounters(null, null);
+    private boolean pairedEnd;
+
+    @Override
+    public ReferenceSequenceCounts call() throws EoulsanException, IOException {
+
+      final List<GenomicInterval> ivSeq = new ArrayList<>();
+
+      try (
+          SamReader reader =
+              openSamFile(this.factory, this.samFile, this.indexFile);
+          SAMRecordIterator it = this.sequenceName == null
+              ? reader.queryUnmapped()
+              : reader.query(this.sequenceName, 0, 0, false)) {
+
+        while (it.hasNext()) {
+
+          final SAMRecord samRecord = it.next();
+
+          // Mixed single-end and paired-end data cannot be processed by
+          // reference sequence
+          if (samRecord.getReadPairedFlag()) {
+            this.pairedEnd = true;
+            break;
+          }
+
+          this.internalCounters.input++;
+
+          if (!processSingleEnd(samRecord, ivSeq, this.internalCounters)) {
+            continue;
+          }
+
+          for (String id : assignFeatures(samRecord, null, ivSeq,
+              this.internalCounters)) {
+            this.counts[this.index.getFeatureOrdinal(id)]++;
+          }
+        }
+      }
+
+      return this;
+    }
+
+    /**
+     * Constructor.
+     * @param factory SAM reader factory
+     * @param samFile SAM file
+     * @param indexFile index of the SAM file, can be null
+     * @param sequenceName the reference sequence to process, null for the
+     *          unmapped alignments
+     * @param index features index
+     */
+    private ReferenceSequenceCounts(final SamReaderFactory factory,
+        final File samFile, final File indexFile, final String sequenceName,
+        final CompactGenomicArray<String> index) {
+
+      this.factory = factory;
+      this.samFile = samFile;
+      this.indexFile = indexFile;
+      this.sequenceName = sequenceName;
+      this.index = index;
+      this.counts = new int[index.getFeatureCount()];
+    }
+  }
+
+  /**
+   * Get the temporary directory to use for the alignments spilled by the mate
+   * buffer.
+   * @return the temporary directory
+   */
+  private static File temporaryDirectory() {
+
+    if (EoulsanRuntime.isRuntime()) {
+      return EoulsanRuntime.getSettings().getTempDirectoryFile();
+    }
+
+    return new File(System.getProperty("java.io.tmpdir"));
+  }
+
+  /**
+   * Get the parameters used to create the features index.
+   * @param gtfFormat true if the annotation file is in GTF format
+   * @return a map with the parameters used to create the features index
+   */
+  private Map<String, String> getFeaturesIndexParameters(
+      final boolean gtfFormat) {
+
+    final Map<String, String> result = new LinkedHashMap<>();
+    result.put("counter", COUNTER_NAME);
+    result.put("gtf.format", Boolean.toString(gtfFormat));
+    result.put(GENOMIC_TYPE_PARAMETER_NAME, this.genomicType);
+    result.put(ATTRIBUTE_ID_PARAMETER_NAME, this.attributeId);
+    result.put(STRANDED_PARAMETER_NAME, this.stranded.getName());
+    result.put(SPLIT_ATTRIBUTE_VALUES_PARAMETER_NAME,
+        Boolean.toString(this.splitAttributeValues));
+
+    return result;
+  }
+
   /**
    * Process single-end alignment.
    * @param samRecord SAM record
@@ -568,15 +1083,16 @@ public class HTSeqCounter extends AbstractExpressionCounter
   }
 
   /**
-   * Update the counts.
+   * Assign the features to the alignments.
+   * @param samRecord1 first alignment
+   * @param samRecord2 second alignment, can be null
    * @param ivSeq the genomic intervals
-   * @param counts the counts
    * @param internalCounters the counters
+   * @return the features to count
    * @throws EoulsanException if an error occurs while counting
    */
-  private void updateCounts(final SAMRecord samRecord1,
+  private Collection<String> assignFeatures(final SAMRecord samRecord1,
       final SAMRecord samRecord2, final List<GenomicInterval> ivSeq,
-      final Map<String, Integer> counts,
       final InternalCounters internalCounters) throws EoulsanException {
 
     try {
@@ -587,13 +1103,12 @@ public class HTSeqCounter extends AbstractExpressionCounter
       case 0:
         internalCounters.empty++;
         assignment(samRecord1, samRecord2, "__no_feature");
-        break;
+        return Collections.emptySet();
 
       case 1:
         String id = fs.iterator().next();
-        increment(counts, id);
         assignment(samRecord1, samRecord2, id);
-        break;
+        return fs;
 
       default:
 
@@ -601,31 +1116,46 @@ public class HTSeqCounter extends AbstractExpressionCounter
         assignment(samRecord1, samRecord2, fs);
 
         if (!this.removeAmbiguousCases) {
-          for (String id2 : fs) {
-            increment(counts, id2);
-          }
+          return fs;
         }
-        break;
+        return Collections.emptySet();
       }
     } catch (UnknownChromosomeException e) {
       internalCounters.empty++;
       assignment(samRecord1, samRecord2, "__no_feature");
+      return Collections.emptySet();
     }
   }
 
   /**
-   * Increment a count.
-   * @param counts the counts
-   * @param key the feature to increment
+   * Get the dictionary of the features. When the compact features index is
+   * used, the ordinals of the dictionary are the ordinals of the index.
+   * @return the dictionary of the features
    */
-  private static void increment(final Map<String, Integer> counts,
-      final String key) {
+  private FeatureCounts.Dictionary getDictionary() {
+
+    if (this.dictionary == null) {
 
-    if (!counts.containsKey(key)) {
-      counts.put(key, 1);
-    } else {
-      counts.put(key, counts.get(key) + 1);
+      final List<String> featureIds;
+
+      if (this.features instanceof CompactGenomicArray) {
+
+        final CompactGenomicArray<String> index =
+            (CompactGenomicArray<String>) this.features;
+
+        featureIds = new ArrayList<>(index.getFeatureCount());
+        for (int i = 0; i < index.getFeatureCount(); i++) {
+          featureIds.add(index.getFeature(i));
+        }
+      } else {
+        featureIds = new ArrayList<>(this.features.getFeaturesIds());
+        Collections.sort(featureIds);
+      }
+
+      this.dictionary = new FeatureCounts.Dictionary(featureIds);
     }
+
+    return this.dictionary;
   }
 
   /**
@@ -685,6 +1215,22 @@ public class HTSeqCounter extends AbstractExpressionCounter
     }
   }
 
+  @Override
+  public void addZeroCountFeatures(final FeatureCounts counts) {
+
+    if (counts == null) {
+      throw new NullPointerException("The counts arguments cannot be null");
+    }
+
+    if (!this.initialized) {
+      throw new IllegalStateException("the counter has not been initialized");
+    }
+
+    for (String feature : this.features.getFeaturesIds()) {
+      counts.add(feature, 0);
+    }
+  }
+
   @Override
   public String toString() {
 
@@ -697,7 +1243,10 @@ public class HTSeqCounter extends AbstractExpressionCounter
         + ", removeSecondaryAlignments=" + this.removeSecondaryAlignments
         + ", removeSupplementaryAlignments="
         + this.removeSupplementaryAlignments + " minAverageQuality="
-        + this.minimalQuality + ", initialized=" + this.initialized + "}";
+        + this.minimalQuality + ", compactFeaturesIndex="
+        + this.compactFeaturesIndex + ", maxReadsInBuffer="
+        + this.maxReadsInBuffer + ", initialized=" + this.initialized
+        + "}";
   }
 
 }
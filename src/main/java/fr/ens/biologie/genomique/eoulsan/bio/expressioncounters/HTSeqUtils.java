@@ -235,6 +235,74 @@ public class HTSeqUtils {
     return result;
   }
 
+  /**
+   * This class define the handler that compute the features that overlap
+   * genomic intervals.
+   */
+  private static final class OverlapHandler
+      implements GenomicArray.EntriesHandler<String> {
+
+    private final OverlapMode mode;
+    private final boolean filterStrand;
+    private char strand;
+    private int entryCount;
+    private Set<String> features;
+
+    @Override
+    public void handle(final String chromosome, final int start,
+        final int end, final char strand, final Set<String> values) {
+
+      // Filter entries if necessary
+      if (this.filterStrand && strand != this.strand) {
+        return;
+      }
+
+      this.entryCount++;
+
+      if (this.mode == UNION) {
+        this.features.addAll(values);
+      } else if (values.size() > 0 || this.mode == INTERSECTION_STRICT) {
+        intersect(values);
+      }
+    }
+
+    /**
+     * Keep only the features that are also in a set of values.
+     * @param values the values
+     */
+    private void intersect(final Set<String> values) {
+
+      if (this.features == null) {
+        this.features = new HashSet<>(values);
+      } else {
+        this.features.retainAll(values);
+      }
+    }
+
+    /**
+     * Set the genomic interval to process.
+     * @param iv the genomic interval
+     */
+    private void setInterval(final GenomicInterval iv) {
+
+      this.strand = iv.getStrand();
+      this.entryCount = 0;
+    }
+
+    /**
+     * Constructor.
+     * @param mode overlap mode
+     * @param stranded strand usage
+     */
+    private OverlapHandler(final OverlapMode mode,
+        final StrandUsage stranded) {
+
+      this.mode = mode;
+      this.filterStrand = stranded == YES || stranded == REVERSE;
+      this.features = mode == UNION ? new HashSet<String>() : null;
+    }
+  }
+
   /**
    * Determine features that overlap genomic intervals.
    * @param ivList the list of genomic intervals.
@@ -249,125 +317,40 @@ public class HTSeqUtils {
       final OverlapMode mode, final StrandUsage stranded)
       throws EoulsanException {
 
-    Set<String> fs = null;
+    if (mode != UNION
+        && mode != INTERSECTION_NONEMPTY && mode != INTERSECTION_STRICT) {
+      throw new EoulsanException("Error : illegal overlap mode.");
+    }
 
-    // Overlap mode "union"
-    if (mode == UNION) {
+    final OverlapHandler handler = new OverlapHandler(mode, stranded);
 
-      fs = new HashSet<>();
+    for (final GenomicInterval iv : ivList) {
 
-      for (final GenomicInterval iv : ivList) {
+      final String chr = iv.getChromosome();
 
-        final String chr = iv.getChromosome();
+      // Get features that overlap the current interval of the read
+      handler.setInterval(iv);
+      if (!features.getEntries(chr, iv.getStart(), iv.getEnd(), handler)) {
 
-        if (!features.containsChromosome(chr)) {
+        if (mode == UNION) {
           throw new UnknownChromosomeException(chr);
         }
-
-        // Get features that overlap the current interval of the read
-        final Map<GenomicInterval, Set<String>> intervals =
-            features.getEntries(chr, iv.getStart(), iv.getEnd());
-
-        // Filter intervals if necessary
-        if (stranded == YES || stranded == REVERSE) {
-          filterIntervalsStrands(intervals, iv.getStrand());
-        }
-
-        // At least one interval is found
-        if (intervals != null && intervals.size() > 0) {
-          for (Map.Entry<GenomicInterval, Set<String>> e : intervals
-              .entrySet()) {
-
-            if (e.getValue() != null) {
-              fs.addAll(e.getValue());
-            }
-          }
-        }
-
+        throw new EoulsanException("Unknown chromosome: " + chr);
       }
-    }
 
-    // Overlap modes : "intersection-nonempty" or "intersection-strict"
-    else if (mode == INTERSECTION_NONEMPTY || mode == INTERSECTION_STRICT) {
-
-      for (final GenomicInterval iv : ivList) {
-
-        final String chr = iv.getChromosome();
-
-        if (!features.containsChromosome(chr)) {
-          throw new EoulsanException("Unknown chromosome: " + chr);
-        }
-
-        // Get features that overlap the current interval of the read
-        final Map<GenomicInterval, Set<String>> intervals =
-            features.getEntries(chr, iv.getStart(), iv.getEnd());
-
-        // Filter intervals if necessary
-        if (stranded == StrandUsage.YES || stranded == StrandUsage.REVERSE) {
-          filterIntervalsStrands(intervals, iv.getStrand());
-        }
-
-        // If internal is empty, add an entry with requested iv as key and an
-        // empty set as value (HTSeq compatibility)
-        if (intervals.isEmpty()) {
-          final Set<String> emptySet = Collections.emptySet();
-          intervals.put(iv, emptySet);
-        }
-
-        // At least one interval is found
-        if (intervals.size() > 0) {
-          for (Map.Entry<GenomicInterval, Set<String>> i : intervals
-              .entrySet()) {
-
-            final Set<String> fs2 = i.getValue();
-
-            if (fs2.size() > 0 || mode == INTERSECTION_STRICT) {
-              if (fs == null) {
-                fs = new HashSet<>(fs2);
-              } else {
-                fs.retainAll(fs2);
-              }
-
-            }
-          }
-        }
+      // If no interval has been found, use an empty set of features (HTSeq
+      // compatibility)
+      if (handler.entryCount == 0 && mode == INTERSECTION_STRICT) {
+        handler.intersect(Collections.<String> emptySet());
       }
-    } else {
-      throw new EoulsanException("Error : illegal overlap mode.");
     }
 
     // Do not return null
-    if (fs == null) {
+    if (handler.features == null) {
       return Collections.emptySet();
     }
 
-    return fs;
-  }
-
-  /**
-   * Filter the output of GenomicArray.getEntries() by keeping only features on
-   * a strand
-   * @param intervals intervals to filter
-   * @param strand strand to keep
-   */
-  private static void filterIntervalsStrands(
-      final Map<GenomicInterval, Set<String>> intervals, final char strand) {
-
-    if (intervals == null) {
-      return;
-    }
-
-    final Set<GenomicInterval> toRemove = new HashSet<>();
-
-    for (Map.Entry<GenomicInterval, Set<String>> e : intervals.entrySet()) {
-      if (e.getKey().getStrand() != strand) {
-        toRemove.add(e.getKey());
-      }
-    }
-
-    for (GenomicInterval iv : toRemove) {
-      intervals.remove(iv);
-    }
+    return handler.features;
   }
 
 }
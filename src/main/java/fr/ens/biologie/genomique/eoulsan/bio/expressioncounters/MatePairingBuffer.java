@@ -0,0 +1,304 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.SortingCollection;
+
+/**
+ * This class define a buffer that pair the mates of paired-end alignments
+ * sorted by coordinate. Alignments which mate has not been yet read are kept
+ * in memory. When the number of alignments in memory exceeds a limit, the
+ * oldest alignments are spilled in temporary files and are paired at the end
+ * of the reading after sorting them by read name.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class MatePairingBuffer {
+
+  private final int maxRecordsInMemory;
+  private final File temporaryDirectory;
+
+  private final LinkedHashMap<String, SAMRecord> buffer = new LinkedHashMap<>();
+  private SortingCollection<SAMRecord> spill;
+  private int spilledCount;
+
+  /**
+   * This interface define a handler for the paired alignments.
+   */
+  interface PairHandler {
+
+    /**
+     * Handle a pair of alignments.
+     * @param first the first alignment of the pair
+     * @param second the second alignment of the pair
+     * @throws EoulsanException if an error occurs while handling the pair
+     */
+    void handle(SAMRecord first, SAMRecord second) throws EoulsanException;
+  }
+
+  /**
+   * Add an alignment to the buffer.
+   * @param samRecord alignment to add
+   * @return the mate of the alignment if it has been already read or null if
+   *         the mate has not been yet read
+   */
+  public SAMRecord add(final SAMRecord samRecord) {
+
+    if (samRecord == null) {
+      throw new NullPointerException("samRecord argument cannot be null");
+    }
+
+    final SAMRecord mate = this.buffer.remove(mateKey(samRecord));
+
+    if (mate != null) {
+      return mate;
+    }
+
+    final SAMRecord previous = this.buffer.put(key(samRecord), samRecord);
+
+    // Two alignments with the same key, keep the previous one for the end
+    if (previous != null) {
+      spill(previous);
+    }
+
+    // Spill the oldest alignments if the buffer is full
+    if (this.buffer.size() > this.maxRecordsInMemory) {
+
+      final Iterator<SAMRecord> it = this.buffer.values().iterator();
+      spill(it.next());
+      it.remove();
+    }
+
+    return null;
+  }
+
+  /**
+   * Pair the alignments that remains in the buffer once all the alignments
+   * has been added. After the call of this method the buffer is empty.
+   * @param handler the handler for the paired alignments
+   * @return the number of alignments without mate
+   * @throws EoulsanException if an error occurs while handling the pairs
+   */
+  public int finish(final PairHandler handler) throws EoulsanException {
+
+    if (handler == null) {
+      throw new NullPointerException("handler argument cannot be null");
+    }
+
+    // Without spilled alignments, the remaining alignments have no mate
+    if (this.spill == null) {
+
+      final int result = this.buffer.size();
+      this.buffer.clear();
+
+      return result;
+    }
+
+    for (SAMRecord samRecord : this.buffer.values()) {
+      spill(samRecord);
+    }
+    this.buffer.clear();
+
+    this.spill.doneAdding();
+
+    int result = 0;
+    final List<SAMRecord> group = new ArrayList<>();
+
+    try (CloseableIterator<SAMRecord> it = this.spill.iterator()) {
+
+      while (it.hasNext()) {
+
+        final SAMRecord samRecord = it.next();
+
+        if (!group.isEmpty()
+            && !group.get(0).getReadName().equals(samRecord.getReadName())) {
+          result += pairGroup(group, handler);
+          group.clear();
+        }
+
+        group.add(samRecord);
+      }
+
+      result += pairGroup(group, handler);
+
+    } finally {
+      this.spill.cleanup();
+      this.spill = null;
+      this.spilledCount = 0;
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the number of alignments spilled on disk.
+   * @return the number of alignments spilled on disk
+   */
+  public int getSpilledCount() {
+
+    return this.spilledCount;
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Pair the alignments of a read.
+   * @param group the alignments of the read
+   * @param handler the handler for the paired alignments
+   * @return the number of alignments without mate
+   * @throws EoulsanException if an error occurs while handling the pairs
+   */
+  private static int pairGroup(final List<SAMRecord> group,
+      final PairHandler handler) throws EoulsanException {
+
+    final Map<String, SAMRecord> pending = new HashMap<>();
+    int result = 0;
+
+    for (SAMRecord samRecord : group) {
+
+      final SAMRecord mate = pending.remove(mateKey(samRecord));
+
+      if (mate != null) {
+        handlePair(samRecord, mate, handler);
+      } else if (pending.put(key(samRecord), samRecord) != null) {
+        result++;
+      }
+    }
+
+    return result + pending.size();
+  }
+
+  /**
+   * Call the handler with the first and the second alignments of a pair.
+   * @param samRecord an alignment
+   * @param mate the mate of the alignment
+   * @param handler the handler
+   * @throws EoulsanException if an error occurs while handling the pair
+   */
+  private static void handlePair(final SAMRecord samRecord,
+      final SAMRecord mate, final PairHandler handler)
+      throws EoulsanException {
+
+    if (samRecord.getFirstOfPairFlag()) {
+      handler.handle(samRecord, mate);
+    } else {
+      handler.handle(mate, samRecord);
+    }
+  }
+
+  /**
+   * Spill an alignment on disk.
+   * @param samRecord the alignment to spill
+   */
+  private void spill(final SAMRecord samRecord) {
+
+    if (this.spill == null) {
+      this.spill = SortingCollection.newInstance(SAMRecord.class,
+          new BAMRecordCodec(samRecord.getHeader()),
+          new SAMRecordQueryNameComparator(), this.maxRecordsInMemory,
+          this.temporaryDirectory);
+    }
+
+    this.spill.add(samRecord);
+    this.spilledCount++;
+  }
+
+  /**
+   * Get the key of an alignment.
+   * @param samRecord the alignment
+   * @return the key of the alignment
+   */
+  private static String key(final SAMRecord samRecord) {
+
+    return key(samRecord.getReadName(), samRecord.getFirstOfPairFlag(),
+        samRecord.getReferenceIndex(), samRecord.getAlignmentStart(),
+        samRecord.getMateReferenceIndex(), samRecord.getMateAlignmentStart());
+  }
+
+  /**
+   * Get the key of the mate of an alignment.
+   * @param samRecord the alignment
+   * @return the key of the mate of the alignment
+   */
+  private static String mateKey(final SAMRecord samRecord) {
+
+    return key(samRecord.getReadName(), !samRecord.getFirstOfPairFlag(),
+        samRecord.getMateReferenceIndex(), samRecord.getMateAlignmentStart(),
+        samRecord.getReferenceIndex(), samRecord.getAlignmentStart());
+  }
+
+  private static String key(final String readName, final boolean first,
+      final int referenceIndex, final int alignmentStart,
+      final int mateReferenceIndex, final int mateAlignmentStart) {
+
+    return readName
+        + '\t' + (first ? '1' : '2') + '\t' + referenceIndex + ':'
+        + alignmentStart + '\t' + mateReferenceIndex + ':'
+        + mateAlignmentStart;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param maxRecordsInMemory maximal number of alignments to keep in memory
+   * @param temporaryDirectory temporary directory for the spilled alignments
+   */
+  MatePairingBuffer(final int maxRecordsInMemory,
+      final File temporaryDirectory) {
+
+    if (maxRecordsInMemory < 1) {
+      throw new IllegalArgumentException(
+          "maxRecordsInMemory argument must be greater than 0: "
+              + maxRecordsInMemory);
+    }
+
+    if (temporaryDirectory == null) {
+      throw new NullPointerException(
+          "temporaryDirectory argument cannot be null");
+    }
+
+    this.maxRecordsInMemory = maxRecordsInMemory;
+    this.temporaryDirectory = temporaryDirectory;
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPOutputStream;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.RuntimeIOException;
+
+/**
+ * This class define a writer for BAM files. Unlike the BAM writer of htsjdk,
+ * the BGZF blocks of the output are compressed in parallel. The records are
+ * written in the order of the calls to the write() method, the order of the
+ * records is not checked.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class BAMStreamWriter implements Closeable {
+
+  private final OutputStream out;
+  private final BAMRecordCodec codec;
+  private final SAMFileHeader header;
+  private long recordCount;
+
+  /**
+   * Write a record.
+   * @param record the record to write
+   * @throws IOException if an error occurs while writing the record
+   */
+  public void write(final SAMRecord record) throws IOException {
+
+    if (record == null) {
+      throw new NullPointerException("record argument cannot be null");
+    }
+
+    try {
+      this.codec.encode(record);
+    } catch (RuntimeIOException e) {
+      throw new IOException(e.getMessage(), e.getCause());
+    }
+
+    this.recordCount++;
+  }
+
+  /**
+   * Get the header of the output file.
+   * @return the header of the output file
+   */
+  public SAMFileHeader getFileHeader() {
+
+    return this.header;
+  }
+
+  /**
+   * Get the number of records written.
+   * @return the number of records written
+   */
+  public long getRecordCount() {
+
+    return this.recordCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.out.close();
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Write the header of a BAM file.
+   * @param out the output stream where write the header. The output stream
+   *          must compress the data in BGZF format
+   * @param header the header to write
+   */
+  public static void writeHeader(final OutputStream out,
+      final SAMFileHeader header) {
+
+    if (out == null) {
+      throw new NullPointerException("out argument cannot be null");
+    }
+
+    if (header == null) {
+      throw new NullPointerException("header argument cannot be null");
+    }
+
+    final BinaryCodec codec = new BinaryCodec(out);
+
+    // Magic number
+    codec.writeBytes("BAM\1".getBytes(StandardCharsets.ISO_8859_1));
+
+    // Header text
+    final StringWriter headerText = new StringWriter();
+    new SAMTextHeaderCodec().encode(headerText, header);
+    codec.writeString(headerText.toString(), true, false);
+
+    // Reference sequences
+    codec.writeInt(header.getSequenceDictionary().size());
+    for (SAMSequenceRecord sequence : header.getSequenceDictionary()
+        .getSequences()) {
+      codec.writeString(sequence.getSequenceName(), true, true);
+      codec.writeInt(sequence.getSequenceLength());
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param os the output stream
+   * @param header the header of the file
+   * @param threadNumber the number of threads to use for the compression
+   * @throws IOException if an error occurs while writing the header
+   */
+  public BAMStreamWriter(final OutputStream os, final SAMFileHeader header,
+      final int threadNumber) throws IOException {
+
+    if (os == null) {
+      throw new NullPointerException("os argument cannot be null");
+    }
+
+    if (header == null) {
+      throw new NullPointerException("header argument cannot be null");
+    }
+
+    this.out = new ParallelGZIPOutputStream(os, threadNumber);
+    this.header = header;
+
+    try {
+      writeHeader(this.out, header);
+    } catch (RuntimeIOException e) {
+      this.out.close();
+      throw new IOException(e.getMessage(), e.getCause());
+    }
+
+    this.codec = new BAMRecordCodec(header);
+    this.codec.setOutputStream(this.out);
+  }
+
+}
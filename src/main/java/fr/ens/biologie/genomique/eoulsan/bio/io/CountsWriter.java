@@ -4,6 +4,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
 
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.FeatureCounts;
+
 /**
  * This interface define a counts writer.
  * @author Laurent Jourdren
@@ -18,4 +20,11 @@ public interface CountsWriter extends Closeable {
    */
   void write(Map<String, Integer> counts) throws IOException;
 
+  /**
+   * Write the counts.
+   * @param counts counts to write
+   * @throws IOException if an error occurs while writing the file
+   */
+  void write(FeatureCounts counts) throws IOException;
+
 }
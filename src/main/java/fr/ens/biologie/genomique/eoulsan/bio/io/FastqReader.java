@@ -24,14 +24,10 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.io;
 
-import static fr.ens.biologie.genomique.eoulsan.bio.io.BioCharsets.FASTQ_CHARSET;
-
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -40,17 +36,18 @@ import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 
 /**
- * This class implements a Fastq reader.
+ * This class implements a Fastq reader. The entries are parsed by a
+ * {@link FastqRecordReader} and a new ReadSequence object is created for each
+ * entry.
  * @since 1.0
  * @author Laurent Jourdren
  */
 public class FastqReader implements ReadSequenceReader {
 
-  private final BufferedReader reader;
+  private final FastqRecordReader reader;
+  private final FastqRecord record = new FastqRecord();
 
   private ReadSequence result = null;
-  private final StringBuilder sb = new StringBuilder();
-  private int lineCount = 0;
 
   private boolean end = false;
   private boolean nextCallDone = true;
@@ -78,47 +75,15 @@ public class FastqReader implements ReadSequenceReader {
 
     this.nextCallDone = false;
 
-    String line = null;
-    int entryLine = 0;
-
     try {
-      while ((line = this.reader.readLine()) != null) {
-
-        // Increment line count
-        this.lineCount++;
-
-        // Trim the line
-        final String trim = line.trim();
-
-        entryLine++;
-        this.sb.append(trim);
-
-        if (entryLine == 1 && trim.charAt(0) != '@') {
-          throw new BadBioEntryException(
-              "Invalid Fastq file. First line of the entry don't start with '@' at line "
-                  + this.lineCount,
-              line);
-        }
-
-        if (entryLine == 3 && trim.charAt(0) != '+') {
-          throw new BadBioEntryException(
-              "Invalid Fastq file. Third line of the entry don't start with '+' at line "
-                  + this.lineCount,
-              line);
-        }
-
-        if (entryLine == 4) {
-
-          // Fill the ReadSequence object
-          this.result = new ReadSequence();
-          this.result.parseFastQ(this.sb.toString());
-          this.sb.setLength(0);
-          return true;
-        }
-        this.sb.append('\n');
+
+      if (this.reader.read(this.record)) {
+
+        // Fill the ReadSequence object
+        this.result = this.record.toReadSequence();
+        return true;
       }
 
-      this.sb.setLength(0);
       this.end = true;
 
       return false;
@@ -179,7 +144,7 @@ public class FastqReader implements ReadSequenceReader {
       throw new NullPointerException("InputStream is null");
     }
 
-    this.reader = new BufferedReader(new InputStreamReader(is, FASTQ_CHARSET));
+    this.reader = new FastqRecordReader(is);
   }
 
   /**
@@ -192,7 +157,7 @@ public class FastqReader implements ReadSequenceReader {
       throw new NullPointerException("File is null");
     }
 
-    this.reader = FileUtils.createBufferedReader(file, FASTQ_CHARSET);
+    this.reader = new FastqRecordReader(FileUtils.createInputStream(file));
   }
 
   /**
@@ -201,7 +166,8 @@ public class FastqReader implements ReadSequenceReader {
    */
   public FastqReader(final String filename) throws FileNotFoundException {
 
-    this.reader = FileUtils.createBufferedReader(filename, FASTQ_CHARSET);
+    this.reader =
+        new FastqRecordReader(FileUtils.createInputStream(filename));
   }
 
 }
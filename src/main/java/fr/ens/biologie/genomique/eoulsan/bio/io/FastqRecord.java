@@ -0,0 +1,286 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.io.BioCharsets.FASTQ_CHARSET;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+/**
+ * This class define a mutable FASTQ record filled by a
+ * {@link FastqRecordReader}. The name, the sequence and the quality of the
+ * record are stored as bytes in buffers that are reused from one record to
+ * another. The String values of the fields are only created when they are
+ * requested.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public final class FastqRecord {
+
+  private static final int DEFAULT_FIELD_CAPACITY = 256;
+
+  private byte[] name = new byte[DEFAULT_FIELD_CAPACITY];
+  private byte[] sequence = new byte[DEFAULT_FIELD_CAPACITY];
+  private byte[] quality = new byte[DEFAULT_FIELD_CAPACITY];
+  private int nameLength;
+  private int sequenceLength;
+  private int qualityLength;
+
+  private String nameString;
+  private String sequenceString;
+  private String qualityString;
+
+  //
+  // Getters
+  //
+
+  /**
+   * Get the name of the read.
+   * @return the name of the read
+   */
+  public String getName() {
+
+    if (this.nameString == null) {
+      this.nameString = new String(this.name, 0, this.nameLength, FASTQ_CHARSET);
+    }
+
+    return this.nameString;
+  }
+
+  /**
+   * Get the sequence of the read.
+   * @return the sequence of the read
+   */
+  public String getSequence() {
+
+    if (this.sequenceString == null) {
+      this.sequenceString =
+          new String(this.sequence, 0, this.sequenceLength, FASTQ_CHARSET);
+    }
+
+    return this.sequenceString;
+  }
+
+  /**
+   * Get the quality string of the read.
+   * @return the quality string of the read
+   */
+  public String getQuality() {
+
+    if (this.qualityString == null) {
+      this.qualityString =
+          new String(this.quality, 0, this.qualityLength, FASTQ_CHARSET);
+    }
+
+    return this.qualityString;
+  }
+
+  /**
+   * Get the buffer that contains the name of the read. Only the first
+   * {@link #getNameLength()} bytes of the buffer are valid and the content of
+   * the buffer is overwritten by the next read of the record.
+   * @return the buffer with the name of the read
+   */
+  public byte[] getNameBytes() {
+
+    return this.name;
+  }
+
+  /**
+   * Get the buffer that contains the sequence of the read. Only the first
+   * {@link #getSequenceLength()} bytes of the buffer are valid and the content
+   * of the buffer is overwritten by the next read of the record.
+   * @return the buffer with the sequence of the read
+   */
+  public byte[] getSequenceBytes() {
+
+    return this.sequence;
+  }
+
+  /**
+   * Get the buffer that contains the quality of the read. Only the first
+   * {@link #getQualityLength()} bytes of the buffer are valid and the content
+   * of the buffer is overwritten by the next read of the record.
+   * @return the buffer with the quality of the read
+   */
+  public byte[] getQualityBytes() {
+
+    return this.quality;
+  }
+
+  /**
+   * Get the length of the name of the read.
+   * @return the length of the name of the read
+   */
+  public int getNameLength() {
+
+    return this.nameLength;
+  }
+
+  /**
+   * Get the length of the sequence of the read.
+   * @return the length of the sequence of the read
+   */
+  public int getSequenceLength() {
+
+    return this.sequenceLength;
+  }
+
+  /**
+   * Get the length of the quality of the read.
+   * @return the length of the quality of the read
+   */
+  public int getQualityLength() {
+
+    return this.qualityLength;
+  }
+
+  //
+  // Setters
+  //
+
+  /**
+   * Set the name of the read.
+   * @param buffer buffer that contains the name
+   * @param offset offset of the name in the buffer
+   * @param length length of the name
+   */
+  void setName(final byte[] buffer, final int offset, final int length) {
+
+    this.name = copy(buffer, offset, length, this.name);
+    this.nameLength = length;
+    this.nameString = null;
+  }
+
+  /**
+   * Set the sequence of the read.
+   * @param buffer buffer that contains the sequence
+   * @param offset offset of the sequence in the buffer
+   * @param length length of the sequence
+   */
+  void setSequence(final byte[] buffer, final int offset, final int length) {
+
+    this.sequence = copy(buffer, offset, length, this.sequence);
+    this.sequenceLength = length;
+    this.sequenceString = null;
+  }
+
+  /**
+   * Set the quality of the read.
+   * @param buffer buffer that contains the quality
+   * @param offset offset of the quality in the buffer
+   * @param length length of the quality
+   */
+  void setQuality(final byte[] buffer, final int offset, final int length) {
+
+    this.quality = copy(buffer, offset, length, this.quality);
+    this.qualityLength = length;
+    this.qualityString = null;
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Create a new ReadSequence object from the values of the record.
+   * @return a new ReadSequence object
+   */
+  public ReadSequence toReadSequence() {
+
+    final ReadSequence result = new ReadSequence();
+    copyTo(result);
+
+    return result;
+  }
+
+  /**
+   * Set the name, the sequence and the quality of an existing ReadSequence
+   * object with the values of the record. The description of the read is
+   * removed.
+   * @param read the read to set
+   */
+  public void copyTo(final ReadSequence read) {
+
+    if (read == null) {
+      throw new NullPointerException("read argument cannot be null");
+    }
+
+    read.setName(getName());
+    read.setDescription(null);
+    read.setSequence(getSequence());
+    read.setQuality(getQuality());
+  }
+
+  /**
+   * Write the record in FASTQ format, without creating any String.
+   * @param out the output stream
+   * @throws IOException if an error occurs while writing the record
+   */
+  public void write(final OutputStream out) throws IOException {
+
+    out.write('@');
+    out.write(this.name, 0, this.nameLength);
+    out.write('\n');
+    out.write(this.sequence, 0, this.sequenceLength);
+    out.write('\n');
+    out.write('+');
+    out.write('\n');
+    out.write(this.quality, 0, this.qualityLength);
+    out.write('\n');
+  }
+
+  /**
+   * Copy bytes in a buffer, the buffer is enlarged if required.
+   * @param src the source
+   * @param offset offset in the source
+   * @param length number of bytes to copy
+   * @param dest the destination buffer
+   * @return the destination buffer or a new buffer if the destination buffer
+   *         was too small
+   */
+  private static byte[] copy(final byte[] src, final int offset,
+      final int length, final byte[] dest) {
+
+    final byte[] result = length <= dest.length
+        ? dest : Arrays.copyOf(dest, Math.max(length, dest.length * 2));
+    System.arraycopy(src, offset, result, 0, length);
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+
+    return this.getClass().getSimpleName()
+        + "{name=" + getName() + ", sequence=" + getSequence() + ", quality="
+        + getQuality() + "}";
+  }
+
+}
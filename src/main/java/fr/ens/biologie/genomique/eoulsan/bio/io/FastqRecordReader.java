@@ -0,0 +1,459 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.io.BioCharsets.FASTQ_CHARSET;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This class implements a FASTQ reader that works on bytes. Unlike
+ * {@link FastqReader}, it does not decode the input in characters and fills a
+ * reusable {@link FastqRecord} object instead of creating a new object for each
+ * entry. Uncompressed local files are read using memory mapping.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class FastqRecordReader implements Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final long MAPPING_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private final ByteSource source;
+  private final FastqRecord record = new FastqRecord();
+
+  private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  private int lineStart;
+  private int lineEnd;
+  private long lineCount;
+
+  /**
+   * This interface define a source of bytes.
+   */
+  private interface ByteSource extends Closeable {
+
+    /**
+     * Read bytes from the source.
+     * @param b destination buffer
+     * @param offset offset in the destination buffer
+     * @param length maximal number of bytes to read
+     * @return the number of bytes read or -1 if the end of the source has been
+     *         reached
+     * @throws IOException if an error occurs while reading the source
+     */
+    int read(byte[] b, int offset, int length) throws IOException;
+  }
+
+  /**
+   * This class define a source of bytes based on an InputStream.
+   */
+  private static final class InputStreamSource implements ByteSource {
+
+    private final InputStream in;
+
+    @Override
+    public int read(final byte[] b, final int offset, final int length)
+        throws IOException {
+
+      return this.in.read(b, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.in.close();
+    }
+
+    InputStreamSource(final InputStream in) {
+
+      this.in = in;
+    }
+  }
+
+  /**
+   * This class define a source of bytes based on a channel. The channel is
+   * read in a direct buffer.
+   */
+  private static final class ChannelSource implements ByteSource {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer directBuffer =
+        ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+
+    @Override
+    public int read(final byte[] b, final int offset, final int length)
+        throws IOException {
+
+      if (!this.directBuffer.hasRemaining()) {
+
+        this.directBuffer.clear();
+
+        int n;
+        do {
+          n = this.channel.read(this.directBuffer);
+        } while (n == 0);
+
+        this.directBuffer.flip();
+
+        if (n < 0) {
+          return -1;
+        }
+      }
+
+      final int n = Math.min(length, this.directBuffer.remaining());
+      this.directBuffer.get(b, offset, n);
+
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.channel.close();
+    }
+
+    ChannelSource(final ReadableByteChannel channel) {
+
+      this.channel = channel;
+      this.directBuffer.flip();
+    }
+  }
+
+  /**
+   * This class define a source of bytes based on a memory mapped file. The
+   * file is mapped by windows to handle files larger than 2 GB.
+   */
+  private static final class MappedFileSource implements ByteSource {
+
+    private final FileChannel channel;
+    private final long size;
+    private long mappedPosition;
+    private MappedByteBuffer mappedBuffer;
+
+    @Override
+    public int read(final byte[] b, final int offset, final int length)
+        throws IOException {
+
+      if (this.mappedBuffer == null || !this.mappedBuffer.hasRemaining()) {
+
+        if (this.mappedPosition >= this.size) {
+          return -1;
+        }
+
+        final long windowSize =
+            Math.min(MAPPING_WINDOW_SIZE, this.size - this.mappedPosition);
+        this.mappedBuffer = this.channel.map(MapMode.READ_ONLY,
+            this.mappedPosition, windowSize);
+        this.mappedPosition += windowSize;
+      }
+
+      final int n = Math.min(length, this.mappedBuffer.remaining());
+      this.mappedBuffer.get(b, offset, n);
+
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.mappedBuffer = null;
+      this.channel.close();
+    }
+
+    MappedFileSource(final FileChannel channel) throws IOException {
+
+      this.channel = channel;
+      this.size = channel.size();
+    }
+  }
+
+  //
+  // Reading methods
+  //
+
+  /**
+   * Read the next entry of the input. The returned record is always the same
+   * object, its content is overwritten at each call of this method.
+   * @return the record of the reader or null if there is no more entry to read
+   * @throws IOException if an error occurs while reading the input
+   * @throws BadBioEntryException if the entry is not a valid FASTQ entry
+   */
+  public FastqRecord read() throws IOException, BadBioEntryException {
+
+    return read(this.record) ? this.record : null;
+  }
+
+  /**
+   * Read the next entry of the input.
+   * @param record the record to fill
+   * @return true if an entry has been read, false if there is no more entry to
+   *         read
+   * @throws IOException if an error occurs while reading the input
+   * @throws BadBioEntryException if the entry is not a valid FASTQ entry
+   */
+  public boolean read(final FastqRecord record)
+      throws IOException, BadBioEntryException {
+
+    if (record == null) {
+      throw new NullPointerException("record argument cannot be null");
+    }
+
+    // Skip the empty lines between the entries
+    do {
+      if (!readLine()) {
+        return false;
+      }
+    } while (this.lineStart == this.lineEnd);
+
+    if (this.buffer[this.lineStart] != '@') {
+      throw new BadBioEntryException(
+          "Invalid Fastq file. First line of the entry don't start with '@' at line "
+              + this.lineCount,
+          currentLine());
+    }
+    record.setName(this.buffer, this.lineStart + 1,
+        this.lineEnd - this.lineStart - 1);
+
+    // Like FastqReader, the last incomplete entry of the input is ignored
+    if (!readLine()) {
+      return false;
+    }
+    record.setSequence(this.buffer, this.lineStart,
+        this.lineEnd - this.lineStart);
+
+    if (!readLine()) {
+      return false;
+    }
+    if (this.lineStart == this.lineEnd
+        || this.buffer[this.lineStart] != '+') {
+      throw new BadBioEntryException(
+          "Invalid Fastq file. Third line of the entry don't start with '+' at line "
+              + this.lineCount,
+          currentLine());
+    }
+
+    if (!readLine()) {
+      return false;
+    }
+    record.setQuality(this.buffer, this.lineStart,
+        this.lineEnd - this.lineStart);
+
+    return true;
+  }
+
+  /**
+   * Get the number of lines read.
+   * @return the number of lines read
+   */
+  public long getLineCount() {
+
+    return this.lineCount;
+  }
+
+  /**
+   * Read the next line of the input. After the call of this method, the
+   * trimmed line is between the lineStart and lineEnd fields in the buffer.
+   * @return true if a line has been read
+   * @throws IOException if an error occurs while reading the input
+   */
+  private boolean readLine() throws IOException {
+
+    int searchStart = this.position;
+
+    while (true) {
+
+      // Search the end of the line
+      for (int i = searchStart; i < this.limit; i++) {
+        if (this.buffer[i] == '\n') {
+          setLine(this.position, i);
+          this.position = i + 1;
+          return true;
+        }
+      }
+
+      if (this.endOfInput) {
+
+        // Last line without end of line character
+        if (this.position < this.limit) {
+          setLine(this.position, this.limit);
+          this.position = this.limit;
+          return true;
+        }
+
+        return false;
+      }
+
+      // Move the current line at the beginning of the buffer
+      if (this.position > 0) {
+        System.arraycopy(this.buffer, this.position, this.buffer, 0,
+            this.limit - this.position);
+        this.limit -= this.position;
+        this.position = 0;
+      }
+
+      // Enlarge the buffer for very long lines
+      if (this.limit == this.buffer.length) {
+        this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+      }
+
+      searchStart = this.limit;
+
+      final int n =
+          this.source.read(this.buffer, this.limit, this.buffer.length - this.limit);
+      if (n < 0) {
+        this.endOfInput = true;
+      } else {
+        this.limit += n;
+      }
+    }
+  }
+
+  /**
+   * Set the position of the current line, without its leading and trailing
+   * white spaces.
+   * @param start start of the line
+   * @param end end of the line
+   */
+  private void setLine(final int start, final int end) {
+
+    int s = start;
+    int e = end;
+
+    while (s < e && (this.buffer[s] & 0xff) <= ' ') {
+      s++;
+    }
+
+    while (e > s && (this.buffer[e - 1] & 0xff) <= ' ') {
+      e--;
+    }
+
+    this.lineStart = s;
+    this.lineEnd = e;
+    this.lineCount++;
+  }
+
+  /**
+   * Get the current line as a String.
+   * @return the current line
+   */
+  private String currentLine() {
+
+    return new String(this.buffer, this.lineStart,
+        this.lineEnd - this.lineStart, FASTQ_CHARSET);
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.source.close();
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param is InputStream to use
+   */
+  public FastqRecordReader(final InputStream is) {
+
+    if (is == null) {
+      throw new NullPointerException("InputStream is null");
+    }
+
+    this.source = new InputStreamSource(is);
+  }
+
+  /**
+   * Public constructor.
+   * @param channel channel to use
+   */
+  public FastqRecordReader(final ReadableByteChannel channel) {
+
+    if (channel == null) {
+      throw new NullPointerException("Channel is null");
+    }
+
+    this.source = new ChannelSource(channel);
+  }
+
+  /**
+   * Public constructor. The file is read using memory mapping.
+   * @param file File to use
+   * @throws IOException if an error occurs while opening the file
+   */
+  public FastqRecordReader(final File file) throws IOException {
+
+    if (file == null) {
+      throw new NullPointerException("File is null");
+    }
+
+    this.source =
+        new MappedFileSource(new FileInputStream(file).getChannel());
+  }
+
+  /**
+   * Public constructor. If the file is a local uncompressed file, the file is
+   * read using memory mapping, otherwise the file is read using the
+   * InputStream returned by the {@link DataFile#open()} method.
+   * @param file DataFile to use
+   * @throws IOException if an error occurs while opening the file
+   */
+  public FastqRecordReader(final DataFile file) throws IOException {
+
+    if (file == null) {
+      throw new NullPointerException("File is null");
+    }
+
+    final File localFile = file.isLocalFile() ? file.toFile() : null;
+
+    if (localFile != null
+        && localFile.isFile() && !file.getCompressionType().isCompressed()) {
+      this.source =
+          new MappedFileSource(new FileInputStream(localFile).getChannel());
+    } else {
+      this.source = new InputStreamSource(file.open());
+    }
+  }
+
+}
@@ -0,0 +1,666 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPInputStream;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPOutputStream;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.RuntimeIOException;
+
+/**
+ * This class define a writer that sort the records by coordinate before
+ * writing them in a BAM file. Unlike the sorting of htsjdk, the records are
+ * not kept as objects in the heap: they are encoded in the BAM format and
+ * stored in large byte arrays, and only their sort keys are kept in arrays of
+ * primitives. The memory budget is limited to the half of the maximal heap
+ * size. When the memory budget is reached, the records are sorted and
+ * written in a compressed run in the temporary directory. The runs are merged
+ * when the writer is closed, and the BAM file and its index are written in the
+ * same pass.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class SortedBAMWriter implements Closeable {
+
+  private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+  private static final int INDEX_ENTRY_SIZE = 2 * Long.SIZE / Byte.SIZE;
+  private static final int INITIAL_INDEX_SIZE = 1024;
+  private static final int RUN_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+  private final File bamFile;
+  private final SAMFileHeader header;
+  private final int compressionLevel;
+  private final boolean createIndex;
+  private final File tmpDir;
+  private final int threadNumber;
+  private final long memoryBudget;
+  private final int slabSize;
+
+  private final BAMRecordCodec encoder;
+  private final EncodedRecord encodedRecord = new EncodedRecord();
+
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private int currentSlab;
+  private long[] keys = new long[INITIAL_INDEX_SIZE];
+  private long[] pointers = new long[INITIAL_INDEX_SIZE];
+  private int count;
+  private long usedMemory;
+
+  private final List<File> runs = new ArrayList<>();
+  private long recordCount;
+  private boolean closed;
+
+  //
+  // Record sources
+  //
+
+  /**
+   * This class define a source of sorted encoded records.
+   */
+  private abstract static class RecordSource {
+
+    protected int index;
+    protected long key;
+    protected byte[] record = new byte[1024];
+    protected int length;
+
+    /**
+     * Read the next record.
+     * @return false if there is no more record to read
+     * @throws IOException if an error occurs while reading the record
+     */
+    abstract boolean next() throws IOException;
+
+    /**
+     * Close the source.
+     * @throws IOException if an error occurs while closing the source
+     */
+    void close() throws IOException {
+    }
+
+    /**
+     * Ensure that the record buffer is large enough.
+     * @param size the required size
+     */
+    void ensureCapacity(final int size) {
+
+      if (this.record.length < size) {
+        this.record = Arrays.copyOf(this.record,
+            Math.max(size, 2 * this.record.length));
+      }
+    }
+  }
+
+  /**
+   * This class define a source of records from the sorted memory buffers.
+   */
+  private final class MemorySource extends RecordSource {
+
+    private int next;
+
+    @Override
+    boolean next() {
+
+      if (this.next == count) {
+        return false;
+      }
+
+      final long pointer = pointers[this.next];
+      this.key = keys[this.next];
+      this.next++;
+
+      // The records start with their length in little endian order
+      final ByteBuffer slab = slabs.get((int) (pointer >>> 32)).duplicate()
+          .order(ByteOrder.LITTLE_ENDIAN);
+      slab.position((int) pointer);
+      this.length = slab.getInt() + 4;
+      slab.position((int) pointer);
+
+      ensureCapacity(this.length);
+      slab.get(this.record, 0, this.length);
+
+      return true;
+    }
+  }
+
+  /**
+   * This class define a source of records from a run file.
+   */
+  private final class RunSource extends RecordSource {
+
+    private final DataInputStream in;
+
+    @Override
+    boolean next() throws IOException {
+
+      try {
+        this.key = this.in.readLong();
+      } catch (EOFException e) {
+        return false;
+      }
+
+      this.length = this.in.readInt();
+      ensureCapacity(this.length);
+      this.in.readFully(this.record, 0, this.length);
+
+      return true;
+    }
+
+    @Override
+    void close() throws IOException {
+
+      this.in.close();
+    }
+
+    RunSource(final int index, final File file) throws IOException {
+
+      this.index = index;
+      final InputStream is = new FileInputStream(file);
+      this.in = new DataInputStream(new BufferedInputStream(
+          threadNumber > 1 ? new ParallelGZIPInputStream(is, threadNumber)
+              : new GZIPInputStream(is)));
+    }
+  }
+
+  //
+  // Writer methods
+  //
+
+  /**
+   * Add a record.
+   * @param record the record to add
+   * @throws IOException if an error occurs while writing the record
+   */
+  public void write(final SAMRecord record) throws IOException {
+
+    if (record == null) {
+      throw new NullPointerException("record argument cannot be null");
+    }
+
+    if (this.closed) {
+      throw new IOException("The writer is closed");
+    }
+
+    // Encode the record
+    this.encodedRecord.reset();
+    try {
+      this.encoder.encode(record);
+    } catch (RuntimeIOException e) {
+      throw new IOException(e.getMessage(), e.getCause());
+    }
+    final int length = this.encodedRecord.size();
+
+    // Spill the records in a run when the memory budget is reached
+    if (this.count > 0
+        && this.usedMemory + length + INDEX_ENTRY_SIZE > this.memoryBudget) {
+      writeRun();
+    }
+
+    // Get the slab where store the record
+    ByteBuffer slab = getSlab(this.currentSlab, length);
+    while (slab.remaining() < length) {
+      slab = getSlab(++this.currentSlab, length);
+    }
+
+    if (this.count == this.keys.length) {
+      this.keys = Arrays.copyOf(this.keys, 2 * this.count);
+      this.pointers = Arrays.copyOf(this.pointers, 2 * this.count);
+    }
+
+    this.keys[this.count] = sortKey(record);
+    this.pointers[this.count] =
+        (long) this.currentSlab << 32 | slab.position();
+    this.count++;
+
+    slab.put(this.encodedRecord.getBuffer(), 0, length);
+    this.usedMemory += length + INDEX_ENTRY_SIZE;
+    this.recordCount++;
+  }
+
+  /**
+   * Get the number of records written.
+   * @return the number of records written
+   */
+  public long getRecordCount() {
+
+    return this.recordCount;
+  }
+
+  /**
+   * Get the number of runs written in the temporary directory.
+   * @return the number of runs
+   */
+  public int getRunCount() {
+
+    return this.runs.size();
+  }
+
+  /**
+   * Sort the records and write the BAM file. The temporary files are removed.
+   * @throws IOException if an error occurs while writing the BAM file
+   */
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+
+    final List<RecordSource> sources = new ArrayList<>();
+
+    try {
+
+      if (this.runs.isEmpty()) {
+
+        // All the records are in memory
+        sortIndex();
+        sources.add(new MemorySource());
+      } else {
+
+        if (this.count > 0) {
+          writeRun();
+        }
+
+        EoulsanLogger.getLogger().fine(
+            "Merge " + this.runs.size() + " sorted runs of BAM records");
+
+        for (File run : this.runs) {
+          sources.add(new RunSource(sources.size(), run));
+        }
+      }
+
+      writeBAM(sources);
+
+    } finally {
+
+      for (RecordSource source : sources) {
+        source.close();
+      }
+
+      deleteRuns();
+    }
+  }
+
+  /**
+   * Discard the records and remove the temporary files without writing the
+   * BAM file. This method must be used instead of close() when the input of
+   * the writer has not been fully read.
+   */
+  public void abort() {
+
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+
+    deleteRuns();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Remove the runs written in the temporary directory and release the
+   * memory used by the records.
+   */
+  private void deleteRuns() {
+
+    for (File run : this.runs) {
+      if (!run.delete()) {
+        EoulsanLogger.getLogger()
+            .warning("Unable to remove temporary file: " + run);
+      }
+    }
+
+    this.slabs.clear();
+  }
+
+  /**
+   * Get a slab. The slabs are allocated when needed.
+   * @param index index of the slab
+   * @param minSize minimal size of the slab if it must be allocated
+   * @return a ByteBuffer
+   */
+  private ByteBuffer getSlab(final int index, final int minSize) {
+
+    if (index == this.slabs.size()) {
+      this.slabs
+          .add(ByteBuffer.allocate(Math.max(this.slabSize, minSize)));
+    }
+
+    return this.slabs.get(index);
+  }
+
+  /**
+   * Sort the records in memory and write them in a compressed run file.
+   * @throws IOException if an error occurs while writing the run
+   */
+  private void writeRun() throws IOException {
+
+    sortIndex();
+
+    final File runFile =
+        File.createTempFile("eoulsan-sort-", ".run", this.tmpDir);
+    this.runs.add(runFile);
+
+    final MemorySource source = new MemorySource();
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new ParallelGZIPOutputStream(
+            new FileOutputStream(runFile), this.threadNumber,
+            RUN_COMPRESSION_LEVEL)))) {
+
+      while (source.next()) {
+        out.writeLong(source.key);
+        out.writeInt(source.length);
+        out.write(source.record, 0, source.length);
+      }
+    }
+
+    EoulsanLogger.getLogger().fine("Write a sorted run of "
+        + this.count + " BAM records in " + runFile);
+
+    // Reuse the slabs for the next records
+    for (ByteBuffer slab : this.slabs) {
+      slab.clear();
+    }
+    this.currentSlab = 0;
+    this.count = 0;
+    this.usedMemory = 0;
+  }
+
+  /**
+   * Merge the sorted sources and write the BAM file and its index.
+   * @param sources the sorted sources
+   * @throws IOException if an error occurs while writing the BAM file
+   */
+  private void writeBAM(final List<RecordSource> sources) throws IOException {
+
+    // The sources contain records in insertion order for a same key
+    final PriorityQueue<RecordSource> queue = new PriorityQueue<>(
+        Math.max(1, sources.size()), new Comparator<RecordSource>() {
+
+          @Override
+          public int compare(final RecordSource a, final RecordSource b) {
+
+            final int result = Long.compare(a.key, b.key);
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+          }
+        });
+
+    for (RecordSource source : sources) {
+      if (source.next()) {
+        queue.add(source);
+      }
+    }
+
+    final BAMRecordCodec decoder = new BAMRecordCodec(this.header);
+    final RecordInputStream recordIn = new RecordInputStream();
+    decoder.setInputStream(recordIn);
+
+    final SAMFileWriter writer = new SAMFileWriterFactory()
+        .setCreateIndex(this.createIndex).setTempDirectory(this.tmpDir)
+        .makeBAMWriter(this.header, true, this.bamFile, this.compressionLevel);
+
+    try {
+      while (!queue.isEmpty()) {
+
+        final RecordSource source = queue.poll();
+
+        recordIn.set(source.record, source.length);
+        writer.addAlignment(decoder.decode());
+
+        if (source.next()) {
+          queue.add(source);
+        }
+      }
+    } catch (RuntimeIOException e) {
+      throw new IOException(e.getMessage(), e.getCause());
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Sort the index of the records in memory by key. As the pointers increase
+   * with the insertion order, sorting by key then pointer keeps the insertion
+   * order of the records with the same key.
+   */
+  private void sortIndex() {
+
+    final int n = this.count;
+    long[] srcKeys = this.keys;
+    long[] srcPointers = this.pointers;
+    long[] dstKeys = new long[n];
+    long[] dstPointers = new long[n];
+
+    // Bottom-up merge sort on the two parallel arrays
+    for (int width = 1; width < n; width *= 2) {
+
+      for (int lo = 0; lo < n; lo += 2 * width) {
+
+        final int mid = Math.min(lo + width, n);
+        final int hi = Math.min(lo + 2 * width, n);
+        int i = lo;
+        int j = mid;
+
+        for (int k = lo; k < hi; k++) {
+
+          if (i < mid && (j >= hi || srcKeys[i] <= srcKeys[j])) {
+            dstKeys[k] = srcKeys[i];
+            dstPointers[k] = srcPointers[i++];
+          } else {
+            dstKeys[k] = srcKeys[j];
+            dstPointers[k] = srcPointers[j++];
+          }
+        }
+      }
+
+      final long[] tmpKeys = srcKeys;
+      final long[] tmpPointers = srcPointers;
+      srcKeys = dstKeys;
+      srcPointers = dstPointers;
+      dstKeys = tmpKeys;
+      dstPointers = tmpPointers;
+    }
+
+    if (srcKeys != this.keys) {
+      System.arraycopy(srcKeys, 0, this.keys, 0, n);
+      System.arraycopy(srcPointers, 0, this.pointers, 0, n);
+    }
+  }
+
+  /**
+   * Get the sort key of a record. The records are sorted by reference index
+   * then by alignment start, the unmapped records without reference are at
+   * the end like in htsjdk.
+   * @param record the record
+   * @return the sort key of the record
+   */
+  static long sortKey(final SAMRecord record) {
+
+    final int referenceIndex = record.getReferenceIndex();
+
+    if (referenceIndex < 0) {
+      return (long) Integer.MAX_VALUE << 32;
+    }
+
+    return (long) referenceIndex << 32
+        | record.getAlignmentStart() & 0xffffffffL;
+  }
+
+  /**
+   * This class define an output stream for the encoding of a record.
+   */
+  private static final class EncodedRecord extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+
+      return this.buf;
+    }
+  }
+
+  /**
+   * This class define an input stream on the bytes of a record.
+   */
+  private static final class RecordInputStream extends InputStream {
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    void set(final byte[] buffer, final int length) {
+
+      this.buffer = buffer;
+      this.position = 0;
+      this.limit = length;
+    }
+
+    @Override
+    public int read() {
+
+      return this.position < this.limit ? this.buffer[this.position++] & 0xff
+          : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+
+      if (this.position >= this.limit) {
+        return -1;
+      }
+
+      final int n = Math.min(len, this.limit - this.position);
+      System.arraycopy(this.buffer, this.position, b, off, n);
+      this.position += n;
+
+      return n;
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param bamFile the output BAM file
+   * @param header the header of the BAM file. The sort order of the BAM file
+   *          is set to coordinate, the header is not modified
+   * @param compressionLevel the compression level of the BAM file
+   * @param createIndex true if the index of the BAM file must be created
+   * @param memoryBudget the maximal memory in bytes to use to store the
+   *          records. The budget is limited to the half of the maximal heap
+   *          size
+   * @param tmpDir temporary directory for the sorted runs
+   * @param threadNumber the number of threads to use for the compression of
+   *          the sorted runs
+   */
+  public SortedBAMWriter(final File bamFile, final SAMFileHeader header,
+      final int compressionLevel, final boolean createIndex,
+      final long memoryBudget, final File tmpDir, final int threadNumber) {
+
+    if (bamFile == null) {
+      throw new NullPointerException("bamFile argument cannot be null");
+    }
+
+    if (header == null) {
+      throw new NullPointerException("header argument cannot be null");
+    }
+
+    if (tmpDir == null) {
+      throw new NullPointerException("tmpDir argument cannot be null");
+    }
+
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException(
+          "The memory budget must be greater than 0: " + memoryBudget);
+    }
+
+    if (threadNumber < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads must be greater than 0: " + threadNumber);
+    }
+
+    this.bamFile = bamFile;
+    this.header = header.clone();
+    this.header.setSortOrder(SortOrder.coordinate);
+    this.compressionLevel = compressionLevel;
+    this.createIndex = createIndex;
+    this.tmpDir = tmpDir;
+    this.threadNumber = threadNumber;
+
+    // The records are stored in the heap
+    final long maxBudget = Runtime.getRuntime().maxMemory() / 2;
+    if (memoryBudget > maxBudget) {
+      EoulsanLogger.getLogger()
+          .warning("The memory budget to sort BAM records ("
+              + memoryBudget / (1024 * 1024)
+              + " MB) is greater than the half of the maximal heap size, use "
+              + maxBudget / (1024 * 1024) + " MB instead");
+      this.memoryBudget = maxBudget;
+    } else {
+      this.memoryBudget = memoryBudget;
+    }
+
+    // Larger slabs are allocated for the records that do not fit
+    this.slabSize = (int) Math.max(1024 * 1024,
+        Math.min(MAX_SLAB_SIZE, this.memoryBudget / 4));
+
+    this.encoder = new BAMRecordCodec(this.header);
+    this.encoder.setOutputStream(this.encodedRecord);
+  }
+
+}
@@ -7,12 +7,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.FeatureCounts;
+
 /**
  * This class define a TSV count writer.
  * @author Laurent Jourdren
@@ -23,17 +24,28 @@ public class TSVCountsWriter implements CountsWriter {
   private final OutputStream os;
 
   @Override
-  public void write(Map<String, Integer> counts) throws IOException {
+  public void write(final Map<String, Integer> counts) throws IOException {
+
+    Objects.requireNonNull(counts, "counts argument cannot be null");
+
+    write(FeatureCounts.fromMap(counts));
+  }
+
+  @Override
+  public void write(final FeatureCounts counts) throws IOException {
 
     Objects.requireNonNull(counts, "counts argument cannot be null");
 
     try (Writer writer = new OutputStreamWriter(this.os)) {
-      final List<String> keysSorted = new ArrayList<>(counts.keySet());
+      final List<String> keysSorted = counts.getFeatures();
       Collections.sort(keysSorted);
 
       writer.write("Id\tCount\n");
       for (String key : keysSorted) {
-        writer.write(key + "\t" + counts.get(key) + "\n");
+        writer.write(key);
+        writer.write('\t');
+        writer.write(Long.toString(counts.get(key)));
+        writer.write('\n');
       }
     }
 
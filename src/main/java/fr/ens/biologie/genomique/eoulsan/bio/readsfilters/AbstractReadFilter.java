@@ -24,16 +24,20 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
 
+import java.util.BitSet;
+import java.util.List;
+
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 
 /**
  * This class define an abstract ReadFilter that allow simple Pair-end and
- * Mate-pair filter handling.
+ * Mate-pair filter handling. The batches of reads are tested one read at a
+ * time, filters can override the batch methods with optimized versions.
  * @since 1.0
  * @author Laurent Jourdren
  */
-public abstract class AbstractReadFilter implements ReadFilter {
+public abstract class AbstractReadFilter implements BatchReadFilter {
 
   @Override
   public boolean accept(final ReadSequence read1, final ReadSequence read2) {
@@ -41,6 +45,19 @@ public abstract class AbstractReadFilter implements ReadFilter {
     return accept(read1) && accept(read2);
   }
 
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    BatchReadFilterAdapter.accept(this, reads, accepted);
+  }
+
+  @Override
+  public void accept(final List<ReadSequence> reads1,
+      final List<ReadSequence> reads2, final BitSet accepted) {
+
+    BatchReadFilterAdapter.accept(this, reads1, reads2, accepted);
+  }
+
   @Override
   public void setParameter(final String key, final String value)
       throws EoulsanException {
@@ -0,0 +1,61 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
+
+import java.util.BitSet;
+import java.util.List;
+
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+/**
+ * This interface define a read filter that can process batches of reads. The
+ * result of the filtering of a batch is stored in a bitmap where the bits of
+ * the accepted reads are set. Only the reads whose bit is set when the method
+ * is called are tested, so several filters can be applied successively on the
+ * same batch. Filters that do not implement this interface can be used with
+ * {@link BatchReadFilterAdapter}.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public interface BatchReadFilter extends ReadFilter {
+
+  /**
+   * Tests a batch of reads. The bits of the rejected reads are cleared.
+   * @param reads reads to test
+   * @param accepted bitmap of the reads to test
+   */
+  void accept(List<ReadSequence> reads, BitSet accepted);
+
+  /**
+   * Tests a batch of pairs of reads. The bits of the rejected pairs are
+   * cleared.
+   * @param reads1 first reads of the pairs to test
+   * @param reads2 second reads of the pairs to test
+   * @param accepted bitmap of the pairs to test
+   */
+  void accept(List<ReadSequence> reads1, List<ReadSequence> reads2,
+      BitSet accepted);
+
+}
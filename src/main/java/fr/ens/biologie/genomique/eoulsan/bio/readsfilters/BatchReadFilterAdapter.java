@@ -0,0 +1,183 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.BitSet;
+import java.util.List;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+/**
+ * This class define an adapter that allow to use any ReadFilter as a
+ * BatchReadFilter. The reads of the batches are tested one by one.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class BatchReadFilterAdapter implements BatchReadFilter {
+
+  private final ReadFilter filter;
+
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    accept(this.filter, reads, accepted);
+  }
+
+  @Override
+  public void accept(final List<ReadSequence> reads1,
+      final List<ReadSequence> reads2, final BitSet accepted) {
+
+    accept(this.filter, reads1, reads2, accepted);
+  }
+
+  @Override
+  public boolean accept(final ReadSequence read) {
+
+    return this.filter.accept(read);
+  }
+
+  @Override
+  public boolean accept(final ReadSequence read1, final ReadSequence read2) {
+
+    return this.filter.accept(read1, read2);
+  }
+
+  @Override
+  public String getName() {
+
+    return this.filter.getName();
+  }
+
+  @Override
+  public String getDescription() {
+
+    return this.filter.getDescription();
+  }
+
+  @Override
+  public void setParameter(final String key, final String value)
+      throws EoulsanException {
+
+    this.filter.setParameter(key, value);
+  }
+
+  @Override
+  public void init() throws EoulsanException {
+
+    this.filter.init();
+  }
+
+  /**
+   * Get the adapted filter.
+   * @return the adapted filter
+   */
+  public ReadFilter getFilter() {
+
+    return this.filter;
+  }
+
+  @Override
+  public String toString() {
+
+    return this.filter.toString();
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Get a BatchReadFilter for a filter.
+   * @param filter the filter
+   * @return the filter if it is already a BatchReadFilter or an adapter for the
+   *         filter
+   */
+  public static BatchReadFilter wrap(final ReadFilter filter) {
+
+    requireNonNull(filter, "filter argument cannot be null");
+
+    if (filter instanceof BatchReadFilter) {
+      return (BatchReadFilter) filter;
+    }
+
+    return new BatchReadFilterAdapter(filter);
+  }
+
+  /**
+   * Tests a batch of reads using the single read method of a filter.
+   * @param filter the filter
+   * @param reads reads to test
+   * @param accepted bitmap of the reads to test
+   */
+  static void accept(final ReadFilter filter, final List<ReadSequence> reads,
+      final BitSet accepted) {
+
+    for (int i = accepted.nextSetBit(0); i >= 0; i =
+        accepted.nextSetBit(i + 1)) {
+
+      if (!filter.accept(reads.get(i))) {
+        accepted.clear(i);
+      }
+    }
+  }
+
+  /**
+   * Tests a batch of pairs of reads using the paired method of a filter.
+   * @param filter the filter
+   * @param reads1 first reads of the pairs to test
+   * @param reads2 second reads of the pairs to test
+   * @param accepted bitmap of the pairs to test
+   */
+  static void accept(final ReadFilter filter, final List<ReadSequence> reads1,
+      final List<ReadSequence> reads2, final BitSet accepted) {
+
+    for (int i = accepted.nextSetBit(0); i >= 0; i =
+        accepted.nextSetBit(i + 1)) {
+
+      if (!filter.accept(reads1.get(i), reads2.get(i))) {
+        accepted.clear(i);
+      }
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param filter the filter to adapt
+   */
+  public BatchReadFilterAdapter(final ReadFilter filter) {
+
+    requireNonNull(filter, "filter argument cannot be null");
+
+    this.filter = filter;
+  }
+
+}
@@ -24,6 +24,9 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
 
+import java.util.BitSet;
+import java.util.List;
+
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 
@@ -48,6 +51,22 @@ public class LengthReadFilter extends AbstractReadFilter {
     return read.length() > this.minimalLengthThreshold;
   }
 
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    final int threshold = this.minimalLengthThreshold;
+
+    for (int i = accepted.nextSetBit(0); i >= 0; i =
+        accepted.nextSetBit(i + 1)) {
+
+      final ReadSequence read = reads.get(i);
+
+      if (read == null || read.length() <= threshold) {
+        accepted.clear(i);
+      }
+    }
+  }
+
   @Override
   public String getName() {
 
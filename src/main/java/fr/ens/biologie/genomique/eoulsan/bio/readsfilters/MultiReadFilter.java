@@ -25,6 +25,7 @@
 package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
@@ -32,13 +33,15 @@ import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
 
 /**
  * This class define a read filter that calls successively a list of read
- * filters.
+ * filters. In batch mode, each filter processes the whole batch before the
+ * next filter. The filters that are not batch filters are wrapped in a
+ * {@link BatchReadFilterAdapter}.
  * @since 1.0
  * @author Laurent Jourdren
  */
-public class MultiReadFilter implements ReadFilter {
+public class MultiReadFilter implements BatchReadFilter {
 
-  private final List<ReadFilter> list = new ArrayList<>();
+  private final List<BatchReadFilter> list = new ArrayList<>();
   private final ReporterIncrementer incrementer;
   private final String counterGroup;
 
@@ -84,6 +87,43 @@ public class MultiReadFilter implements ReadFilter {
     return true;
   }
 
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    for (BatchReadFilter rf : this.list) {
+
+      final int before = accepted.cardinality();
+      rf.accept(reads, accepted);
+      incrementRejectedCounter(rf, before - accepted.cardinality());
+    }
+  }
+
+  @Override
+  public void accept(final List<ReadSequence> reads1,
+      final List<ReadSequence> reads2, final BitSet accepted) {
+
+    for (BatchReadFilter rf : this.list) {
+
+      final int before = accepted.cardinality();
+      rf.accept(reads1, reads2, accepted);
+      incrementRejectedCounter(rf, before - accepted.cardinality());
+    }
+  }
+
+  /**
+   * Increment the counter of the reads rejected by a filter.
+   * @param filter the filter
+   * @param count the number of reads rejected by the filter
+   */
+  private void incrementRejectedCounter(final ReadFilter filter,
+      final int count) {
+
+    if (this.incrementer != null && count > 0) {
+      this.incrementer.incrCounter(this.counterGroup,
+          "reads rejected by " + filter.getName() + " filter", count);
+    }
+  }
+
   /**
    * Add a filter to the multi filter.
    * @param filter filter to add
@@ -91,7 +131,7 @@ public class MultiReadFilter implements ReadFilter {
   public void addFilter(final ReadFilter filter) {
 
     if (filter != null) {
-      this.list.add(filter);
+      this.list.add(BatchReadFilterAdapter.wrap(filter));
     }
 
   }
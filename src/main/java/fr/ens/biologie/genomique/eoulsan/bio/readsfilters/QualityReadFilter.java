@@ -26,6 +26,9 @@ package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
 
 import static fr.ens.biologie.genomique.eoulsan.util.StatUtils.mean;
 
+import java.util.BitSet;
+import java.util.List;
+
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 
@@ -47,7 +50,47 @@ public class QualityReadFilter extends AbstractReadFilter {
       return false;
     }
 
-    return mean(read.qualityScores()) > this.qualityThreshold;
+    return meanQuality(read) > this.qualityThreshold;
+  }
+
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    final double threshold = this.qualityThreshold;
+
+    for (int i = accepted.nextSetBit(0); i >= 0; i =
+        accepted.nextSetBit(i + 1)) {
+
+      final ReadSequence read = reads.get(i);
+
+      if (read == null || !(meanQuality(read) > threshold)) {
+        accepted.clear(i);
+      }
+    }
+  }
+
+  /**
+   * Compute the mean quality score of a read without creating an array of
+   * scores.
+   * @param read the read
+   * @return the mean quality score of the read
+   */
+  private static double meanQuality(final ReadSequence read) {
+
+    final String quality = read.getQuality();
+
+    if (quality == null) {
+      return mean(read.qualityScores());
+    }
+
+    final int len = quality.length();
+    long sum = 0;
+    for (int i = 0; i < len; i++) {
+      sum += quality.charAt(i);
+    }
+
+    return (double) (sum - (long) len * read.getFastqFormat().getAsciiOffset())
+        / len;
   }
 
   @Override
@@ -24,7 +24,8 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
 
-import java.util.regex.Pattern;
+import java.util.BitSet;
+import java.util.List;
 
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 
@@ -36,7 +37,6 @@ import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 public class TrimPolyNEndReadFilter extends AbstractReadFilter {
 
   public static final String FILTER_NAME = "trimpolynend";
-  private static final Pattern PATTERN = Pattern.compile("NN+$");
 
   @Override
   public boolean accept(final ReadSequence read) {
@@ -55,6 +55,28 @@ public class TrimPolyNEndReadFilter extends AbstractReadFilter {
     return true;
   }
 
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    for (int i = accepted.nextSetBit(0); i >= 0; i =
+        accepted.nextSetBit(i + 1)) {
+
+      final ReadSequence read = reads.get(i);
+
+      if (read == null) {
+        accepted.clear(i);
+        continue;
+      }
+
+      trim(read);
+
+      // Do no accept 0 length reads
+      if (read.length() == 0) {
+        accepted.clear(i);
+      }
+    }
+  }
+
   /**
    * Trim the read sequence and quality if ends with polyN.
    * @param read Read to trim
@@ -68,20 +90,22 @@ public class TrimPolyNEndReadFilter extends AbstractReadFilter {
       return;
     }
 
-    final String[] splitResult = PATTERN.split(read.getSequence());
+    final String sequence = read.getSequence();
+    final int length = sequence.length();
 
-    // Test if the sequence contains only N nucleotides
-    if (splitResult == null || splitResult.length == 0) {
-      read.setSequence("");
-      read.setQuality("");
+    // Search the start of the polyN end of the sequence, a single N at the
+    // end of the sequence is not trimmed
+    int end = length;
+    while (end > 0 && sequence.charAt(end - 1) == 'N') {
+      end--;
+    }
 
+    if (length - end < 2) {
       return;
     }
 
-    final ReadSequence tmp = read.subSequence(0, splitResult[0].length());
-
-    read.setSequence(tmp.getSequence());
-    read.setQuality(tmp.getQuality());
+    read.setSequence(sequence.substring(0, end));
+    read.setQuality(read.getQuality().substring(0, end));
   }
 
   @Override
@@ -24,7 +24,8 @@
 
 package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
 
-import java.util.regex.Pattern;
+import java.util.BitSet;
+import java.util.List;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
@@ -39,7 +40,6 @@ import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 public class TrimReadFilter extends AbstractReadFilter {
 
   public static final String FILTER_NAME = "trim";
-  private static final Pattern PATTERN = Pattern.compile("NN+$");
 
   private int lengthThreshold;
 
@@ -49,27 +49,7 @@ public class TrimReadFilter extends AbstractReadFilter {
    */
   public static final void trim(final ReadSequence read) {
 
-    if (read == null
-        || read.getSequence() == null || read.getQuality() == null
-        || read.getSequence().length() != read.getQuality().length()
-        || read.getSequence().length() == 0) {
-      return;
-    }
-
-    final String[] splitResult = PATTERN.split(read.getSequence());
-
-    // Test if the sequence contains only N nucleotides
-    if (splitResult == null || splitResult.length == 0) {
-      read.setSequence("");
-      read.setQuality("");
-
-      return;
-    }
-
-    final ReadSequence tmp = read.subSequence(0, splitResult[0].length());
-
-    read.setSequence(tmp.getSequence());
-    read.setQuality(tmp.getQuality());
+    TrimPolyNEndReadFilter.trim(read);
   }
 
   @Override
@@ -84,6 +64,29 @@ public class TrimReadFilter extends AbstractReadFilter {
     return read.length() > this.lengthThreshold;
   }
 
+  @Override
+  public void accept(final List<ReadSequence> reads, final BitSet accepted) {
+
+    final int threshold = this.lengthThreshold;
+
+    for (int i = accepted.nextSetBit(0); i >= 0; i =
+        accepted.nextSetBit(i + 1)) {
+
+      final ReadSequence read = reads.get(i);
+
+      if (read == null) {
+        accepted.clear(i);
+        continue;
+      }
+
+      TrimPolyNEndReadFilter.trim(read);
+
+      if (read.length() <= threshold) {
+        accepted.clear(i);
+      }
+    }
+  }
+
   @Override
   public String getName() {
 
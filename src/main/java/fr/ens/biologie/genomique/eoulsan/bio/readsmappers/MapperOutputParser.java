@@ -0,0 +1,480 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsmappers;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.util.StringLineReader;
+
+/**
+ * This class allow to parse the SAM output of a mapper with several threads.
+ * The output of the mapper is read as batches of complete lines that are
+ * processed in parallel. The results of the processing of the batches are then
+ * handled in the thread that call the parse() method, in the order of the
+ * batches or in the order of the end of their processing.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class MapperOutputParser {
+
+  private static final int DEFAULT_BATCH_SIZE = 1024 * 1024;
+  private static final int HEADER_BUFFER_SIZE = 64 * 1024;
+
+  private final int threads;
+  private final boolean ordered;
+  private final int batchSize;
+
+  /**
+   * This interface define the processing of a batch of SAM lines. The
+   * implementations of this interface must be thread safe.
+   * @param <R> type of the result of the processing
+   */
+  public interface BatchProcessor<R> {
+
+    /**
+     * Process a batch of lines.
+     * @param header SAM header of the mapper output
+     * @param batch the batch to process
+     * @return the result of the processing
+     * @throws IOException if an error occurs while processing the batch
+     */
+    R process(SAMFileHeader header, Batch batch) throws IOException;
+  }
+
+  /**
+   * This interface define the handling of the results of the processing of
+   * the batches. The methods of this interface are always called by the
+   * thread that call the parse() method.
+   * @param <R> type of the result of the processing
+   */
+  public interface ResultHandler<R> {
+
+    /**
+     * Handle the SAM header of the mapper output. This method is called before
+     * the handling of the first result.
+     * @param header the SAM header
+     * @throws IOException if an error occurs while handling the header
+     */
+    void header(SAMFileHeader header) throws IOException;
+
+    /**
+     * Handle the result of the processing of a batch.
+     * @param result the result to handle
+     * @throws IOException if an error occurs while handling the result
+     */
+    void result(R result) throws IOException;
+  }
+
+  /**
+   * This class define a batch of complete SAM lines. The first batch starts
+   * with the header lines of the SAM output.
+   */
+  public static final class Batch {
+
+    private final byte[] data;
+    private final int length;
+
+    /**
+     * Get the bytes of the batch.
+     * @return an array of bytes. Only the first getLength() bytes of the array
+     *         belong to the batch
+     */
+    public byte[] getData() {
+      return this.data;
+    }
+
+    /**
+     * Get the length of the batch.
+     * @return the length in bytes of the batch
+     */
+    public int getLength() {
+      return this.length;
+    }
+
+    /**
+     * Get the lines of the batch. Empty lines are skipped and the lines are
+     * trimmed.
+     * @return a list with the lines of the batch
+     */
+    public List<String> getLines() {
+
+      final List<String> result = new ArrayList<>();
+
+      int start = 0;
+      while (start < this.length) {
+
+        final int end = lineEnd(start);
+
+        // Trim the line
+        int s = start;
+        int e = end;
+        while (s < e && this.data[s] <= ' ') {
+          s++;
+        }
+        while (e > s && this.data[e - 1] <= ' ') {
+          e--;
+        }
+
+        if (s < e) {
+          result.add(
+              new String(this.data, s, e - s, StandardCharsets.ISO_8859_1));
+        }
+
+        start = end + 1;
+      }
+
+      return result;
+    }
+
+    /**
+     * Get the number of alignments in the batch.
+     * @return the number of alignments in the batch
+     */
+    public int getAlignmentCount() {
+
+      int result = 0;
+
+      int start = 0;
+      while (start < this.length) {
+
+        final int end = lineEnd(start);
+
+        int s = start;
+        while (s < end && this.data[s] <= ' ') {
+          s++;
+        }
+
+        // Header lines and empty lines are not alignments
+        if (s < end && this.data[s] != '@') {
+
+          for (int i = s; i < end; i++) {
+            if (this.data[i] == '\t') {
+              result++;
+              break;
+            }
+          }
+        }
+
+        start = end + 1;
+      }
+
+      return result;
+    }
+
+    /**
+     * Get the position of the end of a line.
+     * @param start start position of the line
+     * @return the position of the end of line character or the length of the
+     *         batch if the last line has no end of line character
+     */
+    private int lineEnd(final int start) {
+
+      for (int i = start; i < this.length; i++) {
+        if (this.data[i] == '\n') {
+          return i;
+        }
+      }
+
+      return this.length;
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param data data of the batch
+     * @param length length of the batch
+     */
+    Batch(final byte[] data, final int length) {
+
+      this.data = data;
+      this.length = length;
+    }
+  }
+
+  //
+  // Parsing
+  //
+
+  /**
+   * Parse the output of a mapper.
+   * @param is the output of the mapper
+   * @param processor the processor of the batches
+   * @param handler the handler of the results
+   * @throws IOException if an error occurs while reading, processing or
+   *           handling the data
+   */
+  public <R> void parse(final InputStream is,
+      final BatchProcessor<R> processor, final ResultHandler<R> handler)
+      throws IOException {
+
+    requireNonNull(is, "is argument cannot be null");
+    requireNonNull(processor, "processor argument cannot be null");
+    requireNonNull(handler, "handler argument cannot be null");
+
+    final InputStream in = new BufferedInputStream(is, HEADER_BUFFER_SIZE);
+
+    // The header must be read before processing the first batch, as the
+    // processing of alignments may require the sequence dictionary
+    final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    final int firstByte = readHeader(in, headerBytes);
+
+    final String headerText =
+        new String(headerBytes.toByteArray(), StandardCharsets.ISO_8859_1);
+    final SAMFileHeader header = new SAMTextHeaderCodec()
+        .decode(new StringLineReader(headerText), "mapper output");
+
+    handler.header(header);
+
+    // The first batch starts with the header lines
+    byte[] buffer =
+        Arrays.copyOf(headerBytes.toByteArray(),
+            Math.max(this.batchSize, headerBytes.size() + 1));
+    int length = headerBytes.size();
+    if (firstByte != -1) {
+      buffer[length++] = (byte) firstByte;
+    }
+
+    final ExecutorService executor =
+        this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+    final Deque<Future<R>> pending = new ArrayDeque<>();
+    final CompletionService<R> completionService = executor == null
+        ? null : new ExecutorCompletionService<R>(executor);
+    final int maxPending = 2 * this.threads;
+    int pendingCount = 0;
+
+    try {
+
+      boolean eof = firstByte == -1;
+
+      while (!eof || length > 0) {
+
+        // Fill the buffer
+        while (!eof && length < buffer.length) {
+
+          final int n = in.read(buffer, length, buffer.length - length);
+          if (n == -1) {
+            eof = true;
+          } else {
+            length += n;
+          }
+        }
+
+        // Cut the batch after the last end of line
+        int batchLength = length;
+        if (!eof) {
+
+          batchLength = lastLineEnd(buffer, length) + 1;
+
+          // The buffer only contains a part of a line, enlarge the buffer
+          if (batchLength == 0) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            continue;
+          }
+        }
+
+        final Batch batch = new Batch(buffer, batchLength);
+
+        // Copy the remaining bytes in a new buffer
+        final int remaining = length - batchLength;
+        final byte[] newBuffer =
+            new byte[Math.max(this.batchSize, remaining + 1)];
+        System.arraycopy(buffer, batchLength, newBuffer, 0, remaining);
+        buffer = newBuffer;
+        length = remaining;
+
+        // Process the batch in the current thread
+        if (executor == null) {
+          handler.result(processor.process(header, batch));
+          continue;
+        }
+
+        final Callable<R> task = new Callable<R>() {
+
+          @Override
+          public R call() throws Exception {
+            return processor.process(header, batch);
+          }
+        };
+
+        if (this.ordered) {
+
+          if (pending.size() == maxPending) {
+            handler.result(getResult(pending.removeFirst()));
+          }
+          pending.addLast(executor.submit(task));
+
+        } else {
+
+          if (pendingCount == maxPending) {
+            handler.result(getResult(completionService.take()));
+            pendingCount--;
+          }
+          completionService.submit(task);
+          pendingCount++;
+        }
+      }
+
+      // Handle the last results
+      while (!pending.isEmpty()) {
+        handler.result(getResult(pending.removeFirst()));
+      }
+      for (; pendingCount > 0; pendingCount--) {
+        handler.result(getResult(completionService.take()));
+      }
+
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    } finally {
+
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Read the header lines of the SAM output.
+   * @param in the input stream to read
+   * @param out the output stream for the header lines
+   * @return the first byte after the header or -1 if the end of the stream
+   *         has been reached
+   * @throws IOException if an error occurs while reading the data
+   */
+  private static int readHeader(final InputStream in,
+      final ByteArrayOutputStream out) throws IOException {
+
+    boolean lineStart = true;
+    int c;
+
+    while ((c = in.read()) != -1) {
+
+      if (lineStart && c != '@') {
+        return c;
+      }
+
+      out.write(c);
+      lineStart = c == '\n';
+    }
+
+    return -1;
+  }
+
+  /**
+   * Get the position of the last end of line character in a buffer.
+   * @param buffer the buffer
+   * @param length the length of the data in the buffer
+   * @return the position of the last end of line character or -1 if not found
+   */
+  private static int lastLineEnd(final byte[] buffer, final int length) {
+
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n') {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Get the result of the processing of a batch.
+   * @param future the future of the processing
+   * @return the result of the processing
+   * @throws IOException if an error has occurred while processing the batch
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private static <R> R getResult(final Future<R> future)
+      throws IOException, InterruptedException {
+
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Constructor.
+   * @param threads number of threads to use to process the batches
+   * @param ordered true if the results must be handled in the order of the
+   *          batches
+   */
+  public MapperOutputParser(final int threads, final boolean ordered) {
+
+    this(threads, ordered, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param threads number of threads to use to process the batches
+   * @param ordered true if the results must be handled in the order of the
+   *          batches
+   * @param batchSize the size in bytes of the batches
+   */
+  public MapperOutputParser(final int threads, final boolean ordered,
+      final int batchSize) {
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException(
+          "The batch size must be greater than 0: " + batchSize);
+    }
+
+    this.threads = Math.max(1, threads);
+    this.ordered = ordered;
+    this.batchSize = batchSize;
+  }
+
+}
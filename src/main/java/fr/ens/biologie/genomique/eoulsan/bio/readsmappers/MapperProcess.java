@@ -35,14 +35,18 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperExecutor.Result;
@@ -56,6 +60,9 @@ import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
  */
 public abstract class MapperProcess {
 
+  // Size of the buffer of a named pipe on Linux
+  private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
   private final String mapperName;
   private final String uuid;
   private final MapperExecutor executor;
@@ -258,16 +265,25 @@ public abstract class MapperProcess {
   static class FastqWriterNoThread implements FastqWriter {
 
     final Writer writer;
+    private long charCount;
 
     @Override
     public void write(final String s) throws IOException {
 
       this.writer.write(s);
+      this.charCount += s.length();
     }
 
     @Override
     public void close() throws IOException {
 
+      // If the content of the pipe can fit in the buffer of the pipe, the
+      // reader may not have opened the pipe yet, wait few seconds before
+      // closing the pipe
+      if (this.charCount < PIPE_BUFFER_SIZE) {
+        waitBeforeClosingPipe();
+      }
+
       this.writer.close();
     }
 
@@ -295,48 +311,106 @@ public abstract class MapperProcess {
   }
 
   /**
-   * This class allow to do asynchronous writes in a named piped.
+   * This class allow to do asynchronous writes in a named piped. The reads are
+   * encoded in chunks of bytes that are written in the named pipe by a
+   * dedicated thread. The number of chunks is bounded, so the thread that
+   * produce the reads waits when the mapper does not read its input as fast as
+   * the reads are produced.
    */
   static class FastqWriterThread extends Thread implements FastqWriter {
 
-    // The queue can store a little more than 1,00,000 * 1000 = 100,000,000
-    // characters
-    private static final int MAX_CAPACITY = 100000;
-    private static final int MIN_LINE_SIZE = 1000;
+    // The ring can store 256 * 64 KiB = 16 MiB of reads
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNK_COUNT = 256;
 
-    private volatile boolean closed;
-    private final BlockingDeque<String> queue =
-        new LinkedBlockingDeque<>(MAX_CAPACITY);
-    private final Writer writer;
-    private Exception exception;
+    // Chunk that mark the end of the data
+    private static final ByteBuffer END_CHUNK = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<ByteBuffer> filledChunks =
+        new ArrayBlockingQueue<>(CHUNK_COUNT + 1);
+    private final BlockingQueue<ByteBuffer> freeChunks =
+        new ArrayBlockingQueue<>(CHUNK_COUNT);
+    private int allocatedChunks;
+    private ByteBuffer chunk;
 
-    private int lineCount;
-    private final StringBuilder buffer = new StringBuilder();
+    private final WritableByteChannel channel;
+    private boolean closed;
+    private volatile IOException exception;
+
+    // Metrics
+    private long byteCount;
+    private long writtenByteCount;
+    private long writerWaitingTime;
+    private volatile long pipeIdleTime;
 
     @Override
     public void run() {
 
       try {
-        while (!this.closed || !queue.isEmpty()) {
 
-          if (!this.queue.isEmpty()) {
+        ByteBuffer b;
+
+        do {
 
-            while (!this.queue.isEmpty()) {
+          b = this.filledChunks.poll();
 
-              this.writer.write(queue.take());
+          // Wait the next chunk if the reads are not produced fast enough
+          if (b == null) {
+
+            final long startTime = System.nanoTime();
+            b = this.filledChunks.take();
+            this.pipeIdleTime += System.nanoTime() - startTime;
+          }
+
+          if (b != END_CHUNK) {
+
+            // Once an error has occurred, the chunks are only recycled to
+            // avoid blocking the thread that produce the reads
+            if (this.exception == null) {
+              writeChunk(b);
             }
 
-          } else {
-            Thread.sleep(1000);
+            b.clear();
+            this.freeChunks.add(b);
           }
+
+        } while (b != END_CHUNK);
+
+        // If the content of the pipe can fit in the buffer of the pipe, the
+        // reader may not have opened the pipe yet, wait few seconds before
+        // closing the pipe
+        if (this.exception == null
+            && this.writtenByteCount < PIPE_BUFFER_SIZE) {
+          waitBeforeClosingPipe();
         }
 
-        this.writer.close();
+      } catch (InterruptedException e) {
+        this.exception = new IOException(e);
+      } finally {
+        try {
+          this.channel.close();
+        } catch (IOException e) {
+          if (this.exception == null) {
+            this.exception = e;
+          }
+        }
+      }
+    }
+
+    /**
+     * Write a chunk in the named pipe.
+     * @param b the chunk to write
+     */
+    private void writeChunk(final ByteBuffer b) {
+
+      b.flip();
 
+      try {
+        while (b.hasRemaining()) {
+          this.writtenByteCount += this.channel.write(b);
+        }
       } catch (IOException e) {
         this.exception = e;
-      } catch (InterruptedException e) {
-        this.exception = new IOException(e);
       }
     }
 
@@ -352,45 +426,88 @@ public abstract class MapperProcess {
         throw new IllegalStateException("FastqWriterThread is closed");
       }
 
-      this.buffer.append(s);
-      this.lineCount++;
+      throwExceptionIfExists();
 
-      // We only add lines of about 1000 character in the queue
-      if (this.buffer.length() < MIN_LINE_SIZE || this.lineCount % 4 != 0) {
-        return;
+      final int len = s.length();
+
+      // FASTQ data only contains ISO-8859-1 characters
+      for (int i = 0; i < len; i++) {
+
+        if (!this.chunk.hasRemaining()) {
+          submitChunk();
+          this.chunk = nextFreeChunk();
+        }
+
+        this.chunk.put((byte) s.charAt(i));
       }
 
-      if (this.queue.remainingCapacity() == 0) {
+      this.byteCount += len;
+    }
 
-        this.writer.flush();
+    /**
+     * Submit the current chunk to the thread that write in the named pipe.
+     * @throws IOException if the thread has been interrupted
+     */
+    private void submitChunk() throws IOException {
 
-        while (this.queue.remainingCapacity() == 0) {
+      try {
+        this.filledChunks.put(this.chunk);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
 
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException e) {
-          }
-        }
+    /**
+     * Get the next free chunk. If the ring is full, wait that the mapper read
+     * a chunk.
+     * @return a free chunk
+     * @throws IOException if the thread has been interrupted
+     */
+    private ByteBuffer nextFreeChunk() throws IOException {
+
+      final ByteBuffer result = this.freeChunks.poll();
+
+      if (result != null) {
+        return result;
       }
 
-      this.queue.add(this.buffer.toString());
-      this.buffer.setLength(0);
-      this.lineCount = 0;
+      if (this.allocatedChunks < CHUNK_COUNT) {
+        this.allocatedChunks++;
+        return ByteBuffer.allocate(CHUNK_SIZE);
+      }
 
-      throwExceptionIfExists();
+      try {
+
+        final long startTime = System.nanoTime();
+        final ByteBuffer b = this.freeChunks.take();
+        this.writerWaitingTime += System.nanoTime() - startTime;
+
+        return b;
+
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
     }
 
     /**
-     * Asynchronous close. This method is not synchronized. A call to write()
-     * just after close() may to lead to lose data.
+     * Close the writer and wait that all the data has been written in the
+     * named pipe. This method is not synchronized.
      */
     @Override
     public void close() throws IOException {
 
-      this.queue.add(buffer.toString());
-      this.buffer.setLength(0);
+      if (this.closed) {
+        return;
+      }
+
       this.closed = true;
 
+      // Submit the last chunk and the end of data marker
+      submitChunk();
+      this.chunk = END_CHUNK;
+      submitChunk();
+
+      // Wait the end of the writing thread, that closes the pipe
       try {
         join();
       } catch (InterruptedException e) {
@@ -412,31 +529,70 @@ public abstract class MapperProcess {
     }
 
     //
-    // Constructor
+    // Metrics
     //
 
     /**
-     * Constructor.
-     * @param writer the writer to use to write data
+     * Get the number of bytes written in the named pipe.
+     * @return the number of bytes written in the named pipe
      */
-    public FastqWriterThread(final Writer writer, final String threadName) {
+    long getByteCount() {
 
-      super(threadName);
+      return this.byteCount;
+    }
 
-      this.writer = writer;
+    /**
+     * Get the time spent by the writer waiting that the mapper read its input.
+     * @return the waiting time in milliseconds
+     */
+    long getWriterWaitingTime() {
 
-      // Start the thread
-      start();
+      return TimeUnit.NANOSECONDS.toMillis(this.writerWaitingTime);
     }
 
+    /**
+     * Get the time spent by the named pipe waiting for reads to write.
+     * @return the idle time in milliseconds
+     */
+    long getPipeIdleTime() {
+
+      return TimeUnit.NANOSECONDS.toMillis(this.pipeIdleTime);
+    }
+
+    //
+    // Constructor
+    //
+
     /**
      * Constructor.
      * @param namedPipeFile the named pipe file
+     * @param threadName the name of the thread
      */
     public FastqWriterThread(final File namedPipeFile, final String threadName)
         throws IOException {
 
-      this(createPipeWriter(namedPipeFile), threadName);
+      this(createPipeChannel(namedPipeFile), threadName);
+    }
+
+    /**
+     * Constructor.
+     * @param channel the channel where write the reads
+     * @param threadName the name of the thread
+     */
+    FastqWriterThread(final WritableByteChannel channel,
+        final String threadName) throws IOException {
+
+      super(threadName);
+
+      if (channel == null) {
+        throw new NullPointerException("channel argument cannot be null");
+      }
+
+      this.channel = channel;
+      this.chunk = nextFreeChunk();
+
+      // Start the thread
+      start();
     }
 
   }
@@ -665,13 +821,8 @@ public abstract class MapperProcess {
 
     if (this.writer1 != null) {
 
-      // Wait few seconds before closing the pipe
-      try {
-        Thread.sleep(2000);
-      } catch (InterruptedException e) {
-      }
-
       this.writer1.close();
+      incrWriterCounters(this.writer1);
     }
   }
 
@@ -683,13 +834,8 @@ public abstract class MapperProcess {
 
     if (this.writer2 != null) {
 
-      // Wait few seconds before closing the pipe
-      try {
-        Thread.sleep(2000);
-      } catch (InterruptedException e) {
-      }
-
       this.writer2.close();
+      incrWriterCounters(this.writer2);
     }
   }
 
@@ -701,13 +847,28 @@ public abstract class MapperProcess {
    */
   public void closeEntriesWriter() throws IOException, InterruptedException {
 
-    if (this.writer1 != null) {
-      this.writer1.close();
-    }
+    closeWriter1();
+    closeWriter2();
+  }
 
-    if (this.writer2 != null) {
-      this.writer2.close();
+  /**
+   * Increment the counters of a writer of the mapper input.
+   * @param writer the writer
+   */
+  private void incrWriterCounters(final FastqWriter writer) {
+
+    if (this.incrementer == null || !(writer instanceof FastqWriterThread)) {
+      return;
     }
+
+    final FastqWriterThread w = (FastqWriterThread) writer;
+
+    this.incrementer.incrCounter(this.counterGroup, "mapper input bytes",
+        w.getByteCount());
+    this.incrementer.incrCounter(this.counterGroup,
+        "mapper input writer waiting time in ms", w.getWriterWaitingTime());
+    this.incrementer.incrCounter(this.counterGroup,
+        "mapper input pipe idle time in ms", w.getPipeIdleTime());
   }
 
   //
@@ -826,14 +987,41 @@ public abstract class MapperProcess {
    */
   private static Writer createPipeWriter(final File file) throws IOException {
 
+    final OutputStream os = Channels.newOutputStream(createPipeChannel(file));
+
+    return new OutputStreamWriter(os, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Create pipe channel.
+   * @param file the pipe file to create
+   * @return a channel on the pipe
+   * @throws IOException if an error occurs while creating the pipe or the
+   *           channel
+   */
+  private static FileChannel createPipeChannel(final File file)
+      throws IOException {
+
     FileUtils.createNamedPipe(file);
 
     @SuppressWarnings("resource")
     final RandomAccessFile raf = new RandomAccessFile(file, "rw");
 
-    final OutputStream os = Channels.newOutputStream(raf.getChannel());
+    return raf.getChannel();
+  }
 
-    return new OutputStreamWriter(os, StandardCharsets.ISO_8859_1);
+  /**
+   * Wait few seconds before closing a named pipe. As the pipe is opened in
+   * read/write mode, data still in the buffer of the pipe is lost if the pipe
+   * is closed before the mapper open it.
+   */
+  private static void waitBeforeClosingPipe() {
+
+    try {
+      Thread.sleep(2000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /**
@@ -35,8 +35,8 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
 import fr.ens.biologie.genomique.eoulsan.bio.IlluminaReadId;
-import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecord;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecordReader;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.Data;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
@@ -152,11 +152,12 @@ public class ReadsChecker implements Checker {
       final FastqFormat format, final boolean checkPairMember,
       final int pairMember) throws IOException, BadBioEntryException {
 
-    final FastqReader reader = new FastqReader(is);
+    final FastqRecordReader reader = new FastqRecordReader(is);
 
     int count = 0;
 
-    for (final ReadSequence read : reader) {
+    FastqRecord read;
+    while ((read = reader.read()) != null) {
 
       if (count > maxReadToCheck) {
         break;
@@ -227,7 +228,6 @@ public class ReadsChecker implements Checker {
 
       count++;
     }
-    reader.throwException();
 
     reader.close();
     return true;
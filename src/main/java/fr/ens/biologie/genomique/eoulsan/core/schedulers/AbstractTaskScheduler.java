@@ -52,7 +52,7 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskRunner;
  */
 public abstract class AbstractTaskScheduler implements TaskScheduler {
 
-  private static final int SLEEP_TIME_IN_MS = 500;
+  private static final int MAX_WAITING_TIME_IN_MS = 500;
 
   private final Multimap<Step, Integer> submittedContexts;
   private final Multimap<Step, Integer> runningContexts;
@@ -65,6 +65,8 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
   private volatile boolean isStopped;
   private volatile boolean isPaused;
 
+  private volatile Runnable taskStateListener;
+
   //
   // Protected methods
   //
@@ -146,6 +148,9 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     // Update the UI
     this.status.get(step).setTaskRunning(contextId);
 
+    // Inform the listener
+    fireTaskStateChange();
+
     getLogger().fine("Scheduler: task #"
         + contextId + " (step #" + step.getNumber() + " " + step.getId()
         + ") is running");
@@ -187,11 +192,17 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     synchronized (this) {
       this.runningContexts.remove(step, contextId);
       this.doneContexts.put(step, contextId);
+
+      // Wake up the threads waiting the end of the tasks
+      notifyAll();
     }
 
     // Update the UI
     this.status.get(step).setTaskDone(contextId);
 
+    // Inform the listener
+    fireTaskStateChange();
+
     getLogger().fine("Scheduler: task #"
         + contextId + " (step #" + step.getNumber() + " " + step.getId()
         + ") is done");
@@ -295,6 +306,9 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     // Update the UI
     this.status.get(step).setTaskSubmitted(context.getId());
 
+    // Inform the listener
+    fireTaskStateChange();
+
     getLogger().fine("Scheduler: task #"
         + context.getId() + " (step #" + step.getNumber() + " " + step.getId()
         + ") has been submitted");
@@ -381,14 +395,19 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     // Check execution state
     checkExecutionState();
 
-    while (!isStopped()
-        && (getTaskRunningCount(step) > 0
-            || getTaskSubmittedCount(step) > getTaskDoneCount(step))) {
+    synchronized (this) {
 
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
+      while (!isStopped()
+          && (getTaskRunningCount(step) > 0
+              || getTaskSubmittedCount(step) > getTaskDoneCount(step))) {
+
+        // Wait the notification of the end of a task. The timeout is only a
+        // safety net, the end of each task wakes up the waiting threads
+        try {
+          wait(MAX_WAITING_TIME_IN_MS);
+        } catch (InterruptedException e) {
+          getLogger().severe(e.getMessage());
+        }
       }
     }
   }
@@ -416,6 +435,7 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
 
     synchronized (this) {
       this.isStopped = true;
+      notifyAll();
     }
   }
 
@@ -450,6 +470,7 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
 
     synchronized (this) {
       this.isPaused = false;
+      notifyAll();
     }
   }
 
@@ -461,6 +482,47 @@ public abstract class AbstractTaskScheduler implements TaskScheduler {
     return this.isPaused;
   }
 
+  /**
+   * Wait until the scheduler is resumed or stopped.
+   */
+  protected void waitWhilePaused() {
+
+    synchronized (this) {
+
+      while (this.isPaused && !this.isStopped) {
+
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          getLogger().severe(e.getMessage());
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Set the listener that is called each time a task is submitted, started or
+   * ended.
+   * @param listener the listener
+   */
+  void setTaskStateListener(final Runnable listener) {
+
+    this.taskStateListener = listener;
+  }
+
+  /**
+   * Inform the listener that the state of a task has changed.
+   */
+  private void fireTaskStateChange() {
+
+    final Runnable listener = this.taskStateListener;
+
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
   private void checkExecutionState() {
 
     checkState(this.isStarted, "The scheduler is not started");
@@ -48,7 +48,7 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskContextImpl;
  */
 public class CombinedTaskScheduler implements TaskScheduler, Runnable {
 
-  private static final int SLEEP_TIME_IN_MS = 200;
+  private static final int MAX_WAITING_TIME_IN_MS = 200;
 
   private final AbstractTaskScheduler noTaskScheduler;
   private final AbstractTaskScheduler stdTaskScheduler;
@@ -57,6 +57,7 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
 
   private volatile boolean isStarted;
   private volatile boolean isStopped;
+  private boolean taskStateChanged;
 
   @Override
   public void submit(final Step step, final Set<TaskContextImpl> contexts) {
@@ -199,6 +200,7 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
 
     synchronized (this) {
       this.isStopped = true;
+      notifyAll();
     }
 
     this.noTaskScheduler.stop();
@@ -325,19 +327,35 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
         this.stdTaskScheduler.resume();
       }
 
-      // Wait
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
-      }
-
+      // Wait a change in the state of the tasks of the standard and own
+      // schedulers
       synchronized (this) {
+
+        if (!this.taskStateChanged && !this.isStopped) {
+          try {
+            wait(MAX_WAITING_TIME_IN_MS);
+          } catch (InterruptedException e) {
+            getLogger().severe(e.getMessage());
+          }
+        }
+
+        this.taskStateChanged = false;
         stopped = this.isStopped;
       }
     }
   }
 
+  /**
+   * Wake up the thread that switch between the standard and own schedulers.
+   */
+  private void signalTaskStateChange() {
+
+    synchronized (this) {
+      this.taskStateChanged = true;
+      notifyAll();
+    }
+  }
+
   //
   // Constructor
   //
@@ -348,13 +366,28 @@ public class CombinedTaskScheduler implements TaskScheduler, Runnable {
    */
   public CombinedTaskScheduler(final int threadNumber) {
 
+    this(threadNumber, -1);
+  }
+
+  /**
+   * Constructor.
+   * @param threadNumber number of thread to use by the task scheduler
+   * @param memory memory available for the tasks in MB or -1 if the memory
+   *          must not be used to admit the tasks
+   */
+  public CombinedTaskScheduler(final int threadNumber, final int memory) {
+
     checkArgument(threadNumber > 0, "threadNumber must be > 0");
 
     // Create the schedulers instances
-    this.stdTaskScheduler = new MultiThreadTaskScheduler(threadNumber);
+    this.stdTaskScheduler = new MultiThreadTaskScheduler(threadNumber, memory);
     this.noTaskScheduler = new MonoThreadTaskScheduler();
     this.ownTaskScheduler = new MonoThreadTaskScheduler();
 
+    // Switch between standard and own schedulers as soon as tasks change
+    this.stdTaskScheduler.setTaskStateListener(this::signalTaskStateChange);
+    this.ownTaskScheduler.setTaskStateListener(this::signalTaskStateChange);
+
     this.hadoopCompatibleTaskScheduler =
         EoulsanRuntime.getRuntime().getMode().isHadoopMode()
             ? new HadoopCompatibleTaskScheduler() : null;
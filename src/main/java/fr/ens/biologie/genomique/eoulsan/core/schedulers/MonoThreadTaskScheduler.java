@@ -26,7 +26,8 @@ package fr.ens.biologie.genomique.eoulsan.core.schedulers;
 
 import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 
-import java.util.Queue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Queues;
 
@@ -42,8 +43,9 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
 public class MonoThreadTaskScheduler extends AbstractTaskScheduler
     implements Runnable {
 
-  private static final int SLEEP_TIME_IN_MS = 100;
-  private final Queue<TaskContextImpl> queue = Queues.newLinkedBlockingQueue();
+  private static final int MAX_WAITING_TIME_IN_MS = 100;
+  private final BlockingDeque<TaskContextImpl> queue =
+      Queues.newLinkedBlockingDeque();
 
   //
   // TaskExecutor methods
@@ -76,43 +78,57 @@ public class MonoThreadTaskScheduler extends AbstractTaskScheduler
 
     while (!this.isStopped()) {
 
-      // Do nothing if the queue is empty or the scheduler paused
-      if (!this.isPaused() && !this.queue.isEmpty()) {
-
-        // Get context to execute
-        final TaskContextImpl context = this.queue.remove();
+      // Wait while the scheduler is paused
+      if (this.isPaused()) {
+        waitWhilePaused();
+        continue;
+      }
 
-        // Do nothing if scheduler is stopped
-        if (isStopped()) {
-          return;
-        }
+      // Get context to execute, the timeout allow to check regularly if the
+      // scheduler has been paused or stopped
+      final TaskContextImpl context;
+      try {
+        context =
+            this.queue.poll(MAX_WAITING_TIME_IN_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        getLogger().severe(e.getMessage());
+        continue;
+      }
 
-        // Set task in running state
-        beforeExecuteTask(context);
+      // No task to execute
+      if (context == null) {
+        continue;
+      }
 
-        // Do nothing if scheduler is stopped
-        if (isStopped()) {
-          return;
-        }
+      // The scheduler may have been paused while waiting a task
+      if (this.isPaused()) {
+        this.queue.addFirst(context);
+        continue;
+      }
 
-        // Execute the context
-        final TaskResultImpl result = executeTask(context);
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
+      }
 
-        // Do nothing if scheduler is stopped
-        if (isStopped()) {
-          return;
-        }
+      // Set task in running state
+      beforeExecuteTask(context);
 
-        // Set task in done state
-        afterExecuteTask(context, result);
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
       }
 
-      // Wait
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
+      // Execute the context
+      final TaskResultImpl result = executeTask(context);
+
+      // Do nothing if scheduler is stopped
+      if (isStopped()) {
+        return;
       }
+
+      // Set task in done state
+      afterExecuteTask(context, result);
     }
   }
 
@@ -34,10 +34,15 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeException;
 import fr.ens.biologie.genomique.eoulsan.core.Step;
+import fr.ens.biologie.genomique.eoulsan.core.workflow.AbstractStep;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskContextImpl;
 import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
 
@@ -49,11 +54,14 @@ import fr.ens.biologie.genomique.eoulsan.core.workflow.TaskResultImpl;
 public class MultiThreadTaskScheduler extends AbstractTaskScheduler
     implements Runnable {
 
-  private static final int SLEEP_TIME_IN_MS = 500;
+  private static final int MAX_WAITING_TIME_IN_MS = 500;
   private static final int WAIT_SHUTDOWN_MINUTES = 60;
+  private static final int WAIT_STREAMING_SHUTDOWN_SECONDS = 10;
 
   private final PausableThreadPoolExecutor executor;
+  private final ThreadPoolExecutor streamingExecutor;
   private final Set<Future<TaskThread>> threads = new HashSet<>();
+  private boolean taskEnded;
 
   /**
    * Wrapper class around a call to executeTask methods.
@@ -143,13 +151,25 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
     // Create context thread
     final TaskThread st = new TaskThread(context);
 
-    // Get the number of required processors
-    final int requiredProcessors =
-        context.getCurrentStep().getRequiredProcessors();
+    // Get the number of required processors and the required memory
+    final AbstractStep currentStep = (AbstractStep) step;
+    final int requiredProcessors = currentStep.getRequiredProcessors();
+    final int requiredMemory = currentStep.getRequiredMemory();
+
+    // Tasks of the steps on the critical path of the workflow are started first
+    final int priority = currentStep.getCriticalPathLength();
 
     // Submit the context thread the thread executor
     synchronized (this.threads) {
-      this.threads.add(this.executor.submit(st, st, requiredProcessors));
+
+      // The tasks that read streamed data must be started immediately as the
+      // tasks that write the data wait for them
+      if (context.isStreamingTask()) {
+        this.threads.add(this.streamingExecutor.submit(st, st));
+      } else {
+        this.threads.add(this.executor.submit(st, st, requiredProcessors,
+            requiredMemory, priority));
+      }
     }
   }
 
@@ -170,8 +190,15 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
 
     try {
 
-      // Shutdown the executor
+      // Shutdown the executors
       this.executor.shutdownNow();
+      this.streamingExecutor.shutdownNow();
+
+      // The tasks that read streamed data may be blocked on a named pipe that
+      // cannot be interrupted, so do not wait them too long. Their threads are
+      // daemon threads that do not prevent the exit of the JVM
+      this.streamingExecutor.awaitTermination(WAIT_STREAMING_SHUTDOWN_SECONDS,
+          TimeUnit.SECONDS);
 
       // Wait the termination of current running task
       this.executor.awaitTermination(WAIT_SHUTDOWN_MINUTES, TimeUnit.MINUTES);
@@ -211,7 +238,12 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
 
     while (!this.isStopped()) {
 
-      for (Future<TaskThread> ftt : this.threads) {
+      final List<Future<TaskThread>> threadsToCheck;
+      synchronized (this.threads) {
+        threadsToCheck = new ArrayList<>(this.threads);
+      }
+
+      for (Future<TaskThread> ftt : threadsToCheck) {
 
         // For all finished tasks
         if (ftt.isDone()) {
@@ -238,26 +270,41 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
       }
 
       // Remove the finished tasks from the list of tasks
-      if (!this.threads.isEmpty()) {
+      if (!threadsToRemove.isEmpty()) {
 
-        synchronized (threadsToRemove) {
-          for (Future<TaskThread> ftt : threadsToRemove) {
-            this.threads.remove(ftt);
-          }
+        synchronized (this.threads) {
+          this.threads.removeAll(threadsToRemove);
         }
 
         threadsToRemove.clear();
       }
 
-      // Wait
-      try {
-        Thread.sleep(SLEEP_TIME_IN_MS);
-      } catch (InterruptedException e) {
-        getLogger().severe(e.getMessage());
+      // Wait the end of a task
+      synchronized (this.threads) {
+
+        if (!this.taskEnded) {
+          try {
+            this.threads.wait(MAX_WAITING_TIME_IN_MS);
+          } catch (InterruptedException e) {
+            getLogger().severe(e.getMessage());
+          }
+        }
+        this.taskEnded = false;
       }
     }
   }
 
+  /**
+   * Wake up the thread that check the end of the tasks.
+   */
+  private void signalTaskEnd() {
+
+    synchronized (this.threads) {
+      this.taskEnded = true;
+      this.threads.notifyAll();
+    }
+  }
+
   //
   // Constructor
   //
@@ -268,10 +315,57 @@ public class MultiThreadTaskScheduler extends AbstractTaskScheduler
    */
   public MultiThreadTaskScheduler(final int threadNumber) {
 
+    this(threadNumber, -1);
+  }
+
+  /**
+   * Constructor.
+   * @param threadNumber number of thread to use by the task scheduler
+   * @param memory memory available for the tasks in MB or -1 if the memory
+   *          must not be used to admit the tasks
+   */
+  public MultiThreadTaskScheduler(final int threadNumber, final int memory) {
+
     checkArgument(threadNumber > 0, "threadNumber must be > 0");
 
     // Create executor service
-    this.executor = new PausableThreadPoolExecutor(threadNumber);
+    this.executor = new PausableThreadPoolExecutor(threadNumber, memory) {
+
+      @Override
+      protected void afterExecute(final Runnable task, final Throwable t) {
+
+        super.afterExecute(task, t);
+
+        // The future of the task is now done
+        signalTaskEnd();
+      }
+    };
+
+    // Create the executor service for the tasks that read streamed data
+    final AtomicInteger count = new AtomicInteger();
+    this.streamingExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L,
+        TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        new ThreadFactory() {
+
+          @Override
+          public Thread newThread(final Runnable r) {
+
+            final Thread t =
+                new Thread(r, "streaming-thread-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        }) {
+
+      @Override
+      protected void afterExecute(final Runnable task, final Throwable t) {
+
+        super.afterExecute(task, t);
+
+        // The future of the task is now done
+        signalTaskEnd();
+      }
+    };
   }
 
 }
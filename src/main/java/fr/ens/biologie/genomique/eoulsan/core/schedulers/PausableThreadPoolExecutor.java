@@ -21,34 +21,83 @@
  *      http://outils.genomique.biologie.ens.fr/eoulsan
  *
  */
-
 package fr.ens.biologie.genomique.eoulsan.core.schedulers;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class define a Pausable thread pool executor. This class is based on the
  * javadoc documentation of the ThreadPoolExecutor class.
+ * <p>
+ * The tasks are admitted against a budget of threads and a budget of memory.
+ * The waiting tasks are started by decreasing priority, and then in submission
+ * order. When the task with the highest priority cannot be started, smaller
+ * tasks with a lower priority can be started in the idle slots, unless the
+ * blocked task is waiting for too long.
  * @since 2.0
  */
 public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
 
+  /** Maximal waiting time of a task before stopping the back-filling. */
+  private static final long MAX_BACKFILL_DELAY_MS = 60 * 1000;
+
   private boolean isPaused;
+  private boolean isShutdownRequested;
   private final ReentrantLock pauseLock = new ReentrantLock();
-  private final Condition unPaused = this.pauseLock.newCondition();
 
   private final int maxThreads;
-  private volatile int threadsAvailable;
-  private final Map<Future<?>, Integer> requirements =
+  private final int maxMemory;
+  private int threadsAvailable;
+  private int memoryAvailable;
+  private long submissionCount;
+
+  private final NavigableSet<WaitingTask> waitingTasks = new TreeSet<>();
+  private final Map<Runnable, WaitingTask> runningTasks =
       new ConcurrentHashMap<>();
 
+  /**
+   * This class define a task waiting for its admission.
+   */
+  private static final class WaitingTask implements Comparable<WaitingTask> {
+
+    private final RunnableFuture<?> future;
+    private final int requiredThreads;
+    private final int requiredMemory;
+    private final int priority;
+    private final long order;
+    private final long submissionTime = System.currentTimeMillis();
+
+    @Override
+    public int compareTo(final WaitingTask o) {
+
+      final int comp = Integer.compare(o.priority, this.priority);
+
+      return comp != 0 ? comp : Long.compare(this.order, o.order);
+    }
+
+    WaitingTask(final RunnableFuture<?> future, final int requiredThreads,
+        final int requiredMemory, final int priority, final long order) {
+
+      this.future = future;
+      this.requiredThreads = requiredThreads;
+      this.requiredMemory = requiredMemory;
+      this.priority = priority;
+      this.order = order;
+    }
+  }
+
   /**
    * Submit a task.
    * @param task the task to submmit
@@ -58,65 +107,231 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
    */
   public <T> Future<T> submit(Runnable task, T result, int requiredProcessors) {
 
+    return submit(task, result, requiredProcessors, -1, 0);
+  }
+
+  /**
+   * Submit a task.
+   * @param task the task to submmit
+   * @param result the result
+   * @param requiredProcessors the required processor number
+   * @param requiredMemory the required memory in MB or -1 if the memory
+   *          required by the task is unknown
+   * @param priority the priority of the task, tasks with the highest priority
+   *          are started first
+   * @return a Future task
+   */
+  public <T> Future<T> submit(final Runnable task, final T result,
+      final int requiredProcessors, final int requiredMemory,
+      final int priority) {
+
+    if (task == null) {
+      throw new NullPointerException();
+    }
+
+    if (isShutdown()) {
+      throw new RejectedExecutionException("The executor is shutdown");
+    }
+
     // The number of thread of the task cannot excess the maximal number of
     // threads and if the number of required processors is not set, use 1 as
     // default value
-    int requiredThreads = requiredProcessors < 1
+    final int requiredThreads = requiredProcessors < 1
         ? 1 : Math.min(requiredProcessors, this.maxThreads);
 
-    Future<T> submitResult = super.submit(task, result);
-    this.requirements.put(submitResult, requiredThreads);
+    // The same for the memory, but an unknown requirement does not consume
+    // the memory budget
+    final int memory = requiredMemory < 1
+        ? 0 : this.maxMemory > 0 ? Math.min(requiredMemory, this.maxMemory)
+            : requiredMemory;
+
+    final RunnableFuture<T> future = newTaskFor(task, result);
+
+    admit(future, requiredThreads, memory, priority);
 
-    return submitResult;
+    return future;
   }
 
+  /**
+   * Execute a task. The task requires one thread and an unknown amount of
+   * memory. The submit() and invokeAll() methods inherited from
+   * AbstractExecutorService use this method, so their tasks are also admitted
+   * against the budgets of threads and memory.
+   * @param command the task to execute
+   */
   @Override
-  protected void beforeExecute(final Thread t, final Runnable r) {
+  public void execute(final Runnable command) {
+
+    if (command == null) {
+      throw new NullPointerException();
+    }
 
-    super.beforeExecute(t, r);
+    if (isShutdown()) {
+      throw new RejectedExecutionException("The executor is shutdown");
+    }
+
+    final RunnableFuture<?> future = command instanceof RunnableFuture
+        ? (RunnableFuture<?>) command : newTaskFor(command, null);
+
+    admit(future, 1, 0, 0);
+  }
 
-    // Wait if requirements has not been yet updated
-    while (!this.requirements.containsKey(r)) {
-      sleep();
+  /**
+   * Add a task to the waiting tasks and start the tasks that can be started.
+   * @param future the task
+   * @param requiredThreads the number of threads required by the task
+   * @param requiredMemory the memory required by the task
+   * @param priority the priority of the task
+   */
+  private void admit(final RunnableFuture<?> future, final int requiredThreads,
+      final int requiredMemory, final int priority) {
+
+    this.pauseLock.lock();
+
+    try {
+      this.waitingTasks.add(new WaitingTask(future, requiredThreads,
+          requiredMemory, priority, this.submissionCount++));
+    } finally {
+      this.pauseLock.unlock();
     }
 
-    int requiredThreads = this.requirements.get(r);
+    // Start the task if possible
+    startTasks();
+  }
+
+  /**
+   * Start the waiting tasks that can be started with the available threads and
+   * memory.
+   */
+  private void startTasks() {
 
     this.pauseLock.lock();
 
     try {
-      while (this.isPaused) {
-        this.unPaused.await();
+
+      if (!this.isPaused) {
+
+        final long now = System.currentTimeMillis();
+        final Iterator<WaitingTask> it = this.waitingTasks.iterator();
+
+        while (it.hasNext()) {
+
+          final WaitingTask t = it.next();
+
+          if (t.requiredThreads <= this.threadsAvailable
+              && (this.maxMemory <= 0
+                  || t.requiredMemory <= this.memoryAvailable)) {
+
+            it.remove();
+            startTask(t);
+
+          } else if (now - t.submissionTime > MAX_BACKFILL_DELAY_MS) {
+
+            // Keep the free resources for the blocked task
+            break;
+          }
+        }
+      }
+
+      // Shutdown the executor once all the waiting tasks have been started
+      if (this.isShutdownRequested && this.waitingTasks.isEmpty()) {
+        super.shutdown();
       }
-    } catch (InterruptedException ie) {
-      t.interrupt();
+
     } finally {
       this.pauseLock.unlock();
     }
+  }
+
+  /**
+   * Start a task. This method must be called with the lock held.
+   * @param t the task to start
+   */
+  private void startTask(final WaitingTask t) {
+
+    this.threadsAvailable -= t.requiredThreads;
+    this.memoryAvailable -= t.requiredMemory;
+    this.runningTasks.put(t.future, t);
+
+    try {
+      super.execute(t.future);
+    } catch (RejectedExecutionException e) {
 
-    // Sleep until threads are available
-    while (this.threadsAvailable - requiredThreads < 0) {
-      sleep();
+      this.runningTasks.remove(t.future);
+      this.threadsAvailable += t.requiredThreads;
+      this.memoryAvailable += t.requiredMemory;
+      t.future.cancel(false);
     }
+  }
+
+  @Override
+  protected void afterExecute(Runnable task, Throwable t) {
+
+    final WaitingTask wt = this.runningTasks.remove(task);
+
+    if (wt != null) {
+
+      this.pauseLock.lock();
 
-    synchronized (this) {
-      this.threadsAvailable -= requiredThreads;
+      try {
+        this.threadsAvailable += wt.requiredThreads;
+        this.memoryAvailable += wt.requiredMemory;
+      } finally {
+        this.pauseLock.unlock();
+      }
+
+      // Start the waiting tasks with the released resources
+      startTasks();
     }
 
+    super.afterExecute(task, t);
   }
 
   @Override
-  protected void afterExecute(Runnable task, Throwable t) {
+  public void shutdown() {
 
-    int requiredThreads = this.requirements.get(task);
+    this.pauseLock.lock();
 
-    synchronized (this) {
-      this.threadsAvailable += requiredThreads;
+    try {
+      this.isShutdownRequested = true;
+    } finally {
+      this.pauseLock.unlock();
     }
 
-    this.requirements.remove(task);
+    startTasks();
+  }
 
-    super.afterExecute(task, t);
+  @Override
+  public List<Runnable> shutdownNow() {
+
+    this.pauseLock.lock();
+
+    try {
+      this.isShutdownRequested = true;
+
+      // Cancel the tasks that has not been started
+      for (WaitingTask t : this.waitingTasks) {
+        t.future.cancel(false);
+      }
+      this.waitingTasks.clear();
+
+    } finally {
+      this.pauseLock.unlock();
+    }
+
+    return super.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+
+    this.pauseLock.lock();
+
+    try {
+      return this.isShutdownRequested || super.isShutdown();
+    } finally {
+      this.pauseLock.unlock();
+    }
   }
 
   /**
@@ -142,22 +357,11 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
 
     try {
       this.isPaused = false;
-      this.unPaused.signalAll();
     } finally {
       this.pauseLock.unlock();
     }
-  }
-
-  /**
-   * Sleep 1 second.
-   */
-  private static void sleep() {
 
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      // Do nothing
-    }
+    startTasks();
   }
 
   //
@@ -170,11 +374,25 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
    */
   public PausableThreadPoolExecutor(final int threadNumber) {
 
-    super(threadNumber, threadNumber, 0L, TimeUnit.MILLISECONDS,
+    this(threadNumber, -1);
+  }
+
+  /**
+   * public constructor.
+   * @param threadNumber number of threads
+   * @param memory memory available for the tasks in MB or -1 if the memory
+   *          must not be used to admit the tasks
+   */
+  public PausableThreadPoolExecutor(final int threadNumber, final int memory) {
+
+    super(threadNumber < 1 ? 1 : threadNumber,
+        threadNumber < 1 ? 1 : threadNumber, 0L, TimeUnit.MILLISECONDS,
         new LinkedBlockingQueue<Runnable>());
 
     this.maxThreads = threadNumber < 1 ? 1 : threadNumber;
     this.threadsAvailable = this.maxThreads;
+    this.maxMemory = memory;
+    this.memoryAvailable = memory;
   }
 
 }
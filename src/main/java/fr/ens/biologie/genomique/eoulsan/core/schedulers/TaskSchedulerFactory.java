@@ -32,6 +32,7 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
 import fr.ens.biologie.genomique.eoulsan.Settings;
 import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskScheduler;
 import fr.ens.biologie.genomique.eoulsan.core.schedulers.clusters.ClusterTaskSchedulerService;
+import fr.ens.biologie.genomique.eoulsan.util.LinuxMemInfo;
 
 /**
  * This class define a factory for TaskScheduler that can create only one
@@ -91,9 +92,26 @@ public class TaskSchedulerFactory {
     } else {
 
       // Standard mode
-      scheduler = new CombinedTaskScheduler(threadNumber);
+      scheduler =
+          new CombinedTaskScheduler(threadNumber, getLocalMemory(settings));
+    }
+
+  }
+
+  /**
+   * Get the memory available for the tasks in local mode.
+   * @param settings the settings
+   * @return the memory available for the tasks in MB or -1 if unknown
+   */
+  private static int getLocalMemory(final Settings settings) {
+
+    final int memory = settings.getLocalMemory();
+
+    if (memory > 0) {
+      return memory;
     }
 
+    return new LinuxMemInfo().getMemTotalInMB();
   }
 
   /**
@@ -102,6 +102,8 @@ public abstract class AbstractStep implements Step {
 
   private final DataFile outputDir;
 
+  private transient int criticalPathLength;
+
   //
   // Getters
   //
@@ -285,6 +287,32 @@ public abstract class AbstractStep implements Step {
     return this.parallelizationMode;
   }
 
+  /**
+   * Get the length of the critical path of the step, i.e. the number of steps
+   * of the longest chain of steps that starts with this step and follows the
+   * links of the output ports. The tasks of the steps with the longest critical
+   * path must be executed first to reduce the duration of the workflow.
+   * @return the length of the critical path of the step
+   */
+  public int getCriticalPathLength() {
+
+    // The workflow graph does not change after its creation
+    if (this.criticalPathLength > 0) {
+      return this.criticalPathLength;
+    }
+
+    int max = 0;
+    for (StepOutputPort port : this.outputPorts) {
+      for (StepInputPort link : port.getLinks()) {
+        max = Math.max(max, link.getStep().getCriticalPathLength());
+      }
+    }
+
+    this.criticalPathLength = max + 1;
+
+    return this.criticalPathLength;
+  }
+
   /**
    * Get the data product for the step.
    * @return the data product for the step
@@ -88,6 +88,8 @@ public abstract class AbstractWorkflow implements Workflow {
   private static final String WORKFLOW_GRAPHVIZ_FILENAME = "workflow.dot";
   private static final String WORKFLOW_IMAGE_FILENAME = "workflow.png";
 
+  private static final int MAX_WAITING_TIME_MS = 2000;
+
   private final DataFile localWorkingDir;
   private final DataFile hadoopWorkingDir;
   private final DataFile outputDir;
@@ -112,6 +114,7 @@ public abstract class AbstractWorkflow implements Workflow {
   private final Set<DataFile> deleteOnExitFiles = new HashSet<>();
 
   private volatile boolean shutdownNow;
+  private boolean stepStateChanged;
 
   //
   // Getters
@@ -309,6 +312,10 @@ public abstract class AbstractWorkflow implements Workflow {
       this.states.remove(oldState, step);
       this.states.put(newState, step);
       this.steps.put(step, newState);
+
+      // Wake up the thread that wait the end of the workflow
+      this.stepStateChanged = true;
+      notifyAll();
     }
   }
 
@@ -473,12 +480,8 @@ public abstract class AbstractWorkflow implements Workflow {
     while (!getSortedStepsByState(READY, WAITING, PARTIALLY_DONE, WORKING)
         .isEmpty()) {
 
-      try {
-        // TODO 2000 must be a constant
-        Thread.sleep(2000);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
+      // Wait a change of the state of a step
+      waitStepStateChange();
 
       if (this.shutdownNow) {
 
@@ -540,9 +543,38 @@ public abstract class AbstractWorkflow implements Workflow {
     // Stop the workflow
     stop();
 
+    // Write the pending metadata of the data
+    DataMetadataStorage.getInstance(getOutputDirectory()).flush();
+
     logEndAnalysis(true);
   }
 
+  /**
+   * Wait until the state of a step change or the shutdown of the workflow is
+   * requested. The timeout is only a safety net as each change of step state
+   * wakes up the waiting thread.
+   */
+  private void waitStepStateChange() {
+
+    synchronized (this) {
+
+      if (!this.stepStateChanged && !this.shutdownNow) {
+        try {
+          wait(MAX_WAITING_TIME_MS);
+        } catch (InterruptedException e) {
+          getLogger().severe(
+              "Interrupted while waiting the end of the workflow, stop it");
+
+          // Restore the interrupt flag and stop the workflow
+          Thread.currentThread().interrupt();
+          this.shutdownNow = true;
+        }
+      }
+
+      this.stepStateChanged = false;
+    }
+  }
+
   /**
    * Stop the threads used by the workflow.
    */
@@ -615,6 +647,10 @@ public abstract class AbstractWorkflow implements Workflow {
     // Stop tasks
     EmergencyStopTasks.getInstance().stop();
 
+    // Write the pending metadata of the data, the skipped steps of a next run
+    // load the metadata of their outputs from the storage
+    DataMetadataStorage.getInstance(getOutputDirectory()).flush();
+
     // Close Docker connections
     try {
       DockerManager.closeConnections();
@@ -656,7 +692,11 @@ public abstract class AbstractWorkflow implements Workflow {
       @Override
       public void run() {
 
-        workflow.shutdownNow = true;
+        synchronized (workflow) {
+          workflow.shutdownNow = true;
+          workflow.notifyAll();
+        }
+
         try {
           mainThread.join();
         } catch (InterruptedException e) {
@@ -58,6 +58,10 @@ class DataElement extends AbstractData implements Serializable {
 
   private boolean canRename = true;
 
+  // Streaming of the data through a named pipe, only used in local mode
+  private transient boolean streamable;
+  private transient volatile boolean streamed;
+
   @Override
   public void setName(final String name) {
 
@@ -137,9 +141,42 @@ class DataElement extends AbstractData implements Serializable {
     }
 
     this.canRename = false;
+
+    // Once the name of the data is set, the data can be streamed
+    if (this.streamable) {
+      this.streamable = false;
+      DataStreaming.startStreaming(this.port, this, this.files.get(0));
+    }
+
     return this.files.get(0);
   }
 
+  /**
+   * Allow the streaming of the data through a named pipe when the data file
+   * will be requested.
+   */
+  void setStreamable() {
+
+    this.streamable = this.port != null;
+  }
+
+  /**
+   * Set the data as streamed through a named pipe.
+   */
+  void setStreamed() {
+
+    this.streamed = true;
+  }
+
+  /**
+   * Test if the data is streamed through a named pipe.
+   * @return true if the data is streamed
+   */
+  boolean isStreamed() {
+
+    return this.streamed;
+  }
+
   /**
    * Set the first data file.
    * @param dataFile data file to set
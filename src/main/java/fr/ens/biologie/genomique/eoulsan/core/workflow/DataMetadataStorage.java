@@ -4,11 +4,15 @@ import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 import static java.util.Objects.requireNonNull;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -21,7 +25,10 @@ import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 
 /**
  * This class define a storage for data metadata of all files generated by the
- * workflow.
+ * workflow. The storage is an append-only log where the last entry of a file
+ * overrides the previous ones. The entries are kept in an in-memory index
+ * shared by all the steps, new entries are written by batch and the log is
+ * compacted when it contains too many obsolete entries.
  * @author Laurent Jourdren
  * @since 2.0
  */
@@ -29,11 +36,15 @@ public class DataMetadataStorage {
 
   private static final String METADATA_FILENAME = ".eoulsanmetadata";
   private static final String FIELD_SEPARATOR = "\t";
+  private static final int MAX_PENDING_ENTRIES = 1000;
+  private static final int MIN_COMPACTION_ENTRIES = 1000;
 
   private static DataMetadataStorage singleton;
 
   private final DataFile metadataFile;
   private final Map<String, Map<String, String>> metadata = new HashMap<>();
+  private final List<String> pendingEntries = new ArrayList<>();
+  private int logEntryCount;
 
   /**
    * Set the metadata of a data from the metadata storage.
@@ -55,7 +66,8 @@ public class DataMetadataStorage {
    * @return true if the metadata for the data has been found in the metadata
    *         storage
    */
-  public boolean loadMetadata(final Data data, final List<DataFile> files) {
+  public synchronized boolean loadMetadata(final Data data,
+      final List<DataFile> files) {
 
     requireNonNull(data, "data argument cannot be null");
     requireNonNull(files, "files argument cannot be null");
@@ -96,7 +108,7 @@ public class DataMetadataStorage {
    * @param file the file
    * @return the metadata of the file in a Map
    */
-  public Map<String, String> getMetadata(final DataFile file) {
+  public synchronized Map<String, String> getMetadata(final DataFile file) {
 
     requireNonNull(file, "file argument cannot be null");
 
@@ -106,14 +118,14 @@ public class DataMetadataStorage {
       return Collections.emptyMap();
     }
 
-    return Collections.unmodifiableMap(entries);
+    return entries;
   }
 
   /**
    * Save metadata of a Data object.
    * @param data the data object
    */
-  public void saveMetaData(final Data data) {
+  public synchronized void saveMetaData(final Data data) {
 
     requireNonNull(data, "data argument cannot be null");
 
@@ -134,45 +146,71 @@ public class DataMetadataStorage {
       return;
     }
 
-    final List<DataFile> files = WorkflowDataUtils.getDataFiles(data);
+    // The entries are shared by all the files of the data
+    final Map<String, String> newEntries = new HashMap<>();
+    final StringBuilder sb = new StringBuilder();
 
-    // For each file of the data
-    for (DataFile file : files) {
+    for (String key : metadata.keySet()) {
 
-      final String filename = file.getName();
-      final Map<String, String> newEntries = new HashMap<>();
+      final String value = metadata.getRaw(key);
 
-      final StringBuilder sb = new StringBuilder();
-      sb.append(filename);
+      newEntries.put(key, value);
 
-      for (String key : metadata.keySet()) {
+      sb.append(FIELD_SEPARATOR);
+      sb.append(key);
+      sb.append(FIELD_SEPARATOR);
+      sb.append(value);
+    }
 
-        final String value = metadata.getRaw(key);
+    final Map<String, String> entries =
+        Collections.unmodifiableMap(newEntries);
+    final String line = sb.toString();
 
-        newEntries.put(key, value);
+    // For each file of the data
+    for (DataFile file : WorkflowDataUtils.getDataFiles(data)) {
 
-        sb.append(FIELD_SEPARATOR);
-        sb.append(key);
-        sb.append(FIELD_SEPARATOR);
-        sb.append(value);
-      }
+      final String filename = file.getName();
 
       // If metadata for the file has changed
-      if (!newEntries.equals(this.metadata.get(filename))) {
+      if (!entries.equals(this.metadata.get(filename))) {
 
         // Save entries in memory
-        this.metadata.put(filename, newEntries);
+        this.metadata.put(filename, entries);
 
-        // Save entries in the file
-        try {
-          writeMetadataEntry(sb.toString());
-        } catch (EoulsanException e) {
-          getLogger().warning(e.getMessage());
-        }
+        // Save entries in the file with the next batch
+        this.pendingEntries.add(filename + line);
       }
+    }
 
+    if (this.pendingEntries.size() >= MAX_PENDING_ENTRIES) {
+      flush();
     }
+  }
 
+  /**
+   * Write the pending metadata entries in the storage. The storage is
+   * compacted if it contains too many obsolete entries.
+   */
+  public synchronized void flush() {
+
+    if (this.pendingEntries.isEmpty()) {
+      return;
+    }
+
+    try {
+
+      writeMetadataEntries(this.pendingEntries, true);
+      this.logEntryCount += this.pendingEntries.size();
+
+      if (isCompactionRequired()) {
+        compact();
+      }
+
+    } catch (EoulsanException e) {
+      getLogger().warning(e.getMessage());
+    } finally {
+      this.pendingEntries.clear();
+    }
   }
 
   //
@@ -194,6 +232,10 @@ public class DataMetadataStorage {
         new BufferedReader(new InputStreamReader(this.metadataFile.open(),
             Globals.DEFAULT_CHARSET))) {
 
+      // Share the entries between the files with the same metadata
+      final Map<Map<String, String>, Map<String, String>> sharedEntries =
+          new HashMap<>();
+
       String line = null;
 
       while ((line = reader.readLine()) != null) {
@@ -204,11 +246,19 @@ public class DataMetadataStorage {
 
           final String filename = fields[0];
           final Map<String, String> entries = new HashMap<>();
-          this.metadata.put(filename, entries);
 
           for (int i = 1; i < fields.length; i += 2) {
             entries.put(fields[i], fields[i + 1]);
           }
+
+          Map<String, String> shared = sharedEntries.get(entries);
+          if (shared == null) {
+            shared = Collections.unmodifiableMap(entries);
+            sharedEntries.put(entries, shared);
+          }
+
+          this.metadata.put(filename, shared);
+          this.logEntryCount++;
         }
       }
 
@@ -218,19 +268,87 @@ public class DataMetadataStorage {
     }
   }
 
-  private void writeMetadataEntry(final String s) throws EoulsanException {
+  /**
+   * Test if the storage must be compacted.
+   * @return true if the storage contains too many obsolete entries
+   */
+  private boolean isCompactionRequired() {
+
+    return this.logEntryCount > MIN_COMPACTION_ENTRIES
+        && this.logEntryCount > 2 * this.metadata.size();
+  }
+
+  /**
+   * Compact the storage by rewriting only the last entry of each file.
+   * @throws EoulsanException if an error occurs while writing metadata
+   */
+  private void compact() throws EoulsanException {
+
+    final List<String> lines = new ArrayList<>(this.metadata.size());
+
+    for (Map.Entry<String, Map<String, String>> e : this.metadata
+        .entrySet()) {
+
+      final StringBuilder sb = new StringBuilder();
+      sb.append(e.getKey());
+
+      for (Map.Entry<String, String> entry : e.getValue().entrySet()) {
+        sb.append(FIELD_SEPARATOR);
+        sb.append(entry.getKey());
+        sb.append(FIELD_SEPARATOR);
+        sb.append(entry.getValue());
+      }
+
+      lines.add(sb.toString());
+    }
+
+    writeMetadataEntries(lines, false);
+    this.logEntryCount = lines.size();
+  }
+
+  /**
+   * Write metadata entries.
+   * @param lines the entries to write
+   * @param append true if the entries must be append to the storage, false if
+   *          the entries replace the content of the storage
+   * @throws EoulsanException if an error occurs while writing metadata
+   */
+  private void writeMetadataEntries(final List<String> lines,
+      final boolean append) throws EoulsanException {
 
     // Do nothing if the metadata storage is not on local file
     if (!this.metadataFile.isLocalFile()) {
       return;
     }
 
-    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
-        new FileOutputStream(this.metadataFile.toFile(), true),
-        Globals.DEFAULT_CHARSET))) {
+    final File file = this.metadataFile.toFile();
+
+    // The storage is replaced atomically
+    final File outputFile =
+        append ? file : new File(file.getParentFile(), file.getName() + ".tmp");
+
+    try {
+
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+          new FileOutputStream(outputFile, append),
+          Globals.DEFAULT_CHARSET))) {
+
+        // Write entries
+        for (String line : lines) {
+          out.println(line);
+        }
+
+        if (out.checkError()) {
+          throw new IOException("Error while writing " + outputFile);
+        }
+      }
+
+      if (!append) {
+        Files.move(outputFile.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      }
 
-      // Write entry
-      out.println(s);
     } catch (IOException e) {
       throw new EoulsanException("Unable to write metadata: " + e.getMessage(),
           e);
@@ -246,7 +364,8 @@ public class DataMetadataStorage {
    * @param metadataDir directory where store metadata
    * @return the DataMetadataStorage object
    */
-  public static DataMetadataStorage getInstance(final DataFile metadataDir) {
+  public static synchronized DataMetadataStorage getInstance(
+      final DataFile metadataDir) {
 
     if (singleton == null) {
 
@@ -264,7 +383,7 @@ public class DataMetadataStorage {
    * Constructor.
    * @param metadataDir directory where store metadata
    */
-  private DataMetadataStorage(final DataFile metadataDir) {
+  DataMetadataStorage(final DataFile metadataDir) {
 
     requireNonNull(metadataDir, "metadataDir argument cannot be null");
 
@@ -275,6 +394,10 @@ public class DataMetadataStorage {
 
     try {
       loadMetaDataEntries();
+
+      if (isCompactionRequired()) {
+        compact();
+      }
     } catch (EoulsanException e) {
       getLogger().warning(e.getMessage());
     }
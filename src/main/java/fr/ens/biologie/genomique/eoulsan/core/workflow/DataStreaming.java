@@ -0,0 +1,405 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.workflow;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static fr.ens.biologie.genomique.eoulsan.annotations.EoulsanAnnotationUtils.isStreamableInput;
+import static fr.ens.biologie.genomique.eoulsan.core.Step.StepState.DONE;
+import static fr.ens.biologie.genomique.eoulsan.core.Step.StepState.PARTIALLY_DONE;
+import static fr.ens.biologie.genomique.eoulsan.core.Step.StepState.WORKING;
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+import fr.ens.biologie.genomique.eoulsan.AbstractEoulsanRuntime.EoulsanExecMode;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.core.Module;
+import fr.ens.biologie.genomique.eoulsan.core.OutputPort;
+import fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode;
+import fr.ens.biologie.genomique.eoulsan.core.Step.DiscardOutput;
+import fr.ens.biologie.genomique.eoulsan.core.Step.StepType;
+import fr.ens.biologie.genomique.eoulsan.data.Data;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+/**
+ * This class allow to stream the data of an output port to the step that use
+ * it through a named pipe instead of a file. The token of a streamed data is
+ * sent as soon as the task that produce it starts writing the data, so the
+ * task that read the data runs concurrently.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+class DataStreaming {
+
+  /**
+   * Test if the streaming of data between steps is enabled.
+   * @return true if the streaming of data between steps is enabled
+   */
+  static boolean isStreamingEnabled() {
+
+    return EoulsanRuntime.getRuntime().getMode() == EoulsanExecMode.LOCAL
+        && EoulsanRuntime.getSettings().isLocalStreaming();
+  }
+
+  /**
+   * Test if the data of an output port can be streamed. The data of the port
+   * is not kept, use only one file and is read by only one other standard
+   * step that is the only step that get streamed data from the step of the
+   * port. The module of the step that read the data must have the
+   * StreamableInput annotation.
+   * @param port the output port
+   * @return true if the data of the output port can be streamed
+   */
+  static boolean isStreamable(final StepOutputPort port) {
+
+    requireNonNull(port, "port argument cannot be null");
+
+    if (!isStreamingEnabled() || !isStreamableLink(port)) {
+      return false;
+    }
+
+    // Only one port of the producer step can be streamed, otherwise the
+    // consumer step may wait a data that the producer step cannot write
+    for (StepOutputPort p : port.getStep().getWorkflowOutputPorts()) {
+
+      if (p != port && isStreamableLink(p)) {
+        return false;
+      }
+    }
+
+    final StepInputPort link = port.getLinks().iterator().next();
+    final AbstractStep producer = port.getStep();
+    final AbstractStep consumer = link.getStep();
+
+    // Only one port of the consumer step can be streamed
+    for (StepInputPort p : consumer.getWorkflowInputPorts()) {
+
+      if (p != link && isStreamableLink(p.getLink())) {
+        return false;
+      }
+    }
+
+    // The other steps required by the consumer step must not depend on the
+    // producer step as the producer step ends only once the consumer step has
+    // read the streamed data
+    for (AbstractStep s : getRequiredSteps(consumer)) {
+
+      if (s != producer && isAncestor(producer, s)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Enable the streaming of the output data of a task that can be streamed.
+   * @param context the context of the task
+   */
+  static void enableStreaming(final TaskContextImpl context) {
+
+    requireNonNull(context, "context argument cannot be null");
+
+    if (!isStreamingEnabled()) {
+      return;
+    }
+
+    for (StepOutputPort port : context.getStep().getWorkflowOutputPorts()) {
+
+      final Data data = context.getOutputData((OutputPort) port);
+
+      if (data instanceof DataElement && isStreamable(port)) {
+        ((DataElement) data).setStreamable();
+      }
+    }
+  }
+
+  /**
+   * Start the streaming of a data. The data file is replaced by a named pipe
+   * and the token of the data is sent.
+   * @param port the output port of the data
+   * @param data the data to stream
+   * @param file the file of the data
+   */
+  static void startStreaming(final StepOutputPort port, final DataElement data,
+      final DataFile file) {
+
+    requireNonNull(port, "port argument cannot be null");
+    requireNonNull(data, "data argument cannot be null");
+    requireNonNull(file, "file argument cannot be null");
+
+    final File f = file.toFile();
+
+    // An existing file cannot be replaced by a named pipe
+    if (f == null || f.exists()) {
+      return;
+    }
+
+    // The consumer task must be able to start as soon as the data is streamed,
+    // otherwise the producer task would keep a thread of the scheduler while
+    // blocked on the named pipe
+    if (!isOtherRequiredStepsDone(port)) {
+      return;
+    }
+
+    try {
+      FileUtils.createNamedPipe(f);
+    } catch (IOException e) {
+      getLogger().warning("Unable to create a named pipe to stream "
+          + file + ", a standard file will be used: " + e.getMessage());
+      return;
+    }
+
+    getLogger().info("Stream data through a named pipe: " + file);
+
+    // The data token must be sent once the data has been set streamed
+    data.setStreamed();
+
+    // Send the token of the data
+    final WorkflowEventBus eventBus = WorkflowEventBus.getInstance();
+    eventBus.postToken(port, data);
+
+    // Change the state of the step to PARTIALY_DONE to allow the start of the
+    // step that will read the data
+    final AbstractStep step = port.getStep();
+    if (step.getState() == WORKING) {
+      eventBus.postStepStateChange(step, PARTIALLY_DONE);
+    }
+  }
+
+  /**
+   * End the streaming of the output data of a task. This method must be called
+   * at the end of the task that produce the data, even if the task has failed.
+   * The readers of the named pipes receive the end of the data, even if the
+   * task has never opened the named pipes.
+   * @param context the context of the task
+   */
+  static void endStreaming(final TaskContextImpl context) {
+
+    requireNonNull(context, "context argument cannot be null");
+
+    if (!isStreamingEnabled()) {
+      return;
+    }
+
+    for (StepOutputPort port : context.getStep().getWorkflowOutputPorts()) {
+
+      for (Data element : context.getOutputData((OutputPort) port)
+          .getListElements()) {
+
+        if (element instanceof DataElement
+            && ((DataElement) element).isStreamed()) {
+
+          final DataFile file = ((DataElement) element).getDataFile();
+
+          try {
+            closeNamedPipe(file.toFile());
+          } catch (IOException e) {
+            getLogger().severe("Unable to close the named pipe "
+                + file + ": " + e.getMessage());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Close a named pipe. The readers that have opened the named pipe receive
+   * the end of the data once all its writers has closed it. The named pipe is
+   * replaced by an empty file, so the readers that will open it later will
+   * read no data instead of waiting a writer forever.
+   * @param file the named pipe
+   * @throws IOException if an error occurs while closing the named pipe
+   */
+  static void closeNamedPipe(final File file) throws IOException {
+
+    requireNonNull(file, "file argument cannot be null");
+
+    final Path path = file.toPath();
+
+    // Do nothing if the file is not a named pipe
+    if (!Files.exists(path)
+        || !Files.readAttributes(path, BasicFileAttributes.class).isOther()) {
+      return;
+    }
+
+    // Opening a named pipe for both reading and writing does not block and
+    // unblocks the readers waiting for a writer
+    final RandomAccessFile pipe = new RandomAccessFile(file, "rw");
+
+    try {
+
+      final Path emptyFile = Files.createTempFile(path.getParent(),
+          file.getName() + ".", ".tmp");
+      Files.move(emptyFile, path, StandardCopyOption.ATOMIC_MOVE);
+
+    } finally {
+      pipe.close();
+    }
+  }
+
+  /**
+   * Test if a data is streamed.
+   * @param data the data
+   * @return true if the data or one of the element of the data is streamed
+   */
+  static boolean isStreamed(final Data data) {
+
+    requireNonNull(data, "data argument cannot be null");
+
+    final Data d =
+        data instanceof UnmodifiableData ? ((UnmodifiableData) data).getData()
+            : data;
+
+    for (Data e : d.getListElements()) {
+
+      if (e instanceof DataElement && ((DataElement) e).isStreamed()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Test if the link of an output port allow the streaming of the data.
+   * @param port the output port
+   * @return true if the link of an output port allow the streaming of the data
+   */
+  private static boolean isStreamableLink(final StepOutputPort port) {
+
+    if (port == null) {
+      return false;
+    }
+
+    final AbstractStep producer = port.getStep();
+
+    if (producer.getType() != StepType.STANDARD_STEP
+        || producer.isSkip()
+        || producer.getDiscardOutput() != DiscardOutput.ASAP
+        || port.isList() || port.getFormat().getMaxFilesCount() != 1
+        || port.getLinks().size() != 1) {
+      return false;
+    }
+
+    final StepInputPort link = port.getLinks().iterator().next();
+    final AbstractStep consumer = link.getStep();
+    final Module module = consumer.getModule();
+
+    // The module of the consumer step must read its input only once. The
+    // tasks of the consumer step must be handled by the multi-thread
+    // scheduler to be started as soon as the data is streamed
+    return consumer.getType() == StepType.STANDARD_STEP
+        && !consumer.isSkip() && !link.isList()
+        && module != null && isStreamableInput(module)
+        && consumer.getParallelizationMode() == ParallelizationMode.STANDARD;
+  }
+
+  /**
+   * Test if the steps required by the consumer of a streamed data, except the
+   * producer of the data, are done.
+   * @param port the output port of the data
+   * @return true if all the other steps required by the consumer are done
+   */
+  private static boolean isOtherRequiredStepsDone(final StepOutputPort port) {
+
+    final AbstractStep producer = port.getStep();
+    final AbstractStep consumer = port.getLinks().iterator().next().getStep();
+
+    for (AbstractStep s : getRequiredSteps(consumer)) {
+
+      if (s != producer && s.getState() != DONE) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Get the steps required by a step, through its input ports or not.
+   * @param step the step
+   * @return a set with the required steps
+   */
+  private static Set<AbstractStep> getRequiredSteps(final AbstractStep step) {
+
+    return step.getStepStateDependencies().getRequiredSteps();
+  }
+
+  /**
+   * Test if a step is an ancestor of another step.
+   * @param ancestor the ancestor step
+   * @param step the step
+   * @return true if the first step is an ancestor of the second step
+   */
+  private static boolean isAncestor(final AbstractStep ancestor,
+      final AbstractStep step) {
+
+    final Set<AbstractStep> visited = new HashSet<>();
+    final Set<AbstractStep> toVisit = new HashSet<>();
+    toVisit.add(step);
+
+    while (!toVisit.isEmpty()) {
+
+      final AbstractStep s = toVisit.iterator().next();
+      toVisit.remove(s);
+
+      if (s == ancestor) {
+        return true;
+      }
+
+      if (visited.add(s)) {
+        toVisit.addAll(getRequiredSteps(s));
+      }
+    }
+
+    return false;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   */
+  private DataStreaming() {
+  }
+
+}
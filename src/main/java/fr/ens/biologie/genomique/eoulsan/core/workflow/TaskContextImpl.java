@@ -598,6 +598,21 @@ public class TaskContextImpl implements TaskContext, Serializable {
     }
   }
 
+  /**
+   * Test if the task read data that is streamed by a running task.
+   * @return true if the task read streamed data
+   */
+  public boolean isStreamingTask() {
+
+    for (Data data : this.inputData.values()) {
+      if (DataStreaming.isStreamed(data)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   /**
    * Serialize output data.
    * @param file output file
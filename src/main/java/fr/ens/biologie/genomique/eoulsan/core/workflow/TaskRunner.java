@@ -247,6 +247,9 @@ public class TaskRunner {
 
     };
 
+    // Stream the output data of the task if possible
+    DataStreaming.enableStreaming(this.context);
+
     // Set the progress of the task to 0%
     this.status.setProgress(0);
 
@@ -274,6 +277,10 @@ public class TaskRunner {
 
     } finally {
 
+      // The readers of the streamed data must not wait for data that will
+      // never be written, e.g. if the task has failed
+      DataStreaming.endStreaming(this.context);
+
       if (logger != null) {
 
         Handler[] handlers = logger.getHandlers();
@@ -337,6 +344,11 @@ public class TaskRunner {
           this.context.getStep().getWorkflowOutputPorts().getPort(portName);
       final Data data = this.context.getOutputData(port);
 
+      // The token of a streamed data has been sent at the start of the stream
+      if (DataStreaming.isStreamed(data)) {
+        continue;
+      }
+
       // Send the token
       WorkflowEventBus.getInstance().postToken(port, data);
     }
@@ -438,7 +450,8 @@ public class TaskRunner {
     logger.addHandler(handler);
 
     // Get the Log level on command line
-    String logLevel = Main.getInstance().getLogLevelArgument();
+    final Main main = Main.getInstance();
+    String logLevel = main == null ? null : main.getLogLevelArgument();
     if (logLevel == null) {
       logLevel = Globals.LOG_LEVEL.getName();
     }
@@ -82,7 +82,7 @@ import fr.ens.biologie.genomique.eoulsan.design.Sample;
  */
 public class TokenManager implements Runnable {
 
-  private static final int CHECKING_DELAY_MS = 1000;
+  private static final int MAX_WAITING_TIME_MS = 1000;
 
   private final AbstractStep step;
   private final TaskScheduler scheduler;
@@ -109,6 +109,9 @@ public class TokenManager implements Runnable {
   private volatile boolean endOfStep;
   private boolean isStarted;
 
+  private final Object eventLock = new Object();
+  private boolean newEvent = true;
+
   //
   // Getters
   //
@@ -342,6 +345,9 @@ public class TokenManager implements Runnable {
 
         if (sip.getName().equals(linkInputPort.getName())) {
           postToken(linkInputPort, token);
+
+          // Wake up the token manager thread
+          signalNewEvent();
         }
       }
     }
@@ -944,6 +950,45 @@ public class TokenManager implements Runnable {
 
     this.isStarted = false;
     this.endOfStep = true;
+
+    // Wake up the token manager thread
+    signalNewEvent();
+  }
+
+  /**
+   * Inform the token manager thread that a new event (e.g. a new token) must be
+   * handled.
+   */
+  private void signalNewEvent() {
+
+    synchronized (this.eventLock) {
+      this.newEvent = true;
+      this.eventLock.notifyAll();
+    }
+  }
+
+  /**
+   * Wait until a new event must be handled by the token manager thread. The
+   * timeout is only a safety net as all the events wake up the thread.
+   */
+  private void waitNewEvent() {
+
+    synchronized (this.eventLock) {
+
+      if (!this.newEvent && !this.endOfStep) {
+        try {
+          this.eventLock.wait(MAX_WAITING_TIME_MS);
+        } catch (InterruptedException e) {
+          getLogger().severe("Interrupted while waiting new tokens for step "
+              + this.step.getId() + ", stop it");
+
+          // Restore the interrupt flag, the step will be stopped
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      this.newEvent = false;
+    }
   }
 
   @Override
@@ -956,10 +1001,13 @@ public class TokenManager implements Runnable {
 
       do {
 
-        try {
-          Thread.sleep(CHECKING_DELAY_MS);
-        } catch (InterruptedException e) {
-          getLogger().severe(e.getMessage());
+        // Wait for new tokens
+        waitNewEvent();
+
+        // Stop the workflow if the thread has been interrupted
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException("The token manager of the step "
+              + this.step.getId() + " has been interrupted");
         }
 
         // Do nothing until the step is not ready
@@ -1070,6 +1118,11 @@ public class TokenManager implements Runnable {
           "Error while executing the workflow");
     }
 
+    // Write the metadata of the output data of the step
+    DataMetadataStorage
+        .getInstance(this.step.getAbstractWorkflow().getOutputDirectory())
+        .flush();
+
     // Register the token manager to the event bus
     WorkflowEventBus.getInstance().register(this);
 
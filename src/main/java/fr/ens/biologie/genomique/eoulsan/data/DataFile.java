@@ -366,12 +366,23 @@ public class DataFile implements Comparable<DataFile>, Serializable {
 
   /**
    * Create an InputStream for the DataFile. The input stream will not
-   * automatically uncompress data.
+   * automatically uncompress data. If the data cache is enabled in the
+   * settings, remote files are read from their local copy in the cache.
    * @return an InputStream object
    * @throws IOException if an error occurs while opening the DataFile
    */
   public InputStream rawOpen() throws IOException {
 
+    // Use the local copy of the remote files if the data cache is enabled
+    final DataFileCache cache = DataFileCache.getInstance();
+    if (cache != null) {
+
+      final InputStream is = cache.open(this);
+      if (is != null) {
+        return is;
+      }
+    }
+
     return getProtocol().getData(this);
   }
 
@@ -0,0 +1,471 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.data;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.Settings;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.DataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.FTPURLDataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.HDFSPathDataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.HTTPSURLDataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.HTTPURLDataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.RangeDataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.S3DataProtocol;
+import fr.ens.biologie.genomique.eoulsan.data.protocols.S3NDataProtocol;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelRangeDownloader;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a node-local cache for the files read using remote
+ * protocols. The entries are keyed by the source of the file, its length and
+ * its last modification date, so a file modified on the remote side is
+ * downloaded again. Downloads of the same file are done only once, even by
+ * several Eoulsan instances that share the cache directory. When the cache
+ * size exceeds its maximal size, the least recently used entries are removed.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class DataFileCache {
+
+  private static final Set<String> CACHED_PROTOCOLS =
+      new HashSet<>(Arrays.asList(HTTPURLDataProtocol.PROTOCOL_NAME,
+          HTTPSURLDataProtocol.PROTOCOL_NAME, FTPURLDataProtocol.PROTOCOL_NAME,
+          S3DataProtocol.PROTOCOL_NAME, S3NDataProtocol.PROTOCOL_NAME,
+          HDFSPathDataProtocol.PROTOCOL_NAME));
+
+  private static final String LOCK_FILENAME = ".lock";
+  private static final String PART_EXTENSION = ".part";
+  private static final int LOCK_STRIPES = 64;
+
+  private static DataFileCache singleton;
+
+  private final File directory;
+  private final long maxSize;
+  private final Object[] locks = new Object[LOCK_STRIPES];
+  private final Set<String> entriesInUse =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  //
+  // Cache methods
+  //
+
+  /**
+   * Open a file using the cache. If the file is not in the cache, it is
+   * downloaded first.
+   * @param file the file to open
+   * @return an InputStream on the cached copy of the file or null if the file
+   *         cannot be cached
+   */
+  InputStream open(final DataFile file) {
+
+    requireNonNull(file, "file argument cannot be null");
+
+    try {
+
+      if (!CACHED_PROTOCOLS.contains(file.getProtocol().getName())) {
+        return null;
+      }
+
+      final DataFileMetadata md = file.getMetaData();
+      final long length = md.getContentLength();
+
+      // The content of files without length or modification date cannot be
+      // checked
+      if (md.isDir()
+          || length < 0 || md.getLastModified() <= 0 || length > this.maxSize) {
+        return null;
+      }
+
+      final String key = createKey(file, md);
+      final File entryDir = new File(this.directory, key);
+      final InputStream result;
+
+      // Only one thread of this instance can use an entry at the same time,
+      // the download is done without holding the lock shared by the entries
+      claimEntry(key);
+
+      try {
+
+        if (!entryDir.mkdirs() && !entryDir.isDirectory()) {
+          throw new IOException(
+              "Unable to create cache directory: " + entryDir);
+        }
+
+        // Lock the entry for the other Eoulsan instances
+        try (FileChannel channel =
+            FileChannel.open(new File(entryDir, LOCK_FILENAME).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+          final FileLock lock = channel.lock();
+
+          try {
+
+            final File cachedFile = new File(entryDir, file.getName());
+
+            if (cachedFile.isFile() && cachedFile.length() == length) {
+              getLogger().fine("Found " + file + " in data cache");
+            } else {
+              download(file, cachedFile, length);
+            }
+
+            // Update the last access date of the entry
+            cachedFile.setLastModified(System.currentTimeMillis());
+
+            // The file is opened before releasing the lock to prevent its
+            // removal
+            result = new FileInputStream(cachedFile);
+
+          } finally {
+            lock.release();
+          }
+        }
+      } finally {
+        releaseEntry(key);
+      }
+
+      removeOldEntries(entryDir);
+
+      return result;
+
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (IOException e) {
+      getLogger().warning("Unable to use the data cache for "
+          + file + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Download a file in the cache.
+   * @param file file to download
+   * @param cachedFile the file in the cache
+   * @param length expected length of the file
+   * @throws IOException if an error occurs while downloading the file
+   */
+  private static void download(final DataFile file, final File cachedFile,
+      final long length) throws IOException {
+
+    getLogger().info("Download " + file + " in data cache");
+
+    final File partFile = new File(cachedFile.getParentFile(),
+        cachedFile.getName() + PART_EXTENSION);
+
+    final DataProtocol protocol = file.getProtocol();
+    final ParallelRangeDownloader downloader =
+        protocol instanceof RangeDataProtocol
+            ? ((RangeDataProtocol) protocol).getRangeDownloader(file) : null;
+
+    if (downloader != null) {
+
+      // Write the parts in parallel directly in the file
+      downloader.download(partFile);
+    } else {
+
+      try (InputStream in = protocol.getData(file);
+          OutputStream out = new FileOutputStream(partFile)) {
+        FileUtils.copy(in, out);
+      }
+    }
+
+    if (partFile.length() != length) {
+
+      if (!partFile.delete()) {
+        getLogger().warning("Unable to delete " + partFile);
+      }
+
+      throw new IOException("Invalid length of the downloaded file: "
+          + partFile.length() + " bytes found, " + length + " bytes expected");
+    }
+
+    Files.move(partFile.toPath(), cachedFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Remove the least recently used entries of the cache until the size of the
+   * cache is lower than its maximal size. Entries used by other threads or by
+   * other Eoulsan instances are never removed.
+   * @param currentEntry entry to keep
+   */
+  private void removeOldEntries(final File currentEntry) {
+
+    final File[] dirs = this.directory.listFiles();
+    if (dirs == null) {
+      return;
+    }
+
+    final List<File> files = new ArrayList<>();
+    long size = 0;
+
+    for (File dir : dirs) {
+
+      final File[] entryFiles = dir.listFiles();
+      if (entryFiles == null) {
+        continue;
+      }
+
+      for (File f : entryFiles) {
+        if (!LOCK_FILENAME.equals(f.getName())) {
+          files.add(f);
+          size += f.length();
+        }
+      }
+    }
+
+    if (size <= this.maxSize) {
+      return;
+    }
+
+    // Sort the files by last access date
+    Collections.sort(files, new Comparator<File>() {
+
+      @Override
+      public int compare(final File f1, final File f2) {
+
+        return Long.compare(f1.lastModified(), f2.lastModified());
+      }
+    });
+
+    for (File f : files) {
+
+      if (size <= this.maxSize) {
+        break;
+      }
+
+      final File entryDir = f.getParentFile();
+      if (entryDir.equals(currentEntry)) {
+        continue;
+      }
+
+      final long length = f.length();
+      if (removeEntry(entryDir)) {
+        size -= length;
+      }
+    }
+  }
+
+  /**
+   * Remove an entry of the cache if it is not used.
+   * @param entryDir the directory of the entry
+   * @return true if the entry has been removed
+   */
+  private boolean removeEntry(final File entryDir) {
+
+    final String key = entryDir.getName();
+
+    // Never wait for an entry used by another thread
+    if (!this.entriesInUse.add(key)) {
+      return false;
+    }
+
+    try {
+
+      final File lockFile = new File(entryDir, LOCK_FILENAME);
+
+      try (FileChannel channel = FileChannel.open(lockFile.toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = channel.tryLock()) {
+
+        if (lock == null) {
+          return false;
+        }
+
+        final File[] files = entryDir.listFiles();
+        if (files != null) {
+          for (File f : files) {
+            if (!f.equals(lockFile) && !f.delete()) {
+              return false;
+            }
+          }
+        }
+
+        getLogger().fine("Remove " + entryDir.getName() + " from data cache");
+
+        // The lock file is kept as it may be used by another Eoulsan instance
+        return true;
+
+      } catch (IOException | OverlappingFileLockException e) {
+        return false;
+      }
+    } finally {
+      releaseEntry(key);
+    }
+  }
+
+  /**
+   * Claim an entry of the cache. If the entry is used by another thread, wait
+   * until the other thread releases it.
+   * @param key key of the entry
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  private void claimEntry(final String key) throws InterruptedException {
+
+    final Object lock = getLock(key);
+
+    synchronized (lock) {
+      while (!this.entriesInUse.add(key)) {
+        lock.wait();
+      }
+    }
+  }
+
+  /**
+   * Release an entry of the cache claimed by the current thread.
+   * @param key key of the entry
+   */
+  private void releaseEntry(final String key) {
+
+    this.entriesInUse.remove(key);
+
+    final Object lock = getLock(key);
+
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Get the lock object for a key. Threads that wait for an entry of the cache
+   * wait on this object. A fixed number of lock objects is shared by all the
+   * entries, so the memory used by the locks is bounded.
+   * @param key key of the entry
+   * @return a lock object
+   */
+  private Object getLock(final String key) {
+
+    return this.locks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+  }
+
+  /**
+   * Create the key of a file.
+   * @param file the file
+   * @param md the metadata of the file
+   * @return the key of the file
+   * @throws IOException if the MD5 digest is not available
+   */
+  private static String createKey(final DataFile file,
+      final DataFileMetadata md) throws IOException {
+
+    final MessageDigest md5Digest;
+    try {
+      md5Digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+
+    final String s = file.getSource()
+        + '\t' + md.getContentLength() + '\t' + md.getLastModified();
+    md5Digest.update(s.getBytes(Globals.DEFAULT_CHARSET));
+
+    return StringUtils.md5DigestToString(md5Digest);
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Get the instance of the cache defined in the settings.
+   * @return the DataFileCache instance or null if the cache is disabled
+   */
+  static synchronized DataFileCache getInstance() {
+
+    if (!EoulsanRuntime.isRuntime()) {
+      return null;
+    }
+
+    final Settings settings = EoulsanRuntime.getSettings();
+    final String path = settings.getDataCachePath();
+    final long maxSize = settings.getDataCacheMaxSize() * 1024 * 1024;
+
+    if (path == null || path.trim().isEmpty() || maxSize <= 0) {
+      return null;
+    }
+
+    final File directory = new File(path.trim());
+
+    if (singleton == null
+        || !singleton.directory.equals(directory)
+        || singleton.maxSize != maxSize) {
+      singleton = new DataFileCache(directory, maxSize);
+    }
+
+    return singleton;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   * @param directory cache directory
+   * @param maxSize maximal size of the cache in bytes
+   */
+  private DataFileCache(final File directory, final long maxSize) {
+
+    this.directory = directory;
+    this.maxSize = maxSize;
+
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      this.locks[i] = new Object();
+    }
+  }
+
+}
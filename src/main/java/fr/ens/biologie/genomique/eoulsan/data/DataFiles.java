@@ -26,9 +26,34 @@ package fr.ens.biologie.genomique.eoulsan.data;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import fr.ens.biologie.genomique.eoulsan.data.protocols.DataProtocol;
+import fr.ens.biologie.genomique.eoulsan.io.CompressionType;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPInputStream;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPOutputStream;
 import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 
 /**
@@ -38,6 +63,10 @@ import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
  */
 public class DataFiles {
 
+  private static final int PIPELINE_CHUNK_SIZE = 1024 * 1024;
+  private static final int PIPELINE_QUEUE_SIZE = 8;
+  private static final byte[] END_OF_PIPELINE = new byte[0];
+
   /**
    * Copy a file, if input data is compressed, data will be uncompressed and if
    * output require to be compressed output will be compressed.
@@ -48,6 +77,23 @@ public class DataFiles {
   public static void copy(final DataFile input, final DataFile output)
       throws IOException {
 
+    copy(input, output, 1);
+  }
+
+  /**
+   * Copy a file, if input data is compressed, data will be uncompressed and if
+   * output require to be compressed output will be compressed. When more than
+   * one thread is available, the uncompression and the compression of the
+   * data are performed in a pipeline and gzip data is (un)compressed in
+   * parallel.
+   * @param input input file
+   * @param output output file.
+   * @param threadNumber the number of threads to use for the recompression
+   * @throws IOException if an error occurs while copying data
+   */
+  public static void copy(final DataFile input, final DataFile output,
+      final int threadNumber) throws IOException {
+
     requireNonNull(input, "input file cannot be null");
     requireNonNull(output, "output file cannot be null");
 
@@ -55,8 +101,11 @@ public class DataFiles {
     // type
     if (input.getCompressionType() == output.getCompressionType()) {
       rawCopy(input, output);
-    } else {
+    } else if (threadNumber < 2) {
       FileUtils.copy(input.open(), output.create());
+    } else {
+      pipelineCopy(openInput(input, threadNumber),
+          createOutput(output, threadNumber));
     }
   }
 
@@ -72,7 +121,54 @@ public class DataFiles {
     requireNonNull(input, "input file cannot be null");
     requireNonNull(output, "output file cannot be null");
 
-    FileUtils.copy(input.rawOpen(), output.rawCreate());
+    final File inputFile = input.toFile();
+    final File outputFile = output.toFile();
+
+    // Avoid copying the data in the Java heap for local files
+    if (inputFile != null && outputFile != null) {
+      localCopy(inputFile, outputFile);
+    } else {
+      FileUtils.copy(input.rawOpen(), output.rawCreate());
+    }
+  }
+
+  /**
+   * Create a hard link if the input and output files are local files on the
+   * same file system. If the hard link cannot be created, the input file will
+   * be copied. The output file shares its inode with the input file, so
+   * modifying one of them modifies the other: this method must only be used
+   * when this behavior is expected.
+   * @param input input file
+   * @param output output file
+   * @throws IOException if an error occurs while copying data or creating the
+   *           hard link
+   */
+  public static void linkOrCopy(final DataFile input, final DataFile output)
+      throws IOException {
+
+    requireNonNull(input, "input file cannot be null");
+    requireNonNull(output, "output file cannot be null");
+
+    final File inputFile = input.toFile();
+    final File outputFile = output.toFile();
+
+    if (inputFile != null
+        && outputFile != null
+        && input.getCompressionType() == output.getCompressionType()) {
+
+      try {
+        Files.createLink(outputFile.toPath(), inputFile.toPath());
+        return;
+      } catch (FileAlreadyExistsException | AccessDeniedException
+          | NoSuchFileException e) {
+        throw e;
+      } catch (FileSystemException | UnsupportedOperationException e) {
+        // Files are not on the same file system or the file system does not
+        // support hard links, copy the file
+      }
+    }
+
+    copy(input, output);
   }
 
   /**
@@ -103,13 +199,31 @@ public class DataFiles {
   public static void symlinkOrCopy(final DataFile input, final DataFile output,
       final boolean relativize) throws IOException {
 
+    symlinkOrCopy(input, output, relativize, 1);
+  }
+
+  /**
+   * Create a symbolic link if the input and output use the same protocol and if
+   * symbolic links are supported by the protocol. If symbolic link cannot be
+   * created, the input file will be copied.
+   * @param input input file
+   * @param output output file
+   * @param relativize relativize the link target path
+   * @param threadNumber the number of threads to use if the data must be
+   *          recompressed
+   * @throws IOException if an error occurs while copying data or creating the
+   *           symbolic link
+   */
+  public static void symlinkOrCopy(final DataFile input, final DataFile output,
+      final boolean relativize, final int threadNumber) throws IOException {
+
     requireNonNull(input, "input file cannot be null");
     requireNonNull(output, "output file cannot be null");
 
     // If compression of input and output is not the same, copy data
     if (input.getCompressionType() != output.getCompressionType()) {
 
-      copy(input, output);
+      copy(input, output, threadNumber);
     } else {
 
       // Else test if a symbolic link can be created
@@ -119,10 +233,268 @@ public class DataFiles {
 
       if (inProtocol.equals(outProtocol) && inProtocol.canSymlink()) {
 
-        input.symlink(output, relativize);
-      } else {
-        copy(input, output);
+        try {
+          input.symlink(output, relativize);
+          return;
+        } catch (FileAlreadyExistsException | AccessDeniedException
+            | NoSuchFileException e) {
+          throw e;
+        } catch (FileSystemException | UnsupportedOperationException e) {
+          // The file system does not support symbolic links
+        }
+      }
+
+      copy(input, output, threadNumber);
+    }
+  }
+
+  /**
+   * Create symbolic links or copy a list of files. When several threads are
+   * available, the files are processed in parallel.
+   * @param inputs input files
+   * @param outputs output files
+   * @param relativize relativize the link target paths
+   * @param threadNumber the number of threads to use
+   * @throws IOException if an error occurs while copying data or creating the
+   *           symbolic links
+   */
+  public static void symlinkOrCopy(final List<DataFile> inputs,
+      final List<DataFile> outputs, final boolean relativize,
+      final int threadNumber) throws IOException {
+
+    requireNonNull(inputs, "inputs argument cannot be null");
+    requireNonNull(outputs, "outputs argument cannot be null");
+
+    if (inputs.size() != outputs.size()) {
+      throw new IllegalArgumentException(
+          "The number of input and output files is not the same: "
+              + inputs.size() + " and " + outputs.size());
+    }
+
+    final int count = inputs.size();
+
+    if (count < 2 || threadNumber < 2) {
+
+      for (int i = 0; i < count; i++) {
+        symlinkOrCopy(inputs.get(i), outputs.get(i), relativize,
+            threadNumber);
+      }
+      return;
+    }
+
+    // Share the threads between the files to recompress
+    final int fileThreadNumber = Math.max(1, threadNumber / count);
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(count, threadNumber));
+    final List<Future<Void>> futures = new ArrayList<>();
+
+    try {
+
+      for (int i = 0; i < count; i++) {
+
+        final DataFile in = inputs.get(i);
+        final DataFile out = outputs.get(i);
+
+        futures.add(executor.submit(new Callable<Void>() {
+
+          @Override
+          public Void call() throws IOException {
+
+            symlinkOrCopy(in, out, relativize, fileThreadNumber);
+            return null;
+          }
+        }));
       }
+
+      for (Future<Void> future : futures) {
+        waitFor(future);
+      }
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Wait the end of a task.
+   * @param future the future of the task
+   * @throws IOException if an error has occurred in the task
+   */
+  private static void waitFor(final Future<Void> future) throws IOException {
+
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Copy interrupted");
+    } catch (ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Copy a local file using FileChannel.transferTo() to avoid copying the data
+   * in the Java heap.
+   * @param input input file
+   * @param output output file
+   * @throws IOException if an error occurs while copying data
+   */
+  private static void localCopy(final File input, final File output)
+      throws IOException {
+
+    try (
+        FileChannel in =
+            FileChannel.open(input.toPath(), StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(output.toPath(),
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+
+      final long size = in.size();
+      long position = 0;
+      long n;
+
+      while (position < size
+          && (n = in.transferTo(position, size - position, out)) > 0) {
+        position += n;
+      }
+
+      if (position < size) {
+        throw new IOException("Unable to copy "
+            + input + " to " + output + ": only " + position + " of " + size
+            + " bytes have been copied");
+      }
+    }
+  }
+
+  /**
+   * Open a file to recompress. Gzip data is uncompressed in parallel.
+   * @param file the file to open
+   * @param threadNumber the number of threads to use
+   * @return an uncompressed input stream
+   * @throws IOException if an error occurs while opening the file
+   */
+  private static InputStream openInput(final DataFile file,
+      final int threadNumber) throws IOException {
+
+    if (file.getCompressionType() == CompressionType.GZIP) {
+      return new ParallelGZIPInputStream(file.rawOpen(), threadNumber);
+    }
+
+    return file.open();
+  }
+
+  /**
+   * Create a file to recompress. Gzip data is compressed in parallel in BGZF
+   * blocks.
+   * @param file the file to create
+   * @param threadNumber the number of threads to use
+   * @return an output stream that compress data
+   * @throws IOException if an error occurs while creating the file
+   */
+  private static OutputStream createOutput(final DataFile file,
+      final int threadNumber) throws IOException {
+
+    if (file.getCompressionType() == CompressionType.GZIP) {
+      return new ParallelGZIPOutputStream(file.rawCreate(), threadNumber);
+    }
+
+    return file.create();
+  }
+
+  /**
+   * Copy data using a reader thread, so the uncompression of the input, that
+   * cannot be parallelized for standard gzip files, is performed while the
+   * output is compressed.
+   * @param in input stream
+   * @param out output stream
+   * @throws IOException if an error occurs while copying data
+   */
+  private static void pipelineCopy(final InputStream in,
+      final OutputStream out) throws IOException {
+
+    final BlockingQueue<byte[]> queue =
+        new ArrayBlockingQueue<>(PIPELINE_QUEUE_SIZE);
+    final ExecutorService executor =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+          @Override
+          public Thread newThread(final Runnable r) {
+
+            final Thread t = new Thread(r, "pipeline-copy-thread");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+
+    final Future<Void> reader = executor.submit(new Callable<Void>() {
+
+      @Override
+      public Void call() throws Exception {
+
+        try (InputStream is = in) {
+
+          byte[] buffer = new byte[PIPELINE_CHUNK_SIZE];
+          int length = 0;
+          int n;
+
+          while ((n = is.read(buffer, length, buffer.length - length)) != -1) {
+
+            length += n;
+            if (length == buffer.length) {
+              queue.put(buffer);
+              buffer = new byte[PIPELINE_CHUNK_SIZE];
+              length = 0;
+            }
+          }
+
+          if (length > 0) {
+            queue.put(Arrays.copyOf(buffer, length));
+          }
+
+          queue.put(END_OF_PIPELINE);
+
+        } catch (Throwable t) {
+
+          // The pending chunks are useless once the copy has failed, discard
+          // them so the end of the pipeline can be queued without blocking
+          queue.clear();
+          queue.offer(END_OF_PIPELINE);
+          throw t;
+        }
+
+        return null;
+      }
+    });
+
+    try (OutputStream os = out) {
+
+      byte[] chunk;
+      while ((chunk = queue.take()) != END_OF_PIPELINE) {
+        os.write(chunk);
+      }
+
+      waitFor(reader);
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Copy interrupted");
+    } finally {
+      reader.cancel(true);
+      executor.shutdownNow();
     }
   }
 
@@ -0,0 +1,52 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.data.protocols;
+
+import java.io.IOException;
+
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelRangeDownloader;
+
+/**
+ * This interface define a protocol that allow to download the parts of a file
+ * in parallel using range requests.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public interface RangeDataProtocol extends DataProtocol {
+
+  /**
+   * Get a downloader for a file.
+   * @param src source file
+   * @return a ParallelRangeDownloader object or null if the parallel download
+   *         is disabled, if the file is too small or if the server does not
+   *         support range requests
+   * @throws IOException if an error occurs while getting the length of the
+   *           file
+   */
+  ParallelRangeDownloader getRangeDownloader(DataFile src) throws IOException;
+
+}
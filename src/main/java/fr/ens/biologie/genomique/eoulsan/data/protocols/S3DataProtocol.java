@@ -52,6 +52,7 @@ import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFileMetadata;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormatRegistry;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelRangeDownloader;
 import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
 
@@ -61,7 +62,7 @@ import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
  * @author Laurent Jourdren
  */
 @LocalOnly
-public class S3DataProtocol implements DataProtocol {
+public class S3DataProtocol implements RangeDataProtocol {
 
   /** Protocol name. */
   public static final String PROTOCOL_NAME = "s3";
@@ -177,6 +178,32 @@ public class S3DataProtocol implements DataProtocol {
       return s3.getObject(new GetObjectRequest(getBucket(), getFilePath()));
     }
 
+    private S3Object getS3Object(final long start, final long end,
+        final String etag) throws IOException {
+
+      final GetObjectRequest request =
+          new GetObjectRequest(getBucket(), getFilePath());
+      request.setRange(start, end - 1);
+
+      // Check that the object has not been modified since the start of the
+      // download
+      request.withMatchingETagConstraint(etag);
+
+      final S3Object result = getS3().getObject(request);
+
+      if (result == null) {
+        throw new IOException(
+            "The file has been modified during the download: " + this.source);
+      }
+
+      return result;
+    }
+
+    private ObjectMetadata getObjectMetadata() {
+
+      return getS3().getObjectMetadata(getBucket(), getFilePath());
+    }
+
     @Override
     public String toString() {
 
@@ -356,9 +383,49 @@ public class S3DataProtocol implements DataProtocol {
   @Override
   public InputStream getData(final DataFile src) throws IOException {
 
+    final ParallelRangeDownloader downloader = getRangeDownloader(src);
+    if (downloader != null) {
+      return downloader.open();
+    }
+
     return new S3URL(src).getS3Object().getObjectContent();
   }
 
+  @Override
+  public ParallelRangeDownloader getRangeDownloader(final DataFile src)
+      throws IOException {
+
+    if (!ParallelRangeDownloader.isEnabled()) {
+      return null;
+    }
+
+    final S3URL s3url = new S3URL(src);
+
+    try {
+
+      final ObjectMetadata md = s3url.getObjectMetadata();
+      final String etag = md.getETag();
+
+      return ParallelRangeDownloader
+          .newInstance(new ParallelRangeDownloader.RangeSource() {
+
+            @Override
+            public InputStream open(final long start, final long end)
+                throws IOException {
+
+              try {
+                return s3url.getS3Object(start, end, etag).getObjectContent();
+              } catch (AmazonClientException e) {
+                throw new IOException(e.getMessage(), e);
+              }
+            }
+          }, s3url.getSource(), md.getContentLength());
+
+    } catch (AmazonClientException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
   @Override
   public OutputStream putData(final DataFile dest) throws IOException {
 
@@ -28,19 +28,22 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFileMetadata;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelRangeDownloader;
 
 /**
  * This class define an abstract class for DataProtocols based on the URL class.
  * @since 1.0
  * @author Laurent Jourdren
  */
-public abstract class URLDataProtocol extends AbstractDataProtocol {
+public abstract class URLDataProtocol extends AbstractDataProtocol
+    implements RangeDataProtocol {
 
   private URLConnection createConnection(final DataFile src)
       throws IOException {
@@ -60,9 +63,105 @@ public abstract class URLDataProtocol extends AbstractDataProtocol {
   @Override
   public InputStream getData(final DataFile src) throws IOException {
 
+    final ParallelRangeDownloader downloader = getRangeDownloader(src);
+    if (downloader != null) {
+      return downloader.open();
+    }
+
     return createConnection(src).getInputStream();
   }
 
+  @Override
+  public ParallelRangeDownloader getRangeDownloader(final DataFile src)
+      throws IOException {
+
+    if (!ParallelRangeDownloader.isEnabled()) {
+      return null;
+    }
+
+    final URLConnection con = createConnection(src);
+
+    // Only HTTP servers can handle range requests
+    if (!(con instanceof HttpURLConnection)) {
+      return null;
+    }
+
+    final HttpURLConnection httpCon = (HttpURLConnection) con;
+    final long length;
+    final String validator;
+
+    try {
+      httpCon.setRequestMethod("HEAD");
+
+      if (httpCon.getResponseCode() != HttpURLConnection.HTTP_OK
+          || !"bytes".equals(httpCon.getHeaderField("Accept-Ranges"))) {
+        return null;
+      }
+
+      length = httpCon.getContentLengthLong();
+      validator = getRangeValidator(httpCon);
+    } finally {
+      httpCon.disconnect();
+    }
+
+    // Without validator, the parts of a file modified on the server during
+    // the download cannot be detected
+    if (length < 0 || validator == null) {
+      return null;
+    }
+
+    return ParallelRangeDownloader
+        .newInstance(new ParallelRangeDownloader.RangeSource() {
+
+          @Override
+          public InputStream open(final long start, final long end)
+              throws IOException {
+
+            final HttpURLConnection rangeCon =
+                (HttpURLConnection) createConnection(src);
+            rangeCon.setRequestProperty("Range",
+                "bytes=" + start + "-" + (end - 1));
+
+            // The server returns the whole file if it has been modified
+            rangeCon.setRequestProperty("If-Range", validator);
+
+            final int responseCode = rangeCon.getResponseCode();
+
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+              rangeCon.disconnect();
+              throw new IOException("The file has been modified on the "
+                  + "server during the download: " + src);
+            }
+
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+              rangeCon.disconnect();
+              throw new IOException(
+                  "Range request not handled by the server: " + responseCode);
+            }
+
+            return rangeCon.getInputStream();
+          }
+        }, src.getSource(), length);
+  }
+
+  /**
+   * Get the value to use in the If-Range header of the range requests. Weak
+   * entity tags cannot be used in the If-Range header.
+   * @param con the connection of the HEAD request
+   * @return the strong entity tag or the last modification date of the file
+   *         or null if not available
+   */
+  private static String getRangeValidator(final HttpURLConnection con) {
+
+    final String etag = con.getHeaderField("ETag");
+
+    if (etag != null && !etag.startsWith("W/")) {
+      return etag;
+    }
+
+    return con.getHeaderField("Last-Modified");
+  }
+
   @Override
   public OutputStream putData(final DataFile src) throws IOException {
 
@@ -79,7 +178,7 @@ public abstract class URLDataProtocol extends AbstractDataProtocol {
     final URLConnection con = createConnection(src);
 
     final SimpleDataFileMetadata result = new SimpleDataFileMetadata();
-    result.setContentLength(con.getContentLength());
+    result.setContentLength(con.getContentLengthLong());
     result.setLastModified(con.getLastModified());
     result.setContentType(con.getContentType());
     result.setContentEncoding(con.getContentEncoding());
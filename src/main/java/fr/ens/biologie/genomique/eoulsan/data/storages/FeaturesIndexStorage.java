@@ -0,0 +1,56 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.data.storages;
+
+import fr.ens.biologie.genomique.eoulsan.bio.CompactGenomicArray;
+
+/**
+ * This interface define a storage for the features indexes used by the
+ * expression counters.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public interface FeaturesIndexStorage {
+
+  /**
+   * Get the features index that corresponds to a key.
+   * @param key key of the features index. The key is a MD5 checksum built
+   *          from the checksum of the annotation file and the parameters used
+   *          to create the index
+   * @return a CompactGenomicArray object or null if the index has not yet been
+   *         computed
+   */
+  CompactGenomicArray<String> get(String key);
+
+  /**
+   * Put a features index in the storage.
+   * @param key key of the features index
+   * @param annotationName name of the annotation file
+   * @param index features index to store
+   */
+  void put(String key, String annotationName,
+      CompactGenomicArray<String> index);
+
+}
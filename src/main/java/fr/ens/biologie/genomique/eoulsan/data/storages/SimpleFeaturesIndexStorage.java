@@ -0,0 +1,274 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.data.storages;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.bio.CompactGenomicArray;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This class define a basic FeaturesIndexStorage based on an index file. Each
+ * features index is saved in a binary file.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class SimpleFeaturesIndexStorage implements FeaturesIndexStorage {
+
+  private static final String INDEX_FILENAME = "features_index_storage.txt";
+  private static final String FEATURES_INDEX_EXTENSION = ".fidx";
+
+  private final DataFile dir;
+  private final Map<String, IndexEntry> entries = new LinkedHashMap<>();
+
+  /**
+   * This inner class define an entry of the index file.
+   * @author Laurent Jourdren
+   */
+  private static final class IndexEntry {
+
+    String annotationName;
+    String key;
+    DataFile file;
+
+    @Override
+    public String toString() {
+      return this.getClass().getSimpleName()
+          + "{annotationName=" + this.annotationName + ", key=" + this.key
+          + ", file=" + this.file + "}";
+    }
+  }
+
+  //
+  // Index management methods
+  //
+
+  /**
+   * Load the information from the index file
+   * @throws IOException if an error occurs while loading the index file
+   */
+  private void load() throws IOException {
+
+    if (!this.dir.exists()) {
+      throw new IOException("Features index storage directory not found: "
+          + this.dir.getSource());
+    }
+
+    final DataFile indexFile = new DataFile(this.dir, INDEX_FILENAME);
+
+    // Create an empty index file if no index exists
+    if (!indexFile.exists()) {
+
+      save();
+      return;
+    }
+
+    try (BufferedReader br = new BufferedReader(
+        new InputStreamReader(indexFile.open(), Globals.DEFAULT_CHARSET))) {
+
+      final Pattern pattern = Pattern.compile("\t");
+      String line = null;
+
+      while ((line = br.readLine()) != null) {
+
+        final String trimmedLine = line.trim();
+        if ("".equals(trimmedLine) || trimmedLine.startsWith("#")) {
+          continue;
+        }
+
+        final List<String> fields = Arrays.asList(pattern.split(trimmedLine));
+
+        if (fields.size() != 3) {
+          continue;
+        }
+
+        final IndexEntry e = new IndexEntry();
+        e.annotationName = fields.get(0);
+        e.key = fields.get(1);
+        e.file = new DataFile(this.dir, fields.get(2));
+
+        if (e.file.exists()) {
+          this.entries.put(e.key, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Save the information in the index file
+   * @throws IOException if an error occurs while saving the index file
+   */
+  private void save() throws IOException {
+
+    if (!this.dir.exists()) {
+      throw new IOException("Features index storage directory not found: "
+          + this.dir.getSource());
+    }
+
+    final DataFile indexFile = new DataFile(this.dir, INDEX_FILENAME);
+
+    try (BufferedWriter writer = new BufferedWriter(
+        new OutputStreamWriter(indexFile.create(), Globals.DEFAULT_CHARSET))) {
+
+      writer.write("#Annotation\tKey\tFile\n");
+
+      for (IndexEntry ie : this.entries.values()) {
+
+        writer.append(ie.annotationName);
+        writer.append("\t");
+        writer.append(ie.key);
+        writer.append("\t");
+        writer.append(ie.file.getName());
+        writer.append("\n");
+      }
+    }
+  }
+
+  //
+  // Interface methods
+  //
+
+  @Override
+  public synchronized CompactGenomicArray<String> get(final String key) {
+
+    requireNonNull(key, "key argument cannot be null");
+
+    final IndexEntry entry = this.entries.get(key);
+
+    if (entry == null || entry.file == null) {
+      return null;
+    }
+
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new BufferedInputStream(entry.file.open()))) {
+
+      @SuppressWarnings("unchecked")
+      final CompactGenomicArray<String> result =
+          (CompactGenomicArray<String>) ois.readObject();
+
+      return result;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      getLogger().warning("Cannot read features index file: " + e.getMessage());
+      return null;
+    }
+  }
+
+  @Override
+  public synchronized void put(final String key, final String annotationName,
+      final CompactGenomicArray<String> index) {
+
+    requireNonNull(key, "key argument cannot be null");
+    requireNonNull(annotationName, "annotationName argument cannot be null");
+    requireNonNull(index, "index argument cannot be null");
+
+    if (this.entries.containsKey(key)) {
+      return;
+    }
+
+    final IndexEntry entry = new IndexEntry();
+    entry.annotationName = annotationName;
+    entry.key = key;
+    entry.file = new DataFile(this.dir, key + FEATURES_INDEX_EXTENSION);
+
+    try (ObjectOutputStream oos = new ObjectOutputStream(
+        new BufferedOutputStream(entry.file.create()))) {
+
+      oos.writeObject(index);
+
+    } catch (IOException e) {
+      getLogger().warning(
+          "Cannot add features index file to features index storage: "
+              + e.getMessage());
+      return;
+    }
+
+    try {
+      this.entries.put(entry.key, entry);
+      save();
+      getLogger().info("Successfully added "
+          + entry.annotationName + " features index to features index storage.");
+    } catch (IOException e) {
+      getLogger().warning("Cannot update features index storage index file: "
+          + e.getMessage());
+    }
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Create a FeaturesIndexStorage
+   * @param dir the path of the features index storage
+   * @return a FeaturesIndexStorage object if the path contains an index storage
+   *         or null if no index storage is found
+   */
+  public static final FeaturesIndexStorage getInstance(final DataFile dir) {
+
+    try {
+      return new SimpleFeaturesIndexStorage(dir);
+    } catch (IOException | NullPointerException e) {
+      return null;
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   * @param dir Path to the index storage
+   * @throws IOException if an error occurs while testing the index storage
+   */
+  private SimpleFeaturesIndexStorage(final DataFile dir) throws IOException {
+
+    requireNonNull(dir, "Index directory is null");
+
+    this.dir = dir;
+    load();
+
+    getLogger().info("Features index storage found. "
+        + this.entries.size() + " entries in : " + dir.getSource());
+  }
+
+}
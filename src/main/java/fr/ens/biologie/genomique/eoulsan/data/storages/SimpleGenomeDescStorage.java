@@ -29,9 +29,14 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -52,12 +57,12 @@ import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 public class SimpleGenomeDescStorage implements GenomeDescStorage {
 
   private static final String INDEX_FILENAME = "genomes_desc_storage.txt";
+  private static final String FINGERPRINTS_FILENAME =
+      "genomes_desc_fingerprints.txt";
 
   private final DataFile dir;
   private final Map<String, IndexEntry> entries = new LinkedHashMap<>();
-  private String lastMD5Computed;
-  private DataFile lastGenomeFile;
-  private long lastGenomeFileModified;
+  private final Map<String, Fingerprint> fingerprints = new LinkedHashMap<>();
 
   /**
    * This inner class define an entry of the index file.
@@ -83,6 +88,24 @@ public class SimpleGenomeDescStorage implements GenomeDescStorage {
     }
   }
 
+  /**
+   * This inner class define the fingerprint of a genome file. It allows to
+   * retrieve the MD5 sum of an unchanged genome file without reading it.
+   * @author Laurent Jourdren
+   */
+  private static final class Fingerprint {
+
+    long genomeFileLength;
+    long genomeFileModified;
+    String genomeFileMD5Sum;
+
+    private boolean matches(final DataFileMetadata md) {
+
+      return md.getContentLength() == this.genomeFileLength
+          && md.getLastModified() == this.genomeFileModified;
+    }
+  }
+
   //
   // Index management methods
   //
@@ -138,6 +161,119 @@ public class SimpleGenomeDescStorage implements GenomeDescStorage {
     }
 
     br.close();
+
+    loadFingerprints();
+  }
+
+  /**
+   * Load the fingerprints of the genome files.
+   * @throws IOException if an error occurs while loading the fingerprints file
+   */
+  private void loadFingerprints() throws IOException {
+
+    final DataFile fingerprintsFile =
+        new DataFile(this.dir, FINGERPRINTS_FILENAME);
+
+    if (!fingerprintsFile.exists()) {
+      return;
+    }
+
+    final BufferedReader br = new BufferedReader(new InputStreamReader(
+        fingerprintsFile.open(), Globals.DEFAULT_CHARSET));
+
+    final Pattern pattern = Pattern.compile("\t");
+    String line = null;
+
+    while ((line = br.readLine()) != null) {
+
+      if (line.trim().isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      final List<String> fields = Arrays.asList(pattern.split(line, 4));
+
+      if (fields.size() != 4) {
+        continue;
+      }
+
+      try {
+        final Fingerprint f = new Fingerprint();
+        f.genomeFileLength = Long.parseLong(fields.get(0));
+        f.genomeFileModified = Long.parseLong(fields.get(1));
+        f.genomeFileMD5Sum = fields.get(2);
+
+        this.fingerprints.put(fields.get(3), f);
+      } catch (NumberFormatException e) {
+        continue;
+      }
+    }
+
+    br.close();
+  }
+
+  /**
+   * Save the fingerprints of the genome files. For local storages, the
+   * fingerprints file is replaced atomically, so concurrent Eoulsan instances
+   * never read a partially written file.
+   * @throws IOException if an error occurs while saving the fingerprints file
+   */
+  private void saveFingerprints() throws IOException {
+
+    final DataFile fingerprintsFile =
+        new DataFile(this.dir, FINGERPRINTS_FILENAME);
+    final File file = fingerprintsFile.toFile();
+
+    // Other protocols do not allow to replace a file atomically
+    if (file == null) {
+      writeFingerprints(fingerprintsFile.create());
+      return;
+    }
+
+    // Each instance uses its own temporary file
+    final Path tmpFile = Files.createTempFile(file.getParentFile().toPath(),
+        file.getName() + ".", ".tmp");
+
+    try {
+      writeFingerprints(Files.newOutputStream(tmpFile));
+      Files.move(tmpFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * Write the fingerprints of the genome files.
+   * @param out output stream
+   * @throws IOException if an error occurs while writing the fingerprints
+   */
+  private void writeFingerprints(final OutputStream out) throws IOException {
+
+    try (BufferedWriter writer = new BufferedWriter(
+        new OutputStreamWriter(out, Globals.DEFAULT_CHARSET))) {
+
+      writer.write(
+          "#GenomeFileLength\tGenomeFileLastModified\tGenomeFileMD5\tPath\n");
+
+      for (Map.Entry<String, Fingerprint> e : this.fingerprints.entrySet()) {
+
+        final Fingerprint f = e.getValue();
+
+        // Fingerprints without modification date cannot be trusted later
+        if (f.genomeFileModified <= 0) {
+          continue;
+        }
+
+        writer.append(Long.toString(f.genomeFileLength));
+        writer.append("\t");
+        writer.append(Long.toString(f.genomeFileModified));
+        writer.append("\t");
+        writer.append(f.genomeFileMD5Sum);
+        writer.append("\t");
+        writer.append(e.getKey());
+        writer.append("\n");
+      }
+    }
   }
 
   /**
@@ -207,19 +343,32 @@ public class SimpleGenomeDescStorage implements GenomeDescStorage {
     } catch (IOException e) {
     }
 
-    if (md != null
-        && genomeFile.equals(this.lastGenomeFile)
-        && this.lastGenomeFileModified == md.getLastModified()
-        && this.lastMD5Computed != null) {
-      return this.lastMD5Computed;
+    // Avoid reading the genome file if it has not changed
+    final String path = genomeFile.getSource();
+    final Fingerprint fingerprint = this.fingerprints.get(path);
+
+    if (md != null && fingerprint != null && fingerprint.matches(md)) {
+      return fingerprint.genomeFileMD5Sum;
     }
 
     final String md5Sum = FileUtils.computeMD5Sum(genomeFile.rawOpen());
 
     if (md != null && md5Sum != null) {
-      this.lastGenomeFile = genomeFile;
-      this.lastGenomeFileModified = md.getLastModified();
-      this.lastMD5Computed = md5Sum;
+
+      final Fingerprint f = new Fingerprint();
+      f.genomeFileLength = md.getContentLength();
+      f.genomeFileModified = md.getLastModified();
+      f.genomeFileMD5Sum = md5Sum;
+      this.fingerprints.put(path, f);
+
+      if (f.genomeFileModified > 0) {
+        try {
+          saveFingerprints();
+        } catch (IOException e) {
+          getLogger().warning(
+              "Cannot save genome file fingerprints: " + e.getMessage());
+        }
+      }
     }
 
     return md5Sum;
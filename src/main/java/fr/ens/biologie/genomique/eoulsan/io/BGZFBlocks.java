@@ -0,0 +1,311 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class contains the methods to compress and uncompress the blocks of the
+ * BGZF format. A BGZF file is a concatenation of gzip members of at most 64 KB
+ * that can be read by any gzip decompressor. As the blocks are independent,
+ * they can be compressed and uncompressed in parallel.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class BGZFBlocks {
+
+  /** Maximal size of the uncompressed data of a block. */
+  static final int MAX_DATA_SIZE = 0xff00;
+
+  /** Maximal size of a compressed block. */
+  static final int MAX_BLOCK_SIZE = 0x10000;
+
+  /** Size of the header of a block. */
+  static final int HEADER_SIZE = 18;
+
+  /** Size of the footer of a block. */
+  static final int FOOTER_SIZE = 8;
+
+  /** Empty block that ends a BGZF file. */
+  static final byte[] EOF_BLOCK = {0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00,
+      0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00, 0x1b,
+      0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+
+  private static final ThreadLocal<Deflater[]> DEFLATERS =
+      new ThreadLocal<Deflater[]>() {
+
+        @Override
+        protected Deflater[] initialValue() {
+          return new Deflater[Deflater.BEST_COMPRESSION + 1];
+        }
+      };
+
+  private static final ThreadLocal<Inflater> INFLATER =
+      new ThreadLocal<Inflater>() {
+
+        @Override
+        protected Inflater initialValue() {
+          return new Inflater(true);
+        }
+      };
+
+  private static ThreadPoolExecutor executor;
+
+  //
+  // Compression
+  //
+
+  /**
+   * Compress data in a BGZF block.
+   * @param data the data to compress
+   * @param length the length of the data
+   * @param level the compression level
+   * @return a byte array with the compressed block
+   */
+  static byte[] compress(final byte[] data, final int length,
+      final int level) {
+
+    final byte[] buffer = new byte[MAX_BLOCK_SIZE];
+    final int maxCompressedSize = MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+
+    int compressedSize = deflate(data, length, level, buffer);
+
+    // Store the data without compression if the data are not compressible
+    if (compressedSize < 0 || compressedSize > maxCompressedSize) {
+      compressedSize = deflate(data, length, Deflater.NO_COMPRESSION, buffer);
+    }
+
+    final int blockSize = HEADER_SIZE + compressedSize + FOOTER_SIZE;
+    final byte[] result = new byte[blockSize];
+
+    // Header
+    result[0] = 0x1f;
+    result[1] = (byte) 0x8b;
+    result[2] = Deflater.DEFLATED;
+    result[3] = 0x04;
+    result[9] = (byte) 0xff;
+    result[10] = 0x06;
+    result[12] = 'B';
+    result[13] = 'C';
+    result[14] = 0x02;
+    writeShort(result, 16, blockSize - 1);
+
+    // Compressed data
+    System.arraycopy(buffer, 0, result, HEADER_SIZE, compressedSize);
+
+    // Footer
+    final CRC32 crc = new CRC32();
+    crc.update(data, 0, length);
+    writeInt(result, blockSize - 8, (int) crc.getValue());
+    writeInt(result, blockSize - 4, length);
+
+    return result;
+  }
+
+  /**
+   * Deflate data.
+   * @param data the data to compress
+   * @param length the length of the data
+   * @param level the compression level
+   * @param output the output buffer
+   * @return the length of the compressed data or -1 if the output buffer is
+   *         too small
+   */
+  private static int deflate(final byte[] data, final int length,
+      final int level, final byte[] output) {
+
+    // The default compression level of zlib is 6
+    final int index = level == Deflater.DEFAULT_COMPRESSION ? 6 : level;
+    final Deflater[] deflaters = DEFLATERS.get();
+
+    Deflater deflater = deflaters[index];
+    if (deflater == null) {
+      deflater = new Deflater(index, true);
+      deflaters[index] = deflater;
+    }
+
+    deflater.reset();
+    deflater.setInput(data, 0, length);
+    deflater.finish();
+
+    final int result = deflater.deflate(output, 0, output.length);
+
+    return deflater.finished() ? result : -1;
+  }
+
+  //
+  // Decompression
+  //
+
+  /**
+   * Get the size of a BGZF block from its header.
+   * @param header the header
+   * @param length the length of the header
+   * @return the size of the block or -1 if the header is not the header of a
+   *         BGZF block
+   */
+  static int blockSize(final byte[] header, final int length) {
+
+    if (length < HEADER_SIZE
+        || header[0] != 0x1f || header[1] != (byte) 0x8b
+        || header[2] != Deflater.DEFLATED || (header[3] & 0x04) == 0
+        || readShort(header, 10) != 6 || header[12] != 'B'
+        || header[13] != 'C' || readShort(header, 14) != 2) {
+      return -1;
+    }
+
+    return readShort(header, 16) + 1;
+  }
+
+  /**
+   * Uncompress a BGZF block.
+   * @param block the block to uncompress
+   * @return the uncompressed data
+   * @throws IOException if the block is invalid
+   */
+  static byte[] uncompress(final byte[] block) throws IOException {
+
+    final int blockSize = block.length;
+    final int dataSize = readInt(block, blockSize - 4);
+
+    if (dataSize < 0 || dataSize > MAX_BLOCK_SIZE) {
+      throw new IOException("Invalid BGZF block size: " + dataSize);
+    }
+
+    final byte[] result = new byte[dataSize];
+    final Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(block, HEADER_SIZE,
+        blockSize - HEADER_SIZE - FOOTER_SIZE);
+
+    try {
+      final int n = inflater.inflate(result);
+      if (n != dataSize || !inflater.finished()) {
+        throw new IOException("Invalid BGZF block: unexpected data size");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid BGZF block: " + e.getMessage(), e);
+    }
+
+    final CRC32 crc = new CRC32();
+    crc.update(result);
+    if ((int) crc.getValue() != readInt(block, blockSize - 8)) {
+      throw new IOException("Invalid BGZF block: CRC error");
+    }
+
+    return result;
+  }
+
+  //
+  // Executor
+  //
+
+  /**
+   * Get the executor shared by the parallel compression streams. The number
+   * of threads of the executor is increased if required.
+   * @param threadNumber the number of threads required
+   * @return an executor
+   */
+  static synchronized ExecutorService getExecutor(final int threadNumber) {
+
+    if (executor == null) {
+
+      final AtomicInteger count = new AtomicInteger();
+      executor = new ThreadPoolExecutor(threadNumber, threadNumber, 60,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+
+              final Thread t = new Thread(r,
+                  "compression-thread-" + count.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      executor.allowCoreThreadTimeOut(true);
+
+    } else if (executor.getMaximumPoolSize() < threadNumber) {
+      executor.setMaximumPoolSize(threadNumber);
+      executor.setCorePoolSize(threadNumber);
+    }
+
+    return executor;
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static int readShort(final byte[] b, final int offset) {
+
+    return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8;
+  }
+
+  private static int readInt(final byte[] b, final int offset) {
+
+    return (b[offset] & 0xff)
+        | (b[offset + 1] & 0xff) << 8 | (b[offset + 2] & 0xff) << 16
+        | (b[offset + 3] & 0xff) << 24;
+  }
+
+  private static void writeShort(final byte[] b, final int offset,
+      final int value) {
+
+    b[offset] = (byte) value;
+    b[offset + 1] = (byte) (value >>> 8);
+  }
+
+  private static void writeInt(final byte[] b, final int offset,
+      final int value) {
+
+    b[offset] = (byte) value;
+    b[offset + 1] = (byte) (value >>> 8);
+    b[offset + 2] = (byte) (value >>> 16);
+    b[offset + 3] = (byte) (value >>> 24);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   */
+  private BGZFBlocks() {
+  }
+
+}
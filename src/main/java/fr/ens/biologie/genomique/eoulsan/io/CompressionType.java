@@ -30,6 +30,7 @@ import java.io.OutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
 import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
 import fr.ens.biologie.genomique.eoulsan.util.SystemUtils;
 
@@ -205,7 +206,9 @@ public enum CompressionType {
   }
 
   /**
-   * Create a GZip input stream.
+   * Create a GZip input stream. If parallel compression is enabled in the
+   * settings, the BGZF blocks of the input stream are uncompressed in
+   * parallel.
    * @param is the input stream to uncompress
    * @return a uncompressed input stream
    * @throws IOException if an error occurs while creating the input stream
@@ -213,6 +216,12 @@ public enum CompressionType {
   public static InputStream createGZipInputStream(final InputStream is)
       throws IOException {
 
+    final int threads = getCompressionThreadsNumber();
+
+    if (threads > 0) {
+      return new ParallelGZIPInputStream(is, threads);
+    }
+
     return new GZIPInputStream(is);
   }
 
@@ -243,7 +252,8 @@ public enum CompressionType {
   //
 
   /**
-   * Create a GZip output stream.
+   * Create a GZip output stream. If parallel compression is enabled in the
+   * settings, the data is compressed in parallel in BGZF blocks.
    * @param os the output stream to compress
    * @return a compressed output stream
    * @throws IOException if an error occurs while creating the output stream
@@ -251,6 +261,12 @@ public enum CompressionType {
   public static OutputStream createGZipOutputStream(final OutputStream os)
       throws IOException {
 
+    final int threads = getCompressionThreadsNumber();
+
+    if (threads > 0) {
+      return new ParallelGZIPOutputStream(os, threads);
+    }
+
     return new GZIPOutputStream(os);
   }
 
@@ -280,6 +296,21 @@ public enum CompressionType {
   // Other methods
   //
 
+  /**
+   * Get the number of threads to use for gzip compression and decompression
+   * defined in the settings.
+   * @return the number of threads to use or 0 if parallel compression is
+   *         disabled
+   */
+  private static int getCompressionThreadsNumber() {
+
+    if (!EoulsanRuntime.isRuntime()) {
+      return 0;
+    }
+
+    return EoulsanRuntime.getSettings().getCompressionThreadsNumber();
+  }
+
   /**
    * Remove the compression extension to a string if exists.
    * @param s String to process
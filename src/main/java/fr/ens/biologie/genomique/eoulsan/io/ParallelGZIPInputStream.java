@@ -0,0 +1,303 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class define an InputStream that uncompress gzip data using several
+ * threads. The blocks of BGZF files (like the files created by
+ * {@link ParallelGZIPOutputStream} or by bgzip) are read ahead and uncompressed
+ * in parallel. Other gzip members are uncompressed using a standard
+ * GZIPInputStream.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class ParallelGZIPInputStream extends InputStream {
+
+  private final PushbackInputStream in;
+  private final ExecutorService executor;
+  private final int maxPendingBlocks;
+
+  private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+  private final byte[] header = new byte[BGZFBlocks.HEADER_SIZE];
+  private byte[] current = new byte[0];
+  private int position;
+
+  private boolean blockFound;
+  private boolean endOfBlocks;
+  private InputStream fallback;
+  private boolean closed;
+
+  //
+  // InputStream methods
+  //
+
+  @Override
+  public int read() throws IOException {
+
+    checkClosed();
+
+    if (this.position == this.current.length && !nextBlock()) {
+      return this.fallback != null ? this.fallback.read() : -1;
+    }
+
+    return this.current[this.position++] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (b == null) {
+      throw new NullPointerException(
+          "the array of bytes argument cannot be null");
+    }
+
+    checkClosed();
+
+    if (len == 0) {
+      return 0;
+    }
+
+    if (this.position == this.current.length && !nextBlock()) {
+      return this.fallback != null ? this.fallback.read(b, off, len) : -1;
+    }
+
+    final int n = Math.min(len, this.current.length - this.position);
+    System.arraycopy(this.current, this.position, b, off, n);
+    this.position += n;
+
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+
+    checkClosed();
+
+    if (this.position < this.current.length) {
+      return this.current.length - this.position;
+    }
+
+    return this.fallback != null ? this.fallback.available() : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+
+    for (Future<byte[]> f : this.pendingBlocks) {
+      f.cancel(false);
+    }
+    this.pendingBlocks.clear();
+
+    if (this.fallback != null) {
+      this.fallback.close();
+    } else {
+      this.in.close();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Set the next non empty uncompressed block as the current block.
+   * @return false if there is no more BGZF block to read
+   * @throws IOException if an error occurs while reading the blocks
+   */
+  private boolean nextBlock() throws IOException {
+
+    do {
+
+      submitBlocks();
+
+      if (this.pendingBlocks.isEmpty()) {
+
+        // Use a standard gzip decompressor for the remaining data
+        if (this.fallback == null && !isEndOfStream()) {
+          this.fallback = new GZIPInputStream(this.in);
+        }
+
+        return false;
+      }
+
+      try {
+        this.current = this.pendingBlocks.removeFirst().get();
+        this.position = 0;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Decompression has been interrupted", e);
+      } catch (ExecutionException e) {
+        throw new IOException(
+            "Error while uncompressing data: " + e.getCause().getMessage(),
+            e.getCause());
+      }
+
+    } while (this.current.length == 0);
+
+    return true;
+  }
+
+  /**
+   * Read the next BGZF blocks and submit them for decompression.
+   * @throws IOException if an error occurs while reading the blocks
+   */
+  private void submitBlocks() throws IOException {
+
+    while (!this.endOfBlocks
+        && this.pendingBlocks.size() < this.maxPendingBlocks) {
+
+      final int headerLength = readFully(this.header, 0, this.header.length);
+      final int blockSize = BGZFBlocks.blockSize(this.header, headerLength);
+
+      // Not a BGZF block
+      if (blockSize < BGZFBlocks.HEADER_SIZE + BGZFBlocks.FOOTER_SIZE) {
+        this.in.unread(this.header, 0, headerLength);
+        this.endOfBlocks = true;
+        return;
+      }
+
+      final byte[] block = new byte[blockSize];
+      System.arraycopy(this.header, 0, block, 0, BGZFBlocks.HEADER_SIZE);
+
+      if (readFully(block, BGZFBlocks.HEADER_SIZE,
+          blockSize - BGZFBlocks.HEADER_SIZE) != blockSize
+              - BGZFBlocks.HEADER_SIZE) {
+        throw new EOFException("Unexpected end of BGZF block");
+      }
+
+      this.pendingBlocks.add(this.executor.submit(new Callable<byte[]>() {
+
+        @Override
+        public byte[] call() throws IOException {
+
+          return BGZFBlocks.uncompress(block);
+        }
+      }));
+      this.blockFound = true;
+    }
+  }
+
+  /**
+   * Test if the end of the underlying stream has been reached.
+   * @return true if the end of the underlying stream has been reached
+   * @throws IOException if an error occurs while reading the stream
+   */
+  private boolean isEndOfStream() throws IOException {
+
+    final int b = this.in.read();
+
+    if (b == -1) {
+      return true;
+    }
+
+    this.in.unread(b);
+
+    return false;
+  }
+
+  /**
+   * Read bytes until the buffer is full or the end of the stream.
+   * @param b the buffer
+   * @param off offset in the buffer
+   * @param len number of bytes to read
+   * @return the number of bytes read
+   * @throws IOException if an error occurs while reading the stream
+   */
+  private int readFully(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    int total = 0;
+
+    while (total < len) {
+
+      final int n = this.in.read(b, off + total, len - total);
+      if (n == -1) {
+        break;
+      }
+      total += n;
+    }
+
+    return total;
+  }
+
+  private void checkClosed() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param in the input stream
+   * @param threadNumber the number of threads to use
+   * @throws IOException if the input stream is not in gzip format
+   */
+  public ParallelGZIPInputStream(final InputStream in, final int threadNumber)
+      throws IOException {
+
+    if (in == null) {
+      throw new NullPointerException("in argument cannot be null");
+    }
+
+    if (threadNumber < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads must be greater than 0: " + threadNumber);
+    }
+
+    this.in = new PushbackInputStream(in, BGZFBlocks.HEADER_SIZE);
+    this.executor = BGZFBlocks.getExecutor(threadNumber);
+    this.maxPendingBlocks = 2 * threadNumber;
+
+    // Like GZIPInputStream, fail immediately if the data is not in gzip format
+    if (!nextBlock() && !this.blockFound && this.fallback == null) {
+      throw new EOFException();
+    }
+  }
+
+}
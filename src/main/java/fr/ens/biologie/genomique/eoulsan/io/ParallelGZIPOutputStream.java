@@ -0,0 +1,244 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * This class define an OutputStream that compress data in gzip format using
+ * several threads. The data are split in independent blocks of the BGZF format
+ * that are compressed in parallel and written in the order of the input. The
+ * output is a standard gzip file that can be read by any gzip decompressor and
+ * that can be read in parallel by {@link ParallelGZIPInputStream}.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+  private final OutputStream out;
+  private final ExecutorService executor;
+  private final int maxPendingBlocks;
+  private final int compressionLevel;
+
+  private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+  private byte[] buffer = new byte[BGZFBlocks.MAX_DATA_SIZE];
+  private int count;
+  private boolean closed;
+
+  //
+  // OutputStream methods
+  //
+
+  @Override
+  public void write(final int b) throws IOException {
+
+    checkClosed();
+
+    this.buffer[this.count++] = (byte) b;
+
+    if (this.count == this.buffer.length) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (b == null) {
+      throw new NullPointerException(
+          "the array of bytes argument cannot be null");
+    }
+
+    checkClosed();
+
+    int offset = off;
+    int remaining = len;
+
+    while (remaining > 0) {
+
+      final int n = Math.min(remaining, this.buffer.length - this.count);
+      System.arraycopy(b, offset, this.buffer, this.count, n);
+      this.count += n;
+      offset += n;
+      remaining -= n;
+
+      if (this.count == this.buffer.length) {
+        submitBlock();
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+
+    checkClosed();
+
+    if (this.count > 0) {
+      submitBlock();
+    }
+
+    while (!this.pendingBlocks.isEmpty()) {
+      writeNextBlock();
+    }
+
+    this.out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    try {
+      flush();
+      this.out.write(BGZFBlocks.EOF_BLOCK);
+    } finally {
+
+      this.closed = true;
+
+      for (Future<byte[]> f : this.pendingBlocks) {
+        f.cancel(false);
+      }
+      this.pendingBlocks.clear();
+
+      this.out.close();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Submit the content of the buffer for compression. If there are too many
+   * blocks in progress, the oldest blocks are written.
+   * @throws IOException if an error occurs while writing a compressed block
+   */
+  private void submitBlock() throws IOException {
+
+    final byte[] data = this.buffer;
+    final int length = this.count;
+    final int level = this.compressionLevel;
+
+    this.pendingBlocks.add(this.executor.submit(new Callable<byte[]>() {
+
+      @Override
+      public byte[] call() {
+
+        return BGZFBlocks.compress(data, length, level);
+      }
+    }));
+
+    this.buffer = new byte[BGZFBlocks.MAX_DATA_SIZE];
+    this.count = 0;
+
+    while (this.pendingBlocks.size() > this.maxPendingBlocks) {
+      writeNextBlock();
+    }
+  }
+
+  /**
+   * Wait the end of the compression of the oldest block and write it.
+   * @throws IOException if an error occurs while writing the block
+   */
+  private void writeNextBlock() throws IOException {
+
+    try {
+      this.out.write(this.pendingBlocks.removeFirst().get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Compression has been interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IOException(
+          "Error while compressing data: " + e.getCause().getMessage(),
+          e.getCause());
+    }
+  }
+
+  private void checkClosed() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Public constructor.
+   * @param out the output stream
+   * @param threadNumber the number of threads to use
+   */
+  public ParallelGZIPOutputStream(final OutputStream out,
+      final int threadNumber) {
+
+    this(out, threadNumber, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Public constructor.
+   * @param out the output stream
+   * @param threadNumber the number of threads to use
+   * @param compressionLevel the compression level (0-9 or -1 for the default
+   *          compression level)
+   */
+  public ParallelGZIPOutputStream(final OutputStream out,
+      final int threadNumber, final int compressionLevel) {
+
+    if (out == null) {
+      throw new NullPointerException("out argument cannot be null");
+    }
+
+    if (threadNumber < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads must be greater than 0: " + threadNumber);
+    }
+
+    if (compressionLevel < Deflater.DEFAULT_COMPRESSION
+        || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException(
+          "Invalid compression level: " + compressionLevel);
+    }
+
+    this.out = out;
+    this.executor = BGZFBlocks.getExecutor(threadNumber);
+    this.maxPendingBlocks = 2 * threadNumber;
+    this.compressionLevel = compressionLevel;
+  }
+
+}
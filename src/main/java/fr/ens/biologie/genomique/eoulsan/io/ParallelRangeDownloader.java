@@ -0,0 +1,500 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.Settings;
+
+/**
+ * This class define a downloader that fetch the parts of a remote file in
+ * parallel using range requests. The parts can be reassembled in order in an
+ * InputStream or written directly at their position in a local file. Each part
+ * is retried several times before the download fails.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class ParallelRangeDownloader {
+
+  private static final int MAX_TRIES = 3;
+  private static final int RETRY_DELAY = 1000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // The parts are kept in arrays of bytes
+  private static final long MAX_PART_SIZE = 1024L * 1024L * 1024L;
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final RangeSource source;
+  private final String sourceName;
+  private final long length;
+  private final int partSize;
+  private final int threadNumber;
+
+  /**
+   * This interface define a source of data that can be read by ranges.
+   */
+  public interface RangeSource {
+
+    /**
+     * Open a range of the data.
+     * @param start position of the first byte of the range
+     * @param end position after the last byte of the range
+     * @return an InputStream with the bytes of the range
+     * @throws IOException if an error occurs while opening the range
+     */
+    InputStream open(long start, long end) throws IOException;
+  }
+
+  /**
+   * This class define the InputStream that reassemble the downloaded parts in
+   * order.
+   */
+  private final class PartsInputStream extends InputStream {
+
+    private final ExecutorService executor = createExecutor();
+    private final Deque<Future<byte[]>> pendingParts = new ArrayDeque<>();
+    private long nextPartStart;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean closed;
+
+    @Override
+    public int read() throws IOException {
+
+      checkClosed();
+
+      if (this.position == this.current.length && !nextPart()) {
+        return -1;
+      }
+
+      return this.current[this.position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException {
+
+      if (b == null) {
+        throw new NullPointerException(
+            "the array of bytes argument cannot be null");
+      }
+
+      checkClosed();
+
+      if (len == 0) {
+        return 0;
+      }
+
+      if (this.position == this.current.length && !nextPart()) {
+        return -1;
+      }
+
+      final int n = Math.min(len, this.current.length - this.position);
+      System.arraycopy(this.current, this.position, b, off, n);
+      this.position += n;
+
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+
+      checkClosed();
+
+      return this.current.length - this.position;
+    }
+
+    @Override
+    public void close() {
+
+      if (this.closed) {
+        return;
+      }
+
+      this.closed = true;
+
+      for (Future<byte[]> f : this.pendingParts) {
+        f.cancel(true);
+      }
+      this.pendingParts.clear();
+      this.executor.shutdownNow();
+    }
+
+    /**
+     * Set the next downloaded part as the current part.
+     * @return false if all the parts have been read
+     * @throws IOException if an error occurs while downloading a part
+     */
+    private boolean nextPart() throws IOException {
+
+      // Keep a download running in each thread
+      while (this.nextPartStart < length
+          && this.pendingParts.size() < threadNumber) {
+
+        final long start = this.nextPartStart;
+        final long end = Math.min(length, start + partSize);
+
+        this.pendingParts.add(this.executor.submit(new Callable<byte[]>() {
+
+          @Override
+          public byte[] call() throws IOException, InterruptedException {
+
+            return downloadPart(start, end);
+          }
+        }));
+        this.nextPartStart = end;
+      }
+
+      if (this.pendingParts.isEmpty()) {
+        return false;
+      }
+
+      this.current = waitFor(this.pendingParts.removeFirst());
+      this.position = 0;
+
+      return true;
+    }
+
+    private void checkClosed() throws IOException {
+
+      if (this.closed) {
+        throw new IOException("Stream closed");
+      }
+    }
+  }
+
+  //
+  // Download methods
+  //
+
+  /**
+   * Create an InputStream that reads the data downloaded in parallel. At most
+   * one part per thread is kept in memory.
+   * @return an InputStream object
+   */
+  public InputStream open() {
+
+    return new PartsInputStream();
+  }
+
+  /**
+   * Download the data in a file. The file is allocated first and the parts are
+   * written at their position in the file by the download threads.
+   * @param file output file
+   * @throws IOException if an error occurs while downloading the data
+   */
+  public void download(final File file) throws IOException {
+
+    if (file == null) {
+      throw new NullPointerException("file argument cannot be null");
+    }
+
+    final ExecutorService executor = createExecutor();
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+
+      raf.setLength(this.length);
+      final FileChannel channel = raf.getChannel();
+
+      final List<Future<byte[]>> futures = new ArrayList<>();
+      for (long start = 0; start < this.length; start += this.partSize) {
+
+        final long partStart = start;
+        final long partEnd = Math.min(this.length, start + this.partSize);
+
+        futures.add(executor.submit(new Callable<byte[]>() {
+
+          @Override
+          public byte[] call() throws IOException, InterruptedException {
+
+            downloadPart(partStart, partEnd, channel);
+            return null;
+          }
+        }));
+      }
+
+      for (Future<byte[]> f : futures) {
+        waitFor(f);
+      }
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Download a part in memory.
+   * @param start position of the first byte of the part
+   * @param end position after the last byte of the part
+   * @return an array with the bytes of the part
+   * @throws IOException if the part cannot be downloaded
+   * @throws InterruptedException if the download has been interrupted
+   */
+  private byte[] downloadPart(final long start, final long end)
+      throws IOException, InterruptedException {
+
+    final byte[] result = new byte[(int) (end - start)];
+
+    for (int tryCount = 1;; tryCount++) {
+
+      try (InputStream in = this.source.open(start, end)) {
+
+        int total = 0;
+        while (total < result.length) {
+
+          final int n = in.read(result, total, result.length - total);
+          if (n == -1) {
+            throw new EOFException("Unexpected end of part");
+          }
+          total += n;
+        }
+
+        return result;
+
+      } catch (IOException e) {
+        retryOrFail(e, start, end, tryCount);
+      }
+    }
+  }
+
+  /**
+   * Download a part in a file.
+   * @param start position of the first byte of the part
+   * @param end position after the last byte of the part
+   * @param channel channel of the output file
+   * @throws IOException if the part cannot be downloaded
+   * @throws InterruptedException if the download has been interrupted
+   */
+  private void downloadPart(final long start, final long end,
+      final FileChannel channel) throws IOException, InterruptedException {
+
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    for (int tryCount = 1;; tryCount++) {
+
+      try (InputStream in = this.source.open(start, end)) {
+
+        long position = start;
+        while (position < end) {
+
+          final int n = in.read(buffer.array(), 0,
+              (int) Math.min(buffer.capacity(), end - position));
+          if (n == -1) {
+            throw new EOFException("Unexpected end of part");
+          }
+
+          buffer.clear().limit(n);
+          while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+          }
+        }
+
+        return;
+
+      } catch (IOException e) {
+        retryOrFail(e, start, end, tryCount);
+      }
+    }
+  }
+
+  /**
+   * Wait before a new try of a part download or throw the exception if the
+   * maximal number of tries has been reached.
+   * @param e the exception of the try
+   * @param start position of the first byte of the part
+   * @param end position after the last byte of the part
+   * @param tryCount the number of the try
+   * @throws IOException if the maximal number of tries has been reached
+   * @throws InterruptedException if the download has been interrupted
+   */
+  private void retryOrFail(final IOException e, final long start,
+      final long end, final int tryCount)
+      throws IOException, InterruptedException {
+
+    final String message = "Error while downloading bytes "
+        + start + "-" + (end - 1) + " of " + this.sourceName + " (Attempt "
+        + tryCount + "): " + e.getMessage();
+
+    if (tryCount >= MAX_TRIES) {
+      throw new IOException(message, e);
+    }
+
+    getLogger().warning(message);
+    Thread.sleep(RETRY_DELAY * tryCount);
+  }
+
+  /**
+   * Wait the end of the download of a part.
+   * @param future the future of the part
+   * @return the result of the future
+   * @throws IOException if the download of the part has failed
+   */
+  private static byte[] waitFor(final Future<byte[]> future)
+      throws IOException {
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Download has been interrupted", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      throw cause instanceof IOException
+          ? (IOException) cause : new IOException(cause.getMessage(), cause);
+    }
+  }
+
+  private ExecutorService createExecutor() {
+
+    return Executors.newFixedThreadPool(this.threadNumber,
+        new ThreadFactory() {
+
+          @Override
+          public Thread newThread(final Runnable r) {
+
+            final Thread t = new Thread(r,
+                "download-thread-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Test if the parallel download is enabled in the settings.
+   * @return true if the parallel download is enabled
+   */
+  public static boolean isEnabled() {
+
+    return EoulsanRuntime.isRuntime()
+        && EoulsanRuntime.getSettings().getDownloadThreadsNumber() > 1;
+  }
+
+  /**
+   * Create a downloader using the parallel download settings.
+   * @param source the source of the data
+   * @param sourceName the name of the source, used in messages
+   * @param length the length of the data
+   * @return a new ParallelRangeDownloader or null if the parallel download is
+   *         disabled or if the data is too small to be downloaded in several
+   *         parts
+   */
+  public static ParallelRangeDownloader newInstance(final RangeSource source,
+      final String sourceName, final long length) {
+
+    if (!isEnabled()) {
+      return null;
+    }
+
+    final Settings settings = EoulsanRuntime.getSettings();
+    final int threadNumber = settings.getDownloadThreadsNumber();
+    final long partSize = settings.getDownloadPartSize() * 1024L * 1024L;
+
+    if (partSize < 1 || partSize > MAX_PART_SIZE) {
+      getLogger().warning("Invalid download part size ("
+          + settings.getDownloadPartSize()
+          + " MB), the size must be between 1 and "
+          + MAX_PART_SIZE / (1024 * 1024)
+          + " MB. Parallel download is disabled");
+      return null;
+    }
+
+    if (threadNumber < 2 || length <= partSize) {
+      return null;
+    }
+
+    return new ParallelRangeDownloader(source, sourceName, length,
+        (int) partSize, threadNumber);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param source the source of the data
+   * @param sourceName the name of the source, used in messages
+   * @param length the length of the data
+   * @param partSize the size of the parts
+   * @param threadNumber the number of threads to use
+   */
+  public ParallelRangeDownloader(final RangeSource source,
+      final String sourceName, final long length, final int partSize,
+      final int threadNumber) {
+
+    if (source == null) {
+      throw new NullPointerException("source argument cannot be null");
+    }
+
+    if (length < 0) {
+      throw new IllegalArgumentException(
+          "The length cannot be lower than 0: " + length);
+    }
+
+    if (partSize < 1) {
+      throw new IllegalArgumentException(
+          "The part size must be greater than 0: " + partSize);
+    }
+
+    if (threadNumber < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads must be greater than 0: " + threadNumber);
+    }
+
+    this.source = source;
+    this.sourceName = sourceName;
+    this.length = length;
+    this.partSize = partSize;
+    this.threadNumber = threadNumber;
+  }
+
+}
@@ -237,18 +237,27 @@ public class CopyInputDataModule extends AbstractModule {
   private void copyData(final Data inData, final Data outData,
       final TaskContext context) throws IOException {
 
+    final int threadNumber =
+        Math.max(1, context.getCurrentStep().getRequiredProcessors());
+
     if (inData.getFormat().getMaxFilesCount() == 1) {
 
       //
       // Handle standard case
       //
 
+      // Get the real input file
+      final DataFile in = getRealDataFile(inData.getDataFile());
+
+      // Define the output file
+      final DataFile out = getOutputFile(in, -1, outData.getName(),
+          outData.getPart(), context);
+
       // Copy the file
-      final DataFile outputFile = copyFile(inData.getDataFile(), -1,
-          outData.getName(), outData.getPart(), context);
+      DataFiles.symlinkOrCopy(in, out, true, threadNumber);
 
       // Set the file in the data object
-      DataUtils.setDataFile(outData, outputFile);
+      DataUtils.setDataFile(outData, out);
     } else {
 
       //
@@ -258,43 +267,44 @@ public class CopyInputDataModule extends AbstractModule {
       // Get the count of input files
       final int count = inData.getDataFileCount();
 
-      // The list of output files
-      final List<DataFile> dataFiles = new ArrayList<>();
+      // The list of input and output files
+      final List<DataFile> inFiles = new ArrayList<>();
+      final List<DataFile> outFiles = new ArrayList<>();
 
       for (int i = 0; i < count; i++) {
 
-        // Copy the file
-        final DataFile outputFile = copyFile(inData.getDataFile(i), i,
-            outData.getName(), outData.getPart(), context);
+        final DataFile in = getRealDataFile(inData.getDataFile(i));
 
-        dataFiles.add(outputFile);
+        inFiles.add(in);
+        outFiles.add(getOutputFile(in, i, outData.getName(),
+            outData.getPart(), context));
       }
 
+      // Copy the files in parallel
+      DataFiles.symlinkOrCopy(inFiles, outFiles, true, threadNumber);
+
       // Set the files in the data object
-      DataUtils.setDataFiles(outData, dataFiles);
+      DataUtils.setDataFiles(outData, outFiles);
     }
   }
 
   /**
-   * Copy an input file to its destination.
-   * @param inputFile the input file
+   * Define the output file of an input file.
+   * @param in the real input file
    * @param fileIndex the output file index
    * @param outDataName the output data name
    * @param outDataPart the output part
    * @param context the step context
    * @return the output file
-   * @throws IOException if an error occurs while copying the data
+   * @throws IOException if the input file cannot be copied to the output file
    */
-  private DataFile copyFile(final DataFile inputFile, final int fileIndex,
+  private DataFile getOutputFile(final DataFile in, final int fileIndex,
       final String outDataName, final int outDataPart,
       final TaskContext context) throws IOException {
 
     final String stepId = context.getCurrentStep().getId();
     final DataFile outputDir = context.getStepOutputDirectory();
 
-    // Get the real input file
-    final DataFile in = getRealDataFile(inputFile);
-
     // Define the compression of the output
     final CompressionType compression = getOutputCompressionType(in);
 
@@ -309,9 +319,6 @@ public class CopyInputDataModule extends AbstractModule {
     // Check input and output files
     checkFiles(in, out);
 
-    // Copy file
-    DataFiles.symlinkOrCopy(in, out, true);
-
     return out;
   }
 
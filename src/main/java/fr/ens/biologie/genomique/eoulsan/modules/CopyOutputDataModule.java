@@ -189,6 +189,8 @@ public class CopyOutputDataModule extends AbstractModule {
       final Data outData) throws IOException {
 
     final DataFile outputDir = context.getStepOutputDirectory();
+    final int threadNumber =
+        Math.max(1, context.getCurrentStep().getRequiredProcessors());
 
     // Handle standard case
     if (inData.getFormat().getMaxFilesCount() == 1) {
@@ -200,7 +202,7 @@ public class CopyOutputDataModule extends AbstractModule {
       checkFiles(in, out);
 
       // Copy file
-      DataFiles.symlinkOrCopy(in, out, true);
+      DataFiles.symlinkOrCopy(in, out, true, threadNumber);
 
       // Set the DataFile in the output data object
       DataUtils.setDataFile(outData, out);
@@ -208,6 +210,7 @@ public class CopyOutputDataModule extends AbstractModule {
     } else {
 
       final int count = inData.getDataFileCount();
+      final List<DataFile> inFiles = new ArrayList<>();
       final List<DataFile> outFiles = new ArrayList<>();
 
       // Handle multi file format like FASTQ files
@@ -215,15 +218,16 @@ public class CopyOutputDataModule extends AbstractModule {
 
         final DataFile in = inData.getDataFile(i);
         final DataFile out = new DataFile(outputDir, in.getName());
+        inFiles.add(in);
         outFiles.add(out);
 
         // Check input and output files
         checkFiles(in, out);
-
-        // Copy file
-        DataFiles.symlinkOrCopy(in, out, true);
       }
 
+      // Copy files in parallel
+      DataFiles.symlinkOrCopy(inFiles, outFiles, true, threadNumber);
+
       // Set the DataFile in the output data object
       DataUtils.setDataFiles(outData, outFiles);
     }
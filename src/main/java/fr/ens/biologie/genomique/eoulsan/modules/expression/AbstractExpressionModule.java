@@ -36,6 +36,8 @@ import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.ANNOTATION_GFF;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.ANNOTATION_GTF;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.EXPRESSION_RESULTS_TSV;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.GENOME_DESC_TXT;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_BAM;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_INDEX_BAI;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 
 import java.util.Set;
@@ -73,6 +75,8 @@ public abstract class AbstractExpressionModule extends AbstractModule {
       "features.file.format";
   public static final String OUTPUT_FILE_FORMAT_PARAMETER_NAME =
       "output.file.format";
+  public static final String ALIGNMENTS_FILE_FORMAT_PARAMETER_NAME =
+      "alignments.file.format";
 
   private static final String OLD_EOULSAN_COUNTER_NAME = "eoulsanCounter";
   private static final String OLD_REMOVE_AMBIGUOUS_CASES_PARAMETER_NAME =
@@ -85,6 +89,7 @@ public abstract class AbstractExpressionModule extends AbstractModule {
 
   private boolean gtfInputFormat;
   private boolean samOutputFormat;
+  private boolean bamInputFormat;
   private ExpressionCounter counter;
 
   //
@@ -99,6 +104,14 @@ public abstract class AbstractExpressionModule extends AbstractModule {
     return this.gtfInputFormat;
   }
 
+  /**
+   * Test if the alignments are in indexed BAM files.
+   * @return true if the alignments are in indexed BAM files
+   */
+  protected boolean isBAMInputFormat() {
+    return this.bamInputFormat;
+  }
+
   /**
    * Test if SAM output format must be used.
    * @return true if SAM output format must be used
@@ -143,7 +156,12 @@ public abstract class AbstractExpressionModule extends AbstractModule {
 
     final InputPortsBuilder builder = new InputPortsBuilder();
 
-    builder.addPort("alignments", MAPPER_RESULTS_SAM);
+    if (this.bamInputFormat) {
+      builder.addPort("alignments", MAPPER_RESULTS_BAM);
+      builder.addPort("alignmentsindex", MAPPER_RESULTS_INDEX_BAI);
+    } else {
+      builder.addPort("alignments", MAPPER_RESULTS_SAM);
+    }
     builder.addPort("featuresannotation",
         this.gtfInputFormat ? ANNOTATION_GTF : ANNOTATION_GFF);
     builder.addPort("genomedescription", GENOME_DESC_TXT);
@@ -268,6 +286,25 @@ public abstract class AbstractExpressionModule extends AbstractModule {
         }
         break;
 
+      case ALIGNMENTS_FILE_FORMAT_PARAMETER_NAME:
+
+        switch (p.getLowerStringValue()) {
+
+        case "sam":
+          this.bamInputFormat = false;
+          break;
+
+        case "bam":
+          this.bamInputFormat = true;
+          break;
+
+        default:
+          Modules.badParameterValue(context, p,
+              "Unknown alignments file format");
+          break;
+        }
+        break;
+
       default:
         try {
           this.counter.setParameter(p.getName(), p.getValue());
@@ -60,6 +60,7 @@ import fr.ens.biologie.genomique.eoulsan.bio.io.hadoop.ExpressionOutputFormat;
 import fr.ens.biologie.genomique.eoulsan.bio.io.hadoop.SAMInputFormat;
 import fr.ens.biologie.genomique.eoulsan.bio.io.hadoop.SAMOutputFormat;
 import fr.ens.biologie.genomique.eoulsan.core.InputPorts;
+import fr.ens.biologie.genomique.eoulsan.core.Modules;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.core.StepConfigurationContext;
 import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
@@ -112,6 +113,12 @@ public class ExpressionHadoopModule extends AbstractExpressionModule {
       final Set<Parameter> stepParameters) throws EoulsanException {
 
     super.configure(context, stepParameters);
+
+    if (isBAMInputFormat()) {
+      Modules.invalidConfiguration(context,
+          "The BAM alignments file format is only supported in local mode");
+    }
+
     this.conf = CommonHadoop.createConfiguration(EoulsanRuntime.getSettings());
   }
 
@@ -34,7 +34,6 @@ import java.io.ObjectInputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
@@ -49,6 +48,7 @@ import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
 import fr.ens.biologie.genomique.eoulsan.bio.SAMUtils;
 import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.ExpressionCounter;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.FeatureCounts;
 import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
 import fr.ens.biologie.genomique.eoulsan.util.hadoop.HadoopReporterIncrementer;
 import fr.ens.biologie.genomique.eoulsan.util.hadoop.PathUtils;
@@ -76,6 +76,9 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
   private final Text outKey = new Text();
   private final LongWritable outValue = new LongWritable(1L);
 
+  // The counts of the task, written at the end of the task
+  private final FeatureCounts counts = new FeatureCounts();
+
   @Override
   public void setup(final Context context)
       throws IOException, InterruptedException {
@@ -194,15 +197,8 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
       }
 
       // Count
-      final Map<String, Integer> counts =
-          this.counter.count(samRecords, this.reporter, this.counterGroup);
-
-      // Write the results
-      for (Map.Entry<String, Integer> e : counts.entrySet()) {
-        this.outKey.set(e.getKey());
-        this.outValue.set(e.getValue());
-        context.write(this.outKey, this.outValue);
-      }
+      this.counter.count(samRecords, this.counts, this.reporter,
+          this.counterGroup);
 
     } catch (SAMFormatException | EoulsanException e) {
 
@@ -216,7 +212,17 @@ public class ExpressionMapper extends Mapper<Text, Text, Text, LongWritable> {
   }
 
   @Override
-  public void cleanup(final Context context) throws IOException {
+  public void cleanup(final Context context)
+      throws IOException, InterruptedException {
+
+    // Write the results
+    for (String feature : this.counts.getFeatures()) {
+      this.outKey.set(feature);
+      this.outValue.set(this.counts.get(feature));
+      context.write(this.outKey, this.outValue);
+    }
+
+    this.counts.clear();
   }
 
   //
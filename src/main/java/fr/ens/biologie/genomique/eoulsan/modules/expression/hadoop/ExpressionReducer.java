@@ -60,8 +60,8 @@ public class ExpressionReducer
 
   /**
    * 'key': annotation identifier of the feature (gene, mRNA, exon...).
-   * 'values': a list of '1', the size of this list is the number of reads found
-   * on the feature.
+   * 'values': the counts of the feature computed by each mapper, the sum of
+   * this list is the number of reads found on the feature.
    */
   @Override
   protected void reduce(final Text key, final Iterable<LongWritable> values,
@@ -28,15 +28,17 @@ import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.ANNOTATION_GFF;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.ANNOTATION_GTF;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.EXPRESSION_RESULTS_TSV;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.GENOME_DESC_TXT;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_BAM;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_INDEX_BAI;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Map;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
 import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.ExpressionCounter;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.FeatureCounts;
 import fr.ens.biologie.genomique.eoulsan.bio.io.TSVCountsWriter;
 import fr.ens.biologie.genomique.eoulsan.bio.io.CountsWriter;
 import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
@@ -65,7 +67,8 @@ public class ExpressionLocalModule extends AbstractExpressionModule {
 
       final Data featuresAnnotationData = context
           .getInputData(isGTFInputFormat() ? ANNOTATION_GTF : ANNOTATION_GFF);
-      final Data alignmentData = context.getInputData(MAPPER_RESULTS_SAM);
+      final Data alignmentData = context.getInputData(
+          isBAMInputFormat() ? MAPPER_RESULTS_BAM : MAPPER_RESULTS_SAM);
       final Data genomeDescriptionData = context.getInputData(GENOME_DESC_TXT);
       final Data expressionData = context.getOutputData(
           isSAMOutputFormat() ? MAPPER_RESULTS_SAM : EXPRESSION_RESULTS_TSV,
@@ -82,6 +85,11 @@ public class ExpressionLocalModule extends AbstractExpressionModule {
       // Get alignment file
       final DataFile alignmentFile = alignmentData.getDataFile();
 
+      // Get the index of the alignment file
+      final DataFile alignmentIndexFile = isBAMInputFormat()
+          ? context.getInputData(MAPPER_RESULTS_INDEX_BAI).getDataFile()
+          : null;
+
       // Get genome desc file
       final DataFile genomeDescFile = genomeDescriptionData.getDataFile();
 
@@ -97,15 +105,19 @@ public class ExpressionLocalModule extends AbstractExpressionModule {
 
       status.setDescription(sampleCounterHeader);
 
-      final Map<String, Integer> result;
-
       if (isSAMOutputFormat()) {
 
-        result = counter.count(alignmentFile.open(), expressionFile.create(),
+        counter.count(alignmentFile.open(), expressionFile.create(),
             context.getLocalTempDirectory(), reporter, COUNTER_GROUP);
       } else {
+
+        // Get the number of threads to use
+        final int threadCount =
+            context.getCurrentStep().getRequiredProcessors();
+
         // Launch counting
-        result = counter.count(alignmentFile, reporter, COUNTER_GROUP);
+        final FeatureCounts result = counter.countFeatures(alignmentFile,
+            alignmentIndexFile, threadCount, reporter, COUNTER_GROUP);
 
         // Add features with zero count
         counter.addZeroCountFeatures(result);
@@ -29,8 +29,9 @@ import static java.util.Objects.requireNonNull;
 import java.io.File;
 import java.io.IOException;
 
-import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecord;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecordReader;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import uk.ac.babraham.FastQC.Sequence.Sequence;
 import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
@@ -43,7 +44,11 @@ import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
 public class FastqSequenceFile implements CounterSequenceFile {
 
   private final DataFile file;
-  private final FastqReader reader;
+  private final FastqRecordReader reader;
+  private final FastqRecord record = new FastqRecord();
+  private boolean recordAvailable;
+  private boolean end;
+  private Exception exception;
   private long count;
 
   @Override
@@ -61,7 +66,26 @@ public class FastqSequenceFile implements CounterSequenceFile {
   @Override
   public boolean hasNext() {
 
-    return this.reader.hasNext();
+    if (this.recordAvailable || this.exception != null) {
+      return true;
+    }
+
+    if (this.end) {
+      return false;
+    }
+
+    try {
+      this.recordAvailable = this.reader.read(this.record);
+    } catch (IOException | BadBioEntryException e) {
+
+      // The exception will be thrown by the next() method
+      this.exception = e;
+      return true;
+    }
+
+    this.end = !this.recordAvailable;
+
+    return this.recordAvailable;
   }
 
   @Override
@@ -79,11 +103,22 @@ public class FastqSequenceFile implements CounterSequenceFile {
   @Override
   public Sequence next() throws SequenceFormatException {
 
-    final ReadSequence read = this.reader.next();
+    if (!hasNext()) {
+      throw new SequenceFormatException("No more sequence to read");
+    }
+
+    if (this.exception != null) {
+      final Exception e = this.exception;
+      this.exception = null;
+      this.end = true;
+      throw new SequenceFormatException(e.getMessage());
+    }
+
+    this.recordAvailable = false;
     this.count++;
 
-    return new Sequence(this, read.getSequence(), read.getQuality(),
-        read.getName());
+    return new Sequence(this, this.record.getSequence(),
+        this.record.getQuality(), this.record.getName());
   }
 
   @Override
@@ -106,7 +141,7 @@ public class FastqSequenceFile implements CounterSequenceFile {
     requireNonNull(fastqFile, "file argument cannot be null");
 
     this.file = fastqFile;
-    this.reader = new FastqReader(fastqFile.open());
+    this.reader = new FastqRecordReader(fastqFile);
   }
 
 }
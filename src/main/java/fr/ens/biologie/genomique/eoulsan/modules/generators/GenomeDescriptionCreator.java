@@ -24,8 +24,12 @@
 
 package fr.ens.biologie.genomique.eoulsan.modules.generators;
 
+import static fr.ens.biologie.genomique.eoulsan.io.CompressionType.NONE;
+
+import java.io.File;
 import java.io.IOException;
 
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
 import fr.ens.biologie.genomique.eoulsan.checkers.CheckStore;
@@ -108,8 +112,7 @@ public class GenomeDescriptionCreator {
     if (desc == null) {
 
       // Compute the genome description
-      desc = GenomeDescription.createGenomeDescFromFasta(genomeDataFile.open(),
-          genomeDataFile.getName());
+      desc = computeGenomeDescription(genomeDataFile);
 
       // Store it if storage exists
       if (this.storage != null) {
@@ -123,6 +126,31 @@ public class GenomeDescriptionCreator {
     return desc;
   }
 
+  /**
+   * Compute the genome description. If the genome is an uncompressed local
+   * file, the genome is checked using several threads.
+   * @param genomeDataFile genome file
+   * @return the genome description object
+   * @throws BadBioEntryException if an error occurs while computing the genome
+   *           description
+   * @throws IOException if an error occurs while computing the genome
+   *           description
+   */
+  private static GenomeDescription computeGenomeDescription(
+      final DataFile genomeDataFile) throws BadBioEntryException, IOException {
+
+    final File genomeFile = genomeDataFile.toFile();
+
+    if (genomeFile != null && genomeDataFile.getCompressionType() == NONE) {
+
+      return GenomeDescription.createGenomeDescFromFasta(genomeFile,
+          EoulsanRuntime.getSettings().getLocalThreadsNumber());
+    }
+
+    return GenomeDescription.createGenomeDescFromFasta(genomeDataFile.open(),
+        genomeDataFile.getName());
+  }
+
   //
   // Constructor
   //
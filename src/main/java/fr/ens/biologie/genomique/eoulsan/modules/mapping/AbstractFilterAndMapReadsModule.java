@@ -30,15 +30,18 @@ import static fr.ens.biologie.genomique.eoulsan.core.OutputPortsBuilder.singleOu
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.READS_FASTQ;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.HADOOP_THREADS_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.LOCAL_THREADS_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_ARGUMENTS_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_FLAVOR_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_NAME_PARAMETER_NAME;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAPPER_VERSION_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule.MAX_LOCAL_THREADS_PARAMETER_NAME;
 
 import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
+import fr.ens.biologie.genomique.eoulsan.Common;
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.Globals;
 import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilterBuilder;
@@ -83,6 +86,8 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
 
   private int reducerTaskCount = -1;
   private int hadoopThreads = -1;
+  private int localThreads;
+  private int maxLocalThreads;
 
   private int hadoopMapperRequiredMemory =
       AbstractReadsMapperModule.DEFAULT_MAPPER_REQUIRED_MEMORY;
@@ -128,7 +133,7 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
    * @return the flavor of the mapper to use
    */
   protected String getMapperFlavor() {
-    return this.mapperVersion;
+    return this.mapperFlavor;
   }
 
   /**
@@ -147,6 +152,15 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
     return this.hadoopThreads;
   }
 
+  /**
+   * Get the number of threads to use in local mode.
+   * @return Returns the mapperThreads
+   */
+  protected int getMapperLocalThreads() {
+
+    return Common.getThreadsNumber(this.localThreads, this.maxLocalThreads);
+  }
+
   /**
    * Get the amount in MB of memory required to execute the mapper. This value
    * is required by Hadoop scheduler and if the mapper require more memory than
@@ -269,6 +283,14 @@ public abstract class AbstractFilterAndMapReadsModule extends AbstractModule {
         this.hadoopThreads = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
+      case LOCAL_THREADS_PARAMETER_NAME:
+        this.localThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      case MAX_LOCAL_THREADS_PARAMETER_NAME:
+        this.maxLocalThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
       case HADOOP_REDUCER_TASK_COUNT_PARAMETER_NAME:
         this.reducerTaskCount = p.getIntValueGreaterOrEqualsTo(1);
         break;
@@ -74,6 +74,9 @@ public abstract class AbstractReadsMapperModule extends AbstractModule {
   public static final String LOCAL_THREADS_PARAMETER_NAME = "local.threads";
   public static final String MAX_LOCAL_THREADS_PARAMETER_NAME =
       "max.local.threads";
+  public static final String OUTPUT_FORMAT_PARAMETER_NAME = "output.format";
+  public static final String OUTPUT_PARSER_THREADS_PARAMETER_NAME =
+      "output.parser.threads";
 
   public static final int HADOOP_TIMEOUT = 60 * 60 * 1000;
   static final int DEFAULT_MAPPER_REQUIRED_MEMORY = 8 * 1024;
@@ -90,6 +93,8 @@ public abstract class AbstractReadsMapperModule extends AbstractModule {
   private int localThreads;
   private int maxLocalThreads;
   private int hadoopMapperRequiredMemory = DEFAULT_MAPPER_REQUIRED_MEMORY;
+  private boolean bamOutput;
+  private int outputParserThreads;
 
   //
   // Getters
@@ -171,6 +176,34 @@ public abstract class AbstractReadsMapperModule extends AbstractModule {
     return this.hadoopMapperRequiredMemory;
   }
 
+  /**
+   * Test if the output of the mapper must be written in BAM format.
+   * @return true if the output of the mapper must be written in BAM format
+   */
+  protected boolean isBAMOutput() {
+    return this.bamOutput;
+  }
+
+  /**
+   * Get the number of threads to use to parse the output of the mapper.
+   * @param mapperThreads the number of threads used by the mapper
+   * @return the number of threads to use to parse the output of the mapper or
+   *         0 if the number of threads of the mapper is not yet known
+   */
+  protected int getOutputParserThreads(final int mapperThreads) {
+
+    if (this.outputParserThreads > 0) {
+      return this.outputParserThreads;
+    }
+
+    if (mapperThreads < 1) {
+      return 0;
+    }
+
+    // By default, use one parser thread for 8 mapper threads
+    return Math.max(1, mapperThreads / 8);
+  }
+
   /**
    * Get the mapper object.
    * @return the mapper object
@@ -265,6 +298,27 @@ public abstract class AbstractReadsMapperModule extends AbstractModule {
         this.maxLocalThreads = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
+      case OUTPUT_FORMAT_PARAMETER_NAME:
+        switch (p.getLowerStringValue()) {
+
+        case "sam":
+          this.bamOutput = false;
+          break;
+
+        case "bam":
+          this.bamOutput = true;
+          break;
+
+        default:
+          Modules.badParameterValue(context, p,
+              "Unknown output format, only sam and bam are allowed");
+        }
+        break;
+
+      case OUTPUT_PARSER_THREADS_PARAMETER_NAME:
+        this.outputParserThreads = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
       case HADOOP_REDUCER_TASK_COUNT_PARAMETER_NAME:
         this.reducerTaskCount = p.getIntValueGreaterOrEqualsTo(1);
         break;
@@ -35,6 +35,7 @@ public abstract class AbstractSAM2BAMModule extends AbstractModule {
   private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
   private int reducerTaskCount = -1;
   private int maxRecordsInRam = DEFAULT_MAX_RECORDS_IN_RAM;
+  private int maxMemoryInRam = -1;
 
   //
   // Getters
@@ -66,6 +67,16 @@ public abstract class AbstractSAM2BAMModule extends AbstractModule {
     return this.maxRecordsInRam;
   }
 
+  /**
+   * Get the maximum memory in MB to use to sort the records.
+   * @return the maximum memory in MB to use to sort the records or -1 if the
+   *         number of records in memory is used to limit the memory
+   */
+  protected int getMaxMemoryInRam() {
+
+    return this.maxMemoryInRam;
+  }
+
   //
   // Module methods
   //
@@ -104,6 +115,8 @@ public abstract class AbstractSAM2BAMModule extends AbstractModule {
   public void configure(final StepConfigurationContext context,
       final Set<Parameter> stepParameters) throws EoulsanException {
 
+    boolean maxRecordsInRamSet = false;
+
     for (Parameter p : stepParameters) {
 
       switch (p.getName()) {
@@ -118,6 +131,11 @@ public abstract class AbstractSAM2BAMModule extends AbstractModule {
 
       case "max.entries.in.ram":
         this.maxRecordsInRam = p.getIntValueGreaterOrEqualsTo(1);
+        maxRecordsInRamSet = true;
+        break;
+
+      case "max.memory.in.ram":
+        this.maxMemoryInRam = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
       case HADOOP_REDUCER_TASK_COUNT_PARAMETER_NAME:
@@ -128,6 +146,12 @@ public abstract class AbstractSAM2BAMModule extends AbstractModule {
         Modules.unknownParameter(context, p);
       }
     }
+
+    if (maxRecordsInRamSet && this.maxMemoryInRam != -1) {
+      Modules.invalidConfiguration(context,
+          "The max.entries.in.ram and max.memory.in.ram parameters "
+              + "cannot be used together");
+    }
   }
 
 }
@@ -29,6 +29,7 @@ import static fr.ens.biologie.genomique.eoulsan.core.InputPortsBuilder.singleInp
 import static fr.ens.biologie.genomique.eoulsan.core.OutputPortsBuilder.singleOutputPort;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -79,6 +80,23 @@ public abstract class AbstractSAMFilterModule extends AbstractModule {
     return this.reducerTaskCount;
   }
 
+  /**
+   * Get the names of the alignments filters to apply.
+   * @return a set with the names of the alignments filters
+   */
+  protected Set<String> getAlignmentsFilterNames() {
+
+    final Set<String> result = new LinkedHashSet<>();
+
+    for (String key : this.alignmentsFiltersParameters.keySet()) {
+
+      final int index = key.indexOf('.');
+      result.add(index == -1 ? key : key.substring(0, index));
+    }
+
+    return result;
+  }
+
   //
   // Module methods
   //
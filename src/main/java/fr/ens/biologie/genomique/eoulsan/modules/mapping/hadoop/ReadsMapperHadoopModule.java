@@ -119,6 +119,12 @@ public class ReadsMapperHadoopModule extends AbstractReadsMapperModule {
           "Cannot use a mapper Docker image in Hadoop mode");
     }
 
+    // Check if user wants to write the alignments in BAM format
+    if (isBAMOutput()) {
+      Modules.invalidConfiguration(context,
+          "The BAM output format cannot be used in Hadoop mode");
+    }
+
   }
 
   @Override
@@ -232,6 +238,10 @@ public class ReadsMapperHadoopModule extends AbstractReadsMapperModule {
           "" + getMapperHadoopThreads());
     }
 
+    // Set the number of threads for the parsing of the mapper output
+    jobConf.set(ReadsMapperMapper.MAPPER_PARSER_THREADS_KEY,
+        "" + getOutputParserThreads(getMapperHadoopThreads()));
+
     // Set mapper arguments
     if (getMapperArguments() != null) {
       jobConf.set(ReadsMapperMapper.MAPPER_ARGS_KEY,
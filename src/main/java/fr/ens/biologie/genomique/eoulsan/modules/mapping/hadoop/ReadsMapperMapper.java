@@ -27,12 +27,11 @@ import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER;
 import static fr.ens.biologie.genomique.eoulsan.util.StringUtils.unDoubleQuotes;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.URI;
 import java.nio.channels.FileLock;
@@ -58,6 +57,10 @@ import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.EntryMapping;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndex;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperInstance;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.Batch;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.BatchProcessor;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.ResultHandler;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperProcess;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.util.ProcessUtils;
@@ -65,6 +68,7 @@ import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
 import fr.ens.biologie.genomique.eoulsan.util.hadoop.HadoopReporter;
 import fr.ens.biologie.genomique.eoulsan.util.locker.DistributedLocker;
 import fr.ens.biologie.genomique.eoulsan.util.locker.Locker;
+import htsjdk.samtools.SAMFileHeader;
 
 /**
  * This class defines a generic mapper for reads mapping.
@@ -86,6 +90,8 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
       Globals.PARAMETER_PREFIX + ".mapper.args";
   static final String MAPPER_THREADS_KEY =
       Globals.PARAMETER_PREFIX + ".mapper.nb.threads";
+  static final String MAPPER_PARSER_THREADS_KEY =
+      Globals.PARAMETER_PREFIX + ".mapper.parser.nb.threads";
   static final String FASTQ_FORMAT_KEY =
       Globals.PARAMETER_PREFIX + ".mapper.fastq.format";
   static final String INDEX_CHECKSUM_KEY =
@@ -111,7 +117,8 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
   private EntryMapping mapping;
   private MapperProcess process;
   private Thread samResultsParserThread;
-  private final BlockingDeque<String> queue = new LinkedBlockingDeque<>();
+  private final BlockingDeque<List<String>> queue =
+      new LinkedBlockingDeque<>();
   private final ExceptionWrapper exception = new ExceptionWrapper();
   private int entriesParsed;
   private boolean writeHeaders;
@@ -269,6 +276,13 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
     getLogger().info("Use "
         + mapper.getName() + " with " + mapperThreads + " threads option");
 
+    // Get the number of threads to use to parse the output of the mapper
+    int parserThreads =
+        Integer.parseInt(conf.get(MAPPER_PARSER_THREADS_KEY, "0"));
+    if (parserThreads < 1) {
+      parserThreads = Math.max(1, mapperThreads / 8);
+    }
+
     // Update last used file timestamp for the mapper indexes clean up
     updateLastUsedMapperIndex(this.mapperIndexDir);
 
@@ -302,7 +316,8 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
     }
 
     this.writeHeaders = context.getTaskAttemptID().getTaskID().getId() == 0;
-    this.samResultsParserThread = startParseSAMResultsThread(this.process);
+    this.samResultsParserThread =
+        startParseSAMResultsThread(this.process, parserThreads);
 
     context.setStatus("Run " + this.mapping.getName());
 
@@ -367,9 +382,37 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
   /**
    * Start SAM parser result thread.
    * @param mp the mapper process
+   * @param parserThreads the number of threads to use to parse the SAM output
    * @return the created thread
    */
-  private Thread startParseSAMResultsThread(final MapperProcess mp) {
+  private Thread startParseSAMResultsThread(final MapperProcess mp,
+      final int parserThreads) {
+
+    // The lines are decoded in parallel but queued in the mapper output order
+    final BatchProcessor<List<String>> processor =
+        new BatchProcessor<List<String>>() {
+
+          @Override
+          public List<String> process(final SAMFileHeader header,
+              final Batch batch) {
+
+            return batch.getLines();
+          }
+        };
+
+    final ResultHandler<List<String>> handler =
+        new ResultHandler<List<String>>() {
+
+          @Override
+          public void header(final SAMFileHeader header) {
+          }
+
+          @Override
+          public void result(final List<String> lines) {
+
+            queue.add(lines);
+          }
+        };
 
     final Thread t = new Thread(new Runnable() {
 
@@ -377,14 +420,11 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
       public void run() {
 
         // Parse SAM result file
+        try (InputStream in = mp.getStout()) {
 
-        String line;
-        try (BufferedReader readerResults =
-            new BufferedReader(new InputStreamReader(mp.getStout()))) {
-          while ((line = readerResults.readLine()) != null) {
+          new MapperOutputParser(parserThreads, true).parse(in, processor,
+              handler);
 
-            queue.add(line);
-          }
         } catch (IOException e) {
           exception.exception = e;
         }
@@ -407,55 +447,63 @@ public class ReadsMapperMapper extends Mapper<Text, Text, Text, Text> {
       throws InterruptedException, IOException {
 
     while (!this.queue.isEmpty()) {
-
-      final String line = this.queue.take().trim();
-
-      if (line.length() == 0) {
-        continue;
+      for (String line : this.queue.take()) {
+        writeResult(context, line, writeHeader);
       }
+    }
 
-      // Test if line is an header line
-      final boolean headerLine = line.charAt(0) == '@';
+    // Throw reader exception if exists
+    if (this.exception.exception != null) {
+      throw this.exception.exception;
+    }
 
-      // Only write header lines once (on the first output file)
-      if (headerLine && !writeHeader) {
-        continue;
-      }
+  }
+
+  /**
+   * Write a result.
+   * @param context the Hadoop context
+   * @param line the SAM line to write
+   * @param writeHeader true if SAM header must be written
+   * @throws InterruptedException if an error occurs while writing data
+   * @throws IOException if an error occurs while writing data
+   */
+  private void writeResult(final Context context, final String line,
+      final boolean writeHeader) throws InterruptedException, IOException {
 
-      if (!headerLine) {
+    // Test if line is an header line
+    final boolean headerLine = line.charAt(0) == '@';
 
-        // Set the output key as the read id
-        final int tabPos = line.indexOf('\t');
-        if (tabPos == -1) {
-          outKey.set("");
-        } else {
-          outKey.set(line.substring(0, tabPos));
-        }
+    // Only write header lines once (on the first output file)
+    if (headerLine && !writeHeader) {
+      return;
+    }
 
-        // Increment counters if not header
-        this.entriesParsed++;
-        context.getCounter(this.counterGroup,
-            OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName()).increment(1);
+    if (!headerLine) {
 
+      // Set the output key as the read id
+      final int tabPos = line.indexOf('\t');
+      if (tabPos == -1) {
+        outKey.set("");
       } else {
-
-        // Set empty key for headers
-        this.outKey.set("");
+        outKey.set(line.substring(0, tabPos));
       }
 
-      // Set the output value
-      this.outValue.set(line);
+      // Increment counters if not header
+      this.entriesParsed++;
+      context.getCounter(this.counterGroup,
+          OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName()).increment(1);
 
-      // Write the result
-      context.write(this.outKey, this.outValue);
+    } else {
 
+      // Set empty key for headers
+      this.outKey.set("");
     }
 
-    // Throw reader exception if exists
-    if (this.exception.exception != null) {
-      throw this.exception.exception;
-    }
+    // Set the output value
+    this.outValue.set(line);
 
+    // Write the result
+    context.write(this.outKey, this.outValue);
   }
 
   //
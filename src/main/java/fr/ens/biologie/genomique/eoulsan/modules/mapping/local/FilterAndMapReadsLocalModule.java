@@ -0,0 +1,467 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode.OWN_PARALLELIZATION;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.READS_FASTQ;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.INPUT_RAW_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_FILTERED_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.READS_REJECTED_BY_FILTERS_COUNTER;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import com.google.common.base.Joiner;
+import com.google.common.io.ByteStreams;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
+import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecord;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecordReader;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilterBuilder;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.EntryMapping;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.Mapper;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndex;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperInstance;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperProcess;
+import fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode;
+import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
+import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
+import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
+import fr.ens.biologie.genomique.eoulsan.data.Data;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractFilterAndMapReadsModule;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import fr.ens.biologie.genomique.eoulsan.util.Reporter;
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+/**
+ * This class define a module that filter reads, map the reads and filter the
+ * alignments in local mode. The filtered reads are directly sent to the mapper
+ * process and the output of the mapper is directly filtered, so no
+ * intermediate file is written.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+@LocalOnly
+public class FilterAndMapReadsLocalModule
+    extends AbstractFilterAndMapReadsModule {
+
+  @Override
+  public ParallelizationMode getParallelizationMode() {
+
+    return OWN_PARALLELIZATION;
+  }
+
+  @Override
+  public TaskResult execute(final TaskContext context,
+      final TaskStatus status) {
+
+    // Create the reporters, as reporters are not thread safe, the alignments
+    // that are filtered in another thread use their own reporter
+    final Reporter reporter = new LocalReporter();
+    final LocalReporter alignmentsReporter = new LocalReporter();
+
+    try {
+
+      // Get input and output data
+      final Data inData = context.getInputData(READS_FASTQ);
+      final Data outData = context.getOutputData(MAPPER_RESULTS_SAM, inData);
+
+      // Get FASTQ format
+      final FastqFormat fastqFormat = inData.getMetadata().getFastqFormat();
+
+      if (inData.getDataFileCount() < 1) {
+        throw new IOException("No reads file found.");
+      }
+
+      if (inData.getDataFileCount() > 2) {
+        throw new IOException(
+            "Cannot handle more than 2 reads files at the same time.");
+      }
+
+      final boolean pairedEnd = inData.getDataFileCount() == 2;
+
+      // Get the reads filter, the alignments filters are created by the
+      // thread that filter the alignments
+      final MultiReadFilter readFilter =
+          new MultiReadFilterBuilder(getReadFilterParameters())
+              .getReadFilter(reporter, getCounterGroup());
+
+      getLogger().info("Reads filters to apply: "
+          + Joiner.on(", ").join(readFilter.getFilterNames()));
+
+      // Initialize the mapping
+      final EntryMapping mapping =
+          initMapping(context, fastqFormat, reporter);
+
+      getLogger().info("Filter and map "
+          + inData.getName() + ", Fastq format: " + fastqFormat + ", use "
+          + mapping.getName() + " with " + mapping.getThreadNumber()
+          + " threads option");
+
+      // Start the mapper
+      final MapperProcess process =
+          pairedEnd ? mapping.mapPE() : mapping.mapSE();
+
+      // Filter the output of the mapper in a dedicated thread
+      final AlignmentsFilterThread alignmentsFilterThread =
+          new AlignmentsFilterThread(process.getStout(), outData.getDataFile(),
+              alignmentsReporter, getCounterGroup(),
+              getAlignmentsFilterParameters(),
+              Math.max(1, mapping.getThreadNumber() / 8),
+              context.getLocalTempDirectory());
+      alignmentsFilterThread.start();
+
+      try {
+
+        // Send the filtered reads to the mapper
+        try {
+          if (pairedEnd) {
+            filterReads(inData.getDataFile(0), inData.getDataFile(1), process,
+                reporter, readFilter, fastqFormat);
+          } else {
+            filterReads(inData.getDataFile(0), process, reporter, readFilter,
+                fastqFormat);
+          }
+        } finally {
+
+          // Close the input of the mapper, the mapper then ends once it has
+          // written all its output
+          process.closeEntriesWriter();
+        }
+
+      } finally {
+
+        // Wait the end of the filtering of the alignments, even if the
+        // filtering of the reads has failed
+        alignmentsFilterThread.join();
+      }
+
+      alignmentsFilterThread.throwException();
+
+      // Wait the end of the process and do cleanup
+      process.waitFor();
+
+      // Merge the counters of the alignments filter
+      for (String counterName : alignmentsReporter
+          .getCounterNames(getCounterGroup())) {
+        reporter.incrCounter(getCounterGroup(), counterName,
+            alignmentsReporter.getCounterValue(getCounterGroup(), counterName));
+      }
+
+      // Set the description of the context
+      status.setDescription("Filter and map reads ("
+          + inData.getName() + ", " + inData.getDataFile(0).getName()
+          + (pairedEnd ? ", " + inData.getDataFile(1).getName() : "") + ")");
+
+      // Add counters for this sample to log file
+      status.setCounters(reporter, getCounterGroup());
+
+    } catch (IOException e) {
+      return status.createTaskResult(e,
+          "Error while filtering and mapping reads: " + e.getMessage());
+    } catch (EoulsanException e) {
+      return status.createTaskResult(e,
+          "Error while initializing filter: " + e.getMessage());
+    } catch (InterruptedException e) {
+      return status.createTaskResult(e,
+          "Error while waiting the end of the mapping: " + e.getMessage());
+    }
+
+    return status.createTaskResult();
+  }
+
+  /**
+   * Initialize the mapping.
+   * @param context task context
+   * @param format FASTQ format
+   * @param reporter reporter
+   * @return a new EntryMapping object
+   * @throws IOException if an error occurs while initializing the mapping
+   */
+  private EntryMapping initMapping(final TaskContext context,
+      final FastqFormat format, final Reporter reporter) throws IOException {
+
+    // Get the mapper object
+    final Mapper mapper = getMapper();
+
+    final DataFile archiveIndexFile =
+        context.getInputData(mapper.getArchiveFormat()).getDataFile();
+
+    final File indexDir = new File(StringUtils
+        .filenameWithoutExtension(archiveIndexFile.toUri().getPath()));
+
+    // Set mapper temporary directory
+    mapper.setTempDirectory(context.getLocalTempDirectory());
+
+    // Set mapper executable temporary directory
+    mapper.setExecutablesTempDirectory(
+        context.getSettings().getExecutablesTempDirectoryFile());
+
+    // Create the mapper instance
+    final MapperInstance mapperInstance = mapper
+        .newMapperInstance(getMapperVersion(), getMapperFlavor(), true, null);
+
+    // Create the MapperIndex object
+    final MapperIndex mapperIndex =
+        mapperInstance.newMapperIndex(archiveIndexFile.open(), indexDir);
+
+    // Delete the index directory at the end of the workflow
+    context.getWorkflow()
+        .deleteOnExit(new DataFile(mapperIndex.getIndexDirectory()));
+
+    // Get the number of threads to use
+    int mapperThreads = getMapperLocalThreads();
+    if (mapperThreads > Runtime.getRuntime().availableProcessors()
+        || mapperThreads < 1) {
+      mapperThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    return mapperIndex.newEntryMapping(format, getMapperArguments(),
+        mapperThreads, false, reporter, getCounterGroup());
+  }
+
+  /**
+   * Filter reads in single-end mode and write the accepted reads to the
+   * mapper.
+   * @param inFile input file
+   * @param process mapper process
+   * @param reporter reporter to use
+   * @param filter reads filter to use
+   * @param fastqFormat FastqFormat
+   * @throws IOException if an error occurs while filtering data
+   */
+  private void filterReads(final DataFile inFile, final MapperProcess process,
+      final Reporter reporter, final MultiReadFilter filter,
+      final FastqFormat fastqFormat) throws IOException {
+
+    final String counterGroup = getCounterGroup();
+
+    // The same ReadSequence object is used for all the entries
+    final ReadSequence read = new ReadSequence();
+    read.setFastqFormat(fastqFormat);
+
+    try (FastqRecordReader reader = new FastqRecordReader(inFile)) {
+
+      final FastqRecord record = new FastqRecord();
+
+      while (reader.read(record)) {
+
+        record.copyTo(read);
+
+        reporter.incrCounter(counterGroup,
+            INPUT_RAW_READS_COUNTER.counterName(), 1);
+
+        if (filter.accept(read)) {
+
+          process.writeEntry1(read);
+          reporter.incrCounter(counterGroup,
+              OUTPUT_FILTERED_READS_COUNTER.counterName(), 1);
+        } else {
+          reporter.incrCounter(counterGroup,
+              READS_REJECTED_BY_FILTERS_COUNTER.counterName(), 1);
+        }
+      }
+
+    } catch (BadBioEntryException e) {
+
+      throw new IOException("Invalid Fastq format: "
+          + e.getMessage() + " File: " + inFile + " Entry: " + e.getEntry());
+    }
+  }
+
+  /**
+   * Filter reads in paired-end mode and write the accepted reads to the
+   * mapper.
+   * @param inFile1 first input file
+   * @param inFile2 second input file
+   * @param process mapper process
+   * @param reporter reporter to use
+   * @param filter reads filter to use
+   * @param fastqFormat FastqFormat
+   * @throws IOException if an error occurs while filtering data
+   */
+  private void filterReads(final DataFile inFile1, final DataFile inFile2,
+      final MapperProcess process, final Reporter reporter,
+      final MultiReadFilter filter, final FastqFormat fastqFormat)
+      throws IOException {
+
+    final String counterGroup = getCounterGroup();
+
+    // The same ReadSequence objects are used for all the entries
+    final ReadSequence read1 = new ReadSequence();
+    final ReadSequence read2 = new ReadSequence();
+    read1.setFastqFormat(fastqFormat);
+    read2.setFastqFormat(fastqFormat);
+
+    try (FastqRecordReader reader1 = new FastqRecordReader(inFile1);
+        FastqRecordReader reader2 = new FastqRecordReader(inFile2)) {
+
+      final FastqRecord record1 = new FastqRecord();
+      final FastqRecord record2 = new FastqRecord();
+
+      while (reader1.read(record1)) {
+
+        // Test if the second read exists
+        if (!reader2.read(record2)) {
+          throw new IOException("Unexcepted end of the second read file. "
+              + inFile1.getName() + " and " + inFile2.getName()
+              + " must have the same number of entries/lines.");
+        }
+
+        record1.copyTo(read1);
+        record2.copyTo(read2);
+
+        reporter.incrCounter(counterGroup,
+            INPUT_RAW_READS_COUNTER.counterName(), 1);
+
+        if (filter.accept(read1, read2)) {
+
+          process.writeEntry1(read1);
+          process.writeEntry2(read2);
+          reporter.incrCounter(counterGroup,
+              OUTPUT_FILTERED_READS_COUNTER.counterName(), 1);
+        } else {
+          reporter.incrCounter(counterGroup,
+              READS_REJECTED_BY_FILTERS_COUNTER.counterName(), 1);
+        }
+      }
+
+      // Test if the first read file has been entirely read
+      if (reader2.read(record2)) {
+        throw new IOException("Unexcepted end of the first read file. "
+            + inFile1.getName() + " and " + inFile2.getName()
+            + " must have the same number of entries/lines.");
+      }
+
+    } catch (BadBioEntryException e) {
+
+      throw new IOException("Invalid Fastq format: "
+          + e.getMessage() + " File 1: " + inFile1 + " File2:" + inFile2
+          + " Entry: " + e.getEntry());
+    }
+  }
+
+  //
+  // Inner class
+  //
+
+  /**
+   * This thread filter the alignments produced by the mapper and write the
+   * accepted alignments in the output file. If the filtering fails, the
+   * remaining output of the mapper is discarded, so the mapper does not wait
+   * forever that its output is read.
+   */
+  static final class AlignmentsFilterThread extends Thread {
+
+    private final InputStream in;
+    private final DataFile outFile;
+    private final Reporter reporter;
+    private final String counterGroup;
+    private final Map<String, String> filterParameters;
+    private final int threads;
+    private final File tmpDir;
+    private volatile Throwable exception;
+
+    @Override
+    public void run() {
+
+      try {
+        SAMFilterLocalModule.filterAlignments(this.in, this.outFile.create(),
+            this.reporter, this.counterGroup, this.filterParameters,
+            this.threads, this.tmpDir);
+      } catch (Throwable t) {
+        this.exception = t;
+
+        // Discard the remaining output of the mapper
+        try {
+          ByteStreams.copy(this.in, ByteStreams.nullOutputStream());
+        } catch (IOException e) {
+          EoulsanLogger.getLogger().warning(
+              "Error while discarding the output of the mapper: "
+                  + e.getMessage());
+        }
+      }
+    }
+
+    /**
+     * Throw the exception that occurs while filtering the alignments.
+     * @throws IOException if an exception occurs while filtering the
+     *           alignments
+     */
+    void throwException() throws IOException {
+
+      final Throwable t = this.exception;
+
+      if (t == null) {
+        return;
+      }
+
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      }
+
+      throw new IOException(
+          "Error while filtering the alignments: " + t.getMessage(), t);
+    }
+
+    /**
+     * Constructor.
+     * @param in output of the mapper
+     * @param outFile output file
+     * @param reporter reporter to use
+     * @param counterGroup counter group of the reporter
+     * @param filterParameters parameters of the alignments filter to use
+     * @param threads number of threads to use to filter the alignments
+     * @param tmpDir temporary directory
+     */
+    AlignmentsFilterThread(final InputStream in, final DataFile outFile,
+        final Reporter reporter, final String counterGroup,
+        final Map<String, String> filterParameters, final int threads,
+        final File tmpDir) {
+
+      super("SAM filter");
+      this.in = in;
+      this.outFile = outFile;
+      this.reporter = reporter;
+      this.counterGroup = counterGroup;
+      this.filterParameters = filterParameters;
+      this.threads = threads;
+      this.tmpDir = tmpDir;
+    }
+  }
+
+}
@@ -0,0 +1,495 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.INPUT_RAW_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.OUTPUT_FILTERED_READS_COUNTER;
+import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.READS_REJECTED_BY_FILTERS_COUNTER;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.BatchReadFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.BatchReadFilterAdapter;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.ReporterIncrementer;
+
+/**
+ * This class define a multi-threaded reads filter. The reads are parsed in a
+ * dedicated thread, filtered by batches in a pool of worker threads and
+ * written by the calling thread in the order of the input files. The output is
+ * the same as the output of the sequential filtering.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class MultiThreadReadsFilter {
+
+  /** Number of reads (or pairs of reads) in a batch. */
+  private static final int BATCH_SIZE = 10000;
+
+  /** Maximal number of batches waiting to be written per worker thread. */
+  private static final int PENDING_BATCHES_PER_THREAD = 2;
+
+  /** Marker of the end of the input. */
+  private static final Future<ReadBatch> END_OF_INPUT =
+      CompletableFuture.completedFuture(null);
+
+  private final BlockingQueue<ReadFilter> filters;
+  private final int threadCount;
+  private final FastqFormat fastqFormat;
+  private final ReporterIncrementer incrementer;
+  private final String counterGroup;
+
+  /**
+   * This class define a batch of reads to filter.
+   */
+  private static final class ReadBatch {
+
+    private final List<ReadSequence> reads1 = new ArrayList<>(BATCH_SIZE);
+    private final List<ReadSequence> reads2;
+    private final BitSet accepted = new BitSet(BATCH_SIZE);
+
+    /**
+     * Add a read to the batch.
+     * @param read1 the read or the first read of the pair
+     * @param read2 the second read of the pair, null in single-end mode
+     */
+    void add(final ReadSequence read1, final ReadSequence read2) {
+
+      this.reads1.add(read1);
+      if (this.reads2 != null) {
+        this.reads2.add(read2);
+      }
+    }
+
+    /**
+     * Get the number of reads in the batch.
+     * @return the number of reads in the batch
+     */
+    int size() {
+
+      return this.reads1.size();
+    }
+
+    /**
+     * Test if the batch is full.
+     * @return true if the batch is full
+     */
+    boolean isFull() {
+
+      return this.reads1.size() == BATCH_SIZE;
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param pairedEnd true if the batch will contains paired-end reads
+     */
+    ReadBatch(final boolean pairedEnd) {
+
+      this.reads2 = pairedEnd ? new ArrayList<ReadSequence>(BATCH_SIZE) : null;
+    }
+  }
+
+  /**
+   * This class define the filtering task of a batch of reads.
+   */
+  private final class FilterTask implements Callable<ReadBatch> {
+
+    private final ReadBatch batch;
+
+    @Override
+    public ReadBatch call() throws Exception {
+
+      // As filters are not thread safe, each task borrows its own filter
+      final ReadFilter filter = filters.take();
+
+      try {
+
+        final BatchReadFilter batchFilter = BatchReadFilterAdapter.wrap(filter);
+        this.batch.accepted.set(0, this.batch.size());
+
+        if (this.batch.reads2 == null) {
+          batchFilter.accept(this.batch.reads1, this.batch.accepted);
+        } else {
+          batchFilter.accept(this.batch.reads1, this.batch.reads2,
+              this.batch.accepted);
+        }
+
+      } finally {
+        filters.put(filter);
+      }
+
+      return this.batch;
+    }
+
+    /**
+     * Constructor.
+     * @param batch the batch to filter
+     */
+    FilterTask(final ReadBatch batch) {
+
+      this.batch = batch;
+    }
+  }
+
+  /**
+   * This class define the thread that parse the input files and submit the
+   * batches of reads to the worker threads.
+   */
+  private final class ReaderThread extends Thread {
+
+    private final FastqReader reader1;
+    private final FastqReader reader2;
+    private final DataFile inFile1;
+    private final DataFile inFile2;
+    private final ExecutorService executor;
+    private final BlockingQueue<Future<ReadBatch>> queue;
+
+    private IOException ioException;
+    private BadBioEntryException bbeException;
+    private RuntimeException runtimeException;
+
+    @Override
+    public void run() {
+
+      final boolean pairedEnd = this.reader2 != null;
+
+      try {
+
+        ReadBatch batch = new ReadBatch(pairedEnd);
+
+        for (final ReadSequence read1 : this.reader1) {
+
+          ReadSequence read2 = null;
+
+          if (pairedEnd) {
+
+            // Test if the second read exists
+            if (!this.reader2.hasNext()) {
+              this.reader2.throwException();
+              throw new IOException("Unexcepted end of the second read file. "
+                  + this.inFile1.getName() + " and " + this.inFile2.getName()
+                  + " must have the same number of entries/lines.");
+            }
+
+            // Get the second read
+            read2 = this.reader2.next();
+            read2.setFastqFormat(fastqFormat);
+          }
+
+          // Set FASTQ format
+          read1.setFastqFormat(fastqFormat);
+
+          batch.add(read1, read2);
+
+          if (batch.isFull()) {
+            submit(batch);
+            batch = new ReadBatch(pairedEnd);
+          }
+        }
+
+        if (batch.size() > 0) {
+          submit(batch);
+        }
+
+        this.reader1.throwException();
+
+        if (pairedEnd) {
+          this.reader2.throwException();
+
+          if (this.reader2.hasNext()) {
+            throw new IOException("Unexcepted end of the first read file. "
+                + this.inFile1.getName() + " and " + this.inFile2.getName()
+                + " must have the same number of entries/lines.");
+          }
+        }
+
+      } catch (IOException e) {
+        this.ioException = e;
+      } catch (BadBioEntryException e) {
+        this.bbeException = e;
+      } catch (RuntimeException e) {
+        this.runtimeException = e;
+      } catch (InterruptedException e) {
+        // The writer has been stopped, nothing more to do
+        return;
+      }
+
+      try {
+        this.queue.put(END_OF_INPUT);
+      } catch (InterruptedException e) {
+        // The writer has been stopped, nothing more to do
+      }
+    }
+
+    /**
+     * Submit a batch of reads to the worker threads.
+     * @param batch batch to submit
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    private void submit(final ReadBatch batch) throws InterruptedException {
+
+      this.queue.put(this.executor.submit(new FilterTask(batch)));
+    }
+
+    /**
+     * Throw the exception that has occurred while reading the input files if
+     * exists.
+     * @throws IOException if an error has occurred while reading the input
+     * @throws BadBioEntryException if an invalid entry has been found
+     */
+    void throwException() throws IOException, BadBioEntryException {
+
+      if (this.ioException != null) {
+        throw this.ioException;
+      }
+
+      if (this.bbeException != null) {
+        throw this.bbeException;
+      }
+
+      if (this.runtimeException != null) {
+        throw this.runtimeException;
+      }
+    }
+
+    //
+    // Constructor
+    //
+
+    /**
+     * Constructor.
+     * @param reader1 reader of the first file
+     * @param reader2 reader of the second file, null in single-end mode
+     * @param inFile1 first input file
+     * @param inFile2 second input file, null in single-end mode
+     * @param executor executor of the worker threads
+     * @param queue queue of the submitted batches
+     */
+    ReaderThread(final FastqReader reader1, final FastqReader reader2,
+        final DataFile inFile1, final DataFile inFile2,
+        final ExecutorService executor,
+        final BlockingQueue<Future<ReadBatch>> queue) {
+
+      super("ReadsFilter_reader");
+      setDaemon(true);
+
+      this.reader1 = reader1;
+      this.reader2 = reader2;
+      this.inFile1 = inFile1;
+      this.inFile2 = inFile2;
+      this.executor = executor;
+      this.queue = queue;
+    }
+  }
+
+  //
+  // Filtering methods
+  //
+
+  /**
+   * Filter a file in single-end mode.
+   * @param inFile input file
+   * @param outFile output file
+   * @throws IOException if an error occurs while filtering data
+   */
+  public void filter(final DataFile inFile, final DataFile outFile)
+      throws IOException {
+
+    getLogger().info("Filter file: "
+        + inFile + ", FastqFormat: " + this.fastqFormat + ", use "
+        + this.threadCount + " threads");
+
+    try (FastqReader reader = new FastqReader(inFile.open());
+        FastqWriter writer = new FastqWriter(outFile.create())) {
+
+      filter(reader, null, writer, null, inFile, null);
+
+    } catch (BadBioEntryException e) {
+
+      throw new IOException("Invalid Fastq format: "
+          + e.getMessage() + " File: " + inFile + " Entry: " + e.getEntry());
+    }
+  }
+
+  /**
+   * Filter files in paired-end mode.
+   * @param inFile1 first input file
+   * @param inFile2 second input file
+   * @param outFile1 first output file
+   * @param outFile2 second output file
+   * @throws IOException if an error occurs while filtering data
+   */
+  public void filter(final DataFile inFile1, final DataFile inFile2,
+      final DataFile outFile1, final DataFile outFile2) throws IOException {
+
+    getLogger().info("Filter files: "
+        + inFile1 + ", " + inFile2 + ", Fastq format: " + this.fastqFormat
+        + ", use " + this.threadCount + " threads");
+
+    try (FastqReader reader2 = new FastqReader(inFile2.open());
+        FastqWriter writer1 = new FastqWriter(outFile1.create());
+        FastqWriter writer2 = new FastqWriter(outFile2.create());
+        FastqReader reader1 = new FastqReader(inFile1.open())) {
+
+      filter(reader1, reader2, writer1, writer2, inFile1, inFile2);
+
+    } catch (BadBioEntryException e) {
+
+      throw new IOException("Invalid Fastq format: "
+          + e.getMessage() + " File 1: " + inFile1 + " File2:" + inFile2
+          + " Entry: " + e.getEntry());
+    }
+  }
+
+  /**
+   * Filter reads.
+   * @param reader1 reader of the first file
+   * @param reader2 reader of the second file, null in single-end mode
+   * @param writer1 writer of the first file
+   * @param writer2 writer of the second file, null in single-end mode
+   * @param inFile1 first input file
+   * @param inFile2 second input file, null in single-end mode
+   * @throws IOException if an error occurs while filtering data
+   * @throws BadBioEntryException if an invalid entry has been found
+   */
+  private void filter(final FastqReader reader1, final FastqReader reader2,
+      final FastqWriter writer1, final FastqWriter writer2,
+      final DataFile inFile1, final DataFile inFile2)
+      throws IOException, BadBioEntryException {
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(this.threadCount);
+    final BlockingQueue<Future<ReadBatch>> queue = new ArrayBlockingQueue<>(
+        this.threadCount * PENDING_BATCHES_PER_THREAD);
+    final ReaderThread readerThread = new ReaderThread(reader1, reader2,
+        inFile1, inFile2, executor, queue);
+
+    readerThread.start();
+
+    try {
+
+      Future<ReadBatch> future;
+
+      // Write the filtered batches in the order of the input
+      while ((future = queue.take()) != END_OF_INPUT) {
+
+        final ReadBatch batch = future.get();
+        final int size = batch.size();
+        long acceptedCount = 0;
+
+        for (int i = 0; i < size; i++) {
+
+          if (batch.accepted.get(i)) {
+
+            writer1.write(batch.reads1.get(i));
+            if (writer2 != null) {
+              writer2.write(batch.reads2.get(i));
+            }
+            acceptedCount++;
+          }
+        }
+
+        this.incrementer.incrCounter(this.counterGroup,
+            INPUT_RAW_READS_COUNTER.counterName(), size);
+        this.incrementer.incrCounter(this.counterGroup,
+            OUTPUT_FILTERED_READS_COUNTER.counterName(), acceptedCount);
+        this.incrementer.incrCounter(this.counterGroup,
+            READS_REJECTED_BY_FILTERS_COUNTER.counterName(),
+            size - acceptedCount);
+      }
+
+      readerThread.join();
+      readerThread.throwException();
+
+    } catch (InterruptedException e) {
+      throw new IOException("Reads filtering has been interrupted", e);
+    } catch (ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Error while filtering reads: "
+          + cause.getMessage(), cause);
+
+    } finally {
+
+      // Stop the reader and the worker threads if an error has occurred
+      readerThread.interrupt();
+      executor.shutdownNow();
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param filters the filters to use, one for each worker thread
+   * @param fastqFormat the FASTQ format of the input files
+   * @param incrementer incrementer for the reads counters
+   * @param counterGroup counter group for the incrementer
+   */
+  MultiThreadReadsFilter(final List<ReadFilter> filters,
+      final FastqFormat fastqFormat, final ReporterIncrementer incrementer,
+      final String counterGroup) {
+
+    requireNonNull(filters, "filters argument cannot be null");
+    requireNonNull(incrementer, "incrementer argument cannot be null");
+    checkArgument(!filters.isEmpty(), "filters argument cannot be empty");
+
+    this.threadCount = filters.size();
+    this.filters = new ArrayBlockingQueue<>(this.threadCount, false, filters);
+    this.fastqFormat = fastqFormat;
+    this.incrementer = incrementer;
+    this.counterGroup = counterGroup;
+  }
+
+}
@@ -32,6 +32,8 @@ import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.google.common.base.Joiner;
 
@@ -40,7 +42,8 @@ import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
 import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecord;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecordReader;
 import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
 import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilter;
 import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
@@ -90,16 +93,25 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
             "Cannot handle more than 2 reads files at the same time.");
       }
 
-      // Get the read filter
-      final MultiReadFilter filter = getReadFilter(reporter, COUNTER_GROUP);
-      getLogger().info("Reads filters to apply: "
-          + Joiner.on(", ").join(filter.getFilterNames()));
+      // Get the number of threads to use
+      final int threadCount = context.getCurrentStep().getRequiredProcessors();
 
-      // Run the filter in single or pair-end mode
-      if (inFileCount == 1) {
-        singleEnd(inData, outData, fastqFormat, reporter, status, filter);
+      if (threadCount > 1) {
+        multiThread(inData, outData, fastqFormat, reporter, status,
+            threadCount);
       } else {
-        pairedEnd(inData, outData, fastqFormat, reporter, status, filter);
+
+        // Get the read filter
+        final MultiReadFilter filter = getReadFilter(reporter, COUNTER_GROUP);
+        getLogger().info("Reads filters to apply: "
+            + Joiner.on(", ").join(filter.getFilterNames()));
+
+        // Run the filter in single or pair-end mode
+        if (inFileCount == 1) {
+          singleEnd(inData, outData, fastqFormat, reporter, status, filter);
+        } else {
+          pairedEnd(inData, outData, fastqFormat, reporter, status, filter);
+        }
       }
 
     } catch (FileNotFoundException e) {
@@ -173,6 +185,77 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
     status.setCounters(reporter, COUNTER_GROUP);
   }
 
+  /**
+   * Filter a sample data in single end or paired-end mode using several
+   * threads.
+   * @param inData input Data
+   * @param outData output Data
+   * @param fastqFormat FASTQ format
+   * @param reporter reporter to use
+   * @param status step status
+   * @param threadCount number of threads to use
+   * @throws IOException if an error occurs while filtering reads
+   * @throws EoulsanException if an error occurs while initializing the
+   *           filters
+   */
+  private void multiThread(final Data inData, final Data outData,
+      final FastqFormat fastqFormat, final Reporter reporter,
+      final TaskStatus status, final int threadCount)
+      throws IOException, EoulsanException {
+
+    // As filters are not thread safe, create a filter for each thread
+    final List<ReadFilter> filters = new ArrayList<>();
+    final List<LocalReporter> filterReporters = new ArrayList<>();
+
+    for (int i = 0; i < threadCount; i++) {
+
+      final LocalReporter filterReporter = new LocalReporter();
+      final MultiReadFilter filter =
+          getReadFilter(filterReporter, COUNTER_GROUP);
+
+      if (i == 0) {
+        getLogger().info("Reads filters to apply: "
+            + Joiner.on(", ").join(filter.getFilterNames()));
+      }
+
+      filters.add(filter);
+      filterReporters.add(filterReporter);
+    }
+
+    final MultiThreadReadsFilter filter = new MultiThreadReadsFilter(filters,
+        fastqFormat, reporter, COUNTER_GROUP);
+
+    if (inData.getDataFileCount() == 1) {
+
+      filter.filter(inData.getDataFile(0), outData.getDataFile(0));
+
+      // Set the description of the context
+      status.setDescription("Filter reads ("
+          + inData.getName() + ", " + inData.getDataFile(0).getName() + ")");
+    } else {
+
+      filter.filter(inData.getDataFile(0), inData.getDataFile(1),
+          outData.getDataFile(0), outData.getDataFile(1));
+
+      // Set the description of the context
+      status.setDescription("Filter reads ("
+          + inData.getName() + ", " + inData.getDataFile(0).getName() + ", "
+          + inData.getDataFile(1).getName() + ")");
+    }
+
+    // Merge the counters of the filters
+    for (LocalReporter filterReporter : filterReporters) {
+      for (String counterName : filterReporter
+          .getCounterNames(COUNTER_GROUP)) {
+        reporter.incrCounter(COUNTER_GROUP, counterName,
+            filterReporter.getCounterValue(COUNTER_GROUP, counterName));
+      }
+    }
+
+    // Add counters for this sample to log file
+    status.setCounters(reporter, COUNTER_GROUP);
+  }
+
   /**
    * Filter a file in single end mode.
    * @param inFile input file
@@ -182,19 +265,24 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
    * @param fastqFormat FastqFormat
    * @throws IOException if an error occurs while filtering data
    */
-  private static void filterFile(final DataFile inFile, final DataFile outFile,
+  static void filterFile(final DataFile inFile, final DataFile outFile,
       final Reporter reporter, final ReadFilter filter,
       final FastqFormat fastqFormat) throws IOException {
 
     getLogger().info("Filter file: " + inFile);
     getLogger().info("FastqFormat: " + fastqFormat);
 
-    try (FastqReader reader = new FastqReader(inFile.open());
+    // The same ReadSequence object is used for all the entries
+    final ReadSequence read = new ReadSequence();
+    read.setFastqFormat(fastqFormat);
+
+    try (FastqRecordReader reader = new FastqRecordReader(inFile);
         FastqWriter writer = new FastqWriter(outFile.create())) {
-      for (final ReadSequence read : reader) {
 
-        // Set Fastq format
-        read.setFastqFormat(fastqFormat);
+      FastqRecord record;
+      while ((record = reader.read()) != null) {
+
+        record.copyTo(read);
 
         reporter.incrCounter(COUNTER_GROUP,
             INPUT_RAW_READS_COUNTER.counterName(), 1);
@@ -210,7 +298,6 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
         }
 
       }
-      reader.throwException();
 
     } catch (BadBioEntryException e) {
 
@@ -231,7 +318,7 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
    * @param fastqFormat FastqFormat
    * @throws IOException if an error occurs while filtering data
    */
-  private static void filterFile(final DataFile inFile1, final DataFile inFile2,
+  static void filterFile(final DataFile inFile1, final DataFile inFile2,
       final DataFile outFile1, final DataFile outFile2, final Reporter reporter,
       final ReadFilter filter, final FastqFormat fastqFormat)
       throws IOException {
@@ -239,26 +326,31 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
     getLogger().info("Filter files: "
         + inFile1 + ", " + inFile2 + ", Fastq format: " + fastqFormat);
 
-    try (FastqReader reader2 = new FastqReader(inFile2.open());
+    // The same ReadSequence objects are used for all the entries
+    final ReadSequence read1 = new ReadSequence();
+    final ReadSequence read2 = new ReadSequence();
+    read1.setFastqFormat(fastqFormat);
+    read2.setFastqFormat(fastqFormat);
+
+    try (FastqRecordReader reader2 = new FastqRecordReader(inFile2);
         FastqWriter writer1 = new FastqWriter(outFile1.create());
         FastqWriter writer2 = new FastqWriter(outFile2.create());
-        FastqReader reader1 = new FastqReader(inFile1.open())) {
-      for (final ReadSequence read1 : reader1) {
+        FastqRecordReader reader1 = new FastqRecordReader(inFile1)) {
+
+      final FastqRecord record1 = new FastqRecord();
+      final FastqRecord record2 = new FastqRecord();
+
+      while (reader1.read(record1)) {
 
         // Test if the second read exists
-        if (!reader2.hasNext()) {
-          reader2.throwException();
+        if (!reader2.read(record2)) {
           throw new IOException("Unexcepted end of the second read file. "
               + inFile1.getName() + " and " + inFile2.getName()
               + " must have the same number of entries/lines.");
         }
 
-        // Get the second read
-        final ReadSequence read2 = reader2.next();
-
-        // Set fastq format
-        read1.setFastqFormat(fastqFormat);
-        read2.setFastqFormat(fastqFormat);
+        record1.copyTo(read1);
+        record2.copyTo(read2);
 
         reporter.incrCounter(COUNTER_GROUP,
             INPUT_RAW_READS_COUNTER.counterName(), 1);
@@ -274,10 +366,9 @@ public class ReadsFilterLocalModule extends AbstractReadsFilterModule {
         }
 
       }
-      reader1.throwException();
-      reader2.throwException();
 
-      if (reader2.hasNext()) {
+      // Test if the first read file has been entirely read
+      if (reader2.read(record2)) {
         throw new IOException("Unexcepted end of the first read file. "
             + inFile1.getName() + " and " + inFile2.getName()
             + " must have the same number of entries/lines.");
@@ -27,18 +27,20 @@ package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
 import static fr.ens.biologie.genomique.eoulsan.EoulsanLogger.getLogger;
 import static fr.ens.biologie.genomique.eoulsan.core.OutputPortsBuilder.DEFAULT_SINGLE_OUTPUT_PORT_NAME;
 import static fr.ens.biologie.genomique.eoulsan.core.ParallelizationMode.OWN_PARALLELIZATION;
+import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_BAM;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_LOG;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.MAPPER_RESULTS_SAM;
 import static fr.ens.biologie.genomique.eoulsan.data.DataFormats.READS_FASTQ;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 
 import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
@@ -47,6 +49,10 @@ import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.FileMapping;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.Mapper;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperIndex;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperInstance;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.Batch;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.BatchProcessor;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.ResultHandler;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperProcess;
 import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.STARMapperProvider;
 import fr.ens.biologie.genomique.eoulsan.core.InputPorts;
@@ -59,13 +65,20 @@ import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
 import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
 import fr.ens.biologie.genomique.eoulsan.data.Data;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.AbstractReadsMapperModule;
 import fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters;
-import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
 import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
 import fr.ens.biologie.genomique.eoulsan.util.Reporter;
 import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
-import fr.ens.biologie.genomique.eoulsan.util.UnSynchronizedBufferedWriter;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMLineParser;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
 
 /**
  * This class define a module for reads mapping.
@@ -97,7 +110,7 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
 
     OutputPortsBuilder builder = new OutputPortsBuilder();
 
-    builder.addPort(DEFAULT_SINGLE_OUTPUT_PORT_NAME, MAPPER_RESULTS_SAM);
+    builder.addPort(DEFAULT_SINGLE_OUTPUT_PORT_NAME, getOutputFormat());
     builder.addPort("log", MAPPER_RESULTS_LOG);
 
     return builder.create();
@@ -122,9 +135,9 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
       final Data inData = context.getInputData(READS_FASTQ);
 
       // Get output data
-      final Data outData = context.getOutputData(MAPPER_RESULTS_SAM, inData);
+      final Data outData = context.getOutputData(getOutputFormat(), inData);
 
-      // Define final output SAM file
+      // Define final output SAM or BAM file
       final File samFile = outData.getDataFile().toFile();
 
       // Get error log data
@@ -179,7 +192,8 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
         status.setCommandLine(process.getCommandLine());
 
         // Parse output of the mapper
-        parseSAMResults(process.getStout(), samFile, reporter);
+        parseSAMResults(process.getStout(), samFile,
+            getOutputParserThreads(mapper.getThreadNumber()), reporter);
 
         // Wait the end of the process and do cleanup
         process.waitFor();
@@ -210,7 +224,8 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
             mapper.mapPE(inFile1, inFile2, errorFile, logFile);
 
         // Parse output of the mapper
-        parseSAMResults(process.getStout(), samFile, reporter);
+        parseSAMResults(process.getStout(), samFile,
+            getOutputParserThreads(mapper.getThreadNumber()), reporter);
 
         // Wait the end of the process and do cleanup
         process.waitFor();
@@ -291,52 +306,199 @@ public class ReadsMapperLocalModule extends AbstractReadsMapperModule {
     return mapping;
   }
 
+  /**
+   * Get the format of the output of the module.
+   * @return the format of the output of the module
+   */
+  private DataFormat getOutputFormat() {
+
+    return isBAMOutput() ? MAPPER_RESULTS_BAM : MAPPER_RESULTS_SAM;
+  }
+
   /**
    * Parse the output the mapper (in SAM format).
    * @param samFileInputStream SAM input stream
-   * @param samFile output file to be written
+   * @param outputFile output file to be written
+   * @param parserThreads number of threads to use to parse the SAM output
    * @param reporter Eoulsan reporter for the step
    * @throws IOException if an error occurs while reading the sAM file
    */
   private void parseSAMResults(final InputStream samFileInputStream,
-      final File samFile, final Reporter reporter) throws IOException {
-
-    String line;
+      final File outputFile, final int parserThreads, final Reporter reporter)
+      throws IOException {
 
-    // Parse SAM result file
-    final BufferedReader readerResults =
-        FileUtils.createBufferedReader(samFileInputStream);
-    final Writer writer =
-        new UnSynchronizedBufferedWriter(new OutputStreamWriter(
-            new FileOutputStream(samFile), StandardCharsets.ISO_8859_1));
+    final boolean bam = isBAMOutput();
 
-    int entriesParsed = 0;
+    try (InputStream in = samFileInputStream;
+        OutputStream out =
+            new BufferedOutputStream(new FileOutputStream(outputFile))) {
 
-    while ((line = readerResults.readLine()) != null) {
+      final OutputHandler handler = new OutputHandler(out, bam, reporter);
 
-      writer.write(line);
-      writer.write('\n');
+      // The alignments are written in the order of the mapper output
+      new MapperOutputParser(parserThreads, true).parse(in,
+          bam ? BAM_PROCESSOR : SAM_PROCESSOR, handler);
 
-      final String trimmedLine = line.trim();
-      if ("".equals(trimmedLine) || trimmedLine.startsWith("@")) {
-        continue;
+      // Write the end of file marker of the BAM file
+      if (bam) {
+        out.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
       }
 
-      final int tabPos = trimmedLine.indexOf('\t');
+      getLogger().info(handler.entriesParsed
+          + " entries parsed in " + getMapperName() + " output file");
+    }
+  }
+
+  //
+  // Mapper output writing
+  //
+
+  /**
+   * This class define a batch of the mapper output encoded in the format of
+   * the output file.
+   */
+  private static final class EncodedBatch {
+
+    private final byte[] data;
+    private final int length;
+    private final int alignmentCount;
+
+    EncodedBatch(final byte[] data, final int length,
+        final int alignmentCount) {
+
+      this.data = data;
+      this.length = length;
+      this.alignmentCount = alignmentCount;
+    }
+  }
+
+  /**
+   * Processor that keep the SAM lines of the mapper output unchanged.
+   */
+  private static final BatchProcessor<EncodedBatch> SAM_PROCESSOR =
+      new BatchProcessor<EncodedBatch>() {
+
+        @Override
+        public EncodedBatch process(final SAMFileHeader header,
+            final Batch batch) {
+
+          return new EncodedBatch(batch.getData(), batch.getLength(),
+              batch.getAlignmentCount());
+        }
+      };
+
+  /**
+   * Processor that convert the SAM lines of the mapper output in compressed
+   * BAM blocks. As each batch is compressed in independent BGZF blocks, the
+   * compression is done in parallel.
+   */
+  private static final BatchProcessor<EncodedBatch> BAM_PROCESSOR =
+      new BatchProcessor<EncodedBatch>() {
 
-      if (tabPos != -1) {
+        @Override
+        public EncodedBatch process(final SAMFileHeader header,
+            final Batch batch) throws IOException {
 
-        entriesParsed++;
-        reporter.incrCounter(COUNTER_GROUP,
-            MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName(), 1);
+          final SAMLineParser parser = new SAMLineParser(header);
+          final ByteArrayOutputStream baos =
+              new ByteArrayOutputStream(batch.getLength() / 2);
+          final BlockCompressedOutputStream bgzf =
+              new BlockCompressedOutputStream(baos, (File) null);
+          final BAMRecordCodec codec = new BAMRecordCodec(header);
+          codec.setOutputStream(bgzf);
+
+          int count = 0;
+
+          for (String line : batch.getLines()) {
+
+            if (line.charAt(0) == '@') {
+              continue;
+            }
+
+            codec.encode(parser.parseLine(line));
+            count++;
+          }
+
+          // Flush the last block without writing the end of file marker
+          bgzf.flush();
+
+          return new EncodedBatch(baos.toByteArray(), baos.size(), count);
+        }
+      };
+
+  /**
+   * This class write the encoded batches in the output file.
+   */
+  private static final class OutputHandler
+      implements ResultHandler<EncodedBatch> {
+
+    private final OutputStream out;
+    private final boolean bam;
+    private final Reporter reporter;
+    private long entriesParsed;
+
+    @Override
+    public void header(final SAMFileHeader header) throws IOException {
+
+      // In SAM format, the header lines are in the first batch
+      if (this.bam) {
+        this.out.write(encodeBAMHeader(header));
       }
     }
 
-    readerResults.close();
-    writer.close();
+    @Override
+    public void result(final EncodedBatch batch) throws IOException {
+
+      this.out.write(batch.data, 0, batch.length);
+
+      this.entriesParsed += batch.alignmentCount;
+      this.reporter.incrCounter(COUNTER_GROUP,
+          MappingCounters.OUTPUT_MAPPING_ALIGNMENTS_COUNTER.counterName(),
+          batch.alignmentCount);
+    }
+
+    OutputHandler(final OutputStream out, final boolean bam,
+        final Reporter reporter) {
+
+      this.out = out;
+      this.bam = bam;
+      this.reporter = reporter;
+    }
+  }
+
+  /**
+   * Encode a SAM header in compressed BAM blocks.
+   * @param header the header to encode
+   * @return an array of bytes with the compressed header
+   * @throws IOException if an error occurs while encoding the header
+   */
+  private static byte[] encodeBAMHeader(final SAMFileHeader header)
+      throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final BlockCompressedOutputStream bgzf =
+        new BlockCompressedOutputStream(baos, (File) null);
+    final BinaryCodec codec = new BinaryCodec(bgzf);
+
+    // Magic number
+    codec.writeBytes("BAM\1".getBytes(StandardCharsets.ISO_8859_1));
+
+    // Header text
+    final StringWriter headerText = new StringWriter();
+    new SAMTextHeaderCodec().encode(headerText, header);
+    codec.writeString(headerText.toString(), true, false);
+
+    // Reference sequences
+    codec.writeInt(header.getSequenceDictionary().size());
+    for (SAMSequenceRecord sequence : header.getSequenceDictionary()
+        .getSequences()) {
+      codec.writeString(sequence.getSequenceName(), true, true);
+      codec.writeInt(sequence.getSequenceLength());
+    }
+
+    bgzf.flush();
 
-    getLogger().info(entriesParsed
-        + " entries parsed in " + getMapperName() + " output file");
+    return baos.toByteArray();
   }
 
 }
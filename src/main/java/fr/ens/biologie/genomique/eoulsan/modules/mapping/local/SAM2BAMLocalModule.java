@@ -7,6 +7,8 @@ import java.io.IOException;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
 import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
+import fr.ens.biologie.genomique.eoulsan.annotations.StreamableInput;
+import fr.ens.biologie.genomique.eoulsan.bio.io.SortedBAMWriter;
 import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
 import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
 import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
@@ -30,6 +32,7 @@ import htsjdk.samtools.SamReaderFactory;
  * @author Laurent Jourdren
  */
 @LocalOnly
+@StreamableInput
 public class SAM2BAMLocalModule extends AbstractSAM2BAMModule {
 
   @Override
@@ -57,7 +60,9 @@ public class SAM2BAMLocalModule extends AbstractSAM2BAMModule {
       final DataFile bamIndexFile = outBAIData.getDataFile();
 
       convert(samFile, bamFile, bamIndexFile, getCompressionLevel(),
-          getMaxRecordsInRam(), reporter, context.getLocalTempDirectory());
+          getMaxRecordsInRam(), getMaxMemoryInRam(),
+          Math.max(1, context.getCurrentStep().getRequiredProcessors()),
+          reporter, context.getLocalTempDirectory());
 
       // Set the description of the context
       status.setDescription("Convert alignments ("
@@ -82,6 +87,9 @@ public class SAM2BAMLocalModule extends AbstractSAM2BAMModule {
    * @param bamIndexDataFile output index file
    * @param compressionLevel compression level
    * @param maxRecordsInRam the maximum records in RAM
+   * @param maxMemoryInRam the maximum memory in MB to use to sort the records
+   *          without htsjdk, or -1 to sort the records with htsjdk
+   * @param threadNumber the number of threads to use
    * @param reporter reporter
    * @param tmpDir temporary directory
    * @throws IOException if an error occurs
@@ -89,6 +97,7 @@ public class SAM2BAMLocalModule extends AbstractSAM2BAMModule {
   private static void convert(final DataFile samDataFile,
       final DataFile bamDataFile, final DataFile bamIndexDataFile,
       final int compressionLevel, final int maxRecordsInRam,
+      final int maxMemoryInRam, final int threadNumber,
       final Reporter reporter, final File tmpDir) throws IOException {
 
     checkArgument(compressionLevel >= 0 && compressionLevel <= 9,
@@ -104,19 +113,48 @@ public class SAM2BAMLocalModule extends AbstractSAM2BAMModule {
     // Get Bam file
     final File bamFile = bamDataFile.toFile();
 
-    // Open Bam file
-    final SAMFileWriter samWriter =
-        new SAMFileWriterFactory().setCreateIndex(true).setTempDirectory(tmpDir)
-            .setMaxRecordsInRam(maxRecordsInRam).makeBAMWriter(
-                samReader.getFileHeader(), false, bamFile, compressionLevel);
+    if (maxMemoryInRam > 0) {
 
-    for (final SAMRecord samRecord : samReader) {
-      samWriter.addAlignment(samRecord);
-      reporter.incrCounter(COUNTER_GROUP, "sorted records", 1);
-    }
+      // Sort the records stored in large byte arrays
+      final SortedBAMWriter sortedWriter = new SortedBAMWriter(bamFile,
+          samReader.getFileHeader(), compressionLevel, true,
+          maxMemoryInRam * 1024L * 1024L, tmpDir, threadNumber);
+
+      try {
+
+        for (final SAMRecord samRecord : samReader) {
+          sortedWriter.write(samRecord);
+          reporter.incrCounter(COUNTER_GROUP, "sorted records", 1);
+        }
+
+        samReader.close();
+
+      } catch (IOException | RuntimeException e) {
+
+        // Do not write a BAM file with only a part of the alignments
+        sortedWriter.abort();
+        throw e;
+      }
 
-    samReader.close();
-    samWriter.close();
+      // Sort the records and write the BAM file
+      sortedWriter.close();
+
+    } else {
+
+      // Open Bam file
+      final SAMFileWriter samWriter = new SAMFileWriterFactory()
+          .setCreateIndex(true).setTempDirectory(tmpDir)
+          .setMaxRecordsInRam(maxRecordsInRam).makeBAMWriter(
+              samReader.getFileHeader(), false, bamFile, compressionLevel);
+
+      for (final SAMRecord samRecord : samReader) {
+        samWriter.addAlignment(samRecord);
+        reporter.incrCounter(COUNTER_GROUP, "sorted records", 1);
+      }
+
+      samReader.close();
+      samWriter.close();
+    }
 
     // Rename index bai file
     final String createdBamIndexFilename =
@@ -32,17 +32,29 @@ import static fr.ens.biologie.genomique.eoulsan.modules.mapping.MappingCounters.
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.base.Joiner;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
+import fr.ens.biologie.genomique.eoulsan.annotations.StreamableInput;
 import fr.ens.biologie.genomique.eoulsan.bio.SAMComparator;
 import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilter;
-import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.ReadAlignmentsFilter;
+import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.MultiReadAlignmentsFilterBuilder;
 import fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters.ReadAlignmentsFilterBuffer;
 import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
 import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
@@ -69,8 +81,12 @@ import htsjdk.samtools.SamReaderFactory;
  * @author Claire Wallon
  */
 @LocalOnly
+@StreamableInput
 public class SAMFilterLocalModule extends AbstractSAMFilterModule {
 
+  // Minimal number of alignments in a batch of alignments to filter
+  private static final int BATCH_SIZE = 10000;
+
   @Override
   public TaskResult execute(final TaskContext context,
       final TaskStatus status) {
@@ -80,20 +96,19 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
 
     try {
 
-      // Get the read filter
-      final MultiReadAlignmentsFilter filter =
-          getAlignmentsFilter(reporter, COUNTER_GROUP);
       getLogger().info("Read alignments filters to apply: "
-          + Joiner.on(", ").join(filter.getFilterNames()));
+          + Joiner.on(", ").join(getAlignmentsFilterNames()));
+
+      // Get the number of threads to use
+      final int threads =
+          Math.max(1, context.getCurrentStep().getRequiredProcessors());
 
-      filterSample(context, reporter, status, filter);
+      filterSample(context, reporter, status, getAlignmentsFilterParameters(),
+          threads);
 
     } catch (IOException e) {
       status.createTaskResult(e,
           "Error while filtering alignments: " + e.getMessage());
-    } catch (EoulsanException e) {
-      status.createTaskResult(e,
-          "Error while initializing filter: " + e.getMessage());
     }
 
     return status.createTaskResult();
@@ -104,12 +119,14 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
    * @param context Eoulsan context
    * @param reporter reporter to use
    * @param status task status
-   * @param filter alignments filter to use
+   * @param filterParameters parameters of the alignments filter to use
+   * @param threads number of threads to use
    * @throws IOException if an error occurs while filtering reads
    */
   private static void filterSample(final TaskContext context,
       final Reporter reporter, final TaskStatus status,
-      final ReadAlignmentsFilter filter) throws IOException {
+      final Map<String, String> filterParameters, final int threads)
+      throws IOException {
 
     // Get input and output data
     final Data inData = context.getInputData(DataFormats.MAPPER_RESULTS_SAM);
@@ -123,7 +140,7 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
     final DataFile outFile = outData.getDataFile();
 
     // Filter alignments in single-end mode or in paired-end mode
-    filterFile(inFile, outFile, reporter, filter,
+    filterFile(inFile, outFile, reporter, filterParameters, threads,
         context.getLocalTempDirectory());
 
     // Set the description of the context
@@ -139,123 +156,381 @@ public class SAMFilterLocalModule extends AbstractSAMFilterModule {
    * @param inFile input file
    * @param outFile output file
    * @param reporter reporter to use
-   * @param filter alignments filter to use
+   * @param filterParameters parameters of the alignments filter to use
+   * @param threads number of threads to use
    * @param tmpDir temporary directory
    * @throws IOException if an error occurs while filtering data
    */
   private static void filterFile(final DataFile inFile, final DataFile outFile,
-      final Reporter reporter, final ReadAlignmentsFilter filter,
+      final Reporter reporter, final Map<String, String> filterParameters,
+      final int threads, final File tmpDir) throws IOException {
+
+    getLogger().info("Filter SAM file: " + inFile);
+
+    filterAlignments(inFile.open(), outFile.create(), reporter, COUNTER_GROUP,
+        filterParameters, threads, tmpDir);
+  }
+
+  /**
+   * Filter SAM alignments in single-end mode or paired-end mode. The
+   * alignments are read and grouped in batches of reads in the current
+   * thread, the batches are filtered by a pool of threads and the filtered
+   * alignments are written in the order of the input by another thread.
+   * @param in SAM input stream
+   * @param out SAM output stream
+   * @param reporter reporter to use
+   * @param counterGroup counter group for the reporter
+   * @param filterParameters parameters of the alignments filter to use
+   * @param threads number of threads to use to filter the alignments
+   * @param tmpDir temporary directory
+   * @throws IOException if an error occurs while filtering data
+   */
+  static void filterAlignments(final InputStream in, final OutputStream out,
+      final Reporter reporter, final String counterGroup,
+      final Map<String, String> filterParameters, final int threads,
       final File tmpDir) throws IOException {
 
-    final List<SAMRecord> records = new ArrayList<>();
     int counterInput = 0;
-    int counterOutput = 0;
     int counterInvalid = 0;
     boolean pairedEnd = false;
 
-    // Creation of a buffer object to store alignments with the same read name
-    final ReadAlignmentsFilterBuffer rafb =
-        new ReadAlignmentsFilterBuffer(filter);
-
-    getLogger().info("Filter SAM file: " + inFile);
+    // As filters and reporters are not thread safe, each filtering thread
+    // uses its own filter and its own reporter
+    final List<BatchFilter> filters = new ArrayList<>();
+    final BlockingQueue<BatchFilter> freeFilters =
+        new ArrayBlockingQueue<>(threads);
+    for (int i = 0; i < threads; i++) {
+      final BatchFilter filter =
+          new BatchFilter(filterParameters, counterGroup);
+      filters.add(filter);
+      freeFilters.add(filter);
+    }
 
     // Get reader
     final SamReader inputSam =
-        SamReaderFactory.makeDefault().open(SamInputResource.of(inFile.open()));
+        SamReaderFactory.makeDefault().open(SamInputResource.of(in));
 
     // Get Writer
     final SAMFileWriter outputSam =
         new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeSAMWriter(inputSam.getFileHeader(), false, outFile.create());
+            .makeSAMWriter(inputSam.getFileHeader(), false, out);
 
-    final SAMRecordIterator it = inputSam.iterator();
+    final AlignmentsWriterThread writer =
+        new AlignmentsWriterThread(outputSam, 2 * threads);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-    while (it.hasNext()) {
+    writer.start();
 
-      final SAMRecord samRecord;
+    try {
 
-      // Check if SAM entry is correct
-      try {
-        samRecord = it.next();
+      final SAMRecordIterator it = inputSam.iterator();
+      List<SAMRecord> batch = new ArrayList<>();
+      String lastReadName = null;
 
-      } catch (SAMFormatException e) {
-        counterInvalid++;
-        continue;
-      }
+      while (it.hasNext()) {
 
-      // single-end or paired-end mode ?
-      if (counterInput == 0) {
-        if (samRecord.getReadPairedFlag()) {
-          pairedEnd = true;
-        }
-      }
+        final SAMRecord samRecord;
+
+        // Check if SAM entry is correct
+        try {
+          samRecord = it.next();
 
-      counterInput++;
+        } catch (SAMFormatException e) {
+          counterInvalid++;
+          continue;
+        }
 
-      // storage and filtering of all the alignments of a read in the list
-      // "records"
-      if (!rafb.addAlignment(samRecord)) {
+        // single-end or paired-end mode ?
+        if (counterInput == 0) {
+          if (samRecord.getReadPairedFlag()) {
+            pairedEnd = true;
+          }
+        }
 
-        records.clear();
-        records.addAll(rafb.getFilteredAlignments());
+        counterInput++;
 
-        // sort alignments of the current read
-        Collections.sort(records, new SAMComparator());
+        // A batch only contains all the alignments of its reads
+        if (batch.size() >= BATCH_SIZE
+            && !ReadAlignmentsFilterBuffer.isSameReadName(lastReadName,
+                samRecord.getReadName())) {
 
-        // writing records
-        for (SAMRecord r : records) {
-          outputSam.addAlignment(r);
-          counterOutput++;
+          writer.add(executor.submit(filterTask(freeFilters, batch)));
+          batch = new ArrayList<>();
         }
 
-        rafb.addAlignment(samRecord);
+        batch.add(samRecord);
+        lastReadName = samRecord.getReadName();
+      }
+
+      // treatment of the last batch
+      if (!batch.isEmpty()) {
+        writer.add(executor.submit(filterTask(freeFilters, batch)));
       }
 
+    } finally {
+
+      // Wait the end of the writing
+      writer.finish();
+      executor.shutdown();
+
+      // Close files
+      inputSam.close();
+      outputSam.close();
     }
 
-    // treatment of the last record
-    records.clear();
-    records.addAll(rafb.getFilteredAlignments());
+    writer.throwException();
 
-    // sort alignments of the last read
-    Collections.sort(records, new SAMComparator());
+    final int counterOutput = writer.getAlignmentCount();
 
-    // writing records
-    for (SAMRecord r : records) {
-      outputSam.addAlignment(r);
-      counterOutput++;
+    // Merge the counters of the filters
+    for (BatchFilter filter : filters) {
+      for (String counterName : filter.reporter.getCounterNames(counterGroup)) {
+        reporter.incrCounter(counterGroup, counterName,
+            filter.reporter.getCounterValue(counterGroup, counterName));
+      }
     }
 
     // paired-end mode
     if (pairedEnd) {
       int nbInput = counterInput / 2;
       int nbOutput = counterOutput / 2;
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           INPUT_ALIGNMENTS_COUNTER.counterName(), nbInput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           OUTPUT_FILTERED_ALIGNMENTS_COUNTER.counterName(), nbOutput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_WITH_INVALID_SAM_FORMAT.counterName(), counterInvalid / 2);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_REJECTED_BY_FILTERS_COUNTER.counterName(),
           nbInput - nbOutput);
     }
 
     // single-end mode
     else {
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           INPUT_ALIGNMENTS_COUNTER.counterName(), counterInput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           OUTPUT_FILTERED_ALIGNMENTS_COUNTER.counterName(), counterOutput);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_WITH_INVALID_SAM_FORMAT.counterName(), counterInvalid);
-      reporter.incrCounter(COUNTER_GROUP,
+      reporter.incrCounter(counterGroup,
           ALIGNMENTS_REJECTED_BY_FILTERS_COUNTER.counterName(),
           counterInput - counterOutput);
     }
+  }
+
+  /**
+   * Create a task that filter a batch of alignments.
+   * @param freeFilters the filters that are not used by another task
+   * @param batch the batch of alignments to filter
+   * @return a new task
+   */
+  private static Callable<List<SAMRecord>> filterTask(
+      final BlockingQueue<BatchFilter> freeFilters,
+      final List<SAMRecord> batch) {
+
+    return new Callable<List<SAMRecord>>() {
+
+      @Override
+      public List<SAMRecord> call() throws Exception {
+
+        final BatchFilter filter = freeFilters.take();
+
+        try {
+          return filter.filter(batch);
+        } finally {
+          freeFilters.add(filter);
+        }
+      }
+    };
+  }
+
+  //
+  // Inner classes
+  //
+
+  /**
+   * This class filter batches of alignments with its own filter and its own
+   * reporter.
+   */
+  private static final class BatchFilter {
+
+    private final LocalReporter reporter = new LocalReporter();
+    private final ReadAlignmentsFilterBuffer rafb;
+    private final SAMComparator comparator = new SAMComparator();
+
+    /**
+     * Filter a batch of alignments.
+     * @param batch the alignments to filter
+     * @return a list with the filtered alignments of the batch
+     */
+    List<SAMRecord> filter(final List<SAMRecord> batch) {
+
+      final List<SAMRecord> result = new ArrayList<>(batch.size());
+
+      for (SAMRecord samRecord : batch) {
+
+        // storage and filtering of all the alignments of a read
+        if (!this.rafb.addAlignment(samRecord)) {
+
+          addFilteredAlignments(result);
+          this.rafb.addAlignment(samRecord);
+        }
+      }
+
+      // treatment of the last read
+      addFilteredAlignments(result);
+
+      return result;
+    }
+
+    /**
+     * Add the filtered alignments of the current read to a list.
+     * @param result the list where add the alignments
+     */
+    private void addFilteredAlignments(final List<SAMRecord> result) {
+
+      final List<SAMRecord> records = this.rafb.getFilteredAlignments();
+
+      // sort alignments of the current read
+      Collections.sort(records, this.comparator);
+
+      result.addAll(records);
+    }
+
+    /**
+     * Constructor.
+     * @param filterParameters parameters of the alignments filter
+     * @param counterGroup counter group for the reporter
+     * @throws IOException if an error occurs while creating the filter
+     */
+    BatchFilter(final Map<String, String> filterParameters,
+        final String counterGroup) throws IOException {
+
+      final MultiReadAlignmentsFilter filter;
+      try {
+        filter = new MultiReadAlignmentsFilterBuilder(filterParameters)
+            .getAlignmentsFilter(this.reporter, counterGroup);
+      } catch (EoulsanException e) {
+        throw new IOException(e);
+      }
+
+      this.rafb = new ReadAlignmentsFilterBuffer(filter, true);
+    }
+  }
+
+  /**
+   * This thread write the filtered alignments in the order of the batches.
+   */
+  private static final class AlignmentsWriterThread extends Thread {
+
+    // Marker of the end of the batches
+    private static final Future<List<SAMRecord>> END =
+        CompletableFuture.completedFuture(null);
+
+    private final SAMFileWriter writer;
+    private final BlockingQueue<Future<List<SAMRecord>>> queue;
+    private int alignmentCount;
+    private Throwable exception;
+
+    @Override
+    public void run() {
+
+      try {
+
+        Future<List<SAMRecord>> future;
+
+        while ((future = this.queue.take()) != END) {
+
+          // Once an error has occurred, the batches are only discarded to
+          // avoid blocking the reading thread
+          if (this.exception != null) {
+            future.cancel(false);
+            continue;
+          }
+
+          try {
+            for (SAMRecord r : future.get()) {
+              this.writer.addAlignment(r);
+              this.alignmentCount++;
+            }
+          } catch (ExecutionException e) {
+            this.exception = e.getCause();
+          } catch (RuntimeException e) {
+            this.exception = e;
+          }
+        }
 
-    // Close files
-    inputSam.close();
-    outputSam.close();
+      } catch (InterruptedException e) {
+        this.exception = e;
+      }
+    }
+
+    /**
+     * Add the result of a batch to write.
+     * @param future the future of the filtered batch
+     * @throws IOException if the thread has been interrupted
+     */
+    void add(final Future<List<SAMRecord>> future) throws IOException {
+
+      try {
+        this.queue.put(future);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+
+    /**
+     * Wait the end of the writing of all the batches.
+     * @throws IOException if the thread has been interrupted
+     */
+    void finish() throws IOException {
+
+      add(END);
+
+      try {
+        join();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+
+    /**
+     * Throw the exception that occurs while filtering or writing the
+     * alignments.
+     * @throws IOException if an exception occurs while filtering or writing
+     *           the alignments
+     */
+    void throwException() throws IOException {
+
+      if (this.exception instanceof IOException) {
+        throw (IOException) this.exception;
+      }
+
+      if (this.exception != null) {
+        throw new IOException(this.exception);
+      }
+    }
+
+    /**
+     * Get the number of alignments written.
+     * @return the number of alignments written
+     */
+    int getAlignmentCount() {
+
+      return this.alignmentCount;
+    }
+
+    /**
+     * Constructor.
+     * @param writer the SAM writer
+     * @param capacity the maximal number of batches waiting to be written
+     */
+    AlignmentsWriterThread(final SAMFileWriter writer, final int capacity) {
+
+      super("SAM filter writer");
+      this.writer = writer;
+      this.queue = new ArrayBlockingQueue<>(capacity);
+    }
   }
 }
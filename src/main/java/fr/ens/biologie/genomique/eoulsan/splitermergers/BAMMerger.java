@@ -24,32 +24,31 @@
 
 package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Set;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
-import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.bio.io.BAMStreamWriter;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
-import htsjdk.samtools.SAMFileWriter;
-import htsjdk.samtools.SAMFileWriterFactory;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.SAMRecordMerger.RecordWriter;
 import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.SamInputResource;
-import htsjdk.samtools.SamReader;
-import htsjdk.samtools.SamReaderFactory;
 
 /**
- * This class define a merger class for SAM files.
+ * This class define a merger class for BAM files. If the input files are
+ * sorted in the same order, the output file is sorted. The BGZF blocks of the
+ * output file are compressed in parallel.
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class BAMMerger implements Merger {
 
+  private int threadNumber = 1;
+
   @Override
   public DataFormat getFormat() {
 
@@ -59,10 +58,18 @@ public class BAMMerger implements Merger {
   @Override
   public void configure(final Set<Parameter> conf) throws EoulsanException {
 
-    // The merge does not need any parameter
     for (Parameter p : conf) {
-      throw new EoulsanException("Unknown parameter for "
-          + getFormat().getName() + " merger: " + p.getName());
+
+      switch (p.getName()) {
+
+      case "threads":
+        this.threadNumber = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      default:
+        throw new EoulsanException("Unknown parameter for "
+            + getFormat().getName() + " merger: " + p.getName());
+      }
     }
   }
 
@@ -70,39 +77,21 @@ public class BAMMerger implements Merger {
   public void merge(final Iterator<DataFile> inFileIterator,
       final DataFile outFile) throws IOException {
 
-    // Get temporary directory
-    final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
-
-    SAMFileWriter outputSam = null;
-
-    while (inFileIterator.hasNext()) {
+    try (SAMRecordMerger merger =
+        new SAMRecordMerger(inFileIterator, this.threadNumber);
+        BAMStreamWriter writer = new BAMStreamWriter(outFile.create(),
+            merger.getFileHeader(), this.threadNumber)) {
 
-      // Get input file
-      final DataFile inFile = inFileIterator.next();
+      EoulsanLogger.getLogger().info("Merge to " + outFile.getName());
 
-      EoulsanLogger.getLogger()
-          .info("Merge " + inFile.getName() + " to " + outFile.getName());
+      merger.merge(new RecordWriter() {
 
-      // Get reader
-      final SamReader inputSam = SamReaderFactory.makeDefault()
-          .open(SamInputResource.of(inFile.open()));
-
-      // Get Writer
-      if (outputSam == null) {
-
-        outputSam = new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeBAMWriter(inputSam.getFileHeader(), false, outFile.create());
-      }
-
-      // Write all the entries of the input file to the output file
-      for (SAMRecord samRecord : inputSam) {
-        outputSam.addAlignment(samRecord);
-      }
-
-      inputSam.close();
+        @Override
+        public void write(final SAMRecord record) throws IOException {
+          writer.write(record);
+        }
+      });
     }
-
-    outputSam.close();
   }
 
 }
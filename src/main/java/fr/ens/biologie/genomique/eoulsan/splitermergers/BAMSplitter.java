@@ -24,8 +24,14 @@
 
 package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -37,6 +43,8 @@ import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPInputStream;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPOutputStream;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
@@ -44,17 +52,24 @@ import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.BlockCompressedInputStream;
 
 /**
- * This class define a splitter class for BAM files.
+ * This class define a splitter class for BAM files. Except for the splitting
+ * by chromosomes, the alignments are copied without being decoded and the
+ * chunks are compressed in parallel. When the number of chunks is set, the
+ * chunks are defined using the offsets of the BGZF blocks of the input file.
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class BAMSplitter implements Splitter {
 
   private static final int DEFAULT_SPLIT_MAX_ENTRIES = 1000000;
+  private static final byte[] BAM_MAGIC = {'B', 'A', 'M', 1};
 
   private int splitMaxEntries = DEFAULT_SPLIT_MAX_ENTRIES;
+  private int splitChunks;
+  private int threadNumber = 1;
   private boolean splitByChromosomes;
 
   @Override
@@ -66,12 +81,23 @@ public class BAMSplitter implements Splitter {
   @Override
   public void configure(final Set<Parameter> conf) throws EoulsanException {
 
+    boolean maxEntriesSet = false;
+
     for (Parameter p : conf) {
 
       switch (p.getName()) {
 
       case "max.entries":
         this.splitMaxEntries = p.getIntValueGreaterOrEqualsTo(1);
+        maxEntriesSet = true;
+        break;
+
+      case "chunks":
+        this.splitChunks = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      case "threads":
+        this.threadNumber = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
       case "chromosomes":
@@ -83,6 +109,11 @@ public class BAMSplitter implements Splitter {
             + getFormat().getName() + " splitter: " + p.getName());
       }
     }
+
+    if (maxEntriesSet && this.splitChunks > 0) {
+      throw new EoulsanException("The max.entries and chunks parameters of the "
+          + getFormat().getName() + " splitter cannot be used together");
+    }
   }
 
   @Override
@@ -106,45 +137,261 @@ public class BAMSplitter implements Splitter {
   private void splitByLineCount(final DataFile inFile,
       final Iterator<DataFile> outFileIterator) throws IOException {
 
-    // Get temporary directory
-    final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
+    final int chunks = this.splitChunks;
+    final long length =
+        chunks > 0 ? inFile.getMetaData().getContentLength() : -1;
 
-    // Get reader
-    final SamReader reader =
-        SamReaderFactory.makeDefault().open(SamInputResource.of(inFile.open()));
+    // Without the length of the file, the alignments are counted first
+    final int max = chunks > 0 && length <= 0
+        ? SplitterUtils.getEntriesPerChunk(countEntries(inFile), chunks)
+        : this.splitMaxEntries;
 
-    // Get SAM header
-    final SAMFileHeader header = reader.getFileHeader();
+    // The offsets of the BGZF blocks are only available with htsjdk
+    final BlockCompressedInputStream blockIn = length > 0
+        ? new BlockCompressedInputStream(
+            new BufferedInputStream(inFile.rawOpen()))
+        : null;
 
-    final int max = this.splitMaxEntries;
     int entryCount = 0;
-    SAMFileWriter writer = null;
+    int chunk = -1;
+    byte[] record = new byte[1024];
+    OutputStream out = null;
 
-    for (final SAMRecord record : reader) {
+    // The alignments are copied without being decoded
+    try (InputStream in = blockIn != null ? blockIn : open(inFile)) {
+
+      final byte[] header = readHeader(in);
+
+      while (true) {
 
-      if (entryCount % max == 0) {
+        final long filePointer =
+            blockIn != null ? blockIn.getFilePointer() : 0;
 
-        // Close previous writer
-        if (writer != null) {
-          writer.close();
+        final int blockSize = readInt(in, true);
+        if (blockSize < 0) {
+          break;
         }
 
-        DataFile outFile = outFileIterator.next();
+        final boolean newChunk;
+        if (blockIn != null) {
 
-        // Create new writer
-        writer = new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeBAMWriter(header, false, outFile.create());
+          final int blockChunk = (int) Math.min(chunks - 1,
+              BlockCompressedInputStream.getFileBlock(filePointer)
+                  * chunks / length);
+          newChunk = blockChunk > chunk;
+          chunk = Math.max(chunk, blockChunk);
+        } else {
+          newChunk = entryCount % max == 0;
+        }
+
+        if (newChunk) {
+
+          // Close previous output
+          if (out != null) {
+            out.close();
+          }
+
+          // Create new output
+          out = new ParallelGZIPOutputStream(outFileIterator.next().create(),
+              this.threadNumber);
+          out.write(header);
+        }
+
+        if (record.length < blockSize) {
+          record =
+              Arrays.copyOf(record, Math.max(blockSize, 2 * record.length));
+        }
+        readFully(in, record, blockSize);
+
+        writeInt(out, blockSize);
+        out.write(record, 0, blockSize);
+        entryCount++;
       }
 
-      writer.addAlignment(record);
-      entryCount++;
+    } finally {
+
+      // Close the last output
+      if (out != null) {
+        out.close();
+      }
     }
+  }
 
-    // Close reader and writer
-    reader.close();
-    if (writer != null) {
-      writer.close();
+  /**
+   * Count the alignments of a BAM file.
+   * @param inFile input file
+   * @return the number of alignments of the file
+   * @throws IOException if an error occurs while reading the file
+   */
+  private long countEntries(final DataFile inFile) throws IOException {
+
+    long result = 0;
+    byte[] record = new byte[1024];
+
+    try (InputStream in = open(inFile)) {
+
+      readHeader(in);
+
+      int blockSize;
+      while ((blockSize = readInt(in, true)) >= 0) {
+
+        if (record.length < blockSize) {
+          record =
+              Arrays.copyOf(record, Math.max(blockSize, 2 * record.length));
+        }
+        readFully(in, record, blockSize);
+        result++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Open a BAM file. If more than one thread is allowed, the BGZF blocks are
+   * uncompressed in parallel.
+   * @param inFile input file
+   * @return an uncompressed input stream
+   * @throws IOException if an error occurs while opening the file
+   */
+  private InputStream open(final DataFile inFile) throws IOException {
+
+    if (this.threadNumber > 1) {
+      return new ParallelGZIPInputStream(inFile.rawOpen(), this.threadNumber);
     }
+
+    return new BlockCompressedInputStream(
+        new BufferedInputStream(inFile.rawOpen()));
+  }
+
+  /**
+   * Read the header of an uncompressed BAM file.
+   * @param in input stream
+   * @return the bytes of the header
+   * @throws IOException if an error occurs while reading the header
+   */
+  private static byte[] readHeader(final InputStream in) throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    final byte[] magic = new byte[BAM_MAGIC.length];
+    readFully(in, magic, magic.length);
+    if (!Arrays.equals(BAM_MAGIC, magic)) {
+      throw new IOException("Invalid BAM file: bad magic number");
+    }
+    out.write(magic);
+
+    // Copy the text of the header
+    copyBytes(in, out, readInt(in, out));
+
+    // Copy the reference sequences
+    final int referenceCount = readInt(in, out);
+    for (int i = 0; i < referenceCount; i++) {
+      copyBytes(in, out, readInt(in, out));
+      readInt(in, out);
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Read an integer in little endian order and copy it.
+   * @param in input stream
+   * @param out output stream
+   * @return the integer
+   * @throws IOException if an error occurs while reading the integer
+   */
+  private static int readInt(final InputStream in, final OutputStream out)
+      throws IOException {
+
+    final int result = readInt(in, false);
+
+    if (result < 0) {
+      throw new IOException("Invalid BAM header: negative value: " + result);
+    }
+
+    writeInt(out, result);
+
+    return result;
+  }
+
+  /**
+   * Read an integer in little endian order.
+   * @param in input stream
+   * @param endAllowed true if the end of the stream is allowed
+   * @return the integer or -1 if the end of the stream has been reached
+   * @throws IOException if an error occurs while reading the integer
+   */
+  private static int readInt(final InputStream in, final boolean endAllowed)
+      throws IOException {
+
+    final int b0 = in.read();
+
+    if (b0 < 0 && endAllowed) {
+      return -1;
+    }
+
+    final int b1 = in.read();
+    final int b2 = in.read();
+    final int b3 = in.read();
+
+    if ((b0 | b1 | b2 | b3) < 0) {
+      throw new EOFException("Unexpected end of BAM file");
+    }
+
+    return b0 | b1 << 8 | b2 << 16 | b3 << 24;
+  }
+
+  /**
+   * Write an integer in little endian order.
+   * @param out output stream
+   * @param value the value to write
+   * @throws IOException if an error occurs while writing the integer
+   */
+  private static void writeInt(final OutputStream out, final int value)
+      throws IOException {
+
+    out.write(value & 0xff);
+    out.write(value >>> 8 & 0xff);
+    out.write(value >>> 16 & 0xff);
+    out.write(value >>> 24 & 0xff);
+  }
+
+  /**
+   * Fill a buffer from an input stream.
+   * @param in input stream
+   * @param buffer the buffer
+   * @param length number of bytes to read
+   * @throws IOException if an error occurs while reading the stream
+   */
+  private static void readFully(final InputStream in, final byte[] buffer,
+      final int length) throws IOException {
+
+    int offset = 0;
+
+    while (offset < length) {
+
+      final int n = in.read(buffer, offset, length - offset);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of BAM file");
+      }
+      offset += n;
+    }
+  }
+
+  /**
+   * Copy bytes from an input stream to an output stream.
+   * @param in input stream
+   * @param out output stream
+   * @param length number of bytes to copy
+   * @throws IOException if an error occurs while copying the bytes
+   */
+  private static void copyBytes(final InputStream in, final OutputStream out,
+      final int length) throws IOException {
+
+    final byte[] buffer = new byte[length];
+    readFully(in, buffer, length);
+    out.write(buffer);
   }
 
   /**
@@ -0,0 +1,264 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This class define a pool of threads that write the chunks created by the
+ * splitters. The output files are created and compressed by the threads of
+ * the pool, so several chunks are written in parallel. The number of chunks
+ * in progress is limited to the number of threads of the pool.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class ChunkWriterPool implements Closeable {
+
+  private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+  private final ExecutorService executor;
+  private final Semaphore freeSlots;
+  private final List<Future<Void>> futures = new ArrayList<>();
+  private boolean closed;
+
+  /**
+   * This interface define the content of a chunk.
+   */
+  interface ChunkWriter {
+
+    /**
+     * Write the content of the chunk.
+     * @param out output stream of the chunk
+     * @throws IOException if an error occurs while writing the chunk
+     */
+    void write(OutputStream out) throws IOException;
+  }
+
+  /**
+   * This class define a chunk that is a range of bytes of a file, optionally
+   * preceded by a header.
+   */
+  static final class FileRangeWriter implements ChunkWriter {
+
+    private final File file;
+    private final byte[] header;
+    private final long start;
+    private final long end;
+
+    @Override
+    public void write(final OutputStream out) throws IOException {
+
+      if (this.header != null) {
+        out.write(this.header);
+      }
+
+      final ByteBuffer buffer = ByteBuffer.allocate(
+          (int) Math.min(COPY_BUFFER_SIZE, Math.max(1, this.end - this.start)));
+
+      try (FileChannel channel =
+          FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+
+        long position = this.start;
+
+        while (position < this.end) {
+
+          buffer.clear();
+          buffer.limit((int) Math.min(buffer.capacity(), this.end - position));
+
+          final int n = channel.read(buffer, position);
+          if (n < 0) {
+            throw new IOException("Unexpected end of file: " + this.file);
+          }
+
+          out.write(buffer.array(), 0, n);
+          position += n;
+        }
+      }
+    }
+
+    /**
+     * Constructor.
+     * @param file the file to copy
+     * @param header header of the chunk. Can be null
+     * @param start offset of the first byte of the range
+     * @param end offset of the end of the range (excluded)
+     */
+    FileRangeWriter(final File file, final byte[] header, final long start,
+        final long end) {
+
+      this.file = file;
+      this.header = header;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  //
+  // Pool methods
+  //
+
+  /**
+   * Submit a chunk to write. This method blocks if all the threads of the pool
+   * are busy.
+   * @param outFile the output file of the chunk
+   * @param writer the content of the chunk
+   * @throws IOException if an error has occurred while writing a previous
+   *           chunk
+   */
+  public void submit(final DataFile outFile, final ChunkWriter writer)
+      throws IOException {
+
+    if (outFile == null) {
+      throw new NullPointerException("outFile argument cannot be null");
+    }
+
+    if (writer == null) {
+      throw new NullPointerException("writer argument cannot be null");
+    }
+
+    if (this.closed) {
+      throw new IOException("The chunk writer pool is closed");
+    }
+
+    try {
+      this.freeSlots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Chunk writing has been interrupted", e);
+    }
+
+    this.futures.add(this.executor.submit(new Callable<Void>() {
+
+      @Override
+      public Void call() throws IOException {
+
+        try (OutputStream out = new BufferedOutputStream(outFile.create())) {
+          writer.write(out);
+        } finally {
+          freeSlots.release();
+        }
+
+        return null;
+      }
+    }));
+
+    checkWrittenChunks(false);
+  }
+
+  /**
+   * Check the result of the written chunks.
+   * @param wait true if this method must wait the end of the chunks in
+   *          progress
+   * @throws IOException if an error has occurred while writing a chunk
+   */
+  private void checkWrittenChunks(final boolean wait) throws IOException {
+
+    final Iterator<Future<Void>> it = this.futures.iterator();
+
+    while (it.hasNext()) {
+
+      final Future<Void> future = it.next();
+
+      if (!wait && !future.isDone()) {
+        continue;
+      }
+
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Chunk writing has been interrupted", e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(
+            "Error while writing a chunk: " + cause.getMessage(), cause);
+      }
+
+      it.remove();
+    }
+  }
+
+  /**
+   * Wait the end of the writing of all the chunks and stop the threads of the
+   * pool.
+   * @throws IOException if an error has occurred while writing a chunk
+   */
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+
+    try {
+      checkWrittenChunks(true);
+    } finally {
+      this.executor.shutdownNow();
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param threadNumber number of threads of the pool
+   */
+  ChunkWriterPool(final int threadNumber) {
+
+    if (threadNumber < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads must be greater than 0: " + threadNumber);
+    }
+
+    this.executor = Executors.newFixedThreadPool(threadNumber);
+    this.freeSlots = new Semaphore(threadNumber);
+  }
+
+}
@@ -3,17 +3,14 @@ package fr.ens.biologie.genomique.eoulsan.splitermergers;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multiset;
-
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
+import fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.FeatureCounts;
+import fr.ens.biologie.genomique.eoulsan.bio.io.CountsWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.TSVCountsWriter;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
@@ -46,8 +43,7 @@ public class ExpressionMerger implements Merger {
   public void merge(final Iterator<DataFile> inFileIterator, DataFile outFile)
       throws IOException {
 
-    final Multiset<String> counts = HashMultiset.create();
-    final Set<String> emptyCounts = new HashSet<>();
+    final FeatureCounts counts = new FeatureCounts();
 
     while (inFileIterator.hasNext()) {
 
@@ -82,12 +78,9 @@ public class ExpressionMerger implements Merger {
           try {
 
             final String id = line.substring(0, tabPos).trim();
-            final int count = Integer.parseInt(line.substring(tabPos).trim());
-
-            if (count == 0) {
-              emptyCounts.add(id);
-            }
+            final long count = Long.parseLong(line.substring(tabPos).trim());
 
+            // Features with a zero count are also kept
             counts.add(id, count);
 
           } catch (NumberFormatException e) {
@@ -98,26 +91,8 @@ public class ExpressionMerger implements Merger {
     }
 
     // Write the result file
-    try (Writer writer = new OutputStreamWriter(outFile.create())) {
-
-      writer.write(ExpressionSplitter.EXPRESSION_FILE_HEADER);
-
-      // Write the non empty counts
-      for (Multiset.Entry<String> e : counts.entrySet()) {
-
-        final String id = e.getElement();
-
-        // Remove the id from empty counts
-        emptyCounts.remove(id);
-
-        // Write the entry
-        writer.write(id + '\t' + e.getCount() + '\n');
-      }
-
-      // Write the empty counts
-      for (String id : emptyCounts) {
-        writer.write(id + "\t0\n");
-      }
+    try (CountsWriter writer = new TSVCountsWriter(outFile.create())) {
+      writer.write(counts);
     }
 
   }
@@ -24,30 +24,42 @@
 
 package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Set;
 
 import fr.ens.biologie.genomique.eoulsan.EoulsanException;
 import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
-import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
-import fr.ens.biologie.genomique.eoulsan.bio.io.FastqWriter;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecord;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqRecordReader;
 import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.ChunkWriterPool.FileRangeWriter;
 
 /**
- * This class define a splitter class for FASTQ files.
+ * This class define a splitter class for FASTQ files. Uncompressed local files
+ * are split using the byte offsets of the entries and the chunks are written
+ * in parallel. Other files are read sequentially and the compression of the
+ * chunks is performed in parallel. When the number of chunks is set, the
+ * entries are counted first, so all the files of a multi-file data (e.g.
+ * paired-end reads) are split in the same way.
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class FastqSplitter implements Splitter {
 
   private static final int DEFAULT_SPLIT_MAX_ENTRIES = 1000000;
+  private static final int LINES_PER_ENTRY = 4;
 
   private int splitMaxEntries = DEFAULT_SPLIT_MAX_ENTRIES;
+  private int splitChunks;
+  private int threadNumber = 1;
 
   @Override
   public DataFormat getFormat() {
@@ -58,12 +70,23 @@ public class FastqSplitter implements Splitter {
   @Override
   public void configure(final Set<Parameter> conf) throws EoulsanException {
 
+    boolean maxEntriesSet = false;
+
     for (Parameter p : conf) {
 
       switch (p.getName()) {
 
       case "max.entries":
         this.splitMaxEntries = p.getIntValueGreaterOrEqualsTo(1);
+        maxEntriesSet = true;
+        break;
+
+      case "chunks":
+        this.splitChunks = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      case "threads":
+        this.threadNumber = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
       default:
@@ -71,47 +94,181 @@ public class FastqSplitter implements Splitter {
             + getFormat().getName() + " splitter: " + p.getName());
       }
     }
+
+    if (maxEntriesSet && this.splitChunks > 0) {
+      throw new EoulsanException("The max.entries and chunks parameters of the "
+          + getFormat().getName() + " splitter cannot be used together");
+    }
   }
 
   @Override
   public void split(final DataFile inFile,
       final Iterator<DataFile> outFileIterator) throws IOException {
 
-    final FastqReader reader = new FastqReader(inFile.open());
+    final int max = this.splitChunks > 0
+        ? SplitterUtils.getEntriesPerChunk(countEntries(inFile),
+            this.splitChunks)
+        : this.splitMaxEntries;
 
-    final int max = this.splitMaxEntries;
-    int entryCount = 0;
-    FastqWriter writer = null;
+    if (SplitterUtils.isSplittableByOffsets(inFile)) {
+      splitByOffsets(inFile.toFile(), outFileIterator, max);
+    } else {
+      splitByEntries(inFile, outFileIterator, max);
+    }
+  }
+
+  /**
+   * Split a file using the byte offsets of its entries. The entries are not
+   * decoded, only the lines are counted. The chunks are written in parallel.
+   * @param inFile input file
+   * @param outFileIterator output files iterator
+   * @param max maximal number of entries in a chunk
+   * @throws IOException if an error occurs while reading or creating output
+   *           files
+   */
+  private void splitByOffsets(final File inFile,
+      final Iterator<DataFile> outFileIterator, final int max)
+      throws IOException {
+
+    final long maxLines = (long) LINES_PER_ENTRY * max;
+    long lineCount = 0;
+    long chunkStart = 0;
 
-    for (final ReadSequence read : reader) {
+    try (ChunkWriterPool pool = new ChunkWriterPool(this.threadNumber);
+        RawLineReader reader =
+            new RawLineReader(new FileInputStream(inFile))) {
 
-      if (entryCount % max == 0) {
+      while (reader.next()) {
 
-        // Close previous writer
-        if (writer != null) {
-          writer.close();
+        // Skip the empty lines between the entries
+        if (reader.isBlank()) {
+          continue;
         }
 
-        // Create new writer
-        writer = new FastqWriter(outFileIterator.next().create());
+        checkLine(reader, lineCount, inFile);
+
+        if (lineCount > 0 && lineCount % maxLines == 0) {
+
+          final long chunkEnd = reader.getLineOffset();
+          pool.submit(outFileIterator.next(),
+              new FileRangeWriter(inFile, null, chunkStart, chunkEnd));
+          chunkStart = chunkEnd;
+        }
+
+        lineCount++;
       }
 
-      writer.write(read);
-      entryCount++;
+      // Write the last chunk
+      if (lineCount > 0) {
+        pool.submit(outFileIterator.next(),
+            new FileRangeWriter(inFile, null, chunkStart, inFile.length()));
+      }
     }
+  }
 
-    // Close reader and writer
-    reader.close();
-    if (writer != null) {
-      writer.close();
-    }
+  /**
+   * Split a file by reading all its entries.
+   * @param inFile input file
+   * @param outFileIterator output files iterator
+   * @param max maximal number of entries in a chunk
+   * @throws IOException if an error occurs while reading or creating output
+   *           files
+   */
+  private void splitByEntries(final DataFile inFile,
+      final Iterator<DataFile> outFileIterator, final int max)
+      throws IOException {
+
+    int entryCount = 0;
+    OutputStream out = null;
+
+    // The entries are copied without being decoded
+    try (FastqRecordReader reader = new FastqRecordReader(
+        SplitterUtils.open(inFile, this.threadNumber))) {
+
+      FastqRecord record;
+      while ((record = reader.read()) != null) {
+
+        if (entryCount % max == 0) {
+
+          // Close previous output
+          if (out != null) {
+            out.close();
+          }
+
+          // Create new output
+          out = new BufferedOutputStream(
+              SplitterUtils.create(outFileIterator.next(), this.threadNumber));
+        }
+
+        record.write(out);
+        entryCount++;
+      }
 
-    try {
-      reader.throwException();
     } catch (BadBioEntryException e) {
       throw new IOException(e);
+    } finally {
+
+      // Close the last output
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Count the entries of a file.
+   * @param inFile input file
+   * @return the number of entries of the file
+   * @throws IOException if an error occurs while reading the file
+   */
+  private long countEntries(final DataFile inFile) throws IOException {
+
+    long lineCount = 0;
+
+    try (RawLineReader reader =
+        new RawLineReader(SplitterUtils.open(inFile, this.threadNumber))) {
+
+      while (reader.next()) {
+        if (!reader.isBlank()) {
+          lineCount++;
+        }
+      }
     }
 
+    return lineCount / LINES_PER_ENTRY;
+  }
+
+  /**
+   * Check the first character of a line of an entry.
+   * @param reader the reader
+   * @param lineCount number of the non empty lines already read
+   * @param inFile input file
+   * @throws IOException if the line is not a valid line for a FASTQ entry
+   */
+  private static void checkLine(final RawLineReader reader,
+      final long lineCount, final File inFile) throws IOException {
+
+    switch ((int) (lineCount % LINES_PER_ENTRY)) {
+
+    case 0:
+      if (reader.getFirstByte() != '@') {
+        throw new IOException("Invalid Fastq file "
+            + inFile + ". First line of the entry don't start with '@' "
+            + "at line " + (lineCount + 1));
+      }
+      break;
+
+    case 2:
+      if (reader.getFirstByte() != '+') {
+        throw new IOException("Invalid Fastq file "
+            + inFile + ". Third line of the entry don't start with '+' "
+            + "at line " + (lineCount + 1));
+      }
+      break;
+
+    default:
+      break;
+    }
   }
 
 }
@@ -0,0 +1,206 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * This class define a reader that read the lines of an input as bytes, without
+ * decoding them. The reader keep the offset of each line in the input, so the
+ * splitters can define the chunks of a file by their byte offsets.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class RawLineReader implements Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  private final InputStream in;
+
+  private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  private int lineStart;
+  private int lineEnd;
+  private long bufferOffset;
+
+  /**
+   * Read the next line of the input.
+   * @return true if a line has been read, false at the end of the input
+   * @throws IOException if an error occurs while reading the input
+   */
+  public boolean next() throws IOException {
+
+    int searchStart = this.position;
+
+    while (true) {
+
+      // Search the end of the line
+      for (int i = searchStart; i < this.limit; i++) {
+        if (this.buffer[i] == '\n') {
+          this.lineStart = this.position;
+          this.lineEnd = i + 1;
+          this.position = this.lineEnd;
+          return true;
+        }
+      }
+
+      if (this.endOfInput) {
+
+        // Last line without end of line character
+        if (this.position < this.limit) {
+          this.lineStart = this.position;
+          this.lineEnd = this.limit;
+          this.position = this.limit;
+          return true;
+        }
+
+        return false;
+      }
+
+      // Move the current line at the beginning of the buffer
+      if (this.position > 0) {
+        System.arraycopy(this.buffer, this.position, this.buffer, 0,
+            this.limit - this.position);
+        this.limit -= this.position;
+        this.bufferOffset += this.position;
+        this.position = 0;
+      }
+
+      // Enlarge the buffer for very long lines
+      if (this.limit == this.buffer.length) {
+        this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+      }
+
+      searchStart = this.limit;
+
+      final int n = this.in.read(this.buffer, this.limit,
+          this.buffer.length - this.limit);
+      if (n < 0) {
+        this.endOfInput = true;
+      } else {
+        this.limit += n;
+      }
+    }
+  }
+
+  /**
+   * Get the offset in the input of the current line.
+   * @return the offset of the current line
+   */
+  public long getLineOffset() {
+
+    return this.bufferOffset + this.lineStart;
+  }
+
+  /**
+   * Get the offset in the input of the end of the current line.
+   * @return the offset of the end of the current line, including its end of
+   *         line character
+   */
+  public long getLineEndOffset() {
+
+    return this.bufferOffset + this.lineEnd;
+  }
+
+  /**
+   * Get the first byte of the current line.
+   * @return the first byte of the current line or -1 if the line is empty
+   */
+  public int getFirstByte() {
+
+    if (isBlank()) {
+      return -1;
+    }
+
+    return this.buffer[this.lineStart];
+  }
+
+  /**
+   * Test if the current line is empty.
+   * @return true if the current line is empty
+   */
+  public boolean isBlank() {
+
+    if (this.lineStart == this.lineEnd) {
+      return true;
+    }
+
+    final byte b = this.buffer[this.lineStart];
+
+    return b == '\n' || b == '\r';
+  }
+
+  /**
+   * Write the current line with its end of line character.
+   * @param out the output stream
+   * @throws IOException if an error occurs while writing the line
+   */
+  public void writeLine(final OutputStream out) throws IOException {
+
+    out.write(this.buffer, this.lineStart, this.lineEnd - this.lineStart);
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.in.close();
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Constructor.
+   * @param in input stream to read
+   */
+  RawLineReader(final InputStream in) {
+
+    this(in, 0);
+  }
+
+  /**
+   * Constructor.
+   * @param in input stream to read
+   * @param offset offset of the first byte of the input stream
+   */
+  RawLineReader(final InputStream in, final long offset) {
+
+    if (in == null) {
+      throw new NullPointerException("in argument cannot be null");
+    }
+
+    this.in = in;
+    this.bufferOffset = offset;
+  }
+
+}
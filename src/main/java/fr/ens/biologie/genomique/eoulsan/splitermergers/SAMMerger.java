@@ -36,20 +36,21 @@ import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.SAMRecordMerger.RecordWriter;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.SamInputResource;
-import htsjdk.samtools.SamReader;
-import htsjdk.samtools.SamReaderFactory;
 
 /**
- * This class define a merger class for SAM files.
+ * This class define a merger class for SAM files. If the input files are
+ * sorted in the same order, the output file is sorted.
  * @author Laurent Jourdren
  * @since 2.0
  */
 public class SAMMerger implements Merger {
 
+  private int threadNumber = 1;
+
   @Override
   public DataFormat getFormat() {
 
@@ -59,10 +60,18 @@ public class SAMMerger implements Merger {
   @Override
   public void configure(final Set<Parameter> conf) throws EoulsanException {
 
-    // The merge does not need any parameter
     for (Parameter p : conf) {
-      throw new EoulsanException("Unknown parameter for "
-          + getFormat().getName() + " merger: " + p.getName());
+
+      switch (p.getName()) {
+
+      case "threads":
+        this.threadNumber = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      default:
+        throw new EoulsanException("Unknown parameter for "
+            + getFormat().getName() + " merger: " + p.getName());
+      }
     }
   }
 
@@ -73,36 +82,28 @@ public class SAMMerger implements Merger {
     // Get temporary directory
     final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
 
-    SAMFileWriter outputSam = null;
-
-    while (inFileIterator.hasNext()) {
+    try (SAMRecordMerger merger =
+        new SAMRecordMerger(inFileIterator, this.threadNumber)) {
 
-      // Get input file
-      final DataFile inFile = inFileIterator.next();
+      EoulsanLogger.getLogger().info("Merge to " + outFile.getName());
 
-      EoulsanLogger.getLogger()
-          .info("Merge " + inFile.getName() + " to " + outFile.getName());
+      // The output is presorted if the inputs have a common sort order
+      final SAMFileWriter outputSam = new SAMFileWriterFactory()
+          .setTempDirectory(tmpDir).makeSAMWriter(merger.getFileHeader(),
+              true, SplitterUtils.create(outFile, this.threadNumber));
 
-      // Get reader
-      final SamReader inputSam = SamReaderFactory.makeDefault()
-          .open(SamInputResource.of(inFile.open()));
+      try {
+        merger.merge(new RecordWriter() {
 
-      // Get Writer
-      if (outputSam == null) {
-
-        outputSam = new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeSAMWriter(inputSam.getFileHeader(), false, outFile.create());
-      }
-
-      // Write all the entries of the input file to the output file
-      for (SAMRecord samRecord : inputSam) {
-        outputSam.addAlignment(samRecord);
+          @Override
+          public void write(final SAMRecord record) {
+            outputSam.addAlignment(record);
+          }
+        });
+      } finally {
+        outputSam.close();
       }
-
-      inputSam.close();
     }
-
-    outputSam.close();
   }
 
 }
@@ -0,0 +1,489 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanLogger;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordComparator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+/**
+ * This class merge the records of several SAM or BAM files. If all the input
+ * files are sorted in the same order (by coordinate with the same sequence
+ * dictionary or by query name), the records are merged in one pass using a
+ * heap, and the output is sorted. Otherwise the input files are concatenated.
+ * When the sequence dictionaries of the inputs differ, the output header
+ * contains all their sequences and the records are bound to this header.
+ * The input files are read ahead and decoded by a pool of threads.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class SAMRecordMerger implements Closeable {
+
+  private static final int BATCH_SIZE = 1000;
+
+  private final List<Input> inputs = new ArrayList<>();
+  private final ExecutorService executor;
+  private final SortOrder sortOrder;
+  private final SAMFileHeader header;
+
+  /**
+   * This interface define the output of the merger.
+   */
+  interface RecordWriter {
+
+    /**
+     * Write a record.
+     * @param record the record to write
+     * @throws IOException if an error occurs while writing the record
+     */
+    void write(SAMRecord record) throws IOException;
+  }
+
+  /**
+   * This class define an input file of the merger. The records are read by
+   * batches, the next batch is read by the thread pool while the current
+   * batch is merged.
+   */
+  private final class Input {
+
+    private final int index;
+    private final String name;
+    private final SamReader reader;
+    private final Iterator<SAMRecord> iterator;
+    private Future<List<SAMRecord>> nextBatch;
+    private List<SAMRecord> batch = Collections.emptyList();
+    private int position;
+    private SAMRecord current;
+    private boolean rebind;
+
+    /**
+     * Read the next record of the input.
+     * @return false if there is no more record to read
+     * @throws IOException if an error occurs while reading the input
+     */
+    boolean next() throws IOException {
+
+      if (this.position == this.batch.size()) {
+
+        this.batch = nextBatch();
+        this.position = 0;
+
+        if (this.batch.isEmpty()) {
+          this.current = null;
+          return false;
+        }
+      }
+
+      this.current = this.batch.get(this.position++);
+
+      if (this.rebind) {
+        setOutputHeader(this.current);
+      }
+
+      return true;
+    }
+
+    /**
+     * Get the next batch of records.
+     * @return a list with the records of the batch, the list is empty at the
+     *         end of the input
+     * @throws IOException if an error occurs while reading the input
+     */
+    private List<SAMRecord> nextBatch() throws IOException {
+
+      if (executor == null) {
+        return readBatch();
+      }
+
+      final List<SAMRecord> result;
+
+      try {
+        result = this.nextBatch.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Merge has been interrupted", e);
+      } catch (ExecutionException e) {
+        throw new IOException("Error while reading "
+            + this.name + ": " + e.getCause().getMessage(), e.getCause());
+      }
+
+      if (!result.isEmpty()) {
+        submitNextBatch();
+      }
+
+      return result;
+    }
+
+    /**
+     * Read ahead the next batch of records in the thread pool.
+     */
+    private void submitNextBatch() {
+
+      this.nextBatch = executor.submit(new Callable<List<SAMRecord>>() {
+
+        @Override
+        public List<SAMRecord> call() throws IOException {
+          return readBatch();
+        }
+      });
+    }
+
+    /**
+     * Read a batch of records.
+     * @return a list with the records
+     * @throws IOException if an error occurs while reading the input
+     */
+    private List<SAMRecord> readBatch() throws IOException {
+
+      final List<SAMRecord> result = new ArrayList<>(BATCH_SIZE);
+
+      try {
+        while (result.size() < BATCH_SIZE && this.iterator.hasNext()) {
+          result.add(this.iterator.next());
+        }
+      } catch (RuntimeException e) {
+        throw new IOException(
+            "Error while reading " + this.name + ": " + e.getMessage(), e);
+      }
+
+      return result;
+    }
+
+    /**
+     * Constructor.
+     * @param index index of the input
+     * @param inFile input file
+     * @param threadNumber number of threads to use to uncompress the file
+     * @throws IOException if an error occurs while opening the file
+     */
+    Input(final int index, final DataFile inFile, final int threadNumber)
+        throws IOException {
+
+      this.index = index;
+      this.name = inFile.getName();
+      this.reader = SamReaderFactory.makeDefault().open(
+          SamInputResource.of(SplitterUtils.open(inFile, threadNumber)));
+      this.iterator = this.reader.iterator();
+    }
+  }
+
+  //
+  // Merge methods
+  //
+
+  /**
+   * Get the header of the merged file.
+   * @return the header of the merged file
+   */
+  public SAMFileHeader getFileHeader() {
+
+    return this.header;
+  }
+
+  /**
+   * Test if the records will be merged in sorted order.
+   * @return true if the output of the merge will be sorted
+   */
+  public boolean isSorted() {
+
+    return this.sortOrder != null;
+  }
+
+  /**
+   * Merge the records of the inputs.
+   * @param writer the output of the merge
+   * @return the number of records written
+   * @throws IOException if an error occurs while reading the inputs or writing
+   *           the records
+   */
+  public long merge(final RecordWriter writer) throws IOException {
+
+    if (writer == null) {
+      throw new NullPointerException("writer argument cannot be null");
+    }
+
+    for (Input input : this.inputs) {
+      if (this.executor != null) {
+        input.submitNextBatch();
+      }
+    }
+
+    long count = 0;
+
+    // Concatenate the input files
+    if (this.sortOrder == null) {
+
+      for (Input input : this.inputs) {
+
+        EoulsanLogger.getLogger().info("Merge " + input.name);
+
+        while (input.next()) {
+          writer.write(input.current);
+          count++;
+        }
+      }
+
+      return count;
+    }
+
+    EoulsanLogger.getLogger().info("Merge "
+        + this.inputs.size() + " files sorted by " + this.sortOrder);
+
+    // Merge the sorted input files using a heap
+    final SAMRecordComparator comparator =
+        this.sortOrder.getComparatorInstance();
+    final PriorityQueue<Input> queue =
+        new PriorityQueue<>(this.inputs.size(), new Comparator<Input>() {
+
+          @Override
+          public int compare(final Input a, final Input b) {
+
+            final int result =
+                comparator.fileOrderCompare(a.current, b.current);
+
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+          }
+        });
+
+    for (Input input : this.inputs) {
+      if (input.next()) {
+        queue.add(input);
+      }
+    }
+
+    while (!queue.isEmpty()) {
+
+      final Input input = queue.poll();
+      writer.write(input.current);
+      count++;
+
+      if (input.next()) {
+        queue.add(input);
+      }
+    }
+
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.executor != null) {
+
+      // Wait the end of the batches in progress before closing the readers
+      this.executor.shutdownNow();
+      try {
+        this.executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    for (Input input : this.inputs) {
+      input.reader.close();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Bind a record to the output header, so its reference indexes are the
+   * indexes of the sequence dictionary of the output.
+   * @param record the record
+   */
+  private void setOutputHeader(final SAMRecord record) {
+
+    final String referenceName = record.getReferenceName();
+    final String mateReferenceName = record.getMateReferenceName();
+
+    record.setHeader(this.header);
+    record.setReferenceName(referenceName);
+    record.setMateReferenceName(mateReferenceName);
+  }
+
+  /**
+   * Merge the sequence dictionaries of the inputs. The sequences are sorted in
+   * the order of their first occurrence in the inputs.
+   * @param headers headers of the inputs
+   * @return the merged sequence dictionary
+   */
+  static SAMSequenceDictionary mergeSequenceDictionaries(
+      final List<SAMFileHeader> headers) {
+
+    final SAMSequenceDictionary result = new SAMSequenceDictionary();
+
+    for (SAMFileHeader header : headers) {
+      for (SAMSequenceRecord sequence : header.getSequenceDictionary()
+          .getSequences()) {
+
+        if (result.getSequence(sequence.getSequenceName()) == null) {
+          result.addSequence(sequence.clone());
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the sort order common to all the inputs that allow to merge the
+   * records in one pass.
+   * @param headers headers of the inputs
+   * @return the common sort order or null if the inputs cannot be merged in
+   *         sorted order
+   */
+  static SortOrder getCommonSortOrder(final List<SAMFileHeader> headers) {
+
+    if (headers.isEmpty()) {
+      return null;
+    }
+
+    final SAMFileHeader first = headers.get(0);
+    final SortOrder result = first.getSortOrder();
+
+    if (result != SortOrder.coordinate && result != SortOrder.queryname) {
+      return null;
+    }
+
+    for (SAMFileHeader header : headers) {
+
+      if (header.getSortOrder() != result) {
+        return null;
+      }
+
+      // Reference indexes are compared when sorted by coordinate
+      if (result == SortOrder.coordinate && !first.getSequenceDictionary()
+          .equals(header.getSequenceDictionary())) {
+        return null;
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param inFileIterator iterator over the files to merge
+   * @param threadNumber number of threads to use
+   * @throws IOException if an error occurs while opening the files
+   */
+  SAMRecordMerger(final Iterator<DataFile> inFileIterator,
+      final int threadNumber) throws IOException {
+
+    if (threadNumber < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads must be greater than 0: " + threadNumber);
+    }
+
+    this.executor =
+        threadNumber > 1 ? Executors.newFixedThreadPool(threadNumber) : null;
+
+    final List<SAMFileHeader> headers = new ArrayList<>();
+
+    try {
+      while (inFileIterator.hasNext()) {
+
+        final Input input =
+            new Input(this.inputs.size(), inFileIterator.next(), threadNumber);
+        this.inputs.add(input);
+        headers.add(input.reader.getFileHeader());
+      }
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+
+    if (this.inputs.isEmpty()) {
+      close();
+      throw new IOException("No file to merge");
+    }
+
+    this.sortOrder = getCommonSortOrder(headers);
+
+    // The header of the first input is used for the output
+    final SAMFileHeader firstHeader = headers.get(0);
+
+    final boolean unsorted = this.sortOrder == null
+        && headers.size() > 1
+        && firstHeader.getSortOrder() != SortOrder.unsorted;
+    boolean sameDictionaries = true;
+    for (SAMFileHeader header : headers) {
+      sameDictionaries &= firstHeader.getSequenceDictionary()
+          .equals(header.getSequenceDictionary());
+    }
+
+    if (unsorted || !sameDictionaries) {
+      this.header = firstHeader.clone();
+
+      if (unsorted) {
+        this.header.setSortOrder(SortOrder.unsorted);
+      }
+
+      if (!sameDictionaries) {
+        this.header.setSequenceDictionary(mergeSequenceDictionaries(headers));
+      }
+
+    } else {
+      this.header = firstHeader;
+    }
+
+    // The records of the inputs with another dictionary must be bound to the
+    // output header
+    for (int i = 0; i < headers.size(); i++) {
+      this.inputs.get(i).rebind = !this.header.getSequenceDictionary()
+          .equals(headers.get(i).getSequenceDictionary());
+    }
+  }
+
+}
@@ -24,8 +24,16 @@
 
 package fr.ens.biologie.genomique.eoulsan.splitermergers;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -37,6 +45,7 @@ import fr.ens.biologie.genomique.eoulsan.core.Parameter;
 import fr.ens.biologie.genomique.eoulsan.data.DataFile;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormat;
 import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.ChunkWriterPool.FileRangeWriter;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
@@ -46,7 +55,10 @@ import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 
 /**
- * This class define a splitter class for SAM files.
+ * This class define a splitter class for SAM files. Except for the splitting
+ * by chromosomes, the alignments are copied without being decoded. Uncompressed
+ * local files are split using the byte offsets of the alignments and the
+ * chunks are written in parallel.
  * @author Laurent Jourdren
  * @since 2.0
  */
@@ -55,6 +67,8 @@ public class SAMSplitter implements Splitter {
   private static final int DEFAULT_SPLIT_MAX_ENTRIES = 1000000;
 
   private int splitMaxEntries = DEFAULT_SPLIT_MAX_ENTRIES;
+  private int splitChunks;
+  private int threadNumber = 1;
   private boolean splitByChromosomes;
 
   @Override
@@ -66,12 +80,23 @@ public class SAMSplitter implements Splitter {
   @Override
   public void configure(final Set<Parameter> conf) throws EoulsanException {
 
+    boolean maxEntriesSet = false;
+
     for (Parameter p : conf) {
 
       switch (p.getName()) {
 
       case "max.entries":
         this.splitMaxEntries = p.getIntValueGreaterOrEqualsTo(1);
+        maxEntriesSet = true;
+        break;
+
+      case "chunks":
+        this.splitChunks = p.getIntValueGreaterOrEqualsTo(1);
+        break;
+
+      case "threads":
+        this.threadNumber = p.getIntValueGreaterOrEqualsTo(1);
         break;
 
       case "chromosomes":
@@ -83,6 +108,11 @@ public class SAMSplitter implements Splitter {
             + getFormat().getName() + " splitter: " + p.getName());
       }
     }
+
+    if (maxEntriesSet && this.splitChunks > 0) {
+      throw new EoulsanException("The max.entries and chunks parameters of the "
+          + getFormat().getName() + " splitter cannot be used together");
+    }
   }
 
   @Override
@@ -91,11 +121,87 @@ public class SAMSplitter implements Splitter {
 
     if (this.splitByChromosomes) {
       splitByChromosomes(inFile, outFileIterator);
+    } else if (SplitterUtils.isSplittableByOffsets(inFile)) {
+      splitByOffsets(inFile.toFile(), outFileIterator);
     } else {
       splitByLineCount(inFile, outFileIterator);
     }
   }
 
+  /**
+   * Split an uncompressed local SAM file using the byte offsets of the
+   * alignments. The chunks are written in parallel.
+   * @param inFile input file
+   * @param outFileIterator output files iterator
+   * @throws IOException if an error occurs while reading or creating output
+   *           files
+   */
+  private void splitByOffsets(final File inFile,
+      final Iterator<DataFile> outFileIterator) throws IOException {
+
+    try (ChunkWriterPool pool = new ChunkWriterPool(this.threadNumber);
+        RawLineReader reader =
+            new RawLineReader(new FileInputStream(inFile))) {
+
+      // Get SAM header
+      final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+      final boolean entry = readHeader(reader, headerBytes);
+      final byte[] header = headerBytes.toByteArray();
+
+      if (!entry) {
+        return;
+      }
+
+      final long length = inFile.length();
+      long chunkStart = reader.getLineOffset();
+
+      if (this.splitChunks > 0) {
+
+        // Cut the alignments in chunks of the same size
+        for (int i = 1; i < this.splitChunks; i++) {
+
+          final long chunkEnd = nextLineOffset(inFile,
+              chunkStart + (length - chunkStart) / (this.splitChunks - i + 1));
+
+          if (chunkEnd > chunkStart) {
+            pool.submit(outFileIterator.next(),
+                new FileRangeWriter(inFile, header, chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+          }
+        }
+
+      } else {
+
+        final int max = this.splitMaxEntries;
+        int entryCount = 0;
+
+        do {
+
+          if (reader.isBlank()) {
+            continue;
+          }
+
+          if (entryCount > 0 && entryCount % max == 0) {
+
+            final long chunkEnd = reader.getLineOffset();
+            pool.submit(outFileIterator.next(),
+                new FileRangeWriter(inFile, header, chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+          }
+
+          entryCount++;
+
+        } while (reader.next());
+      }
+
+      // Write the last chunk
+      if (chunkStart < length) {
+        pool.submit(outFileIterator.next(),
+            new FileRangeWriter(inFile, header, chunkStart, length));
+      }
+    }
+  }
+
   /**
    * Split SAM file by line count.
    * @param inFile input file
@@ -106,42 +212,135 @@ public class SAMSplitter implements Splitter {
   private void splitByLineCount(final DataFile inFile,
       final Iterator<DataFile> outFileIterator) throws IOException {
 
-    // Get temporary directory
-    final File tmpDir = EoulsanRuntime.getRuntime().getTempDirectory();
+    final int max = this.splitChunks > 0
+        ? SplitterUtils.getEntriesPerChunk(countEntries(inFile),
+            this.splitChunks)
+        : this.splitMaxEntries;
 
-    // Get reader
-    final SamReader reader =
-        SamReaderFactory.makeDefault().open(SamInputResource.of(inFile.open()));
+    int entryCount = 0;
+    OutputStream out = null;
 
-    // Get SAM header
-    final SAMFileHeader header = reader.getFileHeader();
+    // The alignments are copied without being decoded
+    try (RawLineReader reader =
+        new RawLineReader(SplitterUtils.open(inFile, this.threadNumber))) {
 
-    final int max = this.splitMaxEntries;
-    int entryCount = 0;
-    SAMFileWriter writer = null;
+      // Get SAM header
+      final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+      boolean entry = readHeader(reader, headerBytes);
+      final byte[] header = headerBytes.toByteArray();
 
-    for (final SAMRecord record : reader) {
+      while (entry) {
+
+        if (!reader.isBlank()) {
+
+          if (entryCount % max == 0) {
 
-      if (entryCount % max == 0) {
+            // Close previous output
+            if (out != null) {
+              out.close();
+            }
 
-        // Close previous writer
-        if (writer != null) {
-          writer.close();
+            // Create new output
+            out = new BufferedOutputStream(SplitterUtils
+                .create(outFileIterator.next(), this.threadNumber));
+            out.write(header);
+          }
+
+          reader.writeLine(out);
+          entryCount++;
         }
 
-        // Create new writer
-        writer = new SAMFileWriterFactory().setTempDirectory(tmpDir)
-            .makeSAMWriter(header, false, outFileIterator.next().create());
+        entry = reader.next();
       }
 
-      writer.addAlignment(record);
-      entryCount++;
+    } finally {
+
+      // Close the last output
+      if (out != null) {
+        out.close();
+      }
     }
+  }
 
-    // Close reader and writer
-    reader.close();
-    if (writer != null) {
-      writer.close();
+  /**
+   * Count the alignments of a SAM file.
+   * @param inFile input file
+   * @return the number of alignments of the file
+   * @throws IOException if an error occurs while reading the file
+   */
+  private long countEntries(final DataFile inFile) throws IOException {
+
+    long result = 0;
+
+    try (RawLineReader reader =
+        new RawLineReader(SplitterUtils.open(inFile, this.threadNumber))) {
+
+      boolean entry = readHeader(reader, null);
+
+      while (entry) {
+
+        if (!reader.isBlank()) {
+          result++;
+        }
+        entry = reader.next();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the header of a SAM file. After the call of this method, the current
+   * line of the reader is the first line after the header.
+   * @param reader the reader
+   * @param out the output stream where write the header. Can be null
+   * @return false if the file does not contain any line after the header
+   * @throws IOException if an error occurs while reading the file
+   */
+  private static boolean readHeader(final RawLineReader reader,
+      final OutputStream out) throws IOException {
+
+    while (reader.next()) {
+
+      if (reader.getFirstByte() != '@') {
+        return true;
+      }
+
+      if (out != null) {
+        reader.writeLine(out);
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Get the offset of the first line of a file that starts at or after an
+   * offset.
+   * @param inFile input file
+   * @param offset the offset
+   * @return the offset of the line or the length of the file if there is no
+   *         line after the offset
+   * @throws IOException if an error occurs while reading the file
+   */
+  private static long nextLineOffset(final File inFile, final long offset)
+      throws IOException {
+
+    if (offset <= 0) {
+      return 0;
+    }
+
+    // Read the line that contains the byte before the offset
+    try (FileChannel channel =
+        FileChannel.open(inFile.toPath(), StandardOpenOption.READ)) {
+
+      channel.position(offset - 1);
+
+      try (InputStream in = Channels.newInputStream(channel);
+          RawLineReader reader = new RawLineReader(in, offset - 1)) {
+
+        return reader.next() ? reader.getLineEndOffset() : inFile.length();
+      }
     }
   }
 
@@ -0,0 +1,140 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static fr.ens.biologie.genomique.eoulsan.io.CompressionType.GZIP;
+import static fr.ens.biologie.genomique.eoulsan.io.CompressionType.NONE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.io.CompressionType;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPInputStream;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPOutputStream;
+
+/**
+ * This class contains utility methods for the splitters.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+final class SplitterUtils {
+
+  /**
+   * Test if a file can be split using the byte offsets of its entries. Only
+   * uncompressed local files can be split in this way.
+   * @param file the file to test
+   * @return true if the file can be split using byte offsets
+   */
+  static boolean isSplittableByOffsets(final DataFile file) {
+
+    return file.toFile() != null && file.getCompressionType() == NONE;
+  }
+
+  /**
+   * Open a file to split. If the file is compressed in gzip format and more
+   * than one thread is allowed, the file is uncompressed in parallel.
+   * @param file the file to open
+   * @param threadNumber the number of threads to use
+   * @return an InputStream object
+   * @throws IOException if an error occurs while opening the file
+   */
+  static InputStream open(final DataFile file, final int threadNumber)
+      throws IOException {
+
+    if (threadNumber > 1 && getCompressionType(file) == GZIP) {
+      return new ParallelGZIPInputStream(file.rawOpen(), threadNumber);
+    }
+
+    return file.open();
+  }
+
+  /**
+   * Create an output file of a splitter. If the file must be compressed in
+   * gzip format and more than one thread is allowed, the data is compressed in
+   * parallel.
+   * @param file the file to create
+   * @param threadNumber the number of threads to use
+   * @return an OutputStream object
+   * @throws IOException if an error occurs while creating the file
+   */
+  static OutputStream create(final DataFile file, final int threadNumber)
+      throws IOException {
+
+    if (threadNumber > 1 && file.getCompressionType() == GZIP) {
+      return new ParallelGZIPOutputStream(file.rawCreate(), threadNumber);
+    }
+
+    return file.create();
+  }
+
+  /**
+   * Get the number of entries of each chunk to split a file in a number of
+   * chunks.
+   * @param entryCount the number of entries of the file
+   * @param chunkCount the number of chunks
+   * @return the number of entries of each chunk
+   */
+  static int getEntriesPerChunk(final long entryCount, final int chunkCount) {
+
+    if (chunkCount < 1) {
+      throw new IllegalArgumentException(
+          "The number of chunks must be greater than 0: " + chunkCount);
+    }
+
+    final long result = (entryCount + chunkCount - 1) / chunkCount;
+
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, result));
+  }
+
+  /**
+   * Get the compression type of a file to read.
+   * @param file the file
+   * @return the compression type of the file
+   * @throws IOException if an error occurs while reading the metadata of the
+   *           file
+   */
+  private static CompressionType getCompressionType(final DataFile file)
+      throws IOException {
+
+    final CompressionType result = CompressionType
+        .getCompressionTypeByContentEncoding(
+            file.getMetaData().getContentEncoding());
+
+    return result == null ? NONE : result;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   */
+  private SplitterUtils() {
+  }
+
+}
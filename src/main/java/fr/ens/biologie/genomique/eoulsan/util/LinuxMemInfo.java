@@ -50,6 +50,27 @@ public class LinuxMemInfo extends LinuxInfo {
     return get("MemTotal");
   }
 
+  /**
+   * Get the total memory of the system in megabytes.
+   * @return the total memory of the system in megabytes or -1 if the total
+   *         memory is unknown
+   */
+  public int getMemTotalInMB() {
+
+    final String memTotal = getMemTotal();
+
+    if (memTotal == null) {
+      return -1;
+    }
+
+    // The value is in kB (e.g. "16318888 kB")
+    try {
+      return (int) (Long.parseLong(memTotal.split(" ")[0].trim()) / 1024);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
   //
   // Constructor
   //
@@ -0,0 +1,158 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class define tests for CompactGenomicArray.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class CompactGenomicArrayTest {
+
+  private static final char[] STRANDS = {'+', '-', '.'};
+
+  private GenomicArray<String> ga;
+  private CompactGenomicArray<String> cga;
+
+  @Before
+  public void setUp() throws Exception {
+
+    final Random random = new Random(1);
+
+    this.ga = new GenomicArray<>();
+    this.ga.addChromosome("chrEmpty");
+
+    for (int i = 0; i < 500; i++) {
+
+      final String chromosome = "chr" + random.nextInt(3);
+      final int start = 1 + random.nextInt(10000);
+      final int end = start + random.nextInt(500);
+      final char strand = STRANDS[random.nextInt(STRANDS.length)];
+
+      this.ga.addEntry(new GenomicInterval(chromosome, start, end, strand),
+          "feature" + random.nextInt(200));
+    }
+
+    this.cga = new CompactGenomicArray<>(this.ga);
+  }
+
+  @Test
+  public void testGetEntries() {
+
+    final Random random = new Random(2);
+
+    for (int i = 0; i < 10000; i++) {
+
+      final String chromosome = "chr" + random.nextInt(3);
+      final int start = random.nextInt(11000);
+      final int end = start + random.nextInt(1000);
+
+      assertEquals(this.ga.getEntries(chromosome, start, end),
+          this.cga.getEntries(chromosome, start, end));
+    }
+
+    assertEquals(this.ga.getEntries("chrEmpty", 1, 100),
+        this.cga.getEntries("chrEmpty", 1, 100));
+    assertNull(this.cga.getEntries("chrUnknown", 1, 100));
+  }
+
+  @Test
+  public void testFeatures() {
+
+    assertEquals(this.ga.getFeaturesIds(), this.cga.getFeaturesIds());
+    assertEquals(this.ga.getChromosomesNames(),
+        this.cga.getChromosomesNames());
+    assertTrue(this.cga.containsChromosome("chrEmpty"));
+    assertFalse(this.cga.containsChromosome("chrUnknown"));
+
+    assertEquals(this.ga.getFeaturesIds().size(), this.cga.getFeatureCount());
+
+    for (int i = 0; i < this.cga.getFeatureCount(); i++) {
+      assertEquals(i,
+          this.cga.getFeatureOrdinal(this.cga.getFeature(i)));
+    }
+    assertEquals(-1, this.cga.getFeatureOrdinal("unknown"));
+  }
+
+  @Test
+  public void testEquals() {
+
+    assertEquals(this.cga, new CompactGenomicArray<>(this.ga));
+    assertEquals(this.cga.hashCode(),
+        new CompactGenomicArray<>(this.ga).hashCode());
+  }
+
+  @Test
+  public void testCopy() {
+
+    final CompactGenomicArray<String> copy =
+        new CompactGenomicArray<>(this.cga);
+
+    assertEquals(this.cga, copy);
+    assertEquals(this.cga.getChromosomesNames(), copy.getChromosomesNames());
+
+    final Random random = new Random(3);
+
+    for (int i = 0; i < 1000; i++) {
+
+      final String chromosome = "chr" + random.nextInt(3);
+      final int start = random.nextInt(11000);
+      final int end = start + random.nextInt(1000);
+
+      assertEquals(this.ga.getEntries(chromosome, start, end),
+          copy.getEntries(chromosome, start, end));
+    }
+  }
+
+  @Test
+  public void testImmutable() {
+
+    try {
+      this.cga.addEntry(new GenomicInterval("chr1", 1, 10, '+'), "a");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertTrue(true);
+    }
+
+    try {
+      this.cga.clear();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertTrue(true);
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.util.StringUtils;
+
+public class FastaGenomeScannerTest {
+
+  @Test
+  public void testCreateGenomeDesc() throws Exception {
+
+    final String fasta = "\n>chr1 first chromosome\nACGTN\nacg \n\n"
+        + ">chr2\r\nGGGG\t\r\nRYK\r\n>chr3\nTT";
+
+    final GenomeDescription desc = GenomeDescription
+        .createGenomeDescFromFasta(toInputStream(fasta), "genome.fasta");
+
+    assertEquals("genome", desc.getGenomeName());
+    assertEquals(3, desc.getSequenceCount());
+    assertEquals(8, desc.getSequenceLength("chr1"));
+    assertEquals(7, desc.getSequenceLength("chr2"));
+    assertEquals(2, desc.getSequenceLength("chr3"));
+
+    final MessageDigest md5 = MessageDigest.getInstance("MD5");
+    md5.update("chr1ACGTNacgchr2GGGGRYKchr3TT"
+        .getBytes(StandardCharsets.US_ASCII));
+    assertEquals(StringUtils.md5DigestToString(md5), desc.getMD5Sum());
+  }
+
+  @Test
+  public void testCreateGenomeDescFromGFF() throws Exception {
+
+    final String gff = "##gff-version 3\n"
+        + "chr1\ttest\tgene\t1\t4\t.\t+\t.\tID=gene1\n##FASTA\n>chr1\nACGT\n";
+
+    final GenomeDescription desc = GenomeDescription
+        .createGenomeDescFromGFF(toInputStream(gff), "annotation.gff");
+
+    assertEquals(1, desc.getSequenceCount());
+    assertEquals(4, desc.getSequenceLength("chr1"));
+  }
+
+  @Test
+  public void testInvalidGenome() throws IOException {
+
+    try {
+      GenomeDescription.createGenomeDescFromFasta(
+          toInputStream(">chr1\nACGT\nACXT\n"), "genome.fasta");
+      fail();
+    } catch (BadBioEntryException e) {
+      assertEquals("Invalid base in genome: X", e.getMessage());
+      assertEquals("chr1", e.getEntry());
+    }
+
+    try {
+      GenomeDescription.createGenomeDescFromFasta(
+          toInputStream(">chr1\nACGT\n>chr1 again\nACGT\n"), "genome.fasta");
+      fail();
+    } catch (BadBioEntryException e) {
+      assertEquals("Sequence name found twice: chr1", e.getMessage());
+    }
+
+    try {
+      GenomeDescription.createGenomeDescFromFasta(toInputStream("ACGT\n"),
+          "genome.fasta");
+      fail();
+    } catch (IOException e) {
+      // An IOException is expected
+    } catch (BadBioEntryException e) {
+      fail();
+    }
+  }
+
+  @Test
+  public void testCreateGenomeDescWithThreads() throws Exception {
+
+    final File file = File.createTempFile("genome-", ".fasta");
+
+    try {
+
+      // The file must be large enough to be checked using several threads
+      writeGenome(file, 20, 1000000, -1);
+
+      GenomeDescription expected = GenomeDescription
+          .createGenomeDescFromFasta(new FileInputStream(file), file.getName());
+      assertEquals(expected.toString(), GenomeDescription
+          .createGenomeDescFromFasta(file, 4).toString());
+
+      writeGenome(file, 20, 1000000, 15);
+
+      try {
+        GenomeDescription.createGenomeDescFromFasta(file, 4);
+        fail();
+      } catch (BadBioEntryException e) {
+        assertEquals("Invalid base in genome: X", e.getMessage());
+        assertEquals("chr15 description", e.getEntry());
+      }
+
+    } finally {
+      file.delete();
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static InputStream toInputStream(final String s) {
+
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static void writeGenome(final File file, final int sequences,
+      final int length, final int invalidSequence) throws IOException {
+
+    final Random random = new Random(0);
+    final byte[] bases = "ACGTNacgtn".getBytes(StandardCharsets.US_ASCII);
+
+    try (OutputStream out =
+        new BufferedOutputStream(new FileOutputStream(file))) {
+
+      for (int i = 0; i < sequences; i++) {
+
+        out.write(('>' + "chr" + i + " description\n")
+            .getBytes(StandardCharsets.US_ASCII));
+
+        for (int j = 0; j < length; j++) {
+
+          if (i == invalidSequence && j == length / 2) {
+            out.write('X');
+          } else {
+            out.write(bases[random.nextInt(bases.length)]);
+          }
+
+          if (j % 60 == 59) {
+            out.write('\n');
+          }
+        }
+        out.write('\n');
+      }
+    }
+  }
+
+}
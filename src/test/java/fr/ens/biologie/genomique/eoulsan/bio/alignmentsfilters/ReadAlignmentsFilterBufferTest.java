@@ -26,6 +26,7 @@ package fr.ens.biologie.genomique.eoulsan.bio.alignmentsfilters;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -409,7 +410,37 @@ public class ReadAlignmentsFilterBufferTest {
    */
   @Test
   public void testReadAlignmentsFilterBufferReadAlignmentsFilterBoolean() {
-    // fail("Not yet implemented");
+
+    final ReadAlignmentsFilterBuffer rafb =
+        new ReadAlignmentsFilterBuffer(this.filter, true);
+
+    assertTrue(rafb.addAlignment(this.samRecordSE3));
+    assertTrue(rafb.addAlignment(this.samRecordSE4));
+    assertFalse(rafb.addAlignment(this.samRecordSE1));
+    this.recordsVerif.add(this.samRecordSE3);
+    this.recordsVerif.add(this.samRecordSE4);
+    final List<SAMRecord> result = rafb.getFilteredAlignments();
+    assertEquals(this.recordsVerif, result);
+
+    // The result list is reused for the next read
+    assertTrue(rafb.addAlignment(this.samRecordSE1));
+    this.recordsVerif.clear();
+    this.recordsVerif.add(this.samRecordSE1);
+    assertSame(result, rafb.getFilteredAlignments());
+    assertEquals(this.recordsVerif, result);
+  }
+
+  @Test
+  public void testIsSameReadName() {
+
+    assertTrue(ReadAlignmentsFilterBuffer.isSameReadName("read1", "read1"));
+    assertTrue(
+        ReadAlignmentsFilterBuffer.isSameReadName("read1 1:N", "read1 2:N"));
+    assertTrue(ReadAlignmentsFilterBuffer.isSameReadName("read1", "read1 2:N"));
+    assertFalse(ReadAlignmentsFilterBuffer.isSameReadName("read1", "read2"));
+    assertFalse(ReadAlignmentsFilterBuffer.isSameReadName("read1", "read10"));
+    assertFalse(
+        ReadAlignmentsFilterBuffer.isSameReadName("read1 1:N", "read10 1:N"));
   }
 
 }
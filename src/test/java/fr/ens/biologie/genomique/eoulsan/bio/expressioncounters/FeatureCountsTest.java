@@ -0,0 +1,142 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * This class test the FeatureCounts class.
+ * @author Laurent Jourdren
+ */
+public class FeatureCountsTest {
+
+  @Test
+  public void testIncrement() {
+
+    final FeatureCounts counts = new FeatureCounts();
+    assertTrue(counts.isEmpty());
+
+    counts.increment("gene1");
+    counts.increment("gene2");
+    counts.increment("gene1");
+    counts.add("gene3", 0);
+
+    assertEquals(3, counts.size());
+    assertEquals(2, counts.get("gene1"));
+    assertEquals(1, counts.get("gene2"));
+    assertEquals(0, counts.get("gene3"));
+    assertEquals(0, counts.get("gene4"));
+    assertTrue(counts.contains("gene3"));
+    assertFalse(counts.contains("gene4"));
+    assertEquals(Arrays.asList("gene1", "gene2", "gene3"),
+        counts.getFeatures());
+
+    counts.clear();
+    assertTrue(counts.isEmpty());
+    assertEquals(0, counts.get("gene1"));
+    assertEquals(3, counts.getDictionary().size());
+  }
+
+  @Test
+  public void testCapacity() {
+
+    final FeatureCounts counts = new FeatureCounts();
+
+    for (int i = 0; i < 1000; i++) {
+      for (int j = 0; j <= i % 10; j++) {
+        counts.increment("gene" + i);
+      }
+    }
+
+    assertEquals(1000, counts.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i % 10 + 1, counts.get("gene" + i));
+    }
+  }
+
+  @Test
+  public void testSharedDictionary() {
+
+    final FeatureCounts.Dictionary dictionary =
+        new FeatureCounts.Dictionary(Arrays.asList("a", "b", "c"));
+
+    assertEquals(1, dictionary.getOrdinal("b"));
+    assertEquals(-1, dictionary.getOrdinal("d"));
+    assertEquals("c", dictionary.getFeature(2));
+
+    final FeatureCounts counts1 = new FeatureCounts(dictionary);
+    final FeatureCounts counts2 = new FeatureCounts(dictionary);
+
+    counts1.increment(0);
+    counts1.add(2, 5);
+    counts2.increment("c");
+    counts2.add("b", 0);
+
+    counts1.addAll(counts2);
+    assertEquals(1, counts1.get("a"));
+    assertEquals(0, counts1.get("b"));
+    assertTrue(counts1.contains("b"));
+    assertEquals(6, counts1.get("c"));
+
+    // Containers with different dictionaries
+    final FeatureCounts counts3 = new FeatureCounts();
+    counts3.increment("d");
+    counts3.increment("a");
+    counts1.addAll(counts3);
+
+    assertEquals(2, counts1.get("a"));
+    assertEquals(1, counts1.get("d"));
+    assertEquals(4, dictionary.size());
+  }
+
+  @Test
+  public void testMapAdapter() {
+
+    final Map<String, Integer> map = new HashMap<>();
+    map.put("gene1", 10);
+    map.put("gene2", 0);
+    map.put("gene3", 3);
+
+    final FeatureCounts counts = FeatureCounts.fromMap(map);
+    assertEquals(3, counts.size());
+    assertEquals(10, counts.get("gene1"));
+    assertEquals(map, counts.toMap());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidOrdinal() {
+
+    new FeatureCounts().increment(0);
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+/**
+ * This class define tests for FeaturesIndexCache.
+ * @since 2.4
+ * @author Laurent Jourdren
+ */
+public class FeaturesIndexCacheTest {
+
+  private File annotationFile;
+  private GenomeDescription genomeDesc;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.annotationFile = File.createTempFile("annotation-", ".gtf");
+    Files.write(this.annotationFile.toPath(),
+        "chr1\ttest\texon\t1\t100\t.\t+\t.\tgene_id \"g1\";\n"
+            .getBytes(StandardCharsets.UTF_8));
+
+    this.genomeDesc = new GenomeDescription();
+    this.genomeDesc.addSequence("chr1", 1000);
+  }
+
+  @After
+  public void tearDown() {
+
+    this.annotationFile.delete();
+  }
+
+  @Test
+  public void testCreateKey() throws IOException {
+
+    final FeaturesIndexCache cache = FeaturesIndexCache.getInstance();
+    final DataFile file = new DataFile(this.annotationFile);
+
+    assertEquals(
+        cache.createKey(this.genomeDesc, file,
+            Collections.singletonMap("a", "b")),
+        cache.createKey(this.genomeDesc, file,
+            Collections.singletonMap("a", "b")));
+
+    // The boundaries between keys and values must change the key
+    assertNotEquals(
+        cache.createKey(this.genomeDesc, file,
+            Collections.singletonMap("ab", "c")),
+        cache.createKey(this.genomeDesc, file,
+            Collections.singletonMap("a", "bc")));
+  }
+
+}
@@ -0,0 +1,357 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.ATTRIBUTE_ID_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.GENOMIC_TYPE_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.OVERLAP_MODE_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.REMOVE_AMBIGUOUS_CASES_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.STRANDED_PARAMETER_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * This class test the multi-threaded counting of the HTSeqCounter class.
+ * @author Laurent Jourdren
+ */
+public class HTSeqCountMultiThreadTest {
+
+  private static final String COUNTER_GROUP = "expression";
+  private static final String[] CHROMOSOMES = {"chr1", "chr2", "chr3"};
+  private static final int[] CHROMOSOME_LENGTHS = {200000, 100000, 50000};
+
+  private File dir;
+  private File gtfFile;
+  private File bamFile;
+  private GenomeDescription genomeDescription;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.dir = Files.createTempDirectory("htseqcount-test").toFile();
+    this.gtfFile = new File(this.dir, "annotation.gtf");
+    this.bamFile = new File(this.dir, "alignments.bam");
+
+    this.genomeDescription = new GenomeDescription();
+    for (int i = 0; i < CHROMOSOMES.length; i++) {
+      this.genomeDescription.addSequence(CHROMOSOMES[i], CHROMOSOME_LENGTHS[i]);
+    }
+
+    final Random random = new Random(42);
+    createAnnotation(random);
+    createAlignments(random);
+
+    // The multi-threaded mode requires an indexed BAM file
+    assertTrue(new File(this.dir, "alignments.bai").exists());
+  }
+
+  @After
+  public void tearDown() {
+
+    for (File f : this.dir.listFiles()) {
+      f.delete();
+    }
+    this.dir.delete();
+  }
+
+  @Test
+  public void testCountUnion() throws EoulsanException, IOException {
+
+    compareCounts(OverlapMode.UNION, StrandUsage.NO, true);
+    compareCounts(OverlapMode.UNION, StrandUsage.YES, false);
+  }
+
+  @Test
+  public void testCountIntersection() throws EoulsanException, IOException {
+
+    compareCounts(OverlapMode.INTERSECTION_NONEMPTY, StrandUsage.REVERSE,
+        true);
+    compareCounts(OverlapMode.INTERSECTION_STRICT, StrandUsage.NO, false);
+  }
+
+  @Test
+  public void testCountWithIndexFile() throws EoulsanException, IOException {
+
+    // The index files of the workflow are not named like the BAM files, so
+    // htsjdk cannot find them next to the BAM files
+    final File indexFile = new File(this.dir, "mapperresults_index.bai");
+    assertTrue(new File(this.dir, "alignments.bai").renameTo(indexFile));
+
+    final HTSeqCounter counter =
+        createCounter(OverlapMode.UNION, StrandUsage.NO, false);
+
+    // Without the index file the alignments cannot be sharded
+    assertNull(counter.countByReferenceSequence(this.bamFile, null, 4,
+        new LocalReporter(), COUNTER_GROUP));
+    assertNotNull(counter.countByReferenceSequence(this.bamFile, indexFile, 4,
+        new LocalReporter(), COUNTER_GROUP));
+
+    final LocalReporter expectedReporter = new LocalReporter();
+    final Map<String, Integer> expected =
+        createCounter(OverlapMode.UNION, StrandUsage.NO, false)
+            .count(new DataFile(this.bamFile), expectedReporter, COUNTER_GROUP);
+
+    final LocalReporter reporter = new LocalReporter();
+    final Map<String, Integer> counts = createCounter(OverlapMode.UNION,
+        StrandUsage.NO, false).countFeatures(new DataFile(this.bamFile),
+            new DataFile(indexFile), 4, reporter, COUNTER_GROUP).toMap();
+
+    assertEquals(expected, counts);
+    for (String counterName : expectedReporter
+        .getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counterName,
+          expectedReporter.getCounterValue(COUNTER_GROUP, counterName),
+          reporter.getCounterValue(COUNTER_GROUP, counterName));
+    }
+  }
+
+  @Test
+  public void testCountMixedSingleAndPairedEnd()
+      throws EoulsanException, IOException {
+
+    final File mixedFile = new File(this.dir, "mixed.bam");
+    createMixedAlignments(mixedFile);
+
+    // The first alignment is single-end but the file contains paired-end
+    // alignments, the file cannot be sharded
+    final HTSeqCounter counter =
+        createCounter(OverlapMode.UNION, StrandUsage.NO, false);
+    assertNull(counter.countByReferenceSequence(mixedFile, null, 4,
+        new LocalReporter(), COUNTER_GROUP));
+
+    // The counter must fall back to the sequential count
+    final LocalReporter expectedReporter = new LocalReporter();
+    final Map<String, Integer> expected =
+        createCounter(OverlapMode.UNION, StrandUsage.NO, false)
+            .count(new DataFile(mixedFile), expectedReporter, COUNTER_GROUP);
+
+    final LocalReporter reporter = new LocalReporter();
+    final Map<String, Integer> counts =
+        createCounter(OverlapMode.UNION, StrandUsage.NO, false)
+            .count(new DataFile(mixedFile), 4, reporter, COUNTER_GROUP);
+
+    assertEquals(expected, counts);
+    for (String counterName : expectedReporter
+        .getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counterName,
+          expectedReporter.getCounterValue(COUNTER_GROUP, counterName),
+          reporter.getCounterValue(COUNTER_GROUP, counterName));
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private void compareCounts(final OverlapMode overlapMode,
+      final StrandUsage stranded, final boolean removeAmbiguousCases)
+      throws EoulsanException, IOException {
+
+    final LocalReporter expectedReporter = new LocalReporter();
+    final Map<String, Integer> expected =
+        createCounter(overlapMode, stranded, removeAmbiguousCases)
+            .count(new DataFile(this.bamFile), expectedReporter, COUNTER_GROUP);
+
+    final LocalReporter reporter = new LocalReporter();
+    final Map<String, Integer> counts =
+        createCounter(overlapMode, stranded, removeAmbiguousCases).count(
+            new DataFile(this.bamFile), 4, reporter, COUNTER_GROUP);
+
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, counts);
+    assertEquals(expectedReporter.getCounterNames(COUNTER_GROUP),
+        reporter.getCounterNames(COUNTER_GROUP));
+
+    for (String counterName : expectedReporter
+        .getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counterName,
+          expectedReporter.getCounterValue(COUNTER_GROUP, counterName),
+          reporter.getCounterValue(COUNTER_GROUP, counterName));
+    }
+  }
+
+  private HTSeqCounter createCounter(final OverlapMode overlapMode,
+      final StrandUsage stranded, final boolean removeAmbiguousCases)
+      throws EoulsanException, IOException {
+
+    final HTSeqCounter counter = new HTSeqCounter();
+    counter.setParameter(OVERLAP_MODE_PARAMETER_NAME, overlapMode.getName());
+    counter.setParameter(GENOMIC_TYPE_PARAMETER_NAME, "exon");
+    counter.setParameter(ATTRIBUTE_ID_PARAMETER_NAME, "gene_id");
+    counter.setParameter(STRANDED_PARAMETER_NAME, stranded.getName());
+    counter.setParameter(REMOVE_AMBIGUOUS_CASES_PARAMETER_NAME,
+        Boolean.toString(removeAmbiguousCases));
+
+    counter.init(this.genomeDescription, new DataFile(this.gtfFile), true);
+
+    return counter;
+  }
+
+  private void createAnnotation(final Random random) throws IOException {
+
+    try (Writer writer = new OutputStreamWriter(
+        new FileOutputStream(this.gtfFile), StandardCharsets.UTF_8)) {
+
+      int geneCount = 0;
+
+      for (int i = 0; i < CHROMOSOMES.length; i++) {
+        for (int j = 0; j < CHROMOSOME_LENGTHS[i] / 2000; j++) {
+
+          final String gene = "gene" + (geneCount++);
+          final char strand = random.nextBoolean() ? '+' : '-';
+          int start = 1 + random.nextInt(CHROMOSOME_LENGTHS[i] - 3000);
+
+          for (int k = 0; k < 1 + random.nextInt(4); k++) {
+
+            final int end = start + 50 + random.nextInt(400);
+            writer.write(CHROMOSOMES[i]
+                + "\ttest\texon\t" + start + '\t' + end + "\t.\t" + strand
+                + "\t.\tgene_id \"" + gene + "\"; transcript_id \"" + gene
+                + ".1\";\n");
+            start = end + random.nextInt(300);
+          }
+        }
+      }
+    }
+  }
+
+  private void createMixedAlignments(final File file) {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.setSortOrder(SortOrder.coordinate);
+    for (int i = 0; i < CHROMOSOMES.length; i++) {
+      header.addSequence(
+          new SAMSequenceRecord(CHROMOSOMES[i], CHROMOSOME_LENGTHS[i]));
+    }
+
+    try (SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true)
+        .makeBAMWriter(header, false, file)) {
+
+      for (int i = 0; i < CHROMOSOMES.length; i++) {
+        for (int j = 0; j < 100; j++) {
+
+          final SAMRecord record = new SAMRecord(header);
+          record.setReadName("read" + i + "_" + j);
+          record.setReadString(
+              "ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTAC");
+          record.setBaseQualityString(
+              "IIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIII");
+          record.setReferenceName(CHROMOSOMES[i]);
+          record.setAlignmentStart(1 + j * 400);
+          record.setCigarString("50M");
+          record.setMappingQuality(60);
+
+          // Only the alignments of the last chromosome are paired-end
+          if (i == CHROMOSOMES.length - 1) {
+            record.setReadPairedFlag(true);
+            record.setProperPairFlag(true);
+            record.setFirstOfPairFlag(true);
+            record.setMateReferenceName(CHROMOSOMES[i]);
+            record.setMateAlignmentStart(1 + j * 400);
+            record.setMateUnmappedFlag(true);
+          }
+
+          writer.addAlignment(record);
+        }
+      }
+    }
+  }
+
+  private void createAlignments(final Random random) {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.setSortOrder(SortOrder.coordinate);
+    for (int i = 0; i < CHROMOSOMES.length; i++) {
+      header.addSequence(
+          new SAMSequenceRecord(CHROMOSOMES[i], CHROMOSOME_LENGTHS[i]));
+    }
+
+    try (SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true)
+        .makeBAMWriter(header, false, this.bamFile)) {
+
+      for (int i = 0; i < 20000; i++) {
+
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName("read" + i);
+        record.setReadString("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTAC");
+        record.setBaseQualityString(
+            "IIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIII");
+
+        if (random.nextInt(50) == 0) {
+
+          // Unmapped read
+          record.setReadUnmappedFlag(true);
+        } else {
+
+          final int chr = random.nextInt(CHROMOSOMES.length);
+          record.setReferenceName(CHROMOSOMES[chr]);
+          record.setAlignmentStart(
+              1 + random.nextInt(CHROMOSOME_LENGTHS[chr] - 200));
+          record.setCigarString(random.nextInt(10) == 0 ? "20M100N30M" : "50M");
+          record.setReadNegativeStrandFlag(random.nextBoolean());
+          record.setMappingQuality(random.nextInt(10) == 0 ? 0 : 60);
+
+          if (random.nextInt(20) == 0) {
+            record.setAttribute("NH", 2);
+          }
+        }
+
+        writer.addAlignment(record);
+      }
+    }
+  }
+
+}
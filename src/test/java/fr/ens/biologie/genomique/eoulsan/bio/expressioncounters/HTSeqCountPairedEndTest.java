@@ -0,0 +1,317 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.expressioncounters;
+
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.ATTRIBUTE_ID_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.GENOMIC_TYPE_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.MAX_READS_IN_BUFFER_PARAMETER_NAME;
+import static fr.ens.biologie.genomique.eoulsan.bio.expressioncounters.HTSeqCounter.STRANDED_PARAMETER_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.GenomeDescription;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.modules.expression.ExpressionCounterCounter;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * This class test the counting of paired-end alignments sorted by coordinate
+ * with the HTSeqCounter class.
+ * @author Laurent Jourdren
+ */
+public class HTSeqCountPairedEndTest {
+
+  private static final String COUNTER_GROUP = "expression";
+  private static final String[] CHROMOSOMES = {"chr1", "chr2"};
+  private static final int[] CHROMOSOME_LENGTHS = {100000, 50000};
+  private static final int READ_LENGTH = 50;
+
+  private File dir;
+  private File gtfFile;
+  private File nameSortedFile;
+  private File coordinateSortedFile;
+  private GenomeDescription genomeDescription;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.dir = Files.createTempDirectory("htseqcount-test").toFile();
+    this.gtfFile = new File(this.dir, "annotation.gtf");
+    this.nameSortedFile = new File(this.dir, "alignments_name.sam");
+    this.coordinateSortedFile = new File(this.dir, "alignments_coord.sam");
+
+    this.genomeDescription = new GenomeDescription();
+    for (int i = 0; i < CHROMOSOMES.length; i++) {
+      this.genomeDescription.addSequence(CHROMOSOMES[i], CHROMOSOME_LENGTHS[i]);
+    }
+
+    final Random random = new Random(7);
+    createAnnotation(random);
+    createAlignments(random);
+  }
+
+  @After
+  public void tearDown() {
+
+    for (File f : this.dir.listFiles()) {
+      f.delete();
+    }
+    this.dir.delete();
+  }
+
+  @Test
+  public void testCountInMemory() throws EoulsanException, IOException {
+
+    compareCounts(StrandUsage.NO, HTSeqCounter.MAX_READS_IN_BUFFER_DEFAULT);
+    compareCounts(StrandUsage.YES, HTSeqCounter.MAX_READS_IN_BUFFER_DEFAULT);
+  }
+
+  @Test
+  public void testCountWithSpill() throws EoulsanException, IOException {
+
+    compareCounts(StrandUsage.NO, 10);
+    compareCounts(StrandUsage.REVERSE, 100);
+  }
+
+  //
+  // Utility methods
+  //
+
+  private void compareCounts(final StrandUsage stranded,
+      final int maxReadsInBuffer) throws EoulsanException, IOException {
+
+    final LocalReporter expectedReporter = new LocalReporter();
+    final Map<String, Integer> expected =
+        createCounter(stranded, maxReadsInBuffer).count(
+            new DataFile(this.nameSortedFile), expectedReporter, COUNTER_GROUP);
+
+    final LocalReporter reporter = new LocalReporter();
+    final Map<String, Integer> counts =
+        createCounter(stranded, maxReadsInBuffer).count(
+            new DataFile(this.coordinateSortedFile), reporter, COUNTER_GROUP);
+
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, counts);
+
+    // The file sorted by coordinate contains two alignments without mate
+    final Set<String> orphanCounters = new HashSet<>(Arrays.asList(
+        ExpressionCounterCounter.TOTAL_ALIGNMENTS_COUNTER.counterName(),
+        ExpressionCounterCounter.MISSING_MATES_COUNTER.counterName(),
+        ExpressionCounterCounter.ELIMINATED_READS_COUNTER.counterName()));
+
+    for (String counterName : expectedReporter
+        .getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counterName,
+          expectedReporter.getCounterValue(COUNTER_GROUP, counterName)
+              + (orphanCounters.contains(counterName) ? 2 : 0),
+          reporter.getCounterValue(COUNTER_GROUP, counterName));
+    }
+  }
+
+  private HTSeqCounter createCounter(final StrandUsage stranded,
+      final int maxReadsInBuffer) throws EoulsanException, IOException {
+
+    final HTSeqCounter counter = new HTSeqCounter();
+    counter.setParameter(GENOMIC_TYPE_PARAMETER_NAME, "exon");
+    counter.setParameter(ATTRIBUTE_ID_PARAMETER_NAME, "gene_id");
+    counter.setParameter(STRANDED_PARAMETER_NAME, stranded.getName());
+    counter.setParameter(MAX_READS_IN_BUFFER_PARAMETER_NAME,
+        Integer.toString(maxReadsInBuffer));
+
+    counter.init(this.genomeDescription, new DataFile(this.gtfFile), true);
+
+    return counter;
+  }
+
+  private void createAnnotation(final Random random) throws IOException {
+
+    try (Writer writer = new OutputStreamWriter(
+        new FileOutputStream(this.gtfFile), StandardCharsets.UTF_8)) {
+
+      int geneCount = 0;
+
+      for (int i = 0; i < CHROMOSOMES.length; i++) {
+        for (int j = 0; j < CHROMOSOME_LENGTHS[i] / 2000; j++) {
+
+          final String gene = "gene" + (geneCount++);
+          final char strand = random.nextBoolean() ? '+' : '-';
+          final int start = 1 + random.nextInt(CHROMOSOME_LENGTHS[i] - 3000);
+          final int end = start + 200 + random.nextInt(1000);
+
+          writer.write(CHROMOSOMES[i]
+              + "\ttest\texon\t" + start + '\t' + end + "\t.\t" + strand
+              + "\t.\tgene_id \"" + gene + "\"; transcript_id \"" + gene
+              + ".1\";\n");
+        }
+      }
+    }
+  }
+
+  private void createAlignments(final Random random) {
+
+    final SAMFileHeader header = createHeader(SortOrder.queryname);
+    final List<SAMRecord> records = new ArrayList<>();
+
+    for (int i = 0; i < 5000; i++) {
+
+      final String readName = String.format("read%06d", i);
+      final SAMRecord r1 = createRecord(header, readName, true);
+      final SAMRecord r2 = createRecord(header, readName, false);
+
+      final int chr1 = random.nextInt(CHROMOSOMES.length);
+      final int chr2 =
+          random.nextInt(20) == 0 ? random.nextInt(CHROMOSOMES.length) : chr1;
+      final int pos1 =
+          1 + random.nextInt(CHROMOSOME_LENGTHS[chr1] - 2 * READ_LENGTH);
+      final int pos2 = chr1 == chr2
+          ? Math.min(pos1 + random.nextInt(300),
+              CHROMOSOME_LENGTHS[chr1] - READ_LENGTH)
+          : 1 + random.nextInt(CHROMOSOME_LENGTHS[chr2] - READ_LENGTH);
+
+      r1.setReferenceName(CHROMOSOMES[chr1]);
+      r1.setAlignmentStart(pos1);
+      r1.setCigarString(READ_LENGTH + "M");
+      r1.setReadNegativeStrandFlag(random.nextBoolean());
+
+      if (random.nextInt(30) == 0) {
+
+        // Second read unmapped, placed at the position of its mate
+        r2.setReadUnmappedFlag(true);
+        r2.setReferenceName(CHROMOSOMES[chr1]);
+        r2.setAlignmentStart(pos1);
+        r2.setMappingQuality(0);
+      } else {
+        r2.setReferenceName(CHROMOSOMES[chr2]);
+        r2.setAlignmentStart(pos2);
+        r2.setCigarString(READ_LENGTH + "M");
+        r2.setReadNegativeStrandFlag(!r1.getReadNegativeStrandFlag());
+        r2.setMappingQuality(random.nextInt(10) == 0 ? 0 : 60);
+      }
+
+      setMate(r1, r2);
+      setMate(r2, r1);
+
+      records.add(r1);
+      records.add(r2);
+    }
+
+    try (SAMFileWriter writer = new SAMFileWriterFactory()
+        .makeSAMWriter(header, false, this.nameSortedFile)) {
+      for (SAMRecord r : records) {
+        writer.addAlignment(r);
+      }
+    }
+
+    // Alignments without mate, only in the file sorted by coordinate
+    final SAMRecord orphan1 = createRecord(header, "orphan1", true);
+    orphan1.setReadUnmappedFlag(true);
+    orphan1.setMateUnmappedFlag(true);
+    orphan1.setMappingQuality(0);
+    records.add(orphan1);
+
+    final SAMRecord orphan2 = createRecord(header, "orphan2", false);
+    orphan2.setReferenceName(CHROMOSOMES[0]);
+    orphan2.setAlignmentStart(1000);
+    orphan2.setCigarString(READ_LENGTH + "M");
+    orphan2.setMateReferenceName(CHROMOSOMES[1]);
+    orphan2.setMateAlignmentStart(2000);
+    records.add(orphan2);
+
+    try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMWriter(
+        createHeader(SortOrder.coordinate), false,
+        this.coordinateSortedFile)) {
+      for (SAMRecord r : records) {
+        writer.addAlignment(r);
+      }
+    }
+  }
+
+  private static SAMFileHeader createHeader(final SortOrder sortOrder) {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.setSortOrder(sortOrder);
+    for (int i = 0; i < CHROMOSOMES.length; i++) {
+      header.addSequence(
+          new SAMSequenceRecord(CHROMOSOMES[i], CHROMOSOME_LENGTHS[i]));
+    }
+
+    return header;
+  }
+
+  private static SAMRecord createRecord(final SAMFileHeader header,
+      final String readName, final boolean first) {
+
+    final SAMRecord result = new SAMRecord(header);
+    result.setReadName(readName);
+    result.setReadPairedFlag(true);
+    result.setFirstOfPairFlag(first);
+    result.setSecondOfPairFlag(!first);
+    result.setReadString(
+        "ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTAC");
+    result.setBaseQualityString(
+        "IIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIII");
+    result.setMappingQuality(60);
+
+    return result;
+  }
+
+  private static void setMate(final SAMRecord record, final SAMRecord mate) {
+
+    record.setMateReferenceName(mate.getReferenceName());
+    record.setMateAlignmentStart(mate.getAlignmentStart());
+    record.setMateUnmappedFlag(mate.getReadUnmappedFlag());
+    record.setMateNegativeStrandFlag(mate.getReadNegativeStrandFlag());
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+
+public class BAMStreamWriterTest {
+
+  @Test
+  public void testWrite() throws IOException {
+
+    for (int threads : new int[] {1, 4}) {
+      testWrite(threads, 10000);
+    }
+  }
+
+  @Test
+  public void testWriteEmpty() throws IOException {
+
+    testWrite(2, 0);
+  }
+
+  private void testWrite(final int threads, final int count)
+      throws IOException {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.setSortOrder(SortOrder.coordinate);
+    header.addSequence(new SAMSequenceRecord("chr1", 100000));
+    header.addSequence(new SAMSequenceRecord("chr2", 50000));
+
+    final List<String> expected = new ArrayList<>();
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (BAMStreamWriter writer = new BAMStreamWriter(baos, header, threads)) {
+
+      for (int i = 0; i < count; i++) {
+
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName("read" + i);
+        record.setReadString("ACGTACGTAC");
+        record.setBaseQualityString("IIIIIIIIII");
+        record.setReferenceIndex(i * 2 / count);
+        record.setAlignmentStart(1 + i % 40000);
+        record.setCigarString("10M");
+        record.setAttribute("NH", 1);
+
+        writer.write(record);
+        expected.add(record.getSAMString());
+      }
+
+      assertEquals(count, writer.getRecordCount());
+    }
+
+    final byte[] data = baos.toByteArray();
+    assertTrue(data.length > 0);
+
+    final List<String> records = new ArrayList<>();
+
+    try (SamReader reader = SamReaderFactory.makeDefault()
+        .validationStringency(ValidationStringency.STRICT)
+        .open(SamInputResource.of(new ByteArrayInputStream(data)))) {
+
+      assertEquals(SortOrder.coordinate, reader.getFileHeader().getSortOrder());
+      assertEquals(header.getSequenceDictionary(),
+          reader.getFileHeader().getSequenceDictionary());
+
+      for (SAMRecord record : reader) {
+        records.add(record.getSAMString());
+      }
+    }
+
+    assertEquals(expected, records);
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+
+public class FastqRecordReaderTest {
+
+  private static final String RESOURCE = "/illumina_1_8.fastq";
+
+  @Test
+  public void testReadInputStream() throws IOException, BadBioEntryException {
+
+    final byte[] data = readResource();
+
+    final List<ReadSequence> expected = parse(data);
+    assertTrue(expected.size() > 0);
+
+    try (FastqRecordReader reader =
+        new FastqRecordReader(new ByteArrayInputStream(data))) {
+      assertRecords(expected, reader);
+    }
+  }
+
+  @Test
+  public void testReadChannel() throws IOException, BadBioEntryException {
+
+    final byte[] data = readResource();
+
+    try (FastqRecordReader reader = new FastqRecordReader(
+        Channels.newChannel(new ByteArrayInputStream(data)))) {
+      assertRecords(parse(data), reader);
+    }
+  }
+
+  @Test
+  public void testReadMappedFile() throws IOException, BadBioEntryException {
+
+    final byte[] data = readResource();
+    final File file = File.createTempFile("fastqrecordreader-", ".fastq");
+
+    try {
+      Files.write(file.toPath(), data);
+
+      try (FastqRecordReader reader = new FastqRecordReader(file)) {
+        assertRecords(parse(data), reader);
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testReuse() throws IOException, BadBioEntryException {
+
+    try (FastqRecordReader reader =
+        new FastqRecordReader(new ByteArrayInputStream(readResource()))) {
+
+      final FastqRecord first = reader.read();
+      final String name = first.getName();
+      final FastqRecord second = reader.read();
+
+      assertSame(first, second);
+      assertFalse(name.equals(second.getName()));
+    }
+  }
+
+  @Test
+  public void testWhiteSpacesAndLongLines()
+      throws IOException, BadBioEntryException {
+
+    final char[] sequence = new char[200000];
+    final char[] quality = new char[sequence.length];
+    Arrays.fill(sequence, 'A');
+    Arrays.fill(quality, 'I');
+
+    final String s = "\n@read1 desc \r\nACGT\r\n+\r\nIIII\r\n"
+        + "@read2\n" + new String(sequence) + "\n+read2\n" + new String(quality)
+        + "\n@read3\nAC\n+\nII";
+
+    try (FastqRecordReader reader = new FastqRecordReader(
+        new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII)))) {
+
+      FastqRecord record = reader.read();
+      assertEquals("read1 desc", record.getName());
+      assertEquals("ACGT", record.getSequence());
+      assertEquals("IIII", record.getQuality());
+
+      record = reader.read();
+      assertEquals("read2", record.getName());
+      assertEquals(sequence.length, record.getSequenceLength());
+      assertEquals(new String(quality), record.getQuality());
+
+      record = reader.read();
+      assertEquals("read3", record.getName());
+      assertEquals("II", record.getQuality());
+
+      assertNull(reader.read());
+      assertEquals(13, reader.getLineCount());
+    }
+  }
+
+  @Test
+  public void testIncompleteLastEntry()
+      throws IOException, BadBioEntryException {
+
+    final String s = "@read1\nACGT\n+\nIIII\n@read2\nACGT\n";
+
+    try (FastqRecordReader reader = new FastqRecordReader(
+        new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII)))) {
+
+      assertEquals("read1", reader.read().getName());
+      assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void testInvalidEntries() throws IOException {
+
+    assertInvalid("read1\nACGT\n+\nIIII\n");
+    assertInvalid("@read1\nACGT\n+\nIIII\n@read2\nACGT\n-\nIIII\n");
+  }
+
+  @Test
+  public void testWrite() throws IOException, BadBioEntryException {
+
+    final byte[] data = readResource();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (FastqRecordReader reader =
+        new FastqRecordReader(new ByteArrayInputStream(data))) {
+
+      FastqRecord record;
+      while ((record = reader.read()) != null) {
+        record.write(out);
+      }
+    }
+
+    assertTrue(Arrays.equals(data, out.toByteArray()));
+  }
+
+  //
+  // Utility methods
+  //
+
+  private byte[] readResource() throws IOException {
+
+    try (InputStream is = getClass().getResourceAsStream(RESOURCE)) {
+
+      if (is == null) {
+        throw new IOException("resource not found: " + RESOURCE);
+      }
+
+      return ByteStreams.toByteArray(is);
+    }
+  }
+
+  private static List<ReadSequence> parse(final byte[] data) {
+
+    final List<ReadSequence> result = new ArrayList<>();
+    final String[] lines = new String(data, StandardCharsets.US_ASCII).split("\n");
+
+    for (int i = 0; i + 3 < lines.length; i += 4) {
+      result.add(new ReadSequence(lines[i].substring(1), lines[i + 1],
+          lines[i + 3]));
+    }
+
+    return result;
+  }
+
+  private static void assertRecords(final List<ReadSequence> expected,
+      final FastqRecordReader reader) throws IOException, BadBioEntryException {
+
+    final ReadSequence read = new ReadSequence();
+
+    for (ReadSequence e : expected) {
+
+      final FastqRecord record = reader.read();
+      assertEquals(e.getName(), record.getName());
+      assertEquals(e.getSequence(), record.getSequence());
+      assertEquals(e.getQuality(), record.getQuality());
+
+      record.copyTo(read);
+      assertEquals(e, read);
+    }
+
+    assertNull(reader.read());
+  }
+
+  private static void assertInvalid(final String s) throws IOException {
+
+    try (FastqRecordReader reader = new FastqRecordReader(
+        new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII)))) {
+
+      while (reader.read() != null) {
+        // Read all the entries
+      }
+      fail();
+    } catch (BadBioEntryException e) {
+      // Expected exception
+    }
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+
+public class SortedBAMWriterTest {
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException {
+
+    this.dir = Files.createTempDirectory("sortedbamwriter-test").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    for (File f : this.dir.listFiles()) {
+      f.delete();
+    }
+    this.dir.delete();
+  }
+
+  @Test
+  public void testSortInMemory() throws IOException {
+
+    assertEquals(0, sort(1024 * 1024 * 1024, 1));
+  }
+
+  @Test
+  public void testSortWithRuns() throws IOException {
+
+    assertTrue(sort(256 * 1024, 1) > 1);
+    assertTrue(sort(256 * 1024, 4) > 1);
+  }
+
+  @Test
+  public void testAbort() throws IOException {
+
+    final SAMFileHeader header = createHeader();
+    final File bamFile = new File(this.dir, "sorted.bam");
+
+    final SortedBAMWriter writer = new SortedBAMWriter(bamFile, header, 5,
+        true, 256 * 1024, this.dir, 2);
+
+    for (SAMRecord record : createRecords(header)) {
+      writer.write(record);
+    }
+    assertTrue(writer.getRunCount() > 1);
+
+    writer.abort();
+
+    // Neither the BAM file nor the runs must exist
+    assertEquals(0, this.dir.listFiles().length);
+
+    // The writer is closed
+    try {
+      writer.write(createRecords(header).get(0));
+      fail();
+    } catch (IOException e) {
+      // Expected exception
+    }
+
+    // Closing an aborted writer does not write the BAM file
+    writer.close();
+    assertFalse(bamFile.exists());
+  }
+
+  @Test
+  public void testSortKey() {
+
+    final SAMFileHeader header = createHeader();
+
+    final SAMRecord unmapped = new SAMRecord(header);
+    unmapped.setReadUnmappedFlag(true);
+
+    final SAMRecord first = new SAMRecord(header);
+    first.setReferenceIndex(0);
+    first.setAlignmentStart(1000);
+
+    final SAMRecord second = new SAMRecord(header);
+    second.setReferenceIndex(1);
+    second.setAlignmentStart(1);
+
+    assertTrue(SortedBAMWriter.sortKey(first) < SortedBAMWriter
+        .sortKey(second));
+    assertTrue(SortedBAMWriter.sortKey(second) < SortedBAMWriter
+        .sortKey(unmapped));
+  }
+
+  private int sort(final long memoryBudget, final int threads)
+      throws IOException {
+
+    final SAMFileHeader header = createHeader();
+    final List<SAMRecord> records = createRecords(header);
+
+    final File bamFile = new File(this.dir, "sorted.bam");
+    final int runs;
+
+    try (SortedBAMWriter writer = new SortedBAMWriter(bamFile, header, 5,
+        true, memoryBudget, this.dir, threads)) {
+
+      for (SAMRecord record : records) {
+        writer.write(record);
+      }
+
+      assertEquals(records.size(), writer.getRecordCount());
+      runs = writer.getRunCount();
+    }
+
+    // The header of the caller is not modified
+    assertEquals(SortOrder.unsorted, header.getSortOrder());
+
+    // The sort of htsjdk is stable
+    final SAMRecordCoordinateComparator comparator =
+        new SAMRecordCoordinateComparator();
+    final List<SAMRecord> sorted = new ArrayList<>(records);
+    Collections.sort(sorted, new Comparator<SAMRecord>() {
+
+      @Override
+      public int compare(final SAMRecord a, final SAMRecord b) {
+
+        return comparator.fileOrderCompare(a, b);
+      }
+    });
+
+    final List<String> expected = new ArrayList<>();
+    for (SAMRecord record : sorted) {
+      expected.add(record.getSAMString());
+    }
+
+    final List<String> result = new ArrayList<>();
+    try (SamReader reader = SamReaderFactory.makeDefault()
+        .validationStringency(ValidationStringency.STRICT).open(bamFile)) {
+
+      assertEquals(SortOrder.coordinate,
+          reader.getFileHeader().getSortOrder());
+      assertTrue(reader.hasIndex());
+
+      for (SAMRecord record : reader) {
+        result.add(record.getSAMString());
+      }
+    }
+
+    assertEquals(expected, result);
+
+    // The runs have been removed
+    assertEquals(2, this.dir.listFiles().length);
+
+    return runs;
+  }
+
+  private static List<SAMRecord> createRecords(final SAMFileHeader header) {
+
+    final Random random = new Random(7);
+    final List<SAMRecord> records = new ArrayList<>();
+
+    for (int i = 0; i < 20000; i++) {
+
+      final SAMRecord record = new SAMRecord(header);
+      record.setReadName("read" + i);
+      record.setReadString("ACGTACGTACGTACGTACGT");
+      record.setBaseQualityString("IIIIIIIIIIIIIIIIIIII");
+
+      if (random.nextInt(20) == 0) {
+        record.setReadUnmappedFlag(true);
+      } else {
+        record.setReferenceIndex(random.nextInt(3));
+        record.setAlignmentStart(1 + random.nextInt(5000));
+        record.setCigarString("20M");
+        record.setMappingQuality(60);
+      }
+
+      records.add(record);
+    }
+
+    return records;
+  }
+
+  private static SAMFileHeader createHeader() {
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.addSequence(new SAMSequenceRecord("chr1", 10000));
+    header.addSequence(new SAMSequenceRecord("chr2", 10000));
+    header.addSequence(new SAMSequenceRecord("chr3", 10000));
+
+    return header;
+  }
+
+}
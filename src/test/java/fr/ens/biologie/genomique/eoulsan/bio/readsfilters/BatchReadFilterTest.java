@@ -0,0 +1,246 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsfilters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+
+public class BatchReadFilterTest {
+
+  private static final String COUNTER_GROUP = "reads_filtering";
+
+  /**
+   * A filter that does not extend AbstractReadFilter.
+   */
+  private static final class ThirdPartyReadFilter implements ReadFilter {
+
+    @Override
+    public boolean accept(final ReadSequence read) {
+      return !read.getSequence().startsWith("A");
+    }
+
+    @Override
+    public boolean accept(final ReadSequence read1, final ReadSequence read2) {
+      return accept(read1) || accept(read2);
+    }
+
+    @Override
+    public String getName() {
+      return "thirdparty";
+    }
+
+    @Override
+    public String getDescription() {
+      return "Third party filter";
+    }
+
+    @Override
+    public void setParameter(final String key, final String value) {
+    }
+
+    @Override
+    public void init() {
+    }
+  }
+
+  @Test
+  public void testWrap() {
+
+    final ReadFilter filter = new LengthReadFilter();
+    assertSame(filter, BatchReadFilterAdapter.wrap(filter));
+
+    final ReadFilter thirdParty = new ThirdPartyReadFilter();
+    final BatchReadFilter adapter = BatchReadFilterAdapter.wrap(thirdParty);
+    assertTrue(adapter instanceof BatchReadFilterAdapter);
+    assertSame(thirdParty, ((BatchReadFilterAdapter) adapter).getFilter());
+    assertEquals("thirdparty", adapter.getName());
+  }
+
+  @Test
+  public void testSingleEnd() throws EoulsanException {
+
+    final List<ReadSequence> reads = createReads(new Random(0), 5000);
+    final List<ReadSequence> copy = copy(reads);
+
+    // Filter the reads one by one
+    final LocalReporter expectedReporter = new LocalReporter();
+    final MultiReadFilter expectedFilter = createFilter(expectedReporter);
+    final BitSet expected = new BitSet();
+    for (int i = 0; i < reads.size(); i++) {
+      expected.set(i, expectedFilter.accept(reads.get(i)));
+    }
+
+    // Filter the reads in a batch
+    final LocalReporter reporter = new LocalReporter();
+    final BitSet accepted = new BitSet();
+    accepted.set(0, copy.size());
+    createFilter(reporter).accept(copy, accepted);
+
+    assertTrue(expected.cardinality() > 0);
+    assertTrue(expected.cardinality() < reads.size());
+    assertEquals(expected, accepted);
+    assertEquals(reads, copy);
+    assertReporters(expectedReporter, reporter);
+  }
+
+  @Test
+  public void testPairedEnd() throws EoulsanException {
+
+    final Random random = new Random(1);
+    final List<ReadSequence> reads1 = createReads(random, 5000);
+    final List<ReadSequence> reads2 = createReads(random, 5000);
+    final List<ReadSequence> copy1 = copy(reads1);
+    final List<ReadSequence> copy2 = copy(reads2);
+
+    // Filter the reads one by one
+    final LocalReporter expectedReporter = new LocalReporter();
+    final MultiReadFilter expectedFilter = createFilter(expectedReporter);
+    final BitSet expected = new BitSet();
+    for (int i = 0; i < reads1.size(); i++) {
+      expected.set(i, expectedFilter.accept(reads1.get(i), reads2.get(i)));
+    }
+
+    // Filter the reads in a batch
+    final LocalReporter reporter = new LocalReporter();
+    final BitSet accepted = new BitSet();
+    accepted.set(0, copy1.size());
+    createFilter(reporter).accept(copy1, copy2, accepted);
+
+    assertTrue(expected.cardinality() > 0);
+    assertEquals(expected, accepted);
+    assertEquals(reads1, copy1);
+    assertEquals(reads2, copy2);
+    assertReporters(expectedReporter, reporter);
+  }
+
+  @Test
+  public void testOnlySetBitsAreTested() throws EoulsanException {
+
+    final List<ReadSequence> reads = new ArrayList<>();
+    reads.add(new ReadSequence("read1", "ACGTNN", "IIIIII"));
+    reads.add(new ReadSequence("read2", "ACGTNN", "IIIIII"));
+
+    final BitSet accepted = new BitSet();
+    accepted.set(1);
+
+    new TrimPolyNEndReadFilter().accept(reads, accepted);
+
+    assertEquals("ACGTNN", reads.get(0).getSequence());
+    assertEquals("ACGT", reads.get(1).getSequence());
+    assertEquals(1, accepted.cardinality());
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static MultiReadFilter createFilter(final LocalReporter reporter)
+      throws EoulsanException {
+
+    final MultiReadFilter result = new MultiReadFilter(reporter, COUNTER_GROUP);
+
+    final ReadFilter trim = new TrimReadFilter();
+    trim.setParameter("length.threshold", "10");
+    trim.init();
+    result.addFilter(trim);
+
+    result.addFilter(new TrimPolyNEndReadFilter());
+
+    final ReadFilter quality = new QualityReadFilter();
+    quality.setParameter("threshold", "20");
+    quality.init();
+    result.addFilter(quality);
+
+    result.addFilter(new ThirdPartyReadFilter());
+
+    final ReadFilter length = new LengthReadFilter();
+    length.setParameter("minimal.length.threshold", "15");
+    length.init();
+    result.addFilter(length);
+
+    return result;
+  }
+
+  private static List<ReadSequence> createReads(final Random random,
+      final int count) {
+
+    final List<ReadSequence> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+
+      final int length = 1 + random.nextInt(40);
+      final StringBuilder sequence = new StringBuilder();
+      final StringBuilder quality = new StringBuilder();
+
+      for (int j = 0; j < length; j++) {
+        final boolean polyN = j > length - 5 && random.nextBoolean();
+        sequence.append(polyN ? 'N' : "ACGTN".charAt(random.nextInt(5)));
+        quality.append((char) (33 + random.nextInt(41)));
+      }
+
+      result.add(new ReadSequence("read" + i, sequence.toString(),
+          quality.toString()));
+    }
+
+    return result;
+  }
+
+  private static List<ReadSequence> copy(final List<ReadSequence> reads) {
+
+    final List<ReadSequence> result = new ArrayList<>();
+
+    for (ReadSequence read : reads) {
+      result.add(new ReadSequence(read.getName(), read.getSequence(),
+          read.getQuality()));
+    }
+
+    return result;
+  }
+
+  private static void assertReporters(final LocalReporter expected,
+      final LocalReporter reporter) {
+
+    assertEquals(expected.getCounterNames(COUNTER_GROUP),
+        reporter.getCounterNames(COUNTER_GROUP));
+
+    for (String counter : expected.getCounterNames(COUNTER_GROUP)) {
+      assertEquals(counter, expected.getCounterValue(COUNTER_GROUP, counter),
+          reporter.getCounterValue(COUNTER_GROUP, counter));
+    }
+  }
+
+}
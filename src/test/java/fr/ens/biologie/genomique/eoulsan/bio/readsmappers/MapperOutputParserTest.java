@@ -0,0 +1,216 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsmappers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.Batch;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.BatchProcessor;
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperOutputParser.ResultHandler;
+import htsjdk.samtools.SAMFileHeader;
+
+public class MapperOutputParserTest {
+
+  /**
+   * Handler that store the results.
+   */
+  private static class StoreHandler implements ResultHandler<Batch> {
+
+    private SAMFileHeader header;
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final List<String> lines = new ArrayList<>();
+    private int alignmentCount;
+
+    @Override
+    public void header(final SAMFileHeader header) {
+
+      assertNull(this.header);
+      this.header = header;
+    }
+
+    @Override
+    public void result(final Batch batch) {
+
+      this.data.write(batch.getData(), 0, batch.getLength());
+      this.lines.addAll(batch.getLines());
+      this.alignmentCount += batch.getAlignmentCount();
+    }
+  }
+
+  private static final BatchProcessor<Batch> IDENTITY =
+      new BatchProcessor<Batch>() {
+
+        @Override
+        public Batch process(final SAMFileHeader header, final Batch batch) {
+          return batch;
+        }
+      };
+
+  @Test
+  public void testOrderedParsing() throws IOException {
+
+    final byte[] sam = readResource("/mapper_results_SE.sam");
+
+    for (int threads : new int[] {1, 4}) {
+      for (int batchSize : new int[] {1, 100, 1024 * 1024}) {
+
+        final StoreHandler handler = new StoreHandler();
+        new MapperOutputParser(threads, true, batchSize)
+            .parse(new ByteArrayInputStream(sam), IDENTITY, handler);
+
+        assertEquals(22, handler.header.getSequenceDictionary().size());
+        assertArrayEquals(sam, handler.data.toByteArray());
+        assertEquals(countAlignments(sam), handler.alignmentCount);
+      }
+    }
+  }
+
+  @Test
+  public void testUnorderedParsing() throws IOException {
+
+    final byte[] sam = readResource("/mapper_results_SE.sam");
+
+    final StoreHandler expected = new StoreHandler();
+    new MapperOutputParser(1, true, 100)
+        .parse(new ByteArrayInputStream(sam), IDENTITY, expected);
+
+    final StoreHandler handler = new StoreHandler();
+    new MapperOutputParser(4, false, 100)
+        .parse(new ByteArrayInputStream(sam), IDENTITY, handler);
+
+    Collections.sort(expected.lines);
+    Collections.sort(handler.lines);
+
+    assertEquals(expected.lines, handler.lines);
+    assertEquals(expected.alignmentCount, handler.alignmentCount);
+  }
+
+  @Test
+  public void testSpecialCases() throws IOException {
+
+    // Empty output
+    StoreHandler handler = parse("");
+    assertEquals(0, handler.header.getSequenceDictionary().size());
+    assertEquals(0, handler.lines.size());
+
+    // Header only output
+    handler = parse("@SQ\tSN:chr1\tLN:1000\n");
+    assertEquals(1, handler.header.getSequenceDictionary().size());
+    assertEquals(1, handler.lines.size());
+    assertEquals(0, handler.alignmentCount);
+
+    // No end of line at the end of the output, empty and untrimmed lines
+    handler = parse("@SQ\tSN:chr1\tLN:1000\nr1\t4\n\n  r2\t4 \r\nr3\t4");
+    assertEquals(Arrays.asList("@SQ\tSN:chr1\tLN:1000", "r1\t4", "r2\t4",
+        "r3\t4"), handler.lines);
+    assertEquals(3, handler.alignmentCount);
+  }
+
+  @Test
+  public void testProcessingError() {
+
+    final BatchProcessor<Batch> processor = new BatchProcessor<Batch>() {
+
+      @Override
+      public Batch process(final SAMFileHeader header, final Batch batch)
+          throws IOException {
+        throw new IOException("error");
+      }
+    };
+
+    for (int threads : new int[] {1, 4}) {
+      try {
+        new MapperOutputParser(threads, true, 10).parse(
+            new ByteArrayInputStream(
+                "r1\t4\nr2\t4\n".getBytes(StandardCharsets.US_ASCII)),
+            processor, new StoreHandler());
+        fail();
+      } catch (IOException e) {
+        assertEquals("error", e.getMessage());
+      }
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static StoreHandler parse(final String s) throws IOException {
+
+    final StoreHandler handler = new StoreHandler();
+    new MapperOutputParser(2, true, 8).parse(
+        new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII)),
+        IDENTITY, handler);
+
+    return handler;
+  }
+
+  private static int countAlignments(final byte[] sam) {
+
+    int result = 0;
+    for (String line : new String(sam, StandardCharsets.US_ASCII)
+        .split("\n")) {
+      if (!line.isEmpty() && line.charAt(0) != '@') {
+        result++;
+      }
+    }
+
+    return result;
+  }
+
+  private static byte[] readResource(final String resource)
+      throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (InputStream in =
+        MapperOutputParserTest.class.getResourceAsStream(resource)) {
+
+      final byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+    }
+
+    return out.toByteArray();
+  }
+
+}
@@ -0,0 +1,225 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.bio.readsmappers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.bio.readsmappers.MapperProcess.FastqWriterThread;
+
+public class MapperProcessTest {
+
+  /**
+   * Channel that fail after writing a number of bytes, and that can be slowed
+   * down.
+   */
+  private static class TestChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private final long maxBytes;
+    private final long sleepTime;
+    private long count;
+    private volatile boolean open = true;
+    private volatile long lastWriteTime;
+    private volatile long closeTime;
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+
+      if (this.count >= this.maxBytes) {
+        throw new IOException("Broken pipe");
+      }
+
+      if (this.sleepTime > 0) {
+        try {
+          Thread.sleep(this.sleepTime);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+
+      final int result = this.channel.write(src);
+      this.count += result;
+      this.lastWriteTime = System.currentTimeMillis();
+
+      return result;
+    }
+
+    @Override
+    public boolean isOpen() {
+
+      return this.open;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      this.closeTime = System.currentTimeMillis();
+      this.open = false;
+      this.channel.close();
+    }
+
+    TestChannel(final ByteArrayOutputStream out, final long maxBytes,
+        final long sleepTime) {
+
+      this.channel = Channels.newChannel(out);
+      this.maxBytes = maxBytes;
+      this.sleepTime = sleepTime;
+    }
+  }
+
+  private static String read(final int i) {
+
+    return "@read"
+        + i + "\nACGTACGTACGTACGTACGTACGT\n+\nIIIIIIIIIIIIIIIIIIIIIIII\n";
+  }
+
+  @Test
+  public void testFastqWriterThreadOrder() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TestChannel channel = new TestChannel(out, Long.MAX_VALUE, 0);
+    final StringBuilder expected = new StringBuilder();
+
+    // More than the size of the ring of chunks
+    final FastqWriterThread writer = new FastqWriterThread(channel, "test");
+    for (int i = 0; i < 400000; i++) {
+      final String s = read(i);
+      expected.append(s);
+      writer.write(s);
+    }
+    writer.close();
+
+    final String result = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertEquals(expected.length(), result.length());
+    assertEquals(expected.toString(), result);
+    assertEquals(expected.length(), writer.getByteCount());
+    assertTrue(writer.getByteCount() > 256 * 64 * 1024);
+    assertTrue(!channel.isOpen());
+  }
+
+  @Test
+  public void testFastqWriterThreadSmallInput() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TestChannel channel = new TestChannel(out, Long.MAX_VALUE, 0);
+
+    final FastqWriterThread writer = new FastqWriterThread(channel, "test");
+    writer.write(read(0));
+    writer.close();
+
+    assertEquals(read(0),
+        new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+    // The pipe must not be closed before the reader can open it
+    assertTrue(channel.closeTime - channel.lastWriteTime >= 1500);
+  }
+
+  @Test(timeout = 60000)
+  public void testFastqWriterThreadError() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TestChannel channel = new TestChannel(out, 1024 * 1024, 0);
+
+    // Write more data than the size of the ring of chunks: the producer must
+    // not block when the writing thread has failed
+    final FastqWriterThread writer = new FastqWriterThread(channel, "test");
+    try {
+      for (int i = 0; i < 400000; i++) {
+        writer.write(read(i));
+      }
+      writer.close();
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Broken pipe"));
+    }
+
+    // Closing the writer must not block and must report the error
+    try {
+      writer.close();
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Broken pipe"));
+    }
+
+    assertTrue(!channel.isOpen());
+    assertTrue(!writer.isAlive());
+  }
+
+  @Test
+  public void testFastqWriterThreadIdleTime() throws IOException,
+      InterruptedException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TestChannel channel = new TestChannel(out, Long.MAX_VALUE, 0);
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < 65 * 1024) {
+      sb.append(read(sb.length()));
+    }
+
+    // Slow producer: the writing thread waits for chunks
+    final FastqWriterThread writer = new FastqWriterThread(channel, "test");
+    for (int i = 0; i < 3; i++) {
+      writer.write(sb.toString());
+      Thread.sleep(200);
+    }
+    writer.close();
+
+    assertTrue(writer.getPipeIdleTime() >= 300);
+    assertEquals(3 * sb.length(), out.size());
+  }
+
+  @Test
+  public void testFastqWriterThreadWaitingTime() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TestChannel channel = new TestChannel(out, Long.MAX_VALUE, 5);
+
+    // Slow consumer: the producer waits for free chunks once the ring is full
+    final FastqWriterThread writer = new FastqWriterThread(channel, "test");
+    final String s = read(0);
+    long count = 0;
+    while (count < 300L * 64 * 1024) {
+      writer.write(s);
+      count += s.length();
+    }
+    writer.close();
+
+    assertTrue(writer.getWriterWaitingTime() > 0);
+    assertEquals(count, out.size());
+  }
+
+}
@@ -0,0 +1,360 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.core.schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * This class test the PausableThreadPoolExecutor class.
+ * @author Laurent Jourdren
+ */
+public class PausableThreadPoolExecutorTest {
+
+  private static final int THREADS = 4;
+  private static final int TASKS = 200;
+
+  /** Maximal time to execute all the trivial tasks. */
+  private static final long LATENCY_BUDGET_MS = 2000;
+
+  @Test
+  public void testLatency() throws InterruptedException, ExecutionException {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+
+    final AtomicInteger count = new AtomicInteger();
+    final List<Future<Integer>> futures = new ArrayList<>();
+
+    final long start = System.currentTimeMillis();
+
+    for (int i = 0; i < TASKS; i++) {
+      futures.add(executor.submit(new Runnable() {
+
+        @Override
+        public void run() {
+          count.incrementAndGet();
+        }
+      }, i, 1 + i % 3));
+    }
+
+    for (int i = 0; i < TASKS; i++) {
+      assertEquals(i, (int) futures.get(i).get());
+    }
+
+    final long duration = System.currentTimeMillis() - start;
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(TASKS, count.get());
+    assertTrue("Too long execution: " + duration + " ms",
+        duration < LATENCY_BUDGET_MS);
+  }
+
+  @Test
+  public void testRequiredProcessors()
+      throws InterruptedException, ExecutionException {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+
+    final AtomicInteger used = new AtomicInteger();
+    final AtomicInteger maxUsed = new AtomicInteger();
+    final List<Future<Integer>> futures = new ArrayList<>();
+
+    for (int i = 0; i < 50; i++) {
+
+      final int required = 1 + i % THREADS;
+
+      futures.add(executor.submit(new Runnable() {
+
+        @Override
+        public void run() {
+
+          final int current = used.addAndGet(required);
+          maxUsed.accumulateAndGet(current, Math::max);
+
+          try {
+            Thread.sleep(2);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+
+          used.addAndGet(-required);
+        }
+      }, i, required));
+    }
+
+    for (Future<Integer> f : futures) {
+      f.get();
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertTrue("Too many threads used: " + maxUsed.get(),
+        maxUsed.get() <= THREADS);
+  }
+
+  @Test
+  public void testPause() throws InterruptedException, ExecutionException {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+
+    final AtomicInteger count = new AtomicInteger();
+
+    executor.pause();
+
+    final Future<Integer> future = executor.submit(new Runnable() {
+
+      @Override
+      public void run() {
+        count.incrementAndGet();
+      }
+    }, 1, 1);
+
+    Thread.sleep(100);
+    assertFalse(future.isDone());
+    assertEquals(0, count.get());
+
+    final long start = System.currentTimeMillis();
+    executor.resume();
+    future.get();
+
+    assertEquals(1, count.get());
+    assertTrue(System.currentTimeMillis() - start < LATENCY_BUDGET_MS);
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+
+  @Test
+  public void testRequiredMemory()
+      throws InterruptedException, ExecutionException {
+
+    final int memory = 1000;
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS, memory);
+
+    final AtomicInteger used = new AtomicInteger();
+    final AtomicInteger maxUsed = new AtomicInteger();
+    final List<Future<Integer>> futures = new ArrayList<>();
+
+    for (int i = 0; i < 40; i++) {
+
+      // Some tasks do not define their memory requirement
+      final int required = i % 5 == 0 ? -1 : 100 * (1 + i % 6);
+
+      futures.add(executor.submit(new Runnable() {
+
+        @Override
+        public void run() {
+
+          final int current = used.addAndGet(Math.max(0, required));
+          maxUsed.accumulateAndGet(current, Math::max);
+
+          try {
+            Thread.sleep(2);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+
+          used.addAndGet(-Math.max(0, required));
+        }
+      }, i, 1, required, 0));
+    }
+
+    for (Future<Integer> f : futures) {
+      f.get();
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertTrue("Too much memory used: " + maxUsed.get(),
+        maxUsed.get() <= memory);
+  }
+
+  @Test
+  public void testPriority() throws InterruptedException, ExecutionException {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(1);
+
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    final List<Future<Integer>> futures = new ArrayList<>();
+
+    // Tasks are not started while the executor is paused
+    executor.pause();
+
+    final int[] priorities = {1, 3, 2, 3, 1};
+    for (int i = 0; i < priorities.length; i++) {
+
+      final int task = i;
+      futures.add(executor.submit(new Runnable() {
+
+        @Override
+        public void run() {
+          order.add(task);
+        }
+      }, i, 1, -1, priorities[i]));
+    }
+
+    executor.resume();
+
+    for (Future<Integer> f : futures) {
+      f.get();
+    }
+
+    // Highest priority first, then submission order
+    assertEquals(Arrays.asList(1, 3, 2, 0, 4), order);
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testBackfill()
+      throws InterruptedException, ExecutionException, TimeoutException {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+
+    final CountDownLatch release = new CountDownLatch(1);
+
+    // A task that use one thread until released
+    final Future<Integer> longTask = executor.submit(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, 0, 1, -1, 0);
+
+    // A task with a high priority that requires all the threads
+    final Future<Integer> bigTask = executor.submit(new Runnable() {
+
+      @Override
+      public void run() {
+      }
+    }, 1, THREADS, -1, 10);
+
+    // A small task with a lower priority can use the idle threads
+    final Future<Integer> smallTask = executor.submit(new Runnable() {
+
+      @Override
+      public void run() {
+      }
+    }, 2, 1, -1, 1);
+
+    assertEquals(2, (int) smallTask.get(10, TimeUnit.SECONDS));
+    assertFalse(bigTask.isDone());
+
+    release.countDown();
+    assertEquals(0, (int) longTask.get());
+    assertEquals(1, (int) bigTask.get());
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testInheritedSubmission()
+      throws InterruptedException, ExecutionException, TimeoutException {
+
+    final PausableThreadPoolExecutor executor =
+        new PausableThreadPoolExecutor(THREADS);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger count = new AtomicInteger();
+
+    // A task that use all the threads until released
+    final Future<Integer> bigTask = executor.submit(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, 0, THREADS);
+
+    // The tasks submitted with the methods of ExecutorService must also wait
+    // for free threads
+    final Future<Integer> callableTask =
+        executor.submit(new Callable<Integer>() {
+
+          @Override
+          public Integer call() {
+            return count.incrementAndGet();
+          }
+        });
+
+    executor.execute(new Runnable() {
+
+      @Override
+      public void run() {
+        count.incrementAndGet();
+      }
+    });
+
+    Thread.sleep(100);
+    assertFalse(callableTask.isDone());
+    assertEquals(0, count.get());
+
+    release.countDown();
+    assertEquals(0, (int) bigTask.get());
+    assertTrue(callableTask.get(10, TimeUnit.SECONDS) > 0);
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(2, count.get());
+  }
+
+}
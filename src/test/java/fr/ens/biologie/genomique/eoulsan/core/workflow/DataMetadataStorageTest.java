@@ -0,0 +1,205 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.data.Data;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.design.DesignFactory;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+public class DataMetadataStorageTest {
+
+  private static final String METADATA_FILENAME = ".eoulsanmetadata";
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+    this.dir = Files.createTempDirectory("datametadatastorage").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testFlush() throws IOException {
+
+    final DataMetadataStorage storage =
+        new DataMetadataStorage(new DataFile(this.dir));
+
+    // Nothing to write
+    storage.flush();
+    assertFalse(getMetadataFile().exists());
+
+    storage.saveMetaData(newData("reads.fq", "value1"));
+
+    // The entries are written by batch
+    assertFalse(getMetadataFile().exists());
+
+    storage.flush();
+    assertEquals(1, readMetadataLines().size());
+
+    // Metadata that has not changed is not written again
+    storage.saveMetaData(newData("reads.fq", "value1"));
+    storage.flush();
+    assertEquals(1, readMetadataLines().size());
+  }
+
+  @Test
+  public void testLastEntryWinsAfterReload() throws IOException {
+
+    final DataMetadataStorage storage =
+        new DataMetadataStorage(new DataFile(this.dir));
+
+    storage.saveMetaData(newData("reads.fq", "value1"));
+    storage.flush();
+    storage.saveMetaData(newData("reads.fq", "value2"));
+    storage.saveMetaData(newData("other.fq", "value3"));
+    storage.flush();
+
+    // The log contains all the entries
+    assertEquals(3, readMetadataLines().size());
+
+    // The last entry of a file overrides the previous ones
+    final DataMetadataStorage reloaded =
+        new DataMetadataStorage(new DataFile(this.dir));
+    assertEquals("value2", loadValue(reloaded, "reads.fq"));
+    assertEquals("value3", loadValue(reloaded, "other.fq"));
+    assertEquals(3, readMetadataLines().size());
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+
+    final DataMetadataStorage storage =
+        new DataMetadataStorage(new DataFile(this.dir));
+
+    // 10 files updated 150 times. The first 1000 entries are written
+    // automatically
+    for (int i = 0; i < 150; i++) {
+      for (int j = 0; j < 10; j++) {
+        storage.saveMetaData(newData("reads" + j + ".fq", "value" + i));
+      }
+
+      if (i == 99) {
+        assertEquals(1000, readMetadataLines().size());
+      }
+    }
+
+    // The log contains more than twice as many entries as files
+    storage.flush();
+
+    // Only the last entry of each file is kept
+    final List<String> lines = readMetadataLines();
+    assertEquals(10, lines.size());
+
+    final DataMetadataStorage reloaded =
+        new DataMetadataStorage(new DataFile(this.dir));
+    for (int j = 0; j < 10; j++) {
+      assertEquals("value149", loadValue(reloaded, "reads" + j + ".fq"));
+    }
+  }
+
+  @Test
+  public void testNoCompaction() throws IOException {
+
+    final DataMetadataStorage storage =
+        new DataMetadataStorage(new DataFile(this.dir));
+
+    // Many files with less than two entries each
+    for (int i = 0; i < 800; i++) {
+      storage.saveMetaData(newData("reads" + i + ".fq", "value1"));
+    }
+    for (int i = 0; i < 700; i++) {
+      storage.saveMetaData(newData("reads" + i + ".fq", "value2"));
+    }
+    storage.flush();
+
+    assertEquals(1500, readMetadataLines().size());
+  }
+
+  //
+  // Utility methods
+  //
+
+  private Data newData(final String filename, final String value) {
+
+    final DataElement result = new DataElement(DataFormats.READS_FASTQ,
+        new DataFile(this.dir, filename), DesignFactory.createEmptyDesign());
+    result.getMetadata().set("key", value);
+
+    return result;
+  }
+
+  private String loadValue(final DataMetadataStorage storage,
+      final String filename) {
+
+    final Data data = newData(filename, "none");
+
+    assertTrue(storage.loadMetadata(data));
+
+    return data.getMetadata().get("key");
+  }
+
+  private File getMetadataFile() {
+
+    return new File(this.dir, METADATA_FILENAME);
+  }
+
+  private List<String> readMetadataLines() throws IOException {
+
+    if (!getMetadataFile().exists()) {
+      return new ArrayList<>();
+    }
+
+    return Files.readAllLines(getMetadataFile().toPath(),
+        StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,410 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.workflow;
+
+import static fr.ens.biologie.genomique.eoulsan.core.InputPortsBuilder.singleInputPort;
+import static fr.ens.biologie.genomique.eoulsan.core.OutputPortsBuilder.singleOutputPort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
+import fr.ens.biologie.genomique.eoulsan.annotations.NoLog;
+import fr.ens.biologie.genomique.eoulsan.annotations.StreamableInput;
+import fr.ens.biologie.genomique.eoulsan.core.InputPorts;
+import fr.ens.biologie.genomique.eoulsan.core.OutputPorts;
+import fr.ens.biologie.genomique.eoulsan.core.Step;
+import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
+import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
+import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
+import fr.ens.biologie.genomique.eoulsan.core.Version;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.data.DataFormats;
+import fr.ens.biologie.genomique.eoulsan.design.Design;
+import fr.ens.biologie.genomique.eoulsan.design.io.DefaultDesignReader;
+import fr.ens.biologie.genomique.eoulsan.modules.AbstractModule;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+/**
+ * This class test the streaming of data between steps through named pipes.
+ * @author Laurent Jourdren
+ */
+public class DataStreamingTest {
+
+  private static final int LINES = 10000;
+
+  private static final Map<String, Long> VALUES = new ConcurrentHashMap<>();
+
+  private static File dir;
+  private static boolean streaming;
+  private static CommandWorkflow workflow;
+
+  /**
+   * This module writes lines in its output data.
+   */
+  @LocalOnly
+  @NoLog
+  public static class ProducerModule extends AbstractModule {
+
+    public static final String MODULE_NAME = "streamingproducer";
+
+    @Override
+    public String getName() {
+
+      return MODULE_NAME;
+    }
+
+    @Override
+    public Version getVersion() {
+
+      return Globals.APP_VERSION;
+    }
+
+    @Override
+    public OutputPorts getOutputPorts() {
+
+      return singleOutputPort(DataFormats.DUMMY_TXT);
+    }
+
+    @Override
+    public TaskResult execute(final TaskContext context,
+        final TaskStatus status) {
+
+      final String stepId = context.getCurrentStep().getId();
+      final DataFile file = context.getOutputData(DataFormats.DUMMY_TXT, "data")
+          .getDataFile();
+
+      // The named pipe replaces the output file
+      VALUES.put(stepId + ".pipe", file.toFile().exists() ? 1L : 0L);
+
+      try (OutputStream os = file.create()) {
+
+        for (int i = 0; i < LINES; i++) {
+          os.write(("line" + i + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+      } catch (IOException e) {
+        return status.createTaskResult(e);
+      }
+
+      VALUES.put(stepId + ".end", System.nanoTime());
+
+      return status.createTaskResult();
+    }
+  }
+
+  /**
+   * This module counts the lines of its input data.
+   */
+  @LocalOnly
+  @NoLog
+  @StreamableInput
+  public static class ConsumerModule extends AbstractModule {
+
+    public static final String MODULE_NAME = "streamingconsumer";
+
+    @Override
+    public String getName() {
+
+      return MODULE_NAME;
+    }
+
+    @Override
+    public Version getVersion() {
+
+      return Globals.APP_VERSION;
+    }
+
+    @Override
+    public InputPorts getInputPorts() {
+
+      return singleInputPort(DataFormats.DUMMY_TXT);
+    }
+
+    @Override
+    public TaskResult execute(final TaskContext context,
+        final TaskStatus status) {
+
+      final String stepId = context.getCurrentStep().getId();
+      VALUES.put(stepId + ".start", System.nanoTime());
+
+      final DataFile file =
+          context.getInputData(DataFormats.DUMMY_TXT).getDataFile();
+
+      try {
+        VALUES.put(stepId + ".lines", (long) countLines(file.open()));
+      } catch (IOException e) {
+        return status.createTaskResult(e);
+      }
+
+      return status.createTaskResult();
+    }
+  }
+
+  /**
+   * This module counts the lines of its input data but does not declare that
+   * its input can be streamed.
+   */
+  @LocalOnly
+  @NoLog
+  public static class NonStreamableConsumerModule extends ConsumerModule {
+
+    public static final String MODULE_NAME = "nonstreamableconsumer";
+
+    @Override
+    public String getName() {
+
+      return MODULE_NAME;
+    }
+  }
+
+  /**
+   * Run the workflow of the tests. The workflow engine allows only one workflow
+   * by JVM.
+   */
+  @BeforeClass
+  public static void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    streaming = EoulsanRuntime.getSettings().isLocalStreaming();
+    EoulsanRuntime.getSettings().setLocalStreaming(true);
+
+    dir = Files.createTempDirectory("streaming-test").toFile();
+
+    final File workflowFile = new File(dir, "workflow.xml");
+    final File designFile = new File(dir, "design.txt");
+
+    // The data of step1 is streamed to step2. The data of step3 cannot be
+    // streamed to step5 as step5 also depends on step4 that depends on step3.
+    // The data of step6 cannot be streamed as the module of step7 does not
+    // declare that its input can be streamed
+    writeWorkflowFile(workflowFile, ProducerModule.MODULE_NAME,
+        ConsumerModule.MODULE_NAME, ProducerModule.MODULE_NAME,
+        WorkflowLatencyTest.TimestampModule.MODULE_NAME,
+        ConsumerModule.MODULE_NAME, ProducerModule.MODULE_NAME,
+        NonStreamableConsumerModule.MODULE_NAME);
+    writeDesignFile(designFile);
+
+    final Design design = new DefaultDesignReader(designFile).read();
+    workflow =
+        new CommandWorkflow(new ExecutorArguments(workflowFile, designFile),
+            new CommandWorkflowParser(workflowFile).parse(), null, null,
+            design);
+
+    workflow.checkDirectories();
+    workflow.execute();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+
+    EoulsanRuntime.getSettings().setLocalStreaming(streaming);
+    FileUtils.recursiveDelete(dir);
+  }
+
+  @Test
+  public void testProducerConsumer() {
+
+    assertEquals(1L, (long) VALUES.get("step1.pipe"));
+    assertEquals(LINES, (long) VALUES.get("step2.lines"));
+
+    // The consumer task starts before the end of the producer task
+    assertTrue(VALUES.get("step2.start") < VALUES.get("step1.end"));
+
+    // The data that cannot be streamed uses a standard file
+    assertEquals(0L, (long) VALUES.get("step3.pipe"));
+    assertEquals(LINES, (long) VALUES.get("step5.lines"));
+    assertTrue(VALUES.get("step5.start") > VALUES.get("step3.end"));
+
+    // The consumer module does not declare that its input can be streamed
+    assertEquals(0L, (long) VALUES.get("step6.pipe"));
+    assertEquals(LINES, (long) VALUES.get("step7.lines"));
+    assertTrue(VALUES.get("step7.start") > VALUES.get("step6.end"));
+  }
+
+  @Test
+  public void testProducerFailure() throws Exception {
+
+    final File pipe = new File(dir, "pipe");
+    FileUtils.createNamedPipe(pipe);
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+
+      // The reader waits for a writer that will never open the named pipe
+      final Future<Integer> reader = executor.submit(new Callable<Integer>() {
+
+        @Override
+        public Integer call() throws IOException {
+
+          return countLines(new FileInputStream(pipe));
+        }
+      });
+
+      Thread.sleep(100);
+      assertFalse(reader.isDone());
+
+      DataStreaming.closeNamedPipe(pipe);
+      assertEquals(0, (int) reader.get(10, TimeUnit.SECONDS));
+
+      // The readers that open the named pipe after its closing read no data
+      final Future<Integer> lateReader =
+          executor.submit(new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws IOException {
+
+              return countLines(new FileInputStream(pipe));
+            }
+          });
+      assertEquals(0, (int) lateReader.get(10, TimeUnit.SECONDS));
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testIsStreamable() {
+
+    // The consumer step only requires the producer step
+    assertTrue(DataStreaming.isStreamable(getOutputPort("step1")));
+
+    // A step without input port depends on the previous step and the next
+    // steps depend on a step without output port. So the consumer step also
+    // requires a step that cannot start before the end of the producer step
+    assertFalse(DataStreaming.isStreamable(getOutputPort("step3")));
+
+    // The consumer module must declare that its input can be streamed
+    assertFalse(DataStreaming.isStreamable(getOutputPort("step6")));
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static StepOutputPort getOutputPort(final String stepId) {
+
+    for (Step step : workflow.getSteps()) {
+
+      if (stepId.equals(step.getId())) {
+
+        final StepOutputPort port =
+            ((AbstractStep) step).getWorkflowOutputPorts().getPort("output");
+        assertNotNull(port);
+
+        return port;
+      }
+    }
+
+    throw new AssertionError("Step not found: " + stepId);
+  }
+
+  private static int countLines(final InputStream is) throws IOException {
+
+    int count = 0;
+
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(is, StandardCharsets.UTF_8))) {
+
+      while (reader.readLine() != null) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private static void writeWorkflowFile(final File file,
+      final String... moduleNames) throws IOException {
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append("<analysis>\n");
+    sb.append("  <formatversion>1.0</formatversion>\n");
+    sb.append("  <name>streaming</name>\n");
+    sb.append("  <description>Streaming test</description>\n");
+    sb.append("  <author>Laurent Jourdren</author>\n");
+    sb.append("  <steps>\n");
+    for (int i = 0; i < moduleNames.length; i++) {
+      sb.append("    <step id=\"step"
+          + (i + 1) + "\" discardoutput=\"asap\">\n");
+      sb.append("      <module>" + moduleNames[i] + "</module>\n");
+      sb.append("    </step>\n");
+    }
+    sb.append("  </steps>\n");
+    sb.append("</analysis>\n");
+
+    write(file, sb.toString());
+  }
+
+  private static void writeDesignFile(final File file) throws IOException {
+
+    // The design requires a reads file for each sample
+    write(new File(file.getParentFile(), "sample1.fastq"), "");
+
+    write(file, "[Header]\n"
+        + "DesignFormatVersion=2\n\n" + "[Columns]\n"
+        + "SampleId\tSampleName\tReads\n" + "1\tsample1\tsample1.fastq\n");
+  }
+
+  private static void write(final File file, final String content)
+      throws IOException {
+
+    try (Writer writer =
+        Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(content);
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.core.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.Globals;
+import fr.ens.biologie.genomique.eoulsan.annotations.LocalOnly;
+import fr.ens.biologie.genomique.eoulsan.annotations.NoLog;
+import fr.ens.biologie.genomique.eoulsan.core.TaskContext;
+import fr.ens.biologie.genomique.eoulsan.core.TaskResult;
+import fr.ens.biologie.genomique.eoulsan.core.TaskStatus;
+import fr.ens.biologie.genomique.eoulsan.core.Version;
+import fr.ens.biologie.genomique.eoulsan.modules.AbstractModule;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+/**
+ * This class test the latency of the workflow engine between the end of a
+ * step and the start of the next step.
+ * @author Laurent Jourdren
+ */
+public class WorkflowLatencyTest {
+
+  private static final String[] STEP_IDS = {"step1", "step2", "step3"};
+
+  /**
+   * Maximal time between the end of a step and the start of the next step.
+   * With polling, each transition took at least one second.
+   */
+  private static final long LATENCY_BUDGET_MS = 500;
+
+  private static final Map<String, long[]> TIMESTAMPS =
+      new ConcurrentHashMap<>();
+
+  private File dir;
+
+  /**
+   * This module saves the start and end times of its task.
+   */
+  @LocalOnly
+  @NoLog
+  public static class TimestampModule extends AbstractModule {
+
+    public static final String MODULE_NAME = "timestamp";
+
+    @Override
+    public String getName() {
+
+      return MODULE_NAME;
+    }
+
+    @Override
+    public Version getVersion() {
+
+      return Globals.APP_VERSION;
+    }
+
+    @Override
+    public TaskResult execute(final TaskContext context,
+        final TaskStatus status) {
+
+      final long start = System.nanoTime();
+      final long end = System.nanoTime();
+
+      TIMESTAMPS.put(context.getCurrentStep().getId(),
+          new long[] {start, end});
+
+      return status.createTaskResult();
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    // Do not use an interactive UI
+    EoulsanRuntime.getSettings().setUIName("no");
+
+    this.dir = Files.createTempDirectory("workflow-test").toFile();
+    TIMESTAMPS.clear();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testLatencyBetweenSteps() throws EoulsanException, IOException {
+
+    final File workflowFile = new File(this.dir, "workflow.xml");
+    final File designFile = new File(this.dir, "design.txt");
+
+    writeWorkflowFile(workflowFile);
+    writeDesignFile(designFile);
+
+    new Executor(new ExecutorArguments(workflowFile, designFile)).execute();
+
+    for (int i = 0; i < STEP_IDS.length; i++) {
+      assertNotNull("No task executed for " + STEP_IDS[i],
+          TIMESTAMPS.get(STEP_IDS[i]));
+    }
+
+    for (int i = 1; i < STEP_IDS.length; i++) {
+
+      final long previousEnd = TIMESTAMPS.get(STEP_IDS[i - 1])[1];
+      final long start = TIMESTAMPS.get(STEP_IDS[i])[0];
+      final long latencyMs = (start - previousEnd) / 1000000;
+
+      // The steps must be executed in the order of the workflow
+      assertTrue(start > previousEnd);
+
+      assertTrue("Latency between "
+          + STEP_IDS[i - 1] + " and " + STEP_IDS[i] + ": " + latencyMs
+          + " ms", latencyMs < LATENCY_BUDGET_MS);
+    }
+
+    assertEquals(STEP_IDS.length, TIMESTAMPS.size());
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static void writeWorkflowFile(final File file) throws IOException {
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append("<analysis>\n");
+    sb.append("  <formatversion>1.0</formatversion>\n");
+    sb.append("  <name>latency</name>\n");
+    sb.append("  <description>Latency test</description>\n");
+    sb.append("  <author>Laurent Jourdren</author>\n");
+    sb.append("  <steps>\n");
+    for (String stepId : STEP_IDS) {
+      sb.append("    <step id=\"" + stepId + "\">\n");
+      sb.append("      <module>" + TimestampModule.MODULE_NAME + "</module>\n");
+      sb.append("    </step>\n");
+    }
+    sb.append("  </steps>\n");
+    sb.append("</analysis>\n");
+
+    write(file, sb.toString());
+  }
+
+  private static void writeDesignFile(final File file) throws IOException {
+
+    // The design requires a reads file for each sample
+    write(new File(file.getParentFile(), "sample1.fastq"), "");
+
+    write(file, "[Header]\n"
+        + "DesignFormatVersion=2\n\n" + "[Columns]\n"
+        + "SampleId\tSampleName\tReads\n" + "1\tsample1\tsample1.fastq\n");
+  }
+
+  private static void write(final File file, final String content)
+      throws IOException {
+
+    try (Writer writer =
+        Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(content);
+    }
+  }
+
+}
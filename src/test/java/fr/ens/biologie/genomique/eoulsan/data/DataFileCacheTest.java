@@ -0,0 +1,219 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+public class DataFileCacheTest {
+
+  private HttpServer server;
+  private File cacheDir;
+  private volatile byte[] content;
+  private volatile long lastModified;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.cacheDir = Files.createTempDirectory("data-cache-test").toFile();
+    EoulsanRuntime.getSettings()
+        .setDataCachePath(this.cacheDir.getAbsolutePath());
+    EoulsanRuntime.getSettings().setDataCacheMaxSize(1);
+
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.server.createContext("/", new HttpHandler() {
+
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+
+        final SimpleDateFormat format =
+            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        exchange.getResponseHeaders().add("Last-Modified",
+            format.format(new Date(lastModified)));
+        exchange.sendResponseHeaders(200, content.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(content);
+        } catch (IOException e) {
+          // The client may only read the headers
+        }
+      }
+    });
+    this.server.start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+
+    // Disable the cache
+    EoulsanRuntime.getSettings().setDataCacheMaxSize(0);
+
+    this.server.stop(0);
+    FileUtils.recursiveDelete(this.cacheDir);
+  }
+
+  @Test
+  public void testCachedFile() throws IOException {
+
+    final DataFile file = new DataFile("http://localhost:"
+        + this.server.getAddress().getPort() + "/data/file.txt");
+
+    this.content = "first content".getBytes(StandardCharsets.UTF_8);
+    this.lastModified = 1000000000000L;
+    assertEquals("first content", read(new DataFile(file.getSource())));
+    assertEquals("first content", read(new DataFile(file.getSource())));
+
+    // The file has not been modified for the cache
+    this.content = "other content".getBytes(StandardCharsets.UTF_8);
+    assertEquals("first content", read(new DataFile(file.getSource())));
+
+    // The file has been modified
+    this.lastModified = 1100000000000L;
+    assertEquals("other content", read(new DataFile(file.getSource())));
+  }
+
+  @Test
+  public void testCacheMaxSize() throws IOException {
+
+    final String url =
+        "http://localhost:" + this.server.getAddress().getPort() + "/data/";
+
+    this.content = new byte[600 * 1024];
+    Arrays.fill(this.content, (byte) 'A');
+    this.lastModified = 1000000000000L;
+
+    read(new DataFile(url + "file1.txt"));
+    read(new DataFile(url + "file2.txt"));
+
+    // Only the last file must remain in the cache of 1 MB
+    long size = 0;
+    int count = 0;
+    for (File dir : this.cacheDir.listFiles()) {
+      for (File f : dir.listFiles()) {
+        if (!f.getName().startsWith(".")) {
+          size += f.length();
+          count++;
+          assertEquals("file2.txt", f.getName());
+        }
+      }
+    }
+
+    assertEquals(1, count);
+    assertTrue(size <= 1024 * 1024);
+  }
+
+  @Test
+  public void testConcurrentReads() throws Exception {
+
+    final String url =
+        "http://localhost:" + this.server.getAddress().getPort() + "/data/";
+
+    this.content = new byte[64 * 1024];
+    Arrays.fill(this.content, (byte) 'A');
+    this.lastModified = 1000000000000L;
+
+    final String expected = new String(this.content, StandardCharsets.UTF_8);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    final List<Future<String>> futures = new ArrayList<>();
+
+    try {
+
+      // Several threads read the same files at the same time
+      for (int i = 0; i < 32; i++) {
+
+        final DataFile file = new DataFile(url + "file" + (i % 4) + ".txt");
+
+        futures.add(executor.submit(new Callable<String>() {
+
+          @Override
+          public String call() throws IOException {
+
+            return read(file);
+          }
+        }));
+      }
+
+      for (Future<String> future : futures) {
+        assertEquals(expected, future.get());
+      }
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static String read(final DataFile file) throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (InputStream in = file.rawOpen()) {
+      FileUtils.copy(in, out);
+    }
+
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelGZIPInputStream;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+public class DataFilesTest {
+
+  private File dir;
+  private byte[] content;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.dir = Files.createTempDirectory("datafiles-test").toFile();
+
+    // Compressible data
+    final Random random = new Random(1);
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < 1536 * 1024) {
+      sb.append("@read").append(random.nextInt(100000)).append('\n');
+      for (int i = 0; i < 50; i++) {
+        sb.append("ACGT".charAt(random.nextInt(4)));
+      }
+      sb.append("\n+\n");
+      for (int i = 0; i < 50; i++) {
+        sb.append((char) ('!' + random.nextInt(40)));
+      }
+      sb.append('\n');
+    }
+    this.content = sb.toString().getBytes();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testRawCopy() throws IOException {
+
+    final File in = createFile("in.fq", false);
+    final File out = new File(this.dir, "out.fq");
+
+    DataFiles.rawCopy(new DataFile(in), new DataFile(out));
+
+    assertArrayEquals(this.content, Files.readAllBytes(out.toPath()));
+  }
+
+  @Test
+  public void testLinkOrCopy() throws IOException {
+
+    final File in = createFile("in.fq", false);
+    final File out = new File(this.dir, "out.fq");
+
+    DataFiles.linkOrCopy(new DataFile(in), new DataFile(out));
+
+    assertArrayEquals(this.content, Files.readAllBytes(out.toPath()));
+    assertFalse(Files.isSymbolicLink(out.toPath()));
+  }
+
+  @Test
+  public void testRecompression() throws IOException {
+
+    final File in = createFile("in.fq.gz", true);
+
+    for (int threads : new int[] {1, 4}) {
+
+      final File out = new File(this.dir, "out" + threads + ".fq");
+      final File gzOut = new File(this.dir, "out" + threads + ".fq.gz");
+
+      // Uncompress
+      DataFiles.copy(new DataFile(in), new DataFile(out), threads);
+      assertArrayEquals(this.content, Files.readAllBytes(out.toPath()));
+
+      // Compress
+      DataFiles.copy(new DataFile(out), new DataFile(gzOut), threads);
+      assertArrayEquals(this.content, readGZip(gzOut));
+    }
+  }
+
+  @Test
+  public void testParallelSymlinkOrCopy() throws IOException {
+
+    final List<DataFile> inputs = new ArrayList<>();
+    final List<DataFile> outputs = new ArrayList<>();
+
+    for (int i = 0; i < 4; i++) {
+      inputs.add(new DataFile(createFile("in" + i + ".fq.gz", true)));
+      outputs.add(new DataFile(new File(this.dir, "out" + i + ".fq")));
+    }
+
+    DataFiles.symlinkOrCopy(inputs, outputs, true, 4);
+
+    for (DataFile f : outputs) {
+      assertArrayEquals(this.content, Files.readAllBytes(f.toFile().toPath()));
+    }
+
+    // Same compression, a symbolic link is created
+    final File link = new File(this.dir, "link.fq.gz");
+    DataFiles.symlinkOrCopy(inputs.get(0), new DataFile(link), true, 4);
+    assertTrue(Files.isSymbolicLink(link.toPath()));
+    assertEquals(inputs.get(0).toFile().length(), link.length());
+  }
+
+  //
+  // Utility methods
+  //
+
+  private File createFile(final String filename, final boolean gzip)
+      throws IOException {
+
+    final File file = new File(this.dir, filename);
+
+    try (OutputStream out = gzip
+        ? new GZIPOutputStream(new FileOutputStream(file))
+        : new FileOutputStream(file)) {
+      out.write(this.content);
+    }
+
+    return file;
+  }
+
+  private static byte[] readGZip(final File file) throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (InputStream in =
+        new ParallelGZIPInputStream(new FileInputStream(file), 1)) {
+      FileUtils.append(in, out);
+    }
+
+    return out.toByteArray();
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.data.protocols;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntime;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.io.ParallelRangeDownloader;
+
+public class URLDataProtocolTest {
+
+  private static final int PART_SIZE = 1024 * 1024;
+
+  private HttpServer server;
+  private byte[] content;
+  private volatile String etag;
+  private volatile int modifyAfterRequests;
+  private final AtomicInteger rangeRequests = new AtomicInteger();
+
+  private int downloadThreads;
+  private int downloadPartSize;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.downloadThreads =
+        EoulsanRuntime.getSettings().getDownloadThreadsNumber();
+    this.downloadPartSize = EoulsanRuntime.getSettings().getDownloadPartSize();
+    EoulsanRuntime.getSettings().setDownloadThreadsNumber(2);
+    EoulsanRuntime.getSettings().setDownloadPartSize(1);
+
+    this.content = new byte[3 * PART_SIZE + 1000];
+    new Random(0).nextBytes(this.content);
+    this.etag = "\"v1\"";
+    this.modifyAfterRequests = Integer.MAX_VALUE;
+
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.server.createContext("/", new HttpHandler() {
+
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", etag);
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+          exchange.getResponseHeaders().add("Content-Length",
+              Integer.toString(content.length));
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+          return;
+        }
+
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        final String ifRange =
+            exchange.getRequestHeaders().getFirst("If-Range");
+
+        // The file is modified on the server after some range requests
+        if (range != null
+            && rangeRequests.incrementAndGet() > modifyAfterRequests) {
+          etag = "\"v2\"";
+        }
+
+        byte[] body = content;
+        int code = 200;
+
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+
+          final String[] fields = range.substring("bytes=".length()).split("-");
+          final int start = Integer.parseInt(fields[0]);
+          final int end = Integer.parseInt(fields[1]) + 1;
+          body = Arrays.copyOfRange(content, start, end);
+          code = 206;
+        }
+
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        } catch (IOException e) {
+          // The client may close the connection
+        }
+      }
+    });
+    this.server.start();
+  }
+
+  @After
+  public void tearDown() {
+
+    EoulsanRuntime.getSettings()
+        .setDownloadThreadsNumber(this.downloadThreads);
+    EoulsanRuntime.getSettings().setDownloadPartSize(this.downloadPartSize);
+
+    this.server.stop(0);
+  }
+
+  @Test
+  public void testRangeDownload() throws IOException {
+
+    final ParallelRangeDownloader downloader =
+        new HTTPURLDataProtocol().getRangeDownloader(createFile());
+    assertNotNull(downloader);
+
+    try (InputStream in = downloader.open()) {
+      assertArrayEquals(this.content, ByteStreams.toByteArray(in));
+    }
+  }
+
+  @Test
+  public void testModifiedFile() throws IOException {
+
+    final ParallelRangeDownloader downloader =
+        new HTTPURLDataProtocol().getRangeDownloader(createFile());
+    assertNotNull(downloader);
+
+    // The file is modified after the download of the first part
+    this.modifyAfterRequests = 1;
+
+    try (InputStream in = downloader.open()) {
+      ByteStreams.toByteArray(in);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("modified"));
+    }
+  }
+
+  @Test
+  public void testNoValidator() throws IOException {
+
+    // Without entity tag and modification date, the parts of a modified
+    // file cannot be detected
+    this.etag = "W/\"weak\"";
+
+    assertNull(new HTTPURLDataProtocol().getRangeDownloader(createFile()));
+  }
+
+  //
+  // Utility methods
+  //
+
+  private DataFile createFile() {
+
+    return new DataFile("http://localhost:"
+        + this.server.getAddress().getPort() + "/data/file.bin");
+  }
+
+}
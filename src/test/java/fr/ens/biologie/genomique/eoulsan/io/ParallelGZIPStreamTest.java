@@ -0,0 +1,200 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class ParallelGZIPStreamTest {
+
+  @Test
+  public void testCompression() throws IOException {
+
+    for (int size : new int[] {0, 1, BGZFBlocks.MAX_DATA_SIZE,
+        BGZFBlocks.MAX_DATA_SIZE + 1, 1000000}) {
+
+      final byte[] data = createData(size, new Random(size));
+      final byte[] compressed = parallelCompress(data, 4);
+
+      // The output must be readable by a standard gzip decompressor
+      assertArrayEquals(data, ByteStreams
+          .toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+      // And by the parallel decompressor
+      assertArrayEquals(data, parallelUncompress(compressed, 3));
+    }
+  }
+
+  @Test
+  public void testIncompressibleData() throws IOException {
+
+    final byte[] data = new byte[300000];
+    new Random(0).nextBytes(data);
+
+    assertArrayEquals(data, parallelUncompress(parallelCompress(data, 2), 2));
+  }
+
+  @Test
+  public void testStandardGZip() throws IOException {
+
+    final byte[] data = createData(500000, new Random(1));
+
+    assertArrayEquals(data, parallelUncompress(compress(data), 4));
+  }
+
+  @Test
+  public void testConcatenatedFiles() throws IOException {
+
+    final byte[] data1 = createData(200000, new Random(2));
+    final byte[] data2 = createData(100000, new Random(3));
+    final byte[] data3 = createData(150000, new Random(4));
+
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    compressed.write(parallelCompress(data1, 2));
+    compressed.write(compress(data2));
+    compressed.write(parallelCompress(data3, 2));
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(data1);
+    expected.write(data2);
+    expected.write(data3);
+
+    assertArrayEquals(expected.toByteArray(),
+        parallelUncompress(compressed.toByteArray(), 2));
+  }
+
+  @Test
+  public void testCorruptedData() throws IOException {
+
+    final byte[] compressed =
+        parallelCompress(createData(200000, new Random(5)), 2);
+
+    // Change the CRC of the first block
+    compressed[BGZFBlocks.blockSize(compressed, compressed.length) - 8]++;
+
+    try {
+      parallelUncompress(compressed, 2);
+      fail();
+    } catch (IOException e) {
+      // Expected exception
+    }
+  }
+
+  @Test
+  public void testInvalidData() throws IOException {
+
+    try {
+      parallelUncompress("not a gzip file".getBytes(), 2);
+      fail();
+    } catch (IOException e) {
+      // Expected exception
+    }
+  }
+
+  @Test
+  public void testSingleByteMethods() throws IOException {
+
+    final byte[] data = createData(100000, new Random(6));
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream out = new ParallelGZIPOutputStream(baos, 2)) {
+      for (byte b : data) {
+        out.write(b);
+      }
+    }
+
+    try (InputStream in = new ParallelGZIPInputStream(
+        new ByteArrayInputStream(baos.toByteArray()), 2)) {
+
+      for (byte b : data) {
+        assertEquals(b & 0xff, in.read());
+      }
+      assertEquals(-1, in.read());
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static byte[] createData(final int size, final Random random) {
+
+    final byte[] result = new byte[size];
+    final byte[] alphabet = "ACGTN\n".getBytes();
+
+    for (int i = 0; i < size; i++) {
+      result[i] = alphabet[random.nextInt(alphabet.length)];
+    }
+
+    return result;
+  }
+
+  private static byte[] compress(final byte[] data) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream out = new GZIPOutputStream(baos)) {
+      out.write(data);
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static byte[] parallelCompress(final byte[] data,
+      final int threads) throws IOException {
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    try (OutputStream out = new ParallelGZIPOutputStream(baos, threads)) {
+      out.write(data);
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static byte[] parallelUncompress(final byte[] data,
+      final int threads) throws IOException {
+
+    try (InputStream in =
+        new ParallelGZIPInputStream(new ByteArrayInputStream(data), threads)) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import fr.ens.biologie.genomique.eoulsan.io.ParallelRangeDownloader.RangeSource;
+
+public class ParallelRangeDownloaderTest {
+
+  @Test
+  public void testOpen() throws IOException {
+
+    for (int size : new int[] {0, 1, 1000, 1024, 1025, 100000}) {
+
+      final byte[] data = createData(size);
+      final ParallelRangeDownloader downloader = new ParallelRangeDownloader(
+          createSource(data), "test", size, 1024, 4);
+
+      try (InputStream in = downloader.open()) {
+        assertArrayEquals(data, ByteStreams.toByteArray(in));
+      }
+    }
+  }
+
+  @Test
+  public void testDownload() throws IOException {
+
+    final File file = File.createTempFile("range-download-", ".data");
+
+    try {
+      for (int size : new int[] {0, 1, 1024, 1025, 100000}) {
+
+        final byte[] data = createData(size);
+        new ParallelRangeDownloader(createSource(data), "test", size, 1024, 3)
+            .download(file);
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testRetry() throws IOException {
+
+    final byte[] data = createData(5000);
+    final RangeSource source = createSource(data);
+    final Set<Long> failedParts =
+        Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    // The first try of the third part fails in the middle of the part
+    final RangeSource flakySource = new RangeSource() {
+
+      @Override
+      public InputStream open(final long start, final long end)
+          throws IOException {
+
+        if (start == 2048 && failedParts.add(start)) {
+          return source.open(start, start + 100);
+        }
+
+        return source.open(start, end);
+      }
+    };
+
+    try (InputStream in =
+        new ParallelRangeDownloader(flakySource, "test", data.length, 1024, 2)
+            .open()) {
+      assertArrayEquals(data, ByteStreams.toByteArray(in));
+    }
+    assertEquals(1, failedParts.size());
+  }
+
+  @Test
+  public void testFailure() throws IOException {
+
+    final byte[] data = createData(5000);
+    final RangeSource source = createSource(data);
+    final AtomicInteger tries = new AtomicInteger();
+
+    final RangeSource brokenSource = new RangeSource() {
+
+      @Override
+      public InputStream open(final long start, final long end)
+          throws IOException {
+
+        if (start == 1024) {
+          tries.incrementAndGet();
+          throw new IOException("Connection refused");
+        }
+
+        return source.open(start, end);
+      }
+    };
+
+    final File file = File.createTempFile("range-download-", ".data");
+
+    try {
+      new ParallelRangeDownloader(brokenSource, "test", data.length, 1024, 2)
+          .download(file);
+      fail();
+    } catch (IOException e) {
+      assertEquals(3, tries.get());
+    } finally {
+      file.delete();
+    }
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static byte[] createData(final int size) {
+
+    final byte[] result = new byte[size];
+    new Random(size).nextBytes(result);
+
+    return result;
+  }
+
+  private static RangeSource createSource(final byte[] data) {
+
+    return new RangeSource() {
+
+      @Override
+      public InputStream open(final long start, final long end) {
+
+        return new ByteArrayInputStream(data, (int) start,
+            (int) (end - start));
+      }
+    };
+  }
+
+}
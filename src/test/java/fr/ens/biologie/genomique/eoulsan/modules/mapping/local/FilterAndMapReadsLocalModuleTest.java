@@ -0,0 +1,169 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.modules.mapping.local.FilterAndMapReadsLocalModule.AlignmentsFilterThread;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+public class FilterAndMapReadsLocalModuleTest {
+
+  private static final String COUNTER_GROUP = "test";
+  private static final int SAM_ENTRIES = 22;
+
+  private File dir;
+  private byte[] sam;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.dir = Files.createTempDirectory("filterandmap").toFile();
+
+    try (InputStream in = FilterAndMapReadsLocalModuleTest.class
+        .getResourceAsStream("/mapper_results_SE.sam")) {
+      this.sam = ByteStreams.toByteArray(in);
+    }
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testFilterAlignments() throws Exception {
+
+    final File outFile = new File(this.dir, "out.sam");
+    final CountingInputStream in =
+        new CountingInputStream(new ByteArrayInputStream(this.sam));
+
+    final AlignmentsFilterThread thread =
+        runFilter(in, outFile, Collections.<String, String> emptyMap(), 2);
+    thread.throwException();
+
+    assertEquals(this.sam.length, in.getCount());
+
+    int count = 0;
+    try (SamReader reader = SamReaderFactory.makeDefault().open(outFile)) {
+      for (SAMRecord r : reader) {
+        assertTrue(r.getReadName().length() > 0);
+        count++;
+      }
+    }
+    assertEquals(SAM_ENTRIES, count);
+  }
+
+  @Test
+  public void testInvalidFilter() throws Exception {
+
+    final CountingInputStream in =
+        new CountingInputStream(new ByteArrayInputStream(this.sam));
+
+    final AlignmentsFilterThread thread =
+        runFilter(in, new File(this.dir, "out.sam"),
+            Collections.singletonMap("nonexistingfilter", "true"), 2);
+
+    try {
+      thread.throwException();
+      fail();
+    } catch (IOException e) {
+      // Expected exception
+    }
+
+    // The output of the mapper must have been fully read
+    assertEquals(this.sam.length, in.getCount());
+  }
+
+  @Test
+  public void testRuntimeException() throws Exception {
+
+    final CountingInputStream in =
+        new CountingInputStream(new ByteArrayInputStream(this.sam));
+
+    // A null number of threads makes the filter fail with a runtime exception
+    final AlignmentsFilterThread thread =
+        runFilter(in, new File(this.dir, "out.sam"),
+            Collections.<String, String> emptyMap(), 0);
+
+    try {
+      thread.throwException();
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof RuntimeException);
+    }
+
+    // The output of the mapper must have been fully read
+    assertEquals(this.sam.length, in.getCount());
+  }
+
+  //
+  // Utility methods
+  //
+
+  private AlignmentsFilterThread runFilter(final InputStream in,
+      final File outFile, final Map<String, String> filterParameters,
+      final int threads) throws InterruptedException {
+
+    final AlignmentsFilterThread thread =
+        new AlignmentsFilterThread(in, new DataFile(outFile),
+            new LocalReporter(), COUNTER_GROUP, filterParameters, threads,
+            this.dir);
+
+    thread.start();
+    thread.join();
+
+    return thread;
+  }
+
+}
@@ -0,0 +1,262 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.modules.mapping.local;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.FastqFormat;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.MultiReadFilterBuilder;
+import fr.ens.biologie.genomique.eoulsan.bio.readsfilters.ReadFilter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import fr.ens.biologie.genomique.eoulsan.util.LocalReporter;
+
+public class MultiThreadReadsFilterTest {
+
+  private static final String COUNTER_GROUP = "reads_filtering";
+  private static final FastqFormat FASTQ_FORMAT = FastqFormat.FASTQ_SANGER;
+
+  // More than two batches of reads with an incomplete last batch
+  private static final int READ_COUNT = 25123;
+  private static final int THREADS = 4;
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    this.dir = Files.createTempDirectory("multithreadreadsfilter").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testSingleEnd() throws IOException, EoulsanException {
+
+    final DataFile inFile = new DataFile(new File(this.dir, "in.fq"));
+    writeFastq(inFile, new Random(1), "/1");
+
+    // Sequential filtering
+    final DataFile seqFile = new DataFile(new File(this.dir, "seq.fq"));
+    final LocalReporter seqReporter = new LocalReporter();
+    ReadsFilterLocalModule.filterFile(inFile, seqFile, seqReporter,
+        createFilter(seqReporter), FASTQ_FORMAT);
+
+    // Multi-threaded filtering
+    final DataFile mtFile = new DataFile(new File(this.dir, "mt.fq"));
+    final List<LocalReporter> mtReporters = new ArrayList<>();
+    final LocalReporter mtReporter = new LocalReporter();
+    new MultiThreadReadsFilter(createFilters(mtReporters), FASTQ_FORMAT,
+        mtReporter, COUNTER_GROUP).filter(inFile, mtFile);
+    mergeCounters(mtReporters, mtReporter);
+
+    assertSameFile(seqFile, mtFile);
+    assertSameCounters(seqReporter, mtReporter);
+  }
+
+  @Test
+  public void testPairedEnd() throws IOException, EoulsanException {
+
+    final DataFile inFile1 = new DataFile(new File(this.dir, "in_1.fq"));
+    final DataFile inFile2 = new DataFile(new File(this.dir, "in_2.fq"));
+    writeFastq(inFile1, new Random(2), "/1");
+    writeFastq(inFile2, new Random(3), "/2");
+
+    // Sequential filtering
+    final DataFile seqFile1 = new DataFile(new File(this.dir, "seq_1.fq"));
+    final DataFile seqFile2 = new DataFile(new File(this.dir, "seq_2.fq"));
+    final LocalReporter seqReporter = new LocalReporter();
+    ReadsFilterLocalModule.filterFile(inFile1, inFile2, seqFile1, seqFile2,
+        seqReporter, createFilter(seqReporter), FASTQ_FORMAT);
+
+    // Multi-threaded filtering
+    final DataFile mtFile1 = new DataFile(new File(this.dir, "mt_1.fq"));
+    final DataFile mtFile2 = new DataFile(new File(this.dir, "mt_2.fq"));
+    final List<LocalReporter> mtReporters = new ArrayList<>();
+    final LocalReporter mtReporter = new LocalReporter();
+    new MultiThreadReadsFilter(createFilters(mtReporters), FASTQ_FORMAT,
+        mtReporter, COUNTER_GROUP).filter(inFile1, inFile2, mtFile1, mtFile2);
+    mergeCounters(mtReporters, mtReporter);
+
+    assertSameFile(seqFile1, mtFile1);
+    assertSameFile(seqFile2, mtFile2);
+    assertSameCounters(seqReporter, mtReporter);
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Write a FASTQ file with random reads of random lengths and qualities.
+   * @param file file to write
+   * @param random random generator
+   * @param suffix suffix of the read names
+   * @throws IOException if an error occurs while writing the file
+   */
+  private static void writeFastq(final DataFile file, final Random random,
+      final String suffix) throws IOException {
+
+    final String bases = "ATGCN";
+
+    try (Writer writer = new OutputStreamWriter(file.create(),
+        StandardCharsets.US_ASCII)) {
+
+      for (int i = 0; i < READ_COUNT; i++) {
+
+        final int length = 10 + random.nextInt(60);
+        final StringBuilder sequence = new StringBuilder(length);
+        final StringBuilder quality = new StringBuilder(length);
+
+        for (int j = 0; j < length; j++) {
+          sequence.append(bases.charAt(random.nextInt(bases.length())));
+          quality.append((char) ('!' + random.nextInt(41)));
+        }
+
+        // Add a polyN tail to some reads to trim them
+        if (random.nextInt(4) == 0) {
+          for (int j = length / 2; j < length; j++) {
+            sequence.setCharAt(j, 'N');
+          }
+        }
+
+        writer.write("@read" + i + suffix + '\n');
+        writer.write(sequence.toString() + '\n');
+        writer.write("+\n");
+        writer.write(quality.toString() + '\n');
+      }
+    }
+  }
+
+  /**
+   * Create a filter that modifies and rejects reads.
+   * @param reporter reporter of the filter
+   * @return a new filter
+   * @throws EoulsanException if an error occurs while creating the filter
+   */
+  private static ReadFilter createFilter(final LocalReporter reporter)
+      throws EoulsanException {
+
+    final MultiReadFilterBuilder builder = new MultiReadFilterBuilder();
+    builder.addParameter("trimpolynend", "");
+    builder.addParameter("length.minimal.length.threshold", "30");
+    builder.addParameter("quality.threshold", "20");
+
+    return builder.getReadFilter(reporter, COUNTER_GROUP);
+  }
+
+  /**
+   * Create a filter and a reporter for each thread.
+   * @param reporters list where to add the reporters of the filters
+   * @return a list of filters
+   * @throws EoulsanException if an error occurs while creating the filters
+   */
+  private static List<ReadFilter> createFilters(
+      final List<LocalReporter> reporters) throws EoulsanException {
+
+    final List<ReadFilter> result = new ArrayList<>();
+
+    for (int i = 0; i < THREADS; i++) {
+
+      final LocalReporter reporter = new LocalReporter();
+      result.add(createFilter(reporter));
+      reporters.add(reporter);
+    }
+
+    return result;
+  }
+
+  private static void mergeCounters(final List<LocalReporter> reporters,
+      final LocalReporter reporter) {
+
+    for (LocalReporter r : reporters) {
+      for (String counterName : r.getCounterNames(COUNTER_GROUP)) {
+        reporter.incrCounter(COUNTER_GROUP, counterName,
+            r.getCounterValue(COUNTER_GROUP, counterName));
+      }
+    }
+  }
+
+  private static void assertSameFile(final DataFile expected,
+      final DataFile actual) {
+
+    final byte[] expectedBytes;
+    final byte[] actualBytes;
+
+    try {
+      expectedBytes = Files.readAllBytes(expected.toFile().toPath());
+      actualBytes = Files.readAllBytes(actual.toFile().toPath());
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+
+    assertTrue(expectedBytes.length > 0);
+    assertArrayEquals(expectedBytes, actualBytes);
+  }
+
+  private static void assertSameCounters(final LocalReporter expected,
+      final LocalReporter actual) {
+
+    assertEquals(expected.getCounterGroups(), actual.getCounterGroups());
+
+    for (String group : expected.getCounterGroups()) {
+
+      assertEquals(expected.getCounterNames(group),
+          actual.getCounterNames(group));
+
+      for (String counterName : expected.getCounterNames(group)) {
+        assertEquals(group + "/" + counterName,
+            expected.getCounterValue(group, counterName),
+            actual.getCounterValue(group, counterName));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,249 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+
+public class BAMSplitterTest {
+
+  // Enough alignments to fill several BGZF blocks
+  private static final int ENTRIES = 20000;
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+    this.dir = Files.createTempDirectory("bamsplitter").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testSplitByMaxEntries() throws Exception {
+
+    final DataFile inFile = createBAM();
+
+    final List<DataFile> chunks = split(inFile, "max.entries", "6000");
+
+    assertEquals(Arrays.asList(6000, 6000, 6000, 2000), countEntries(chunks));
+    assertEquals(readNames(Arrays.asList(inFile)), readNames(chunks));
+  }
+
+  @Test
+  public void testSplitByMaxEntriesWithThreads() throws Exception {
+
+    final DataFile inFile = createBAM();
+
+    final List<DataFile> chunks =
+        split(inFile, "max.entries", "7000", "threads", "3");
+
+    assertEquals(Arrays.asList(7000, 7000, 6000), countEntries(chunks));
+    assertEquals(readNames(Arrays.asList(inFile)), readNames(chunks));
+  }
+
+  @Test
+  public void testSplitByChunks() throws Exception {
+
+    final DataFile inFile = createBAM();
+
+    final List<DataFile> chunks =
+        split(inFile, "chunks", "4", "threads", "2");
+
+    // The chunks are balanced by the offsets of the BGZF blocks, so the
+    // number of entries of each chunk is only approximately the same
+    assertEquals(4, chunks.size());
+    for (int count : countEntries(chunks)) {
+      assertTrue(count > 0);
+    }
+
+    assertEquals(readNames(Arrays.asList(inFile)), readNames(chunks));
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Create a coordinate sorted BAM file.
+   * @return the created file
+   * @throws IOException if an error occurs while creating the file
+   */
+  private DataFile createBAM() throws IOException {
+
+    final DataFile result = new DataFile(new File(this.dir, "input.bam"));
+
+    final SAMFileHeader header = new SAMFileHeader();
+    header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+    header.addSequence(new SAMSequenceRecord("chr1", 10000000));
+    header.addSequence(new SAMSequenceRecord("chr2", 10000000));
+
+    try (SAMFileWriter writer = new SAMFileWriterFactory()
+        .makeBAMWriter(header, true, result.create())) {
+
+      for (int i = 0; i < ENTRIES; i++) {
+
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName("read" + i);
+        record.setReferenceIndex(i < ENTRIES / 2 ? 0 : 1);
+        record.setAlignmentStart(1 + (i % (ENTRIES / 2)) * 100);
+        record.setMappingQuality(60);
+        record.setCigarString("36M");
+        record.setReadString("ACGTACGTTGCAACGTACGTTGCAACGTACGTTGCA");
+        record.setBaseQualityString("IIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIII");
+        record.setAttribute("NM", i % 3);
+
+        writer.addAlignment(record);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Split a file.
+   * @param inFile the file to split
+   * @param parameters names and values of the parameters of the splitter
+   * @return a list with the chunk files
+   * @throws Exception if an error occurs while splitting the file
+   */
+  private List<DataFile> split(final DataFile inFile,
+      final String... parameters) throws Exception {
+
+    final Set<Parameter> conf = new HashSet<>();
+    for (int i = 0; i < parameters.length; i += 2) {
+      conf.add(new Parameter(parameters[i], parameters[i + 1]));
+    }
+
+    final Splitter splitter = new BAMSplitter();
+    splitter.configure(conf);
+
+    final List<DataFile> result = new ArrayList<>();
+    splitter.split(inFile, new Iterator<DataFile>() {
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public DataFile next() {
+
+        final DataFile file =
+            new DataFile(new File(dir, "chunk" + result.size() + ".bam"));
+        result.add(file);
+
+        return file;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+
+    return result;
+  }
+
+  private static List<Integer> countEntries(final List<DataFile> files)
+      throws IOException {
+
+    final List<Integer> result = new ArrayList<>();
+
+    for (DataFile file : files) {
+      result.add(readNames(Arrays.asList(file)).size());
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the names of the alignments of files. The header of each file is
+   * checked.
+   * @param files the files to read
+   * @return a list with the names of the alignments
+   * @throws IOException if an error occurs while reading the files
+   */
+  private static List<String> readNames(final List<DataFile> files)
+      throws IOException {
+
+    final List<String> result = new ArrayList<>();
+
+    for (DataFile file : files) {
+
+      try (SamReader reader = SamReaderFactory.makeDefault()
+          .validationStringency(ValidationStringency.STRICT)
+          .open(file.toFile())) {
+
+        final SAMFileHeader header = reader.getFileHeader();
+        assertEquals(SAMFileHeader.SortOrder.coordinate,
+            header.getSortOrder());
+        assertEquals(2, header.getSequenceDictionary().size());
+
+        for (SAMRecord record : reader) {
+          result.add(record.getReadName());
+        }
+      }
+    }
+
+    return result;
+  }
+
+}
@@ -0,0 +1,138 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.ChunkWriterPool.ChunkWriter;
+import fr.ens.biologie.genomique.eoulsan.splitermergers.ChunkWriterPool.FileRangeWriter;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+public class ChunkWriterPoolTest {
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+    this.dir = Files.createTempDirectory("chunkwriterpool").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testFileRangeWriter() throws IOException {
+
+    final File inFile = new File(this.dir, "input.txt");
+    Files.write(inFile.toPath(),
+        "0123456789".getBytes(StandardCharsets.UTF_8));
+
+    try (ChunkWriterPool pool = new ChunkWriterPool(2)) {
+
+      pool.submit(newOutputFile("chunk0"),
+          new FileRangeWriter(inFile, null, 0, 4));
+      pool.submit(newOutputFile("chunk1"), new FileRangeWriter(inFile,
+          "H:".getBytes(StandardCharsets.UTF_8), 4, 10));
+      pool.submit(newOutputFile("chunk2"),
+          new FileRangeWriter(inFile, null, 10, 10));
+    }
+
+    assertEquals("0123", read("chunk0"));
+    assertEquals("H:456789", read("chunk1"));
+    assertEquals("", read("chunk2"));
+  }
+
+  @Test
+  public void testWriterError() throws IOException {
+
+    final ChunkWriterPool pool = new ChunkWriterPool(1);
+
+    pool.submit(newOutputFile("chunk0"), new ChunkWriter() {
+
+      @Override
+      public void write(final OutputStream out) throws IOException {
+        throw new IOException("Expected error");
+      }
+    });
+
+    try {
+      pool.close();
+      fail();
+    } catch (IOException e) {
+      assertEquals("Expected error", e.getMessage());
+    }
+
+    // The pool is closed
+    try {
+      pool.submit(newOutputFile("chunk1"),
+          new FileRangeWriter(new File(this.dir, "input.txt"), null, 0, 0));
+      fail();
+    } catch (IOException e) {
+      // Expected exception
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreadNumber() {
+
+    new ChunkWriterPool(0);
+  }
+
+  //
+  // Utility methods
+  //
+
+  private DataFile newOutputFile(final String filename) {
+
+    return new DataFile(new File(this.dir, filename));
+  }
+
+  private String read(final String filename) throws IOException {
+
+    return new String(Files.readAllBytes(new File(this.dir, filename).toPath()),
+        StandardCharsets.UTF_8);
+  }
+
+}
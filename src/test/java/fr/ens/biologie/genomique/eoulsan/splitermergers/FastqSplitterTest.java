@@ -0,0 +1,270 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.eoulsan.bio.ReadSequence;
+import fr.ens.biologie.genomique.eoulsan.bio.io.FastqReader;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+
+public class FastqSplitterTest {
+
+  private static final int ENTRIES = 250;
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+    this.dir = Files.createTempDirectory("fastqsplitter").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testSplitByMaxEntries() throws Exception {
+
+    final DataFile inFile = createFastq("reads.fq", 1, true);
+
+    final List<DataFile> chunks =
+        split(inFile, "chunk", ".fq", "max.entries", "100", "threads", "2");
+
+    assertEquals(Arrays.asList(100, 100, 50), countEntries(chunks));
+
+    // The concatenation of the chunks must be the input file, including the
+    // empty lines between the entries
+    final ByteArrayOutputStream concat = new ByteArrayOutputStream();
+    for (DataFile chunk : chunks) {
+      concat.write(Files.readAllBytes(chunk.toFile().toPath()));
+    }
+    assertArrayEquals(Files.readAllBytes(inFile.toFile().toPath()),
+        concat.toByteArray());
+  }
+
+  @Test
+  public void testSplitPairedEndByChunks() throws Exception {
+
+    final DataFile inFile1 = createFastq("reads_1.fq", 1, false);
+    final DataFile inFile2 = createFastq("reads_2.fq", 2, false);
+
+    final List<DataFile> chunks1 =
+        split(inFile1, "chunk_1_", ".fq", "chunks", "4", "threads", "3");
+    final List<DataFile> chunks2 =
+        split(inFile2, "chunk_2_", ".fq", "chunks", "4", "threads", "3");
+
+    assertEquals(Arrays.asList(63, 63, 63, 61), countEntries(chunks1));
+    assertEquals(countEntries(chunks1), countEntries(chunks2));
+
+    // The mates of the reads must be in chunks with the same index
+    for (int i = 0; i < chunks1.size(); i++) {
+
+      final List<String> ids1 = readIds(chunks1.get(i));
+      final List<String> ids2 = readIds(chunks2.get(i));
+
+      assertEquals(ids1.size(), ids2.size());
+      for (int j = 0; j < ids1.size(); j++) {
+        assertEquals(ids1.get(j), ids2.get(j));
+      }
+    }
+  }
+
+  @Test
+  public void testSplitCompressedFile() throws Exception {
+
+    final DataFile inFile = createFastq("reads.fq.gz", 1, false);
+
+    final List<DataFile> chunks =
+        split(inFile, "chunk", ".fq.gz", "chunks", "3", "threads", "2");
+
+    assertEquals(Arrays.asList(84, 84, 82), countEntries(chunks));
+
+    final List<String> ids = new ArrayList<>();
+    for (DataFile chunk : chunks) {
+      ids.addAll(readIds(chunk));
+    }
+    assertEquals(readIds(inFile), ids);
+  }
+
+  @Test(expected = EoulsanException.class)
+  public void testInvalidConfiguration() throws EoulsanException {
+
+    final Set<Parameter> conf = new HashSet<>();
+    conf.add(new Parameter("max.entries", "100"));
+    conf.add(new Parameter("chunks", "2"));
+
+    new FastqSplitter().configure(conf);
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Create a FASTQ file.
+   * @param filename name of the file
+   * @param mate mate of the reads
+   * @param blankLines add empty lines between the entries
+   * @return the created file
+   * @throws IOException if an error occurs while creating the file
+   */
+  private DataFile createFastq(final String filename, final int mate,
+      final boolean blankLines) throws IOException {
+
+    final DataFile result = new DataFile(new File(this.dir, filename));
+
+    try (PrintStream out = new PrintStream(result.create())) {
+
+      for (int i = 0; i < ENTRIES; i++) {
+
+        out.print(ReadSequence.toFastQ("read" + i + "/" + mate,
+            i % 2 == 0 ? "ATGCATGCAA" : "GGCCTTAAGGCCTTAA",
+            i % 2 == 0 ? "IIIIIIIIII" : "IIIIIIIIIIIIIIII"));
+        out.print('\n');
+
+        if (blankLines) {
+          out.print('\n');
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Split a file.
+   * @param inFile the file to split
+   * @param prefix prefix of the chunk files
+   * @param suffix suffix of the chunk files
+   * @param parameters names and values of the parameters of the splitter
+   * @return a list with the chunk files
+   * @throws Exception if an error occurs while splitting the file
+   */
+  private List<DataFile> split(final DataFile inFile, final String prefix,
+      final String suffix, final String... parameters) throws Exception {
+
+    final Set<Parameter> conf = new HashSet<>();
+    for (int i = 0; i < parameters.length; i += 2) {
+      conf.add(new Parameter(parameters[i], parameters[i + 1]));
+    }
+
+    final Splitter splitter = new FastqSplitter();
+    splitter.configure(conf);
+
+    final List<DataFile> result = new ArrayList<>();
+    splitter.split(inFile, new Iterator<DataFile>() {
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public DataFile next() {
+
+        final DataFile file =
+            new DataFile(new File(dir, prefix + result.size() + suffix));
+        result.add(file);
+
+        return file;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+
+    return result;
+  }
+
+  private static List<Integer> countEntries(final List<DataFile> files)
+      throws IOException {
+
+    final List<Integer> result = new ArrayList<>();
+
+    for (DataFile file : files) {
+      result.add(readIds(file).size());
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the identifiers of the reads of a file, without the mate suffix.
+   * @param file the file to read
+   * @return a list with the identifiers of the reads
+   * @throws IOException if an error occurs while reading the file
+   */
+  private static List<String> readIds(final DataFile file)
+      throws IOException {
+
+    final List<String> result = new ArrayList<>();
+
+    try (InputStream in = file.open();
+        FastqReader reader = new FastqReader(in)) {
+
+      for (ReadSequence read : reader) {
+        final String name = read.getName();
+        result.add(name.substring(0, name.indexOf('/')));
+      }
+      reader.throwException();
+    } catch (BadBioEntryException e) {
+      throw new IOException(e);
+    }
+
+    return result;
+  }
+
+}
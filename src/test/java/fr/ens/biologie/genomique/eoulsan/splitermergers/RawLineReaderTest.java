@@ -0,0 +1,135 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RawLineReaderTest {
+
+  @Test
+  public void testNext() throws IOException {
+
+    final String input = "@read1\nACGT\n\n+\r\nIIII";
+
+    try (RawLineReader reader = newReader(input, 0)) {
+
+      assertTrue(reader.next());
+      assertEquals(0, reader.getLineOffset());
+      assertEquals(7, reader.getLineEndOffset());
+      assertEquals('@', reader.getFirstByte());
+      assertFalse(reader.isBlank());
+
+      assertTrue(reader.next());
+      assertEquals(7, reader.getLineOffset());
+      assertEquals('A', reader.getFirstByte());
+
+      assertTrue(reader.next());
+      assertEquals(12, reader.getLineOffset());
+      assertTrue(reader.isBlank());
+      assertEquals(-1, reader.getFirstByte());
+
+      assertTrue(reader.next());
+      assertEquals(13, reader.getLineOffset());
+      assertEquals(16, reader.getLineEndOffset());
+
+      // Last line without end of line character
+      assertTrue(reader.next());
+      assertEquals(16, reader.getLineOffset());
+      assertEquals(20, reader.getLineEndOffset());
+
+      assertFalse(reader.next());
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void testOffset() throws IOException {
+
+    try (RawLineReader reader = newReader("AC\nGT\n", 1000)) {
+
+      assertTrue(reader.next());
+      assertEquals(1000, reader.getLineOffset());
+      assertTrue(reader.next());
+      assertEquals(1003, reader.getLineOffset());
+      assertEquals(1006, reader.getLineEndOffset());
+    }
+  }
+
+  @Test
+  public void testWriteLongLines() throws IOException {
+
+    // Lines longer than the buffer of the reader
+    final char[] line = new char[3 * 1024 * 1024];
+    Arrays.fill(line, 'A');
+    final String input =
+        "first\n" + new String(line) + "\n" + new String(line) + "\nlast\n";
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int count = 0;
+    long lineOffset = 0;
+
+    try (RawLineReader reader = newReader(input, 0)) {
+
+      while (reader.next()) {
+        assertEquals(lineOffset, reader.getLineOffset());
+        reader.writeLine(out);
+        lineOffset = reader.getLineEndOffset();
+        count++;
+      }
+    }
+
+    assertEquals(4, count);
+    assertEquals(input.length(), lineOffset);
+    assertEquals(input, new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullInput() {
+
+    new RawLineReader(null);
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static RawLineReader newReader(final String s, final long offset) {
+
+    return new RawLineReader(
+        new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)), offset);
+  }
+
+}
@@ -0,0 +1,305 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+
+public class SAMRecordMergerTest {
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+    this.dir = Files.createTempDirectory("samrecordmerger").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testMergeSortedFiles() throws Exception {
+
+    for (int threads = 1; threads <= 2; threads++) {
+
+      // Interleaved positions on two chromosomes
+      final List<String> names1 = new ArrayList<>();
+      final List<Integer> positions1 = new ArrayList<>();
+      final List<String> names2 = new ArrayList<>();
+      final List<Integer> positions2 = new ArrayList<>();
+      for (int i = 0; i < 3000; i++) {
+        names1.add("a" + i);
+        positions1.add(1 + i * 20);
+        names2.add("b" + i);
+        positions2.add(11 + i * 20);
+      }
+
+      final DataFile inFile1 = createBAM("input1.bam", SortOrder.coordinate,
+          Arrays.asList("chr1", "chr2"), names1, positions1);
+      final DataFile inFile2 = createBAM("input2.bam", SortOrder.coordinate,
+          Arrays.asList("chr1", "chr2"), names2, positions2);
+      final DataFile outFile = new DataFile(this.dir, "output.bam");
+
+      mergeBAM(outFile, threads, inFile1, inFile2);
+
+      final List<SAMRecord> records = new ArrayList<>();
+      final SAMFileHeader header = read(outFile, records);
+
+      assertEquals(SortOrder.coordinate, header.getSortOrder());
+      assertEquals(6000, records.size());
+
+      for (int i = 1; i < records.size(); i++) {
+
+        final SAMRecord previous = records.get(i - 1);
+        final SAMRecord current = records.get(i);
+
+        assertTrue(previous.getReferenceIndex() < current.getReferenceIndex()
+            || previous.getReferenceIndex().equals(current.getReferenceIndex())
+                && previous.getAlignmentStart() < current
+                    .getAlignmentStart());
+      }
+    }
+  }
+
+  @Test
+  public void testMergeMismatchedDictionaries() throws Exception {
+
+    final DataFile inFile1 =
+        createBAM("input1.bam", SortOrder.coordinate, Arrays.asList("chr1"),
+            Arrays.asList("a0", "a1", "a2"), Arrays.asList(100, 200, 300));
+    final DataFile inFile2 =
+        createBAM("input2.bam", SortOrder.coordinate, Arrays.asList("chrA"),
+            Arrays.asList("b0", "b1"), Arrays.asList(50, 150));
+
+    for (String extension : Arrays.asList(".sam", ".bam")) {
+
+      final DataFile outFile = new DataFile(this.dir, "output" + extension);
+
+      final Merger merger =
+          extension.equals(".sam") ? new SAMMerger() : new BAMMerger();
+      merger.configure(Collections.<Parameter> emptySet());
+      merger.merge(Arrays.asList(inFile1, inFile2).iterator(), outFile);
+
+      final List<SAMRecord> records = new ArrayList<>();
+      final SAMFileHeader header = read(outFile, records);
+
+      // The files are concatenated and the output is not sorted
+      assertEquals(SortOrder.unsorted, header.getSortOrder());
+      assertEquals(Arrays.asList("a0", "a1", "a2", "b0", "b1"),
+          names(records));
+
+      // The output header contains the sequences of all the inputs
+      assertEquals(2, header.getSequenceDictionary().size());
+      assertEquals("chr1", records.get(0).getReferenceName());
+      assertEquals("chrA", records.get(4).getReferenceName());
+    }
+  }
+
+  @Test
+  public void testStableTies() throws Exception {
+
+    final List<Integer> positions = Arrays.asList(100, 100, 200, 300, 300);
+
+    final DataFile inFile1 =
+        createBAM("input1.bam", SortOrder.coordinate, Arrays.asList("chr1"),
+            Arrays.asList("a0", "a1", "a2", "a3", "a4"), positions);
+    final DataFile inFile2 =
+        createBAM("input2.bam", SortOrder.coordinate, Arrays.asList("chr1"),
+            Arrays.asList("b0", "b1", "b2", "b3", "b4"), positions);
+    final DataFile outFile = new DataFile(this.dir, "output.bam");
+
+    mergeBAM(outFile, 2, inFile1, inFile2);
+
+    final List<SAMRecord> records = new ArrayList<>();
+    final SAMFileHeader header = read(outFile, records);
+
+    // For the same position, the records keep the order of the inputs
+    assertEquals(SortOrder.coordinate, header.getSortOrder());
+    assertEquals(Arrays.asList("a0", "a1", "b0", "b1", "a2", "b2", "a3", "a4",
+        "b3", "b4"), names(records));
+  }
+
+  @Test
+  public void testGetCommonSortOrder() {
+
+    final SAMFileHeader coordinate = newHeader(SortOrder.coordinate, "chr1");
+    final SAMFileHeader other = newHeader(SortOrder.coordinate, "chr2");
+    final SAMFileHeader queryname = newHeader(SortOrder.queryname, "chr1");
+    final SAMFileHeader queryname2 = newHeader(SortOrder.queryname, "chr2");
+    final SAMFileHeader unsorted = newHeader(SortOrder.unsorted, "chr1");
+
+    assertNull(SAMRecordMerger
+        .getCommonSortOrder(Collections.<SAMFileHeader> emptyList()));
+    assertEquals(SortOrder.coordinate,
+        SAMRecordMerger.getCommonSortOrder(Arrays.asList(coordinate)));
+    assertNull(
+        SAMRecordMerger.getCommonSortOrder(Arrays.asList(coordinate, other)));
+    assertNull(SAMRecordMerger
+        .getCommonSortOrder(Arrays.asList(coordinate, queryname)));
+    assertEquals(SortOrder.queryname, SAMRecordMerger
+        .getCommonSortOrder(Arrays.asList(queryname, queryname2)));
+    assertNull(
+        SAMRecordMerger.getCommonSortOrder(Arrays.asList(unsorted, unsorted)));
+  }
+
+  //
+  // Utility methods
+  //
+
+  private static SAMFileHeader newHeader(final SortOrder sortOrder,
+      final String... sequenceNames) {
+
+    final SAMFileHeader result = new SAMFileHeader();
+    result.setSortOrder(sortOrder);
+
+    for (String sequenceName : sequenceNames) {
+      result.addSequence(new SAMSequenceRecord(sequenceName, 100000));
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a BAM file. The records are on the first sequence of the
+   * dictionary and the records after the half of the list on the last one.
+   * @param filename name of the file
+   * @param sortOrder sort order of the file
+   * @param sequenceNames names of the sequences of the dictionary
+   * @param readNames names of the records
+   * @param positions positions of the records
+   * @return the created file
+   * @throws IOException if an error occurs while creating the file
+   */
+  private DataFile createBAM(final String filename, final SortOrder sortOrder,
+      final List<String> sequenceNames, final List<String> readNames,
+      final List<Integer> positions) throws IOException {
+
+    final DataFile result = new DataFile(this.dir, filename);
+    final SAMFileHeader header = newHeader(sortOrder,
+        sequenceNames.toArray(new String[sequenceNames.size()]));
+
+    try (SAMFileWriter writer = new SAMFileWriterFactory()
+        .makeBAMWriter(header, true, result.create())) {
+
+      for (int i = 0; i < readNames.size(); i++) {
+
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName(readNames.get(i));
+        record.setReferenceIndex(
+            i < readNames.size() / 2 ? 0 : sequenceNames.size() - 1);
+        record.setAlignmentStart(positions.get(i));
+        record.setMappingQuality(60);
+        record.setCigarString("4M");
+        record.setReadString("ACGT");
+        record.setBaseQualityString("IIII");
+
+        writer.addAlignment(record);
+      }
+    }
+
+    return result;
+  }
+
+  private static void mergeBAM(final DataFile outFile, final int threads,
+      final DataFile... inFiles) throws EoulsanException, IOException {
+
+    final Set<Parameter> conf = new HashSet<>();
+    conf.add(new Parameter("threads", "" + threads));
+
+    final Merger merger = new BAMMerger();
+    merger.configure(conf);
+    merger.merge(Arrays.asList(inFiles).iterator(), outFile);
+  }
+
+  /**
+   * Read a SAM or a BAM file.
+   * @param file file to read
+   * @param records list where store the records of the file
+   * @return the header of the file
+   * @throws IOException if an error occurs while reading the file
+   */
+  private static SAMFileHeader read(final DataFile file,
+      final List<SAMRecord> records) throws IOException {
+
+    try (SamReader reader = SamReaderFactory.makeDefault()
+        .validationStringency(ValidationStringency.STRICT)
+        .open(file.toFile())) {
+
+      for (SAMRecord record : reader) {
+        records.add(record);
+      }
+
+      return reader.getFileHeader();
+    }
+  }
+
+  private static List<String> names(final List<SAMRecord> records) {
+
+    final List<String> result = new ArrayList<>();
+
+    for (SAMRecord record : records) {
+      result.add(record.getReadName());
+    }
+
+    return result;
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.core.Parameter;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+import fr.ens.biologie.genomique.eoulsan.util.FileUtils;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+
+public class SAMSplitterTest {
+
+  private static final int ENTRIES = 100;
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+    this.dir = Files.createTempDirectory("samsplitter").toFile();
+  }
+
+  @After
+  public void tearDown() {
+
+    FileUtils.recursiveDelete(this.dir);
+  }
+
+  @Test
+  public void testSplitByMaxEntries() throws Exception {
+
+    final DataFile inFile = createSAM("alignments.sam");
+
+    final List<DataFile> chunks =
+        split(inFile, ".sam", "max.entries", "30", "threads", "2");
+
+    assertEquals(Arrays.asList(30, 30, 30, 10), countEntries(chunks));
+    assertEquals(readNames(Arrays.asList(inFile)), readNames(chunks));
+  }
+
+  @Test
+  public void testSplitByChunks() throws Exception {
+
+    final DataFile inFile = createSAM("alignments.sam");
+
+    final List<DataFile> chunks =
+        split(inFile, ".sam", "chunks", "3", "threads", "3");
+
+    // The chunks are balanced by size, so the number of entries of each chunk
+    // is only approximately the same
+    assertEquals(3, chunks.size());
+    for (int count : countEntries(chunks)) {
+      assertTrue(count > 20 && count < 45);
+    }
+
+    // The alignments must not have been cut
+    assertEquals(readNames(Arrays.asList(inFile)), readNames(chunks));
+  }
+
+  @Test
+  public void testSplitCompressedFile() throws Exception {
+
+    final DataFile inFile = createSAM("alignments.sam.gz");
+
+    final List<DataFile> chunks =
+        split(inFile, ".sam.gz", "chunks", "4", "threads", "2");
+
+    assertEquals(Arrays.asList(25, 25, 25, 25), countEntries(chunks));
+    assertEquals(readNames(Arrays.asList(inFile)), readNames(chunks));
+  }
+
+  //
+  // Utility methods
+  //
+
+  /**
+   * Create a SAM file. The length of the alignments varies, so the chunks
+   * defined by byte offsets do not start at the beginning of a line.
+   * @param filename name of the file
+   * @return the created file
+   * @throws IOException if an error occurs while creating the file
+   */
+  private DataFile createSAM(final String filename) throws IOException {
+
+    final DataFile result = new DataFile(new File(this.dir, filename));
+
+    try (PrintStream out = new PrintStream(result.create())) {
+
+      out.print("@HD\tVN:1.4\tSO:unsorted\n");
+      out.print("@SQ\tSN:chr1\tLN:100000\n");
+      out.print("@PG\tID:test\tPN:test\n");
+
+      final StringBuilder sequence = new StringBuilder();
+      final StringBuilder quality = new StringBuilder();
+
+      for (int i = 0; i < ENTRIES; i++) {
+
+        final int length = 10 + i % 37;
+        sequence.setLength(0);
+        quality.setLength(0);
+        for (int j = 0; j < length; j++) {
+          sequence.append("ACGT".charAt((i + j) % 4));
+          quality.append('I');
+        }
+
+        out.print("read"
+            + i + "\t0\tchr1\t" + (100 + i * 10) + "\t60\t" + length
+            + "M\t*\t0\t0\t" + sequence + "\t" + quality + "\n");
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Split a file.
+   * @param inFile the file to split
+   * @param suffix suffix of the chunk files
+   * @param parameters names and values of the parameters of the splitter
+   * @return a list with the chunk files
+   * @throws Exception if an error occurs while splitting the file
+   */
+  private List<DataFile> split(final DataFile inFile, final String suffix,
+      final String... parameters) throws Exception {
+
+    final Set<Parameter> conf = new HashSet<>();
+    for (int i = 0; i < parameters.length; i += 2) {
+      conf.add(new Parameter(parameters[i], parameters[i + 1]));
+    }
+
+    final Splitter splitter = new SAMSplitter();
+    splitter.configure(conf);
+
+    final List<DataFile> result = new ArrayList<>();
+    splitter.split(inFile, new Iterator<DataFile>() {
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public DataFile next() {
+
+        final DataFile file =
+            new DataFile(new File(dir, "chunk" + result.size() + suffix));
+        result.add(file);
+
+        return file;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+
+    return result;
+  }
+
+  private static List<Integer> countEntries(final List<DataFile> files)
+      throws IOException {
+
+    final List<Integer> result = new ArrayList<>();
+
+    for (DataFile file : files) {
+      result.add(readNames(Arrays.asList(file)).size());
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the names of the alignments of files. The header of each file is
+   * checked.
+   * @param files the files to read
+   * @return a list with the names of the alignments
+   * @throws IOException if an error occurs while reading the files
+   */
+  private static List<String> readNames(final List<DataFile> files)
+      throws IOException {
+
+    final List<String> result = new ArrayList<>();
+
+    for (DataFile file : files) {
+
+      try (SamReader reader = SamReaderFactory.makeDefault()
+          .validationStringency(ValidationStringency.STRICT)
+          .open(SamInputResource.of(file.open()))) {
+
+        assertEquals(1, reader.getFileHeader().getSequenceDictionary().size());
+        assertEquals(1, reader.getFileHeader().getProgramRecords().size());
+
+        for (SAMRecord record : reader) {
+          result.add(record.getReadName());
+        }
+      }
+    }
+
+    return result;
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *                  Eoulsan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License version 2.1 or
+ * later and CeCILL-C. This should be distributed with the code.
+ * If you do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/lgpl-2.1.txt
+ *      http://www.cecill.info/licences/Licence_CeCILL-C_V1-en.txt
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École normale supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Eoulsan project and its aims,
+ * or to join the Eoulsan Google group, visit the home page
+ * at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/eoulsan
+ *
+ */
+
+
+package fr.ens.biologie.genomique.eoulsan.splitermergers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.eoulsan.EoulsanException;
+import fr.ens.biologie.genomique.eoulsan.EoulsanRuntimeDebug;
+import fr.ens.biologie.genomique.eoulsan.data.DataFile;
+
+public class SplitterUtilsTest {
+
+  @Test
+  public void testGetEntriesPerChunk() {
+
+    assertEquals(25, SplitterUtils.getEntriesPerChunk(100, 4));
+    assertEquals(34, SplitterUtils.getEntriesPerChunk(100, 3));
+    assertEquals(1, SplitterUtils.getEntriesPerChunk(3, 10));
+    assertEquals(1, SplitterUtils.getEntriesPerChunk(0, 2));
+    assertEquals(Integer.MAX_VALUE,
+        SplitterUtils.getEntriesPerChunk(Long.MAX_VALUE, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetEntriesPerChunkWithoutChunk() {
+
+    SplitterUtils.getEntriesPerChunk(100, 0);
+  }
+
+  @Test
+  public void testIsSplittableByOffsets()
+      throws IOException, EoulsanException {
+
+    EoulsanRuntimeDebug.initDebugEoulsanRuntime();
+
+    assertTrue(SplitterUtils
+        .isSplittableByOffsets(new DataFile(new File("/tmp/reads.fq"))));
+    assertFalse(SplitterUtils
+        .isSplittableByOffsets(new DataFile(new File("/tmp/reads.fq.gz"))));
+    assertFalse(SplitterUtils
+        .isSplittableByOffsets(new DataFile("http://example.com/reads.fq")));
+  }
+
+}